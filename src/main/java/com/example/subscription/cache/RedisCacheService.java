@@ -2,16 +2,112 @@ package com.example.subscription.cache;
 
 import com.example.subscription.config.AppProperties;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Range;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
 public class RedisCacheService {
 
+    // Deletes the key only while it still holds the caller's value, so an expired lock taken over by
+    // another node is never released by its previous owner
+    private static final RedisScript<Long> DELETE_IF_VALUE = RedisScript.of(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) else return 0 end",
+            Long.class);
+
+    // ZADD GT, so a replayed or late write never moves a score back; the key's expiry is only ever pushed later
+    private static final RedisScript<Long> ZADD_GREATER = RedisScript.of(
+            "local added = redis.call('ZADD', KEYS[1], 'GT', unpack(ARGV, 2)) " +
+            "if ARGV[1] ~= '0' then " +
+            "  local ttl = redis.call('TTL', KEYS[1]) " +
+            "  if ttl < 0 or tonumber(redis.call('TIME')[1]) + ttl < tonumber(ARGV[1]) then " +
+            "    redis.call('EXPIREAT', KEYS[1], ARGV[1]) " +
+            "  end " +
+            "end " +
+            "return added",
+            Long.class);
+
+    // Token bucket refilled continuously at capacity per window. Reads, refills, takes and writes back in
+    // one script on Redis' own clock, so concurrent requests and app-node clock skew cannot over-admit.
+    // Negative permits hand unused leased tokens back. Replies "allowed:remaining:retryAfterMs".
+    private static final RedisScript<String> TOKEN_BUCKET = RedisScript.of(
+            "local capacity = tonumber(ARGV[1]) " +
+            "local window = tonumber(ARGV[2]) " +
+            "local permits = tonumber(ARGV[3]) " +
+            "local time = redis.call('TIME') " +
+            "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000) " +
+            "local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts') " +
+            "local tokens = tonumber(state[1]) or capacity " +
+            "local ts = tonumber(state[2]) or now " +
+            "local rate = capacity / window " +
+            "tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate) " +
+            "local allowed = 0 " +
+            "local retry = 0 " +
+            "if tokens >= permits then " +
+            "  tokens = math.min(capacity, tokens - permits) " +
+            "  allowed = 1 " +
+            "else " +
+            "  retry = math.ceil((permits - tokens) / rate) " +
+            "end " +
+            "redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', now) " +
+            "redis.call('PEXPIRE', KEYS[1], window) " +
+            "return allowed .. ':' .. math.floor(tokens) .. ':' .. retry",
+            String.class);
+
+    // Sliding window counter: the current fixed window's count plus the previous window's count weighted by
+    // how much of it still overlaps the sliding window. Constant memory per key, unlike a request log.
+    // Negative permits hand unused leased requests back to the window ARGV[4] they were charged to, which
+    // is either still current or now the previous one; older windows no longer count, so those are dropped.
+    // Replies "allowed:remaining:retryAfterMs:windowStart".
+    private static final RedisScript<String> SLIDING_WINDOW = RedisScript.of(
+            "local limit = tonumber(ARGV[1]) " +
+            "local window = tonumber(ARGV[2]) " +
+            "local permits = tonumber(ARGV[3]) " +
+            "local charged = tonumber(ARGV[4]) " +
+            "local time = redis.call('TIME') " +
+            "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000) " +
+            "local start = now - (now % window) " +
+            "local state = redis.call('HMGET', KEYS[1], 'start', 'cur', 'prev') " +
+            "local seen = tonumber(state[1]) or start " +
+            "local cur = tonumber(state[2]) or 0 " +
+            "local prev = tonumber(state[3]) or 0 " +
+            "if seen ~= start then " +
+            "  if seen == start - window then prev = cur else prev = 0 end " +
+            "  cur = 0 " +
+            "end " +
+            "local elapsed = now - start " +
+            "local allowed = 0 " +
+            "local retry = 0 " +
+            "if permits < 0 then " +
+            "  if charged == start then cur = math.max(0, cur + permits) " +
+            "  elseif charged == start - window then prev = math.max(0, prev + permits) end " +
+            "  allowed = 1 " +
+            "elseif prev * (window - elapsed) / window + cur + permits <= limit then " +
+            "  cur = cur + permits " +
+            "  allowed = 1 " +
+            "elseif prev > 0 and cur + permits <= limit then " +
+            "  retry = math.max(1, math.ceil(window - elapsed - (limit - cur - permits) * window / prev)) " +
+            "else " +
+            "  retry = window - elapsed " +
+            "end " +
+            "redis.call('HSET', KEYS[1], 'start', start, 'cur', cur, 'prev', prev) " +
+            "redis.call('PEXPIRE', KEYS[1], window * 2) " +
+            "local weighted = prev * (window - elapsed) / window " +
+            "return allowed .. ':' .. math.max(0, math.floor(limit - weighted - cur)) .. ':' .. retry .. ':' .. start",
+            String.class);
+
     private final ReactiveRedisTemplate<String, String> redisTemplate;
     private final AppProperties appProperties;
 
@@ -35,8 +131,70 @@ public class RedisCacheService {
         return redisTemplate.opsForValue().setIfAbsent(key, value, ttl);
     }
 
+    public Mono<Boolean> deleteIfValue(String key, String value) {
+        return redisTemplate.execute(DELETE_IF_VALUE, List.of(key), List.of(value))
+                .next()
+                .map(deleted -> deleted > 0)
+                .defaultIfEmpty(false);
+    }
+
+    // Scores go out as script arguments, so keep a call to a couple of thousand members
+    public Mono<Long> zaddGreater(String key, Map<String, Double> scores, Instant expireAt) {
+        List<String> args = new ArrayList<>(scores.size() * 2 + 1);
+        args.add(expireAt != null ? String.valueOf(expireAt.getEpochSecond()) : "0");
+        scores.forEach((member, score) -> {
+            args.add(String.valueOf(score));
+            args.add(member);
+        });
+        return redisTemplate.execute(ZADD_GREATER, List.of(key), args)
+                .next()
+                .defaultIfEmpty(0L);
+    }
+
+    // Both acquire calls take one round trip and return {allowed (1/0), remaining, retryAfterMillis};
+    // the sliding window adds the start of the window the permits were charged to
+    public Mono<long[]> acquireTokenBucket(String key, long capacity, long windowMillis, int permits) {
+        return redisTemplate.execute(TOKEN_BUCKET, List.of(key),
+                        List.of(String.valueOf(capacity), String.valueOf(windowMillis), String.valueOf(permits)))
+                .next()
+                .map(RedisCacheService::parseLongs);
+    }
+
+    public Mono<long[]> acquireSlidingWindow(String key, long limit, long windowMillis, int permits,
+                                             long chargedWindowStart) {
+        return redisTemplate.execute(SLIDING_WINDOW, List.of(key), List.of(String.valueOf(limit),
+                        String.valueOf(windowMillis), String.valueOf(permits), String.valueOf(chargedWindowStart)))
+                .next()
+                .map(RedisCacheService::parseLongs);
+    }
+
+    public Flux<ZSetOperations.TypedTuple<String>> zrangeByScore(String key, double min, double max) {
+        return redisTemplate.opsForZSet().rangeByScoreWithScores(key, Range.closed(min, max));
+    }
+
+    public Mono<Long> zcount(String key, double min, double max) {
+        return redisTemplate.opsForZSet().count(key, Range.closed(min, max));
+    }
+
+    public Mono<Long> zremove(String key, Collection<String> members) {
+        return redisTemplate.opsForZSet().remove(key, members.toArray());
+    }
+
+    public Flux<ZSetOperations.TypedTuple<String>> zscan(String key) {
+        return redisTemplate.opsForZSet().scan(key);
+    }
+
     public String buildKey(String prefix, String... parts) {
         return prefix + ":" + String.join(":", parts);
     }
+
+    private static long[] parseLongs(String reply) {
+        String[] parts = reply.split(":");
+        long[] values = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Long.parseLong(parts[i]);
+        }
+        return values;
+    }
 }
 
@@ -3,6 +3,11 @@ package com.example.subscription.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 @Configuration
 @ConfigurationProperties(prefix = "app")
 public class AppProperties {
@@ -15,6 +20,11 @@ public class AppProperties {
     private Cache cache = new Cache();
     private Idempotency idempotency = new Idempotency();
     private Kafka kafka = new Kafka();
+    private Projection projection = new Projection();
+    private Notification notification = new Notification();
+    private Expiry expiry = new Expiry();
+    private Scheduling scheduling = new Scheduling();
+    private RateLimit rateLimit = new RateLimit();
 
     public Jwt getJwt() {
         return jwt;
@@ -80,6 +90,46 @@ public class AppProperties {
         this.kafka = kafka;
     }
 
+    public Projection getProjection() {
+        return projection;
+    }
+
+    public void setProjection(Projection projection) {
+        this.projection = projection;
+    }
+
+    public Notification getNotification() {
+        return notification;
+    }
+
+    public void setNotification(Notification notification) {
+        this.notification = notification;
+    }
+
+    public Expiry getExpiry() {
+        return expiry;
+    }
+
+    public void setExpiry(Expiry expiry) {
+        this.expiry = expiry;
+    }
+
+    public Scheduling getScheduling() {
+        return scheduling;
+    }
+
+    public void setScheduling(Scheduling scheduling) {
+        this.scheduling = scheduling;
+    }
+
+    public RateLimit getRateLimit() {
+        return rateLimit;
+    }
+
+    public void setRateLimit(RateLimit rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
     public static class Jwt {
         private String secret;
         private long expiration;
@@ -88,6 +138,7 @@ public class AppProperties {
         private String requestIdClaim = "request_id";
         private boolean debugMode = false;
         private boolean debugSkipExpiryValidation = false;
+        private Cache cache = new Cache();
 
         public String getSecret() {
             return secret;
@@ -144,6 +195,45 @@ public class AppProperties {
         public void setDebugSkipExpiryValidation(boolean debugSkipExpiryValidation) {
             this.debugSkipExpiryValidation = debugSkipExpiryValidation;
         }
+
+        public Cache getCache() {
+            return cache;
+        }
+
+        public void setCache(Cache cache) {
+            this.cache = cache;
+        }
+
+        // Verified tokens by SHA-256; an entry lives until the token's exp or maxTtlSeconds, whichever is first
+        public static class Cache {
+            private boolean enabled = true;
+            private int maxEntries = 100000;
+            private int maxTtlSeconds = 300;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getMaxEntries() {
+                return maxEntries;
+            }
+
+            public void setMaxEntries(int maxEntries) {
+                this.maxEntries = maxEntries;
+            }
+
+            public int getMaxTtlSeconds() {
+                return maxTtlSeconds;
+            }
+
+            public void setMaxTtlSeconds(int maxTtlSeconds) {
+                this.maxTtlSeconds = maxTtlSeconds;
+            }
+        }
     }
 
     public static class Rules {
@@ -181,6 +271,10 @@ public class AppProperties {
         private int timeout;
         private Retry retry = new Retry();
         private CircuitBreaker circuitBreaker = new CircuitBreaker();
+        private Reconciliation reconciliation = new Reconciliation();
+        private Hedging hedging = new Hedging();
+        private Deferral deferral = new Deferral();
+        private Callback callback = new Callback();
 
         public String getServiceUrl() {
             return serviceUrl;
@@ -214,6 +308,38 @@ public class AppProperties {
             this.circuitBreaker = circuitBreaker;
         }
 
+        public Reconciliation getReconciliation() {
+            return reconciliation;
+        }
+
+        public void setReconciliation(Reconciliation reconciliation) {
+            this.reconciliation = reconciliation;
+        }
+
+        public Hedging getHedging() {
+            return hedging;
+        }
+
+        public void setHedging(Hedging hedging) {
+            this.hedging = hedging;
+        }
+
+        public Deferral getDeferral() {
+            return deferral;
+        }
+
+        public void setDeferral(Deferral deferral) {
+            this.deferral = deferral;
+        }
+
+        public Callback getCallback() {
+            return callback;
+        }
+
+        public void setCallback(Callback callback) {
+            this.callback = callback;
+        }
+
         public static class Retry {
             private int maxAttempts = 3;
             private int delay = 2000;
@@ -255,12 +381,199 @@ public class AppProperties {
                 this.waitDuration = waitDuration;
             }
         }
+
+        public static class Reconciliation {
+            private boolean enabled = true;
+            private int staleAfterSeconds = 900;
+            private int chunkSize = 500;
+            private int parallelism = 16;
+            private int maxRowsPerRun = 500000;
+            private long fixedDelayMs = 300000;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getStaleAfterSeconds() {
+                return staleAfterSeconds;
+            }
+
+            public void setStaleAfterSeconds(int staleAfterSeconds) {
+                this.staleAfterSeconds = staleAfterSeconds;
+            }
+
+            public int getChunkSize() {
+                return chunkSize;
+            }
+
+            public void setChunkSize(int chunkSize) {
+                this.chunkSize = chunkSize;
+            }
+
+            public int getParallelism() {
+                return parallelism;
+            }
+
+            public void setParallelism(int parallelism) {
+                this.parallelism = parallelism;
+            }
+
+            public int getMaxRowsPerRun() {
+                return maxRowsPerRun;
+            }
+
+            public void setMaxRowsPerRun(int maxRowsPerRun) {
+                this.maxRowsPerRun = maxRowsPerRun;
+            }
+
+            public long getFixedDelayMs() {
+                return fixedDelayMs;
+            }
+
+            public void setFixedDelayMs(long fixedDelayMs) {
+                this.fixedDelayMs = fixedDelayMs;
+            }
+        }
+
+        public static class Hedging {
+            private boolean enabled = false;
+            private double percentile = 95.0;
+            private int minDelayMs = 20;
+            private double maxHedgeRatio = 0.1;
+            private int windowSize = 512;
+            private int minSamples = 50;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public double getPercentile() {
+                return percentile;
+            }
+
+            public void setPercentile(double percentile) {
+                this.percentile = percentile;
+            }
+
+            public int getMinDelayMs() {
+                return minDelayMs;
+            }
+
+            public void setMinDelayMs(int minDelayMs) {
+                this.minDelayMs = minDelayMs;
+            }
+
+            public double getMaxHedgeRatio() {
+                return maxHedgeRatio;
+            }
+
+            public void setMaxHedgeRatio(double maxHedgeRatio) {
+                this.maxHedgeRatio = maxHedgeRatio;
+            }
+
+            public int getWindowSize() {
+                return windowSize;
+            }
+
+            public void setWindowSize(int windowSize) {
+                this.windowSize = windowSize;
+            }
+
+            public int getMinSamples() {
+                return minSamples;
+            }
+
+            public void setMinSamples(int minSamples) {
+                this.minSamples = minSamples;
+            }
+        }
+
+        public static class Deferral {
+            private int drainRatePerSecond = 20;
+            private int drainBatchSize = 100;
+            private int halfOpenProbeCount = 3;
+
+            public int getDrainRatePerSecond() {
+                return drainRatePerSecond;
+            }
+
+            public void setDrainRatePerSecond(int drainRatePerSecond) {
+                this.drainRatePerSecond = drainRatePerSecond;
+            }
+
+            public int getDrainBatchSize() {
+                return drainBatchSize;
+            }
+
+            public void setDrainBatchSize(int drainBatchSize) {
+                this.drainBatchSize = drainBatchSize;
+            }
+
+            public int getHalfOpenProbeCount() {
+                return halfOpenProbeCount;
+            }
+
+            public void setHalfOpenProbeCount(int halfOpenProbeCount) {
+                this.halfOpenProbeCount = halfOpenProbeCount;
+            }
+        }
+
+        public static class Callback {
+            private boolean enabled = false;
+            private String url;
+            private String secret;
+            private int maxClockSkewSeconds = 300;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public String getUrl() {
+                return url;
+            }
+
+            public void setUrl(String url) {
+                this.url = url;
+            }
+
+            public String getSecret() {
+                return secret;
+            }
+
+            public void setSecret(String secret) {
+                this.secret = secret;
+            }
+
+            public int getMaxClockSkewSeconds() {
+                return maxClockSkewSeconds;
+            }
+
+            public void setMaxClockSkewSeconds(int maxClockSkewSeconds) {
+                this.maxClockSkewSeconds = maxClockSkewSeconds;
+            }
+        }
     }
 
     public static class Observability {
         private String loggingLevel = "INFO";
         private boolean metricsEnabled = true;
         private boolean tracingEnabled = true;
+        private Pipeline pipeline = new Pipeline();
+        private RequestLogging requestLogging = new RequestLogging();
+        private Ids ids = new Ids();
+        private Http http = new Http();
 
         public String getLoggingLevel() {
             return loggingLevel;
@@ -285,6 +598,165 @@ public class AppProperties {
         public void setTracingEnabled(boolean tracingEnabled) {
             this.tracingEnabled = tracingEnabled;
         }
+
+        public Pipeline getPipeline() {
+            return pipeline;
+        }
+
+        public void setPipeline(Pipeline pipeline) {
+            this.pipeline = pipeline;
+        }
+
+        public RequestLogging getRequestLogging() {
+            return requestLogging;
+        }
+
+        public void setRequestLogging(RequestLogging requestLogging) {
+            this.requestLogging = requestLogging;
+        }
+
+        public Ids getIds() {
+            return ids;
+        }
+
+        public void setIds(Ids ids) {
+            this.ids = ids;
+        }
+
+        public Http getHttp() {
+            return http;
+        }
+
+        public void setHttp(Http http) {
+            this.http = http;
+        }
+
+        public static class Pipeline {
+            // Most recent samples kept per stage for the actuator summary
+            private int sampleCapacity = 8192;
+            private List<Integer> windowsSeconds = new ArrayList<>(List.of(60, 300, 900));
+
+            public int getSampleCapacity() {
+                return sampleCapacity;
+            }
+
+            public void setSampleCapacity(int sampleCapacity) {
+                this.sampleCapacity = sampleCapacity;
+            }
+
+            public List<Integer> getWindowsSeconds() {
+                return windowsSeconds;
+            }
+
+            public void setWindowsSeconds(List<Integer> windowsSeconds) {
+                this.windowsSeconds = windowsSeconds;
+            }
+        }
+
+        public static class RequestLogging {
+            // Failed requests are logged in every mode but OFF
+            public enum Mode { ALL, SAMPLED, SLOW, ERRORS, OFF }
+
+            private Mode mode = Mode.SAMPLED;
+            private double sampleRate = 0.01;
+            private long slowThresholdMs = 1000;
+            // Read by logback-spring.xml when logging starts
+            private int queueSize = 8192;
+
+            public Mode getMode() {
+                return mode;
+            }
+
+            public void setMode(Mode mode) {
+                this.mode = mode;
+            }
+
+            public double getSampleRate() {
+                return sampleRate;
+            }
+
+            public void setSampleRate(double sampleRate) {
+                this.sampleRate = sampleRate;
+            }
+
+            public long getSlowThresholdMs() {
+                return slowThresholdMs;
+            }
+
+            public void setSlowThresholdMs(long slowThresholdMs) {
+                this.slowThresholdMs = slowThresholdMs;
+            }
+
+            public int getQueueSize() {
+                return queueSize;
+            }
+
+            public void setQueueSize(int queueSize) {
+                this.queueSize = queueSize;
+            }
+        }
+
+        public static class Http {
+            // Published as explicit histogram buckets, so the exact share of requests inside each SLO is known
+            private List<Long> sloBucketsMs = new ArrayList<>(List.of(25L, 50L, 100L, 250L, 500L, 1000L, 2500L, 5000L));
+            private int sampleCapacity = 2048;
+            private int maxRoutes = 500;
+            private int topRoutes = 10;
+            private int summaryWindowSeconds = 300;
+
+            public List<Long> getSloBucketsMs() {
+                return sloBucketsMs;
+            }
+
+            public void setSloBucketsMs(List<Long> sloBucketsMs) {
+                this.sloBucketsMs = sloBucketsMs;
+            }
+
+            public int getSampleCapacity() {
+                return sampleCapacity;
+            }
+
+            public void setSampleCapacity(int sampleCapacity) {
+                this.sampleCapacity = sampleCapacity;
+            }
+
+            public int getMaxRoutes() {
+                return maxRoutes;
+            }
+
+            public void setMaxRoutes(int maxRoutes) {
+                this.maxRoutes = maxRoutes;
+            }
+
+            public int getTopRoutes() {
+                return topRoutes;
+            }
+
+            public void setTopRoutes(int topRoutes) {
+                this.topRoutes = topRoutes;
+            }
+
+            public int getSummaryWindowSeconds() {
+                return summaryWindowSeconds;
+            }
+
+            public void setSummaryWindowSeconds(int summaryWindowSeconds) {
+                this.summaryWindowSeconds = summaryWindowSeconds;
+            }
+        }
+
+        public static class Ids {
+            // 0-1023, unique per running instance; negative claims a free slot through scheduler_nodes
+            private int nodeId = -1;
+
+            public int getNodeId() {
+                return nodeId;
+            }
+
+            public void setNodeId(int nodeId) {
+                this.nodeId = nodeId;
+            }
+        }
     }
 
     public static class ThreadPool {
@@ -364,6 +836,16 @@ public class AppProperties {
 
     public static class Kafka {
         private String topicBookKeeping = "book-keeping-events";
+        private int partitions = 12;
+        private int replicas = 1;
+        private int concurrency = 3;
+        private int processingLanes = 0;
+        private Batch batch = new Batch();
+        private Producer producer = new Producer();
+        private Outbox outbox = new Outbox();
+        private Retry retry = new Retry();
+        private Dedup dedup = new Dedup();
+        private Recovery recovery = new Recovery();
 
         public String getTopicBookKeeping() {
             return topicBookKeeping;
@@ -372,6 +854,1005 @@ public class AppProperties {
         public void setTopicBookKeeping(String topicBookKeeping) {
             this.topicBookKeeping = topicBookKeeping;
         }
-    }
-}
 
+        public int getPartitions() {
+            return partitions;
+        }
+
+        public void setPartitions(int partitions) {
+            this.partitions = partitions;
+        }
+
+        public int getReplicas() {
+            return replicas;
+        }
+
+        public void setReplicas(int replicas) {
+            this.replicas = replicas;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public int getProcessingLanes() {
+            return processingLanes;
+        }
+
+        public void setProcessingLanes(int processingLanes) {
+            this.processingLanes = processingLanes;
+        }
+
+        public Batch getBatch() {
+            return batch;
+        }
+
+        public void setBatch(Batch batch) {
+            this.batch = batch;
+        }
+
+        public Producer getProducer() {
+            return producer;
+        }
+
+        public void setProducer(Producer producer) {
+            this.producer = producer;
+        }
+
+        public Outbox getOutbox() {
+            return outbox;
+        }
+
+        public void setOutbox(Outbox outbox) {
+            this.outbox = outbox;
+        }
+
+        public Retry getRetry() {
+            return retry;
+        }
+
+        public void setRetry(Retry retry) {
+            this.retry = retry;
+        }
+
+        public Dedup getDedup() {
+            return dedup;
+        }
+
+        public void setDedup(Dedup dedup) {
+            this.dedup = dedup;
+        }
+
+        public Recovery getRecovery() {
+            return recovery;
+        }
+
+        public void setRecovery(Recovery recovery) {
+            this.recovery = recovery;
+        }
+
+        public static class Dedup {
+            private boolean enabled = true;
+            private int recentCapacity = 100000;
+            private int filterExpectedInsertions = 1000000;
+            private double filterFalsePositiveRate = 0.01;
+            // Events completed this long after a partition was assigned here cannot have been seen by its previous owner
+            private long assignmentSkewMs = 30000;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getRecentCapacity() {
+                return recentCapacity;
+            }
+
+            public void setRecentCapacity(int recentCapacity) {
+                this.recentCapacity = recentCapacity;
+            }
+
+            public int getFilterExpectedInsertions() {
+                return filterExpectedInsertions;
+            }
+
+            public void setFilterExpectedInsertions(int filterExpectedInsertions) {
+                this.filterExpectedInsertions = filterExpectedInsertions;
+            }
+
+            public double getFilterFalsePositiveRate() {
+                return filterFalsePositiveRate;
+            }
+
+            public void setFilterFalsePositiveRate(double filterFalsePositiveRate) {
+                this.filterFalsePositiveRate = filterFalsePositiveRate;
+            }
+
+            public long getAssignmentSkewMs() {
+                return assignmentSkewMs;
+            }
+
+            public void setAssignmentSkewMs(long assignmentSkewMs) {
+                this.assignmentSkewMs = assignmentSkewMs;
+            }
+        }
+
+        // Re-publishes COMPLETED entries the consumer never marked PROCESSED; the grace period must
+        // outlast the retry topic delays so entries still being retried are left alone
+        public static class Recovery {
+            private boolean enabled = true;
+            private int graceSeconds = 900;
+            private int batchSize = 500;
+            private int maxRowsPerRun = 100000;
+            private int lockTtlSeconds = 300;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getGraceSeconds() {
+                return graceSeconds;
+            }
+
+            public void setGraceSeconds(int graceSeconds) {
+                this.graceSeconds = graceSeconds;
+            }
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public int getMaxRowsPerRun() {
+                return maxRowsPerRun;
+            }
+
+            public void setMaxRowsPerRun(int maxRowsPerRun) {
+                this.maxRowsPerRun = maxRowsPerRun;
+            }
+
+            public int getLockTtlSeconds() {
+                return lockTtlSeconds;
+            }
+
+            public void setLockTtlSeconds(int lockTtlSeconds) {
+                this.lockTtlSeconds = lockTtlSeconds;
+            }
+        }
+
+        // Retry topic i is "<topic>-retry-i" with delaysMs[i]; after the last tier a record goes to "<topic>-dlt"
+        public static class Retry {
+            private List<Long> delaysMs = new ArrayList<>(List.of(10000L, 60000L, 300000L));
+            private long sendTimeoutMs = 10000;
+
+            public String retryTopic(String topic, int tier) {
+                return topic + "-retry-" + tier;
+            }
+
+            public String deadLetterTopic(String topic) {
+                return topic + "-dlt";
+            }
+
+            public List<Long> getDelaysMs() {
+                return delaysMs;
+            }
+
+            public void setDelaysMs(List<Long> delaysMs) {
+                this.delaysMs = delaysMs;
+            }
+
+            public long getSendTimeoutMs() {
+                return sendTimeoutMs;
+            }
+
+            public void setSendTimeoutMs(long sendTimeoutMs) {
+                this.sendTimeoutMs = sendTimeoutMs;
+            }
+        }
+
+        public static class Outbox {
+            private int batchSize = 500;
+            // Bounds how long a batch holds its claimed rows and the relay lock while waiting for acks
+            private long sendTimeoutMs = 5000;
+            // Rows that failed this many sends stop being claimed; the recovery sweep publishes their entries again
+            private int maxAttempts = 20;
+            private int retentionHours = 168;
+            private int purgeBatchSize = 5000;
+            private long purgeIntervalMs = 3600000;
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public long getSendTimeoutMs() {
+                return sendTimeoutMs;
+            }
+
+            public void setSendTimeoutMs(long sendTimeoutMs) {
+                this.sendTimeoutMs = sendTimeoutMs;
+            }
+
+            public int getMaxAttempts() {
+                return maxAttempts;
+            }
+
+            public void setMaxAttempts(int maxAttempts) {
+                this.maxAttempts = maxAttempts;
+            }
+
+            public int getRetentionHours() {
+                return retentionHours;
+            }
+
+            public void setRetentionHours(int retentionHours) {
+                this.retentionHours = retentionHours;
+            }
+
+            public int getPurgeBatchSize() {
+                return purgeBatchSize;
+            }
+
+            public void setPurgeBatchSize(int purgeBatchSize) {
+                this.purgeBatchSize = purgeBatchSize;
+            }
+
+            public long getPurgeIntervalMs() {
+                return purgeIntervalMs;
+            }
+
+            public void setPurgeIntervalMs(long purgeIntervalMs) {
+                this.purgeIntervalMs = purgeIntervalMs;
+            }
+        }
+
+        public static class Producer {
+            // Which of the named profiles below the producer factory is built from
+            private String profile = "throughput";
+            private ProducerProfile latency = ProducerProfile.latency();
+            private ProducerProfile throughput = ProducerProfile.throughput();
+
+            // A typo must not silently ship the other profile's acks/linger settings
+            public ProducerProfile getActiveProfile() {
+                if ("latency".equalsIgnoreCase(profile)) {
+                    return latency;
+                }
+                if ("throughput".equalsIgnoreCase(profile)) {
+                    return throughput;
+                }
+                throw new IllegalStateException(
+                        "Unknown app.kafka.producer.profile '" + profile + "', expected 'latency' or 'throughput'");
+            }
+
+            public String getProfile() {
+                return profile;
+            }
+
+            public void setProfile(String profile) {
+                this.profile = profile;
+            }
+
+            public ProducerProfile getLatency() {
+                return latency;
+            }
+
+            public void setLatency(ProducerProfile latency) {
+                this.latency = latency;
+            }
+
+            public ProducerProfile getThroughput() {
+                return throughput;
+            }
+
+            public void setThroughput(ProducerProfile throughput) {
+                this.throughput = throughput;
+            }
+        }
+
+        public static class ProducerProfile {
+            private int lingerMs;
+            private int batchSize;
+            private String compressionType;
+            private String acks = "all";
+            private boolean enableIdempotence = true;
+            private int maxInFlightRequestsPerConnection = 5;
+
+            // Send as soon as possible: no linger, default batch, no compression
+            public static ProducerProfile latency() {
+                ProducerProfile profile = new ProducerProfile();
+                profile.setLingerMs(0);
+                profile.setBatchSize(16 * 1024);
+                profile.setCompressionType("none");
+                return profile;
+            }
+
+            // Let batches fill for a few milliseconds and compress them on the wire
+            public static ProducerProfile throughput() {
+                ProducerProfile profile = new ProducerProfile();
+                profile.setLingerMs(20);
+                profile.setBatchSize(128 * 1024);
+                profile.setCompressionType("lz4");
+                return profile;
+            }
+
+            public int getLingerMs() {
+                return lingerMs;
+            }
+
+            public void setLingerMs(int lingerMs) {
+                this.lingerMs = lingerMs;
+            }
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public String getCompressionType() {
+                return compressionType;
+            }
+
+            public void setCompressionType(String compressionType) {
+                this.compressionType = compressionType;
+            }
+
+            public String getAcks() {
+                return acks;
+            }
+
+            public void setAcks(String acks) {
+                this.acks = acks;
+            }
+
+            public boolean isEnableIdempotence() {
+                return enableIdempotence;
+            }
+
+            public void setEnableIdempotence(boolean enableIdempotence) {
+                this.enableIdempotence = enableIdempotence;
+            }
+
+            public int getMaxInFlightRequestsPerConnection() {
+                return maxInFlightRequestsPerConnection;
+            }
+
+            public void setMaxInFlightRequestsPerConnection(int maxInFlightRequestsPerConnection) {
+                this.maxInFlightRequestsPerConnection = maxInFlightRequestsPerConnection;
+            }
+        }
+
+        public static class Batch {
+            // On by default: per-user lanes, and with them materialization across cores, exist only in batch mode
+            private boolean enabled = true;
+            private int maxPollRecords = 500;
+            private int fetchMinBytes = 64 * 1024;
+            private int fetchMaxWaitMs = 100;
+            private int maxPartitionFetchBytes = 1024 * 1024;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getMaxPollRecords() {
+                return maxPollRecords;
+            }
+
+            public void setMaxPollRecords(int maxPollRecords) {
+                this.maxPollRecords = maxPollRecords;
+            }
+
+            public int getFetchMinBytes() {
+                return fetchMinBytes;
+            }
+
+            public void setFetchMinBytes(int fetchMinBytes) {
+                this.fetchMinBytes = fetchMinBytes;
+            }
+
+            public int getFetchMaxWaitMs() {
+                return fetchMaxWaitMs;
+            }
+
+            public void setFetchMaxWaitMs(int fetchMaxWaitMs) {
+                this.fetchMaxWaitMs = fetchMaxWaitMs;
+            }
+
+            public int getMaxPartitionFetchBytes() {
+                return maxPartitionFetchBytes;
+            }
+
+            public void setMaxPartitionFetchBytes(int maxPartitionFetchBytes) {
+                this.maxPartitionFetchBytes = maxPartitionFetchBytes;
+            }
+        }
+    }
+
+    public static class Projection {
+        private Rebuild rebuild = new Rebuild();
+
+        public Rebuild getRebuild() {
+            return rebuild;
+        }
+
+        public void setRebuild(Rebuild rebuild) {
+            this.rebuild = rebuild;
+        }
+
+        // Each shard holds a streaming read connection and a write connection while it runs
+        public static class Rebuild {
+            private int shards = 4;
+            private int fetchSize = 10000;
+            private int writeBatchSize = 5000;
+
+            public int getShards() {
+                return shards;
+            }
+
+            public void setShards(int shards) {
+                this.shards = shards;
+            }
+
+            public int getFetchSize() {
+                return fetchSize;
+            }
+
+            public void setFetchSize(int fetchSize) {
+                this.fetchSize = fetchSize;
+            }
+
+            public int getWriteBatchSize() {
+                return writeBatchSize;
+            }
+
+            public void setWriteBatchSize(int writeBatchSize) {
+                this.writeBatchSize = writeBatchSize;
+            }
+        }
+    }
+
+    public static class Notification {
+        private Expiry expiry = new Expiry();
+        private Dispatch dispatch = new Dispatch();
+
+        public Expiry getExpiry() {
+            return expiry;
+        }
+
+        public void setExpiry(Expiry expiry) {
+            this.expiry = expiry;
+        }
+
+        public Dispatch getDispatch() {
+            return dispatch;
+        }
+
+        public void setDispatch(Dispatch dispatch) {
+            this.dispatch = dispatch;
+        }
+
+        // Subscriptions ending 1..warningDays days from today are read in keyset pages of chunkSize
+        public static class Expiry {
+            private int warningDays = 7;
+            private int chunkSize = 1000;
+
+            public int getWarningDays() {
+                return warningDays;
+            }
+
+            public void setWarningDays(int warningDays) {
+                this.warningDays = warningDays;
+            }
+
+            public int getChunkSize() {
+                return chunkSize;
+            }
+
+            public void setChunkSize(int chunkSize) {
+                this.chunkSize = chunkSize;
+            }
+        }
+
+        // Per-channel queues drained in batches; rateLimitsPerSecond overrides defaultRatePerSecond by channel name
+        public static class Dispatch {
+            private int queueCapacity = 10000;
+            private int batchSize = 100;
+            private long maxBatchWaitMs = 200;
+            private int defaultRatePerSecond = 100;
+            private Map<String, Integer> rateLimitsPerSecond = new HashMap<>();
+            private int dedupCapacity = 200000;
+            private int maxAttempts = 5;
+            private long initialBackoffMs = 500;
+            private long maxBackoffMs = 30000;
+
+            public int getQueueCapacity() {
+                return queueCapacity;
+            }
+
+            public void setQueueCapacity(int queueCapacity) {
+                this.queueCapacity = queueCapacity;
+            }
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public long getMaxBatchWaitMs() {
+                return maxBatchWaitMs;
+            }
+
+            public void setMaxBatchWaitMs(long maxBatchWaitMs) {
+                this.maxBatchWaitMs = maxBatchWaitMs;
+            }
+
+            public int getDefaultRatePerSecond() {
+                return defaultRatePerSecond;
+            }
+
+            public void setDefaultRatePerSecond(int defaultRatePerSecond) {
+                this.defaultRatePerSecond = defaultRatePerSecond;
+            }
+
+            public Map<String, Integer> getRateLimitsPerSecond() {
+                return rateLimitsPerSecond;
+            }
+
+            public void setRateLimitsPerSecond(Map<String, Integer> rateLimitsPerSecond) {
+                this.rateLimitsPerSecond = rateLimitsPerSecond;
+            }
+
+            public int getDedupCapacity() {
+                return dedupCapacity;
+            }
+
+            public void setDedupCapacity(int dedupCapacity) {
+                this.dedupCapacity = dedupCapacity;
+            }
+
+            public int getMaxAttempts() {
+                return maxAttempts;
+            }
+
+            public void setMaxAttempts(int maxAttempts) {
+                this.maxAttempts = maxAttempts;
+            }
+
+            public long getInitialBackoffMs() {
+                return initialBackoffMs;
+            }
+
+            public void setInitialBackoffMs(long initialBackoffMs) {
+                this.initialBackoffMs = initialBackoffMs;
+            }
+
+            public long getMaxBackoffMs() {
+                return maxBackoffMs;
+            }
+
+            public void setMaxBackoffMs(long maxBackoffMs) {
+                this.maxBackoffMs = maxBackoffMs;
+            }
+        }
+    }
+
+    // Moves ACTIVE subscriptions past their end_date to EXPIRED, batchSize rows per transaction
+    public static class Expiry {
+        private boolean enabled = true;
+        private int batchSize = 1000;
+        private int maxBatchesPerRun = 2000;
+        private Index index = new Index();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getMaxBatchesPerRun() {
+            return maxBatchesPerRun;
+        }
+
+        public void setMaxBatchesPerRun(int maxBatchesPerRun) {
+            this.maxBatchesPerRun = maxBatchesPerRun;
+        }
+
+        public Index getIndex() {
+            return index;
+        }
+
+        public void setIndex(Index index) {
+            this.index = index;
+        }
+
+        // Redis sorted sets of ACTIVE subscriptions by end date; shards must be a multiple of
+        // app.scheduling.shards for the scheduled jobs to read them
+        public static class Index {
+            private boolean enabled = true;
+            private int shards = 16;
+            private long timeoutMs = 2000;
+            private int rebuildBatchSize = 1000;
+            private int maxRangeDays = 366;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getShards() {
+                return shards;
+            }
+
+            public void setShards(int shards) {
+                this.shards = shards;
+            }
+
+            public long getTimeoutMs() {
+                return timeoutMs;
+            }
+
+            public void setTimeoutMs(long timeoutMs) {
+                this.timeoutMs = timeoutMs;
+            }
+
+            public int getRebuildBatchSize() {
+                return rebuildBatchSize;
+            }
+
+            public void setRebuildBatchSize(int rebuildBatchSize) {
+                this.rebuildBatchSize = rebuildBatchSize;
+            }
+
+            public int getMaxRangeDays() {
+                return maxRangeDays;
+            }
+
+            public void setMaxRangeDays(int maxRangeDays) {
+                this.maxRangeDays = maxRangeDays;
+            }
+        }
+    }
+
+    // Lease TTL must outlast a few missed heartbeats; node TTL decides how fast a dead instance's
+    // share of the shards moves to the others
+    public static class Scheduling {
+        private boolean enabled = true;
+        private String nodeId;
+        private long heartbeatIntervalMs = 5000;
+        private int nodeTtlSeconds = 30;
+        private int leaseSeconds = 60;
+        private int shards = 16;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        public void setNodeId(String nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        public long getHeartbeatIntervalMs() {
+            return heartbeatIntervalMs;
+        }
+
+        public void setHeartbeatIntervalMs(long heartbeatIntervalMs) {
+            this.heartbeatIntervalMs = heartbeatIntervalMs;
+        }
+
+        public int getNodeTtlSeconds() {
+            return nodeTtlSeconds;
+        }
+
+        public void setNodeTtlSeconds(int nodeTtlSeconds) {
+            this.nodeTtlSeconds = nodeTtlSeconds;
+        }
+
+        public int getLeaseSeconds() {
+            return leaseSeconds;
+        }
+
+        public void setLeaseSeconds(int leaseSeconds) {
+            this.leaseSeconds = leaseSeconds;
+        }
+
+        public int getShards() {
+            return shards;
+        }
+
+        public void setShards(int shards) {
+            this.shards = shards;
+        }
+    }
+
+    public static class RateLimit {
+        private boolean enabled = true;
+        private boolean failOpen = true;
+        private long timeoutMs = 50;
+        private long refreshIntervalMs = 60000;
+        private String defaultAlgorithm = "TOKEN_BUCKET";
+        private int defaultLimit = 100;
+        private int defaultWindowSeconds = 60;
+        private List<Rule> rules = new ArrayList<>();
+        private Hybrid hybrid = new Hybrid();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public boolean isFailOpen() {
+            return failOpen;
+        }
+
+        public void setFailOpen(boolean failOpen) {
+            this.failOpen = failOpen;
+        }
+
+        public long getTimeoutMs() {
+            return timeoutMs;
+        }
+
+        public void setTimeoutMs(long timeoutMs) {
+            this.timeoutMs = timeoutMs;
+        }
+
+        public long getRefreshIntervalMs() {
+            return refreshIntervalMs;
+        }
+
+        public void setRefreshIntervalMs(long refreshIntervalMs) {
+            this.refreshIntervalMs = refreshIntervalMs;
+        }
+
+        public String getDefaultAlgorithm() {
+            return defaultAlgorithm;
+        }
+
+        public void setDefaultAlgorithm(String defaultAlgorithm) {
+            this.defaultAlgorithm = defaultAlgorithm;
+        }
+
+        public int getDefaultLimit() {
+            return defaultLimit;
+        }
+
+        public void setDefaultLimit(int defaultLimit) {
+            this.defaultLimit = defaultLimit;
+        }
+
+        public int getDefaultWindowSeconds() {
+            return defaultWindowSeconds;
+        }
+
+        public void setDefaultWindowSeconds(int defaultWindowSeconds) {
+            this.defaultWindowSeconds = defaultWindowSeconds;
+        }
+
+        public List<Rule> getRules() {
+            return rules;
+        }
+
+        public void setRules(List<Rule> rules) {
+            this.rules = rules;
+        }
+
+        public Hybrid getHybrid() {
+            return hybrid;
+        }
+
+        public void setHybrid(Hybrid hybrid) {
+            this.hybrid = hybrid;
+        }
+
+        // Each node leases a slice of a key's limit from Redis and admits from it locally
+        public static class Hybrid {
+            private boolean enabled = true;
+            private int minLimit = 20;
+            private double leaseFraction = 0.1;
+            private long leaseTtlMs = 1000;
+            private int syncBatchSize = 256;
+            private long syncTimeoutMs = 500;
+            private long degradedMs = 5000;
+            private long idleEvictMs = 60000;
+            private int maxKeys = 100000;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getMinLimit() {
+                return minLimit;
+            }
+
+            public void setMinLimit(int minLimit) {
+                this.minLimit = minLimit;
+            }
+
+            public double getLeaseFraction() {
+                return leaseFraction;
+            }
+
+            public void setLeaseFraction(double leaseFraction) {
+                this.leaseFraction = leaseFraction;
+            }
+
+            public long getLeaseTtlMs() {
+                return leaseTtlMs;
+            }
+
+            public void setLeaseTtlMs(long leaseTtlMs) {
+                this.leaseTtlMs = leaseTtlMs;
+            }
+
+            public int getSyncBatchSize() {
+                return syncBatchSize;
+            }
+
+            public void setSyncBatchSize(int syncBatchSize) {
+                this.syncBatchSize = syncBatchSize;
+            }
+
+            public long getSyncTimeoutMs() {
+                return syncTimeoutMs;
+            }
+
+            public void setSyncTimeoutMs(long syncTimeoutMs) {
+                this.syncTimeoutMs = syncTimeoutMs;
+            }
+
+            public long getDegradedMs() {
+                return degradedMs;
+            }
+
+            public void setDegradedMs(long degradedMs) {
+                this.degradedMs = degradedMs;
+            }
+
+            public long getIdleEvictMs() {
+                return idleEvictMs;
+            }
+
+            public void setIdleEvictMs(long idleEvictMs) {
+                this.idleEvictMs = idleEvictMs;
+            }
+
+            public int getMaxKeys() {
+                return maxKeys;
+            }
+
+            public void setMaxKeys(int maxKeys) {
+                this.maxKeys = maxKeys;
+            }
+        }
+
+        // Also the JSON shape of a rules_engine row with rule_type RATE_LIMIT
+        public static class Rule {
+            private String name;
+            private String route;
+            private String method;
+            private String role;
+            private String algorithm;
+            private int limit;
+            private int windowSeconds;
+            private boolean perRoute = true;
+
+            public String getName() {
+                return name;
+            }
+
+            public void setName(String name) {
+                this.name = name;
+            }
+
+            public String getRoute() {
+                return route;
+            }
+
+            public void setRoute(String route) {
+                this.route = route;
+            }
+
+            public String getMethod() {
+                return method;
+            }
+
+            public void setMethod(String method) {
+                this.method = method;
+            }
+
+            public String getRole() {
+                return role;
+            }
+
+            public void setRole(String role) {
+                this.role = role;
+            }
+
+            public String getAlgorithm() {
+                return algorithm;
+            }
+
+            public void setAlgorithm(String algorithm) {
+                this.algorithm = algorithm;
+            }
+
+            public int getLimit() {
+                return limit;
+            }
+
+            public void setLimit(int limit) {
+                this.limit = limit;
+            }
+
+            public int getWindowSeconds() {
+                return windowSeconds;
+            }
+
+            public void setWindowSeconds(int windowSeconds) {
+                this.windowSeconds = windowSeconds;
+            }
+
+            public boolean isPerRoute() {
+                return perRoute;
+            }
+
+            public void setPerRoute(boolean perRoute) {
+                this.perRoute = perRoute;
+            }
+        }
+    }
+}
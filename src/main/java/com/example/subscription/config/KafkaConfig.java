@@ -1,57 +1,153 @@
 package com.example.subscription.config;
 
+import com.example.subscription.kafka.ProcessedEventDeduplicator;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.*;
 import org.springframework.kafka.listener.ContainerProperties;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Configuration
+@RequiredArgsConstructor
 public class KafkaConfig {
 
+    private final AppProperties appProperties;
+    private final MeterRegistry meterRegistry;
+    private final ProcessedEventDeduplicator processedEventDeduplicator;
+
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
 
     @Bean
-    public ProducerFactory<String, String> producerFactory() {
+    public NewTopic bookKeepingTopic() {
+        AppProperties.Kafka kafka = appProperties.getKafka();
+        return TopicBuilder.name(kafka.getTopicBookKeeping())
+                .partitions(kafka.getPartitions())
+                .replicas(kafka.getReplicas())
+                .build();
+    }
+
+    @Bean
+    public KafkaAdmin.NewTopics bookKeepingRetryTopics() {
+        AppProperties.Kafka kafka = appProperties.getKafka();
+        List<NewTopic> topics = new ArrayList<>();
+        for (int tier = 0; tier < kafka.getRetry().getDelaysMs().size(); tier++) {
+            topics.add(TopicBuilder.name(kafka.getRetry().retryTopic(kafka.getTopicBookKeeping(), tier))
+                    .partitions(kafka.getPartitions())
+                    .replicas(kafka.getReplicas())
+                    .build());
+        }
+        topics.add(TopicBuilder.name(kafka.getRetry().deadLetterTopic(kafka.getTopicBookKeeping()))
+                .partitions(kafka.getPartitions())
+                .replicas(kafka.getReplicas())
+                .build());
+        return new KafkaAdmin.NewTopics(topics.toArray(new NewTopic[0]));
+    }
+
+    @Bean
+    public ProducerFactory<String, byte[]> producerFactory() {
+        AppProperties.Kafka.ProducerProfile profile = appProperties.getKafka().getProducer().getActiveProfile();
+        DefaultKafkaProducerFactory<String, byte[]> factory =
+                new DefaultKafkaProducerFactory<>(producerProps(bootstrapServers, profile));
+        // Publishes the client's own metrics (batch-size-avg, record-send-rate, request-latency, ...)
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry));
+        return factory;
+    }
+
+    public static Map<String, Object> producerProps(String bootstrapServers, AppProperties.Kafka.ProducerProfile profile) {
+        if (profile.isEnableIdempotence()
+                && (!"all".equalsIgnoreCase(profile.getAcks()) || profile.getMaxInFlightRequestsPerConnection() > 5)) {
+            throw new IllegalStateException(
+                    "Idempotent producer requires acks=all and at most 5 in-flight requests per connection");
+        }
+
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        return new DefaultKafkaProducerFactory<>(configProps);
+        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        configProps.put(ProducerConfig.LINGER_MS_CONFIG, profile.getLingerMs());
+        configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, profile.getBatchSize());
+        configProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, profile.getCompressionType());
+        configProps.put(ProducerConfig.ACKS_CONFIG, profile.getAcks());
+        configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, profile.isEnableIdempotence());
+        configProps.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, profile.getMaxInFlightRequestsPerConnection());
+        return configProps;
     }
 
     @Bean
-    public KafkaTemplate<String, String> kafkaTemplate() {
+    public KafkaTemplate<String, byte[]> kafkaTemplate() {
         return new KafkaTemplate<>(producerFactory());
     }
 
     @Bean
-    public ConsumerFactory<String, String> consumerFactory() {
-        Map<String, Object> configProps = new HashMap<>();
-        configProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        configProps.put(ConsumerConfig.GROUP_ID_CONFIG, "subscription-service-group");
-        configProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        configProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        configProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
-        return new DefaultKafkaConsumerFactory<>(configProps);
+    public ConsumerFactory<String, byte[]> consumerFactory() {
+        DefaultKafkaConsumerFactory<String, byte[]> factory = new DefaultKafkaConsumerFactory<>(baseConsumerProps());
+        // Per-partition records-lag and records-consumed-rate gauges for sizing concurrency
+        factory.addListener(new MicrometerConsumerListener<>(meterRegistry));
+        return factory;
     }
 
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, String> kafkaListenerContainerFactory() {
-        ConcurrentKafkaListenerContainerFactory<String, String> factory = 
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> kafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory = 
             new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
+        factory.setConcurrency(appProperties.getKafka().getConcurrency());
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
+        factory.getContainerProperties().setConsumerRebalanceListener(processedEventDeduplicator);
+        return factory;
+    }
+
+    @Bean
+    public ConsumerFactory<String, byte[]> batchConsumerFactory() {
+        AppProperties.Kafka.Batch batch = appProperties.getKafka().getBatch();
+        Map<String, Object> configProps = baseConsumerProps();
+        // Larger polls and fetches so backlog recovery is materialized in bulk
+        configProps.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batch.getMaxPollRecords());
+        configProps.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, batch.getFetchMinBytes());
+        configProps.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, batch.getFetchMaxWaitMs());
+        configProps.put(ConsumerConfig.MAX_PARTITION_FETCH_BYTES_CONFIG, batch.getMaxPartitionFetchBytes());
+        DefaultKafkaConsumerFactory<String, byte[]> factory = new DefaultKafkaConsumerFactory<>(configProps);
+        factory.addListener(new MicrometerConsumerListener<>(meterRegistry));
         return factory;
     }
-}
 
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> batchKafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory = 
+            new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(batchConsumerFactory());
+        factory.setConcurrency(appProperties.getKafka().getConcurrency());
+        factory.setBatchListener(true);
+        // Single commit per poll, issued by the listener once the whole batch is handled
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setConsumerRebalanceListener(processedEventDeduplicator);
+        return factory;
+    }
+
+    private Map<String, Object> baseConsumerProps() {
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        configProps.put(ConsumerConfig.GROUP_ID_CONFIG, "subscription-service-group");
+        configProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        configProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        configProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        return configProps;
+    }
+}
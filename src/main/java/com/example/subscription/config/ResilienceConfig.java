@@ -23,6 +23,8 @@ public class ResilienceConfig {
                 .slidingWindowSize(10) // Last 10 requests
                 .minimumNumberOfCalls(5) // Need at least 5 calls before opening
                 .permittedNumberOfCallsInHalfOpenState(3)
+                // Deferred payments skip the breaker while OPEN, so it must move to HALF_OPEN on its own
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
                 .build();
 
         return CircuitBreakerRegistry.of(config);
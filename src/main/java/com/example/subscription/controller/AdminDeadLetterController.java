@@ -0,0 +1,30 @@
+package com.example.subscription.controller;
+
+import com.example.subscription.dto.response.ApiResponse;
+import com.example.subscription.kafka.BookKeepingDeadLetterReplayer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/admin/dlq")
+@RequiredArgsConstructor
+@Slf4j
+public class AdminDeadLetterController {
+
+    private static final int MAX_REPLAY_BATCH = 10000;
+
+    private final BookKeepingDeadLetterReplayer deadLetterReplayer;
+
+    @PostMapping("/book-keeping/replay")
+    public ResponseEntity<ApiResponse<BookKeepingDeadLetterReplayer.ReplayResult>> replayBookKeeping(
+            @RequestParam(defaultValue = "100") int maxRecords) {
+        
+        int limit = Math.max(1, Math.min(maxRecords, MAX_REPLAY_BATCH));
+        log.info("Admin requested book keeping DLT replay: maxRecords={}", limit);
+        
+        BookKeepingDeadLetterReplayer.ReplayResult result = deadLetterReplayer.replay(limit);
+        return ResponseEntity.ok(ApiResponse.success("Dead-lettered events replayed", result));
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.subscription.controller;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.dto.response.ApiResponse;
+import com.example.subscription.exception.ErrorCode;
+import com.example.subscription.exception.SubscriptionException;
+import com.example.subscription.service.SubscriptionExpiryIndexService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/admin/expiry-index")
+@RequiredArgsConstructor
+@Slf4j
+public class AdminExpiryIndexController {
+
+    private final SubscriptionExpiryIndexService subscriptionExpiryIndexService;
+    private final AppProperties appProperties;
+
+    @GetMapping("/accounts/{accountId}")
+    public ResponseEntity<ApiResponse<SubscriptionExpiryIndexService.AccountExpiryCounts>> getAccountExpiries(
+            @PathVariable Long accountId,
+            @RequestParam(defaultValue = "30") int days) {
+
+        int maxDays = appProperties.getExpiry().getIndex().getMaxRangeDays();
+        if (days < 1 || days > maxDays) {
+            throw new SubscriptionException(ErrorCode.VALIDATION_ERROR, "days must be between 1 and " + maxDays);
+        }
+        LocalDate today = LocalDate.now();
+        SubscriptionExpiryIndexService.AccountExpiryCounts counts =
+                subscriptionExpiryIndexService.countExpiringForAccount(accountId, today.plusDays(1), today.plusDays(days));
+        return ResponseEntity.ok(ApiResponse.success(counts));
+    }
+
+    // Drift repair: reloads the index from user_subscriptions and prunes entries that are no longer ACTIVE
+    @PostMapping("/rebuild")
+    public ResponseEntity<ApiResponse<SubscriptionExpiryIndexService.RebuildStatus>> rebuild() {
+        log.info("Admin requested expiry index rebuild");
+        SubscriptionExpiryIndexService.RebuildStatus status = subscriptionExpiryIndexService.startRebuild();
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success("Expiry index rebuild started", status));
+    }
+
+    @GetMapping("/rebuild")
+    public ResponseEntity<ApiResponse<SubscriptionExpiryIndexService.RebuildStatus>> getRebuildStatus() {
+        return ResponseEntity.ok(ApiResponse.success("Expiry index rebuild status",
+                subscriptionExpiryIndexService.rebuildStatus()));
+    }
+}
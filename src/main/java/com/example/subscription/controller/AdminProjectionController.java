@@ -0,0 +1,33 @@
+package com.example.subscription.controller;
+
+import com.example.subscription.dto.response.ApiResponse;
+import com.example.subscription.service.ProjectionRebuildService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/admin/projections")
+@RequiredArgsConstructor
+@Slf4j
+public class AdminProjectionController {
+
+    private final ProjectionRebuildService projectionRebuildService;
+
+    @PostMapping("/user-subscriptions/rebuild")
+    public ResponseEntity<ApiResponse<ProjectionRebuildService.RebuildStatus>> rebuildUserSubscriptions(
+            @RequestParam(defaultValue = "false") boolean restart) {
+        
+        log.info("Admin requested user subscription projection rebuild: restart={}", restart);
+        ProjectionRebuildService.RebuildStatus status = projectionRebuildService.start(restart);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success("Projection rebuild started", status));
+    }
+
+    @GetMapping("/user-subscriptions/rebuild")
+    public ResponseEntity<ApiResponse<ProjectionRebuildService.RebuildStatus>> getRebuildStatus() {
+        return ResponseEntity.ok(ApiResponse.success("Projection rebuild status", projectionRebuildService.status()));
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.subscription.controller;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.dto.request.PaymentCallbackRequest;
+import com.example.subscription.dto.response.ApiResponse;
+import com.example.subscription.exception.ErrorCode;
+import com.example.subscription.exception.SubscriptionException;
+import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.service.BookKeepingService;
+import com.example.subscription.util.PaymentCallbackSignature;
+import jakarta.annotation.PostConstruct;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+import java.util.Map;
+
+// Server-to-server endpoint for the payment service; authenticated by HMAC signature, not user JWT.
+// Only mapped when callbacks are enabled, so the default deployment exposes no webhook at all.
+@RestController
+@ConditionalOnProperty(prefix = "app.payment.callback", name = "enabled", havingValue = "true")
+@RequestMapping("/webhooks/payments")
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentCallbackController {
+
+    private final BookKeepingService bookKeepingService;
+    private final BusinessMetrics businessMetrics;
+    private final AppProperties appProperties;
+
+    private static final String PLACEHOLDER_SECRET = "change-me-payment-callback-secret";
+
+    @PostConstruct
+    public void validateSecret() {
+        String secret = appProperties.getPayment().getCallback().getSecret();
+        if (secret == null || secret.isBlank() || PLACEHOLDER_SECRET.equals(secret)) {
+            throw new IllegalStateException(
+                    "app.payment.callback.secret must be set to a shared secret when app.payment.callback.enabled=true");
+        }
+    }
+
+    @PostMapping("/completed")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> paymentCompleted(
+            @RequestHeader(value = "X-Payment-Timestamp", required = false) Long timestamp,
+            @RequestHeader(value = "X-Payment-Signature", required = false) String signature,
+            @Valid @RequestBody PaymentCallbackRequest request) {
+        
+        verifySignature(timestamp, signature, request);
+
+        boolean transitioned = bookKeepingService.markAsCompleted(
+                request.getBookKeepingId(), request.getPaymentReferenceId());
+        businessMetrics.recordPaymentCallback(transitioned ? "completed" : "duplicate");
+
+        Map<String, Object> response = Map.of(
+            "bookKeepingId", request.getBookKeepingId(),
+            "transitioned", transitioned
+        );
+
+        return ResponseEntity.ok(ApiResponse.success(
+                transitioned ? "Payment completion recorded" : "Payment completion already recorded", response));
+    }
+
+    private void verifySignature(Long timestamp, String signature, PaymentCallbackRequest request) {
+        AppProperties.Payment.Callback config = appProperties.getPayment().getCallback();
+        
+        // Reject stale timestamps so a captured callback cannot be replayed later
+        if (timestamp == null
+                || Math.abs(Instant.now().getEpochSecond() - timestamp) > config.getMaxClockSkewSeconds()) {
+            businessMetrics.recordPaymentCallback("rejected");
+            throw new SubscriptionException(ErrorCode.UNAUTHORIZED, "Missing or expired callback timestamp");
+        }
+
+        if (!PaymentCallbackSignature.verify(config.getSecret(), timestamp,
+                request.getBookKeepingId(), request.getPaymentReferenceId(), signature)) {
+            log.warn("Rejected payment callback with invalid signature: bookKeepingId={}", request.getBookKeepingId());
+            businessMetrics.recordPaymentCallback("rejected");
+            throw new SubscriptionException(ErrorCode.UNAUTHORIZED, "Invalid callback signature");
+        }
+    }
+}
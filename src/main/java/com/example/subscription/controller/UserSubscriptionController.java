@@ -1,5 +1,7 @@
 package com.example.subscription.controller;
 
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.dto.projection.ExpiringSubscription;
 import com.example.subscription.dto.request.ExtendSubscriptionRequest;
 import com.example.subscription.dto.request.SubscribeRequest;
 import com.example.subscription.dto.response.ApiResponse;
@@ -37,6 +39,8 @@ public class UserSubscriptionController {
     private final IdempotencyService idempotencyService;
     private final PaymentService paymentService;
     private final UserSubscriptionService userSubscriptionService;
+    private final SubscriptionExpiryIndexService subscriptionExpiryIndexService;
+    private final AppProperties appProperties;
     private final SubscriptionPlanRepository subscriptionPlanRepository;
     private final SubscriptionAccountRepository accountRepository;
     private final DurationTypeRepository durationTypeRepository;
@@ -207,6 +211,23 @@ public class UserSubscriptionController {
         return ResponseEntity.ok(ApiResponse.success(responses));
     }
 
+    // Served from the per-user expiry index: one sorted set range read, whatever the table size
+    @GetMapping("/expiring-soon")
+    public ResponseEntity<ApiResponse<List<ExpiringSubscription>>> getExpiringSoon(
+            @RequestParam(defaultValue = "30") int days,
+            HttpServletRequest httpRequest) {
+        
+        if (days < 1 || days > appProperties.getExpiry().getIndex().getMaxRangeDays()) {
+            throw new SubscriptionException(ErrorCode.VALIDATION_ERROR, "days must be between 1 and "
+                    + appProperties.getExpiry().getIndex().getMaxRangeDays());
+        }
+        Long userId = (Long) httpRequest.getAttribute("userId");
+        LocalDate today = LocalDate.now();
+        List<ExpiringSubscription> expiring = subscriptionExpiryIndexService.findExpiringForUser(
+                userId, today.plusDays(1), today.plusDays(days));
+        return ResponseEntity.ok(ApiResponse.success(expiring));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<ApiResponse<UserSubscriptionResponse>> getSubscriptionById(
             @PathVariable Long id,
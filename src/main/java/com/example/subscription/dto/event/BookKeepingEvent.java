@@ -0,0 +1,46 @@
+package com.example.subscription.dto.event;
+
+import com.example.subscription.model.BookKeeping;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+// What the book keeping topic carries: the materialization inputs only, with the
+// after_state JSON already unpacked into typed fields
+public record BookKeepingEvent(
+        long bookKeepingId,
+        String idempotencyKey,
+        long userId,
+        long subscriptionPlanId,
+        long subscriptionAccountId,
+        long durationTypeId,
+        String eventType,
+        String status,
+        LocalDate startDate,
+        LocalDate endDate,
+        String subscriptionStatus,
+        LocalDateTime createdAt,
+        LocalDateTime completedAt) {
+
+    public static BookKeepingEvent of(BookKeeping bookKeeping, Map<String, Object> afterState) {
+        return new BookKeepingEvent(
+                bookKeeping.getId(),
+                bookKeeping.getIdempotencyKey(),
+                bookKeeping.getUserId(),
+                bookKeeping.getSubscriptionPlanId() != null ? bookKeeping.getSubscriptionPlanId() : 0L,
+                bookKeeping.getSubscriptionAccountId(),
+                bookKeeping.getDurationTypeId(),
+                bookKeeping.getEventType(),
+                bookKeeping.getStatus(),
+                dateOrNull(afterState.get("start_date")),
+                dateOrNull(afterState.get("end_date")),
+                afterState.get("status") != null ? afterState.get("status").toString() : null,
+                bookKeeping.getCreatedAt(),
+                bookKeeping.getCompletedAt());
+    }
+
+    private static LocalDate dateOrNull(Object value) {
+        return value != null ? LocalDate.parse(value.toString()) : null;
+    }
+}
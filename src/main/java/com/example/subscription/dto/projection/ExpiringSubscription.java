@@ -0,0 +1,11 @@
+package com.example.subscription.dto.projection;
+
+import java.time.LocalDate;
+
+// Read-only row for the expiry scan: only what a reminder needs, never a managed entity
+public record ExpiringSubscription(
+        Long id,
+        Long userId,
+        Long subscriptionAccountId,
+        Long durationTypeId,
+        LocalDate endDate) {}
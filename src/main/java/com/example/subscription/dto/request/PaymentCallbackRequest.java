@@ -0,0 +1,15 @@
+package com.example.subscription.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+public class PaymentCallbackRequest {
+    
+    @NotNull(message = "Book keeping ID is required")
+    private Long bookKeepingId;
+    
+    @NotBlank(message = "Payment reference ID is required")
+    private String paymentReferenceId;
+}
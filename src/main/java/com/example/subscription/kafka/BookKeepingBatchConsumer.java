@@ -0,0 +1,140 @@
+package com.example.subscription.kafka;
+
+import com.example.subscription.dto.event.BookKeepingEvent;
+import com.example.subscription.observability.PipelineLatencyTracker;
+import com.example.subscription.repository.BookKeepingStateMachine;
+import com.example.subscription.service.UserSubscriptionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@Service
+@ConditionalOnProperty(prefix = "app.kafka.batch", name = "enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class BookKeepingBatchConsumer {
+
+    private static final Duration REDELIVERY_BACKOFF = Duration.ofSeconds(1);
+
+    private final BookKeepingStateMachine bookKeepingStateMachine;
+    private final UserSubscriptionService userSubscriptionService;
+    private final KeyOrderedProcessor keyOrderedProcessor;
+    private final BookKeepingRetryRouter retryRouter;
+    private final PipelineLatencyTracker pipelineLatencyTracker;
+    private final ProcessedEventDeduplicator deduplicator;
+
+    @KafkaListener(
+            topics = "${app.kafka.topic.book-keeping}",
+            groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "batchKafkaListenerContainerFactory")
+    public void consumeBookKeepingEvents(List<ConsumerRecord<String, byte[]>> records, Acknowledgment acknowledgment) {
+        List<PendingEvent> completed = new ArrayList<>(records.size());
+        int firstUnrouted = records.size();
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<String, byte[]> record = records.get(i);
+            try {
+                BookKeepingEvent event = BookKeepingEventCodec.decode(record.value());
+                if ("COMPLETED".equals(event.status())) {
+                    completed.add(new PendingEvent(i, record, event));
+                }
+            } catch (IllegalArgumentException e) {
+                log.error("Error decoding book keeping event: partition={}, offset={}",
+                        record.partition(), record.offset(), e);
+                try {
+                    retryRouter.routeFailure(record, null, e);
+                } catch (Exception routingFailure) {
+                    log.error("Could not dead-letter undecodable book keeping event", routingFailure);
+                    firstUnrouted = Math.min(firstUnrouted, i);
+                }
+            }
+        }
+
+        // Redeliveries of already materialized rows are dropped before any JPA work
+        Set<Long> duplicates = deduplicator.findDuplicates(completed.stream()
+                .map(pending -> new ProcessedEventDeduplicator.Candidate(
+                        new TopicPartition(pending.record().topic(), pending.record().partition()), pending.event()))
+                .toList());
+        if (!duplicates.isEmpty()) {
+            completed.removeIf(pending -> duplicates.contains(pending.event().bookKeepingId()));
+        }
+
+        // Users are spread over concurrent lanes; each lane keeps its users' events in offset order
+        int firstIncomplete = keyOrderedProcessor.process(
+                completed,
+                pending -> pending.event().userId(),
+                this::processCompletedBatch);
+
+        int redeliverFrom = firstIncomplete < completed.size()
+                ? Math.min(firstUnrouted, completed.get(firstIncomplete).recordIndex())
+                : firstUnrouted;
+        if (redeliverFrom >= records.size()) {
+            acknowledgment.acknowledge();
+        } else {
+            // Commit everything before the earliest unfinished record and redeliver from there
+            log.warn("Book keeping batch partially processed, redelivering from record {} of {}",
+                    redeliverFrom, records.size());
+            acknowledgment.nack(redeliverFrom, REDELIVERY_BACKOFF);
+        }
+    }
+
+    private void processCompletedBatch(List<PendingEvent> lane) {
+        if (lane.isEmpty()) {
+            return;
+        }
+        UserSubscriptionService.BatchMaterializationResult result;
+        try {
+            result = userSubscriptionService.materializeBatch(lane.stream().map(PendingEvent::event).toList());
+        } catch (Exception e) {
+            // The batch transaction rolled back as a whole; isolate the offending record(s) one at a time
+            log.warn("Batch materialization failed, falling back to per-record processing: size={}",
+                    lane.size(), e);
+            lane.forEach(this::processSingle);
+            return;
+        }
+
+        // Records that could not be applied leave for the retry topics; routing errors fail the lane
+        LocalDateTime processedAt = LocalDateTime.now();
+        Set<Long> processedIds = new HashSet<>(result.processedIds());
+        for (PendingEvent pending : lane) {
+            String failure = result.failures().get(pending.event().bookKeepingId());
+            if (failure != null) {
+                retryRouter.routeFailure(pending.record(), pending.event().bookKeepingId(),
+                        new IllegalStateException(failure));
+            } else if (processedIds.contains(pending.event().bookKeepingId())) {
+                pipelineLatencyTracker.recordProcessed(pending.event(), processedAt);
+                deduplicator.markProcessed(pending.event());
+            }
+        }
+        log.info("Processed book keeping batch: processed={}, failed={}",
+                result.processedIds().size(), result.failures().size());
+    }
+
+    private void processSingle(PendingEvent pending) {
+        BookKeepingEvent event = pending.event();
+        try {
+            userSubscriptionService.materializeFromEvent(event);
+            LocalDateTime processedAt = LocalDateTime.now();
+            bookKeepingStateMachine.markProcessed(List.of(event.bookKeepingId()), processedAt);
+            pipelineLatencyTracker.recordProcessed(event, processedAt);
+            deduplicator.markProcessed(event);
+        } catch (Exception e) {
+            log.error("Error materializing book keeping to user subscription: idempotencyKey={}",
+                    event.idempotencyKey(), e);
+            retryRouter.routeFailure(pending.record(), event.bookKeepingId(), e);
+        }
+    }
+
+    private record PendingEvent(int recordIndex, ConsumerRecord<String, byte[]> record, BookKeepingEvent event) {}
+}
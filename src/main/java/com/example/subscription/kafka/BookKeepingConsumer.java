@@ -1,75 +1,87 @@
 package com.example.subscription.kafka;
 
-import com.example.subscription.model.BookKeeping;
-import com.example.subscription.repository.BookKeepingRepository;
-import com.example.subscription.repository.UserSubscriptionRepository;
+import com.example.subscription.dto.event.BookKeepingEvent;
+import com.example.subscription.observability.PipelineLatencyTracker;
+import com.example.subscription.repository.BookKeepingStateMachine;
 import com.example.subscription.service.UserSubscriptionService;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.support.Acknowledgment;
-import org.springframework.kafka.support.KafkaHeaders;
-import org.springframework.messaging.handler.annotation.Header;
-import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Service
+@ConditionalOnProperty(prefix = "app.kafka.batch", name = "enabled", havingValue = "false")
 @RequiredArgsConstructor
 @Slf4j
 public class BookKeepingConsumer {
 
-    private final BookKeepingRepository bookKeepingRepository;
-    private final UserSubscriptionRepository userSubscriptionRepository;
+    private static final Duration REDELIVERY_BACKOFF = Duration.ofSeconds(1);
+
+    private final BookKeepingStateMachine bookKeepingStateMachine;
     private final UserSubscriptionService userSubscriptionService;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BookKeepingRetryRouter retryRouter;
+    private final PipelineLatencyTracker pipelineLatencyTracker;
+    private final ProcessedEventDeduplicator deduplicator;
 
     @KafkaListener(topics = "${app.kafka.topic.book-keeping}", groupId = "${spring.kafka.consumer.group-id}")
-    public void consumeBookKeepingEvent(
-            @Payload String message,
-            @Header(KafkaHeaders.RECEIVED_KEY) String key,
-            Acknowledgment acknowledgment) {
-        
+    public void consumeBookKeepingEvent(ConsumerRecord<String, byte[]> record, Acknowledgment acknowledgment) {
+        BookKeepingEvent event;
         try {
-            BookKeeping bookKeeping = objectMapper.readValue(message, BookKeeping.class);
-            log.info("Received book keeping event: idempotencyKey={}, status={}", 
-                    bookKeeping.getIdempotencyKey(), bookKeeping.getStatus());
+            event = BookKeepingEventCodec.decode(record.value());
+        } catch (IllegalArgumentException e) {
+            log.error("Error decoding book keeping event: partition={}, offset={}",
+                    record.partition(), record.offset(), e);
+            routeOrRedeliver(record, null, e, acknowledgment);
+            return;
+        }
+
+        log.info("Received book keeping event: idempotencyKey={}, status={}", 
+                event.idempotencyKey(), event.status());
+
+        if (!"COMPLETED".equals(event.status())) {
+            acknowledgment.acknowledge();
+            return;
+        }
 
-            if ("COMPLETED".equals(bookKeeping.getStatus())) {
-                processCompletedBookKeeping(bookKeeping);
-            }
-            
+        // Redelivery after a rebalance or a lost ack; the row is already materialized
+        if (deduplicator.isDuplicate(new TopicPartition(record.topic(), record.partition()), event)) {
+            acknowledgment.acknowledge();
+            return;
+        }
+
+        try {
+            userSubscriptionService.materializeFromEvent(event);
+            LocalDateTime processedAt = LocalDateTime.now();
+            bookKeepingStateMachine.markProcessed(List.of(event.bookKeepingId()), processedAt);
+            pipelineLatencyTracker.recordProcessed(event, processedAt);
+            deduplicator.markProcessed(event);
+            log.info("Successfully processed book keeping: idempotencyKey={}", event.idempotencyKey());
             acknowledgment.acknowledge();
-        } catch (JsonProcessingException e) {
-            log.error("Error deserializing book keeping event", e);
-            acknowledgment.acknowledge(); // Acknowledge to avoid reprocessing
         } catch (Exception e) {
-            log.error("Error processing book keeping event", e);
-            // Don't acknowledge on error - will retry
+            log.error("Error materializing book keeping to user subscription: idempotencyKey={}",
+                    event.idempotencyKey(), e);
+            routeOrRedeliver(record, event.bookKeepingId(), e, acknowledgment);
         }
     }
 
-    private void processCompletedBookKeeping(BookKeeping bookKeeping) {
+    // A failed event moves to the retry topics so the rest of the partition keeps flowing
+    private void routeOrRedeliver(ConsumerRecord<String, byte[]> record, Long bookKeepingId, Exception failure,
+                                  Acknowledgment acknowledgment) {
         try {
-            userSubscriptionService.materializeFromBookKeeping(bookKeeping);
-            
-            bookKeeping.setStatus("PROCESSED");
-            bookKeeping.setProcessedAt(LocalDateTime.now());
-            bookKeepingRepository.save(bookKeeping);
-            
-            log.info("Successfully processed book keeping: idempotencyKey={}", bookKeeping.getIdempotencyKey());
+            retryRouter.routeFailure(record, bookKeepingId, failure);
+            acknowledgment.acknowledge();
         } catch (Exception e) {
-            log.error("Error materializing book keeping to user subscription", e);
-            bookKeeping.setRetryCount(bookKeeping.getRetryCount() + 1);
-            if (bookKeeping.getRetryCount() >= 3) {
-                bookKeeping.setStatus("FAILED");
-                bookKeeping.setErrorMessage(e.getMessage());
-            }
-            bookKeepingRepository.save(bookKeeping);
+            log.error("Could not route failed book keeping event, redelivering: partition={}, offset={}",
+                    record.partition(), record.offset(), e);
+            acknowledgment.nack(REDELIVERY_BACKOFF);
         }
     }
 }
-
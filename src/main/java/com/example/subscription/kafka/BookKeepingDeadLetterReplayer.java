@@ -0,0 +1,139 @@
+package com.example.subscription.kafka;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.repository.BookKeepingRepository;
+import com.example.subscription.repository.BookKeepingStateMachine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+// Moves dead-lettered events back onto the main topic on request. Progress is tracked by a
+// dedicated consumer group, so each DLT record is replayed at most once per request.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BookKeepingDeadLetterReplayer {
+
+    private static final String REPLAY_GROUP_ID = "subscription-service-dlt-replay";
+    private static final String HEADER_REPLAYED_AT = "x-bk-replayed-at";
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(2);
+
+    private final ConsumerFactory<String, byte[]> consumerFactory;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final BookKeepingRepository bookKeepingRepository;
+    private final BookKeepingStateMachine bookKeepingStateMachine;
+    private final BusinessMetrics businessMetrics;
+    private final AppProperties appProperties;
+
+    public synchronized ReplayResult replay(int maxRecords) {
+        AppProperties.Kafka kafka = appProperties.getKafka();
+        String deadLetterTopic = kafka.getRetry().deadLetterTopic(kafka.getTopicBookKeeping());
+
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        overrides.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(Math.max(1, maxRecords)));
+
+        int replayed = 0;
+        int skipped = 0;
+        try (Consumer<String, byte[]> consumer =
+                     consumerFactory.createConsumer(REPLAY_GROUP_ID, null, "-replay", overrides)) {
+            List<TopicPartition> partitions = consumer.partitionsFor(deadLetterTopic).stream()
+                    .map(info -> new TopicPartition(info.topic(), info.partition()))
+                    .toList();
+            consumer.assign(partitions);
+
+            while (replayed + skipped < maxRecords) {
+                ConsumerRecords<String, byte[]> records = consumer.poll(POLL_TIMEOUT);
+                if (records.isEmpty()) {
+                    break;
+                }
+
+                Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+                try {
+                    for (ConsumerRecord<String, byte[]> record : records) {
+                        if (replayed + skipped >= maxRecords) {
+                            break;
+                        }
+                        if (replayOne(record, kafka.getTopicBookKeeping(), kafka.getRetry().getSendTimeoutMs())) {
+                            replayed++;
+                        } else {
+                            skipped++;
+                        }
+                        offsets.put(new TopicPartition(record.topic(), record.partition()),
+                                new OffsetAndMetadata(record.offset() + 1));
+                    }
+                } finally {
+                    // Whatever was replayed before a failure must not be replayed again
+                    if (!offsets.isEmpty()) {
+                        consumer.commitSync(offsets);
+                    }
+                }
+            }
+        }
+
+        businessMetrics.recordDeadLetterReplayed(replayed);
+        log.info("Replayed dead-lettered book keeping events: replayed={}, skipped={}", replayed, skipped);
+        return new ReplayResult(replayed, skipped);
+    }
+
+    private boolean replayOne(ConsumerRecord<String, byte[]> record, String mainTopic, long sendTimeoutMs) {
+        Long bookKeepingId;
+        try {
+            bookKeepingId = BookKeepingEventCodec.decode(record.value()).bookKeepingId();
+        } catch (IllegalArgumentException e) {
+            // Undecodable payloads would just come straight back
+            log.warn("Skipping undecodable dead-lettered record: partition={}, offset={}",
+                    record.partition(), record.offset());
+            return false;
+        }
+
+        if (!bookKeepingStateMachine.resetForReplay(bookKeepingId)
+                && !bookKeepingRepository.existsByIdAndStatus(bookKeepingId, "COMPLETED")) {
+            // Already processed or resolved by hand since it was dead-lettered
+            log.info("Skipping dead-lettered event that no longer needs replay: bookKeepingId={}", bookKeepingId);
+            return false;
+        }
+
+        ProducerRecord<String, byte[]> out = new ProducerRecord<>(mainTopic, record.key(), record.value());
+        // Keep where it came from and why it failed; drop the attempt counter so retries start over
+        for (Header header : record.headers()) {
+            if (!header.key().equals(BookKeepingRetryRouter.HEADER_ATTEMPT)
+                    && !header.key().equals(BookKeepingRetryRouter.HEADER_DUE_AT)) {
+                out.headers().add(header);
+            }
+        }
+        out.headers().add(HEADER_REPLAYED_AT, Instant.now().toString().getBytes(StandardCharsets.UTF_8));
+
+        try {
+            kafkaTemplate.send(out).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while replaying dead-lettered event", e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not replay dead-lettered event " + bookKeepingId, e);
+        }
+        return true;
+    }
+
+    public record ReplayResult(int replayed, int skipped) {}
+}
@@ -0,0 +1,242 @@
+package com.example.subscription.kafka;
+
+import com.example.subscription.dto.event.BookKeepingEvent;
+import com.example.subscription.model.BookKeeping;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// Wire format for book keeping events:
+//   'B' 'K' <version:1 byte> <flags:1 byte> fields...
+// Version 1 fields, in order: bookKeepingId, userId, subscriptionPlanId, subscriptionAccountId,
+// durationTypeId (unsigned varints), eventType, status (1-byte codes), then the optional
+// startDate/endDate (zig-zag varint epoch days), subscriptionStatus (1-byte code),
+// createdAt/completedAt (zig-zag varint epoch millis, UTC) as announced by flags, and finally
+// idempotencyKey (varint length + UTF-8). Code tables are append-only; new fields need a new version.
+public final class BookKeepingEventCodec {
+
+    public static final byte VERSION_1 = 1;
+    public static final byte CURRENT_VERSION = VERSION_1;
+
+    private static final byte MAGIC_0 = 'B';
+    private static final byte MAGIC_1 = 'K';
+
+    private static final int HAS_START_DATE = 1;
+    private static final int HAS_END_DATE = 1 << 1;
+    private static final int HAS_SUBSCRIPTION_STATUS = 1 << 2;
+    private static final int HAS_CREATED_AT = 1 << 3;
+    private static final int HAS_COMPLETED_AT = 1 << 4;
+
+    private static final List<String> EVENT_TYPES = List.of("SUBSCRIBED", "EXTENDED", "CANCELLED", "EXPIRED");
+    private static final List<String> STATUSES = List.of("INITIATED", "COMPLETED", "PROCESSED", "FAILED");
+    private static final List<String> SUBSCRIPTION_STATUSES = List.of("ACTIVE", "CANCELLED", "EXPIRED");
+
+    // Only for records written before the binary format existed
+    private static final ObjectMapper LEGACY_MAPPER = new ObjectMapper().findAndRegisterModules();
+
+    private BookKeepingEventCodec() {
+    }
+
+    public static byte[] encode(BookKeepingEvent event) {
+        byte[] key = event.idempotencyKey() != null
+                ? event.idempotencyKey().getBytes(StandardCharsets.UTF_8)
+                : new byte[0];
+        // Header + 9 varints of at most 10 bytes + 3 code bytes + key
+        Writer out = new Writer(4 + 9 * 10 + 3 + 5 + key.length);
+
+        int flags = (event.startDate() != null ? HAS_START_DATE : 0)
+                | (event.endDate() != null ? HAS_END_DATE : 0)
+                | (event.subscriptionStatus() != null ? HAS_SUBSCRIPTION_STATUS : 0)
+                | (event.createdAt() != null ? HAS_CREATED_AT : 0)
+                | (event.completedAt() != null ? HAS_COMPLETED_AT : 0);
+
+        out.writeByte(MAGIC_0);
+        out.writeByte(MAGIC_1);
+        out.writeByte(CURRENT_VERSION);
+        out.writeByte(flags);
+        out.writeVarLong(event.bookKeepingId());
+        out.writeVarLong(event.userId());
+        out.writeVarLong(event.subscriptionPlanId());
+        out.writeVarLong(event.subscriptionAccountId());
+        out.writeVarLong(event.durationTypeId());
+        out.writeByte(code(EVENT_TYPES, event.eventType()));
+        out.writeByte(code(STATUSES, event.status()));
+        if (event.startDate() != null) {
+            out.writeZigZag(event.startDate().toEpochDay());
+        }
+        if (event.endDate() != null) {
+            out.writeZigZag(event.endDate().toEpochDay());
+        }
+        if (event.subscriptionStatus() != null) {
+            out.writeByte(code(SUBSCRIPTION_STATUSES, event.subscriptionStatus()));
+        }
+        if (event.createdAt() != null) {
+            out.writeZigZag(event.createdAt().toInstant(ZoneOffset.UTC).toEpochMilli());
+        }
+        if (event.completedAt() != null) {
+            out.writeZigZag(event.completedAt().toInstant(ZoneOffset.UTC).toEpochMilli());
+        }
+        out.writeVarLong(key.length);
+        out.writeBytes(key);
+        return out.toByteArray();
+    }
+
+    // Throws IllegalArgumentException for anything that is not a readable event
+    public static BookKeepingEvent decode(byte[] payload) {
+        if (payload == null || payload.length == 0) {
+            throw new IllegalArgumentException("Empty book keeping event");
+        }
+        if (payload[0] == '{') {
+            return decodeLegacyJson(payload);
+        }
+        if (payload.length < 4 || payload[0] != MAGIC_0 || payload[1] != MAGIC_1) {
+            throw new IllegalArgumentException("Not a book keeping event");
+        }
+        if (payload[2] != VERSION_1) {
+            throw new IllegalArgumentException("Unsupported book keeping event version: " + payload[2]);
+        }
+
+        try {
+            Reader in = new Reader(payload, 3);
+            int flags = in.readByte();
+            long bookKeepingId = in.readVarLong();
+            long userId = in.readVarLong();
+            long subscriptionPlanId = in.readVarLong();
+            long subscriptionAccountId = in.readVarLong();
+            long durationTypeId = in.readVarLong();
+            String eventType = name(EVENT_TYPES, in.readByte());
+            String status = name(STATUSES, in.readByte());
+            LocalDate startDate = (flags & HAS_START_DATE) != 0 ? LocalDate.ofEpochDay(in.readZigZag()) : null;
+            LocalDate endDate = (flags & HAS_END_DATE) != 0 ? LocalDate.ofEpochDay(in.readZigZag()) : null;
+            String subscriptionStatus = (flags & HAS_SUBSCRIPTION_STATUS) != 0
+                    ? name(SUBSCRIPTION_STATUSES, in.readByte())
+                    : null;
+            LocalDateTime createdAt = (flags & HAS_CREATED_AT) != 0 ? fromEpochMilli(in.readZigZag()) : null;
+            LocalDateTime completedAt = (flags & HAS_COMPLETED_AT) != 0 ? fromEpochMilli(in.readZigZag()) : null;
+            String idempotencyKey = in.readString();
+
+            return new BookKeepingEvent(bookKeepingId, idempotencyKey, userId, subscriptionPlanId,
+                    subscriptionAccountId, durationTypeId, eventType, status, startDate, endDate,
+                    subscriptionStatus, createdAt, completedAt);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated book keeping event", e);
+        }
+    }
+
+    private static BookKeepingEvent decodeLegacyJson(byte[] payload) {
+        try {
+            BookKeeping bookKeeping = LEGACY_MAPPER.readValue(payload, BookKeeping.class);
+            Map<String, Object> afterState = bookKeeping.getAfterState() != null
+                    ? LEGACY_MAPPER.readValue(bookKeeping.getAfterState(), new TypeReference<Map<String, Object>>() {})
+                    : Map.of();
+            return BookKeepingEvent.of(bookKeeping, afterState);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Unreadable legacy JSON book keeping event", e);
+        }
+    }
+
+    private static int code(List<String> table, String value) {
+        int code = table.indexOf(value);
+        if (code < 0) {
+            throw new IllegalArgumentException("Value not encodable in book keeping event: " + value);
+        }
+        return code;
+    }
+
+    private static String name(List<String> table, int code) {
+        if (code < 0 || code >= table.size()) {
+            throw new IllegalArgumentException("Unknown code in book keeping event: " + code);
+        }
+        return table.get(code);
+    }
+
+    private static LocalDateTime fromEpochMilli(long epochMilli) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMilli, 1000),
+                Math.floorMod(epochMilli, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    private static final class Writer {
+
+        private final byte[] buffer;
+        private int position;
+
+        Writer(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        void writeByte(int value) {
+            buffer[position++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes) {
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] buffer;
+        private int position;
+
+        Reader(byte[] buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        int readByte() {
+            return buffer[position++] & 0xFF;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in book keeping event");
+        }
+
+        long readZigZag() {
+            long raw = readVarLong();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        String readString() {
+            int length = (int) readVarLong();
+            if (length < 0 || position + length > buffer.length) {
+                throw new IllegalArgumentException("Truncated book keeping event");
+            }
+            // Decoded straight out of the record buffer, no intermediate copy
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
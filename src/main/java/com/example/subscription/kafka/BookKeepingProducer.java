@@ -1,39 +1,47 @@
 package com.example.subscription.kafka;
 
 import com.example.subscription.config.AppProperties;
+import com.example.subscription.dto.event.BookKeepingEvent;
 import com.example.subscription.model.BookKeeping;
+import com.example.subscription.observability.BusinessMetrics;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 @Service
 @RequiredArgsConstructor
-@Slf4j
 public class BookKeepingProducer {
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
     private final AppProperties appProperties;
+    private final BusinessMetrics businessMetrics;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    public void sendBookKeepingEvent(BookKeeping bookKeeping) {
-        try {
-            String json = objectMapper.writeValueAsString(bookKeeping);
-            String topic = appProperties.getKafka().getTopicBookKeeping();
-            
-            kafkaTemplate.send(topic, bookKeeping.getIdempotencyKey(), json)
-                    .whenComplete((result, ex) -> {
-                        if (ex == null) {
-                            log.info("Sent book keeping event to Kafka: idempotencyKey={}", bookKeeping.getIdempotencyKey());
-                        } else {
-                            log.error("Failed to send book keeping event to Kafka", ex);
-                        }
-                    });
-        } catch (JsonProcessingException e) {
-            log.error("Error serializing book keeping event", e);
-        }
+    // Keyed by user so every event for a user lands on one partition, in order
+    public String messageKey(BookKeeping bookKeeping) {
+        return String.valueOf(bookKeeping.getUserId());
+    }
+
+    // Unpacks after_state once here so consumers never parse JSON
+    public byte[] serialize(BookKeeping bookKeeping) throws JsonProcessingException {
+        Map<String, Object> afterState = bookKeeping.getAfterState() != null
+                ? objectMapper.readValue(bookKeeping.getAfterState(), new TypeReference<Map<String, Object>>() {})
+                : Map.of();
+        return BookKeepingEventCodec.encode(BookKeepingEvent.of(bookKeeping, afterState));
     }
-}
 
+    public CompletableFuture<SendResult<String, byte[]>> send(String key, byte[] payload) {
+        String topic = appProperties.getKafka().getTopicBookKeeping();
+        long startedAt = System.nanoTime();
+        return kafkaTemplate.send(topic, key, payload)
+                .whenComplete((result, ex) -> businessMetrics.recordKafkaSendLatency(
+                        topic, ex == null ? "success" : "failure", System.nanoTime() - startedAt));
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.subscription.kafka;
+
+import com.example.subscription.dto.event.BookKeepingEvent;
+import com.example.subscription.observability.PipelineLatencyTracker;
+import com.example.subscription.repository.BookKeepingStateMachine;
+import com.example.subscription.service.UserSubscriptionService;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Consumes every retry tier. Within a partition records share one tier delay, so they become due
+// in offset order. A record that is not due yet holds back only its own partition: the partition
+// is rewound to it and paused until its due time, while the consumer keeps polling the other
+// partitions and tiers. nack(Duration) is not used because it pauses the whole consumer.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BookKeepingRetryConsumer implements ConsumerSeekAware {
+
+    static final String LISTENER_ID = "book-keeping-retry";
+    private static final long REDELIVERY_BACKOFF_MS = 1000;
+
+    private final BookKeepingStateMachine bookKeepingStateMachine;
+    private final UserSubscriptionService userSubscriptionService;
+    private final BookKeepingRetryRouter retryRouter;
+    private final PipelineLatencyTracker pipelineLatencyTracker;
+    private final ProcessedEventDeduplicator deduplicator;
+    private final KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry;
+
+    // Partition -> offset it was rewound to; later records of that partition from the same poll are skipped
+    private final Map<TopicPartition, Long> heldPartitions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService resumeScheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("book-keeping-retry-resume").daemon().factory());
+
+    @PreDestroy
+    public void shutdown() {
+        resumeScheduler.shutdownNow();
+    }
+
+    // A reassigned partition restarts from its committed offset, so an old hold no longer applies
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        assignments.keySet().forEach(heldPartitions::remove);
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        partitions.forEach(heldPartitions::remove);
+    }
+
+    @KafkaListener(
+            id = LISTENER_ID,
+            idIsGroup = false,
+            topicPattern = "${app.kafka.topic.book-keeping}-retry-\\d+",
+            groupId = "${spring.kafka.consumer.group-id}")
+    public void consumeRetry(ConsumerRecord<String, byte[]> record, Acknowledgment acknowledgment,
+                             Consumer<?, ?> consumer) {
+        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+        Long heldAt = heldPartitions.get(partition);
+        if (heldAt != null) {
+            if (record.offset() != heldAt) {
+                // Fetched before the partition was rewound; it comes back after the held record
+                return;
+            }
+            heldPartitions.remove(partition);
+        }
+
+        long waitMs = BookKeepingRetryRouter.headerLong(record.headers(), BookKeepingRetryRouter.HEADER_DUE_AT, 0)
+                - System.currentTimeMillis();
+        if (waitMs > 0) {
+            holdPartition(partition, record.offset(), waitMs, consumer);
+            return;
+        }
+
+        Long bookKeepingId = null;
+        try {
+            BookKeepingEvent event = BookKeepingEventCodec.decode(record.value());
+            bookKeepingId = event.bookKeepingId();
+            if (deduplicator.isDuplicate(partition, event)) {
+                acknowledgment.acknowledge();
+                return;
+            }
+            userSubscriptionService.materializeFromEvent(event);
+            LocalDateTime processedAt = LocalDateTime.now();
+            bookKeepingStateMachine.markProcessed(List.of(event.bookKeepingId()), processedAt);
+            pipelineLatencyTracker.recordProcessed(event, processedAt);
+            deduplicator.markProcessed(event);
+            log.info("Retried book keeping event succeeded: idempotencyKey={}, topic={}",
+                    event.idempotencyKey(), record.topic());
+            acknowledgment.acknowledge();
+        } catch (Exception e) {
+            try {
+                retryRouter.routeFailure(record, bookKeepingId, e);
+                acknowledgment.acknowledge();
+            } catch (Exception routingFailure) {
+                log.error("Could not route failed book keeping retry, redelivering: topic={}, offset={}",
+                        record.topic(), record.offset(), routingFailure);
+                holdPartition(partition, record.offset(), REDELIVERY_BACKOFF_MS, consumer);
+            }
+        }
+    }
+
+    // Runs on the consumer thread: the seek applies to the next poll, the pause before it
+    private void holdPartition(TopicPartition partition, long offset, long waitMs, Consumer<?, ?> consumer) {
+        heldPartitions.put(partition, offset);
+        consumer.seek(partition, offset);
+        MessageListenerContainer container = kafkaListenerEndpointRegistry.getListenerContainer(LISTENER_ID);
+        if (container == null) {
+            return;
+        }
+        container.pausePartition(partition);
+        resumeScheduler.schedule(() -> container.resumePartition(partition), waitMs, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.subscription.kafka;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.repository.BookKeepingStateMachine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Moves a record that failed materialization to the next retry tier (or the DLT) so the
+// source partition can keep going; the caller acknowledges the source record afterwards
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BookKeepingRetryRouter {
+
+    public static final String HEADER_ATTEMPT = "x-bk-attempt";
+    public static final String HEADER_DUE_AT = "x-bk-due-at";
+    public static final String HEADER_ORIGINAL_TOPIC = "x-bk-original-topic";
+    public static final String HEADER_ORIGINAL_PARTITION = "x-bk-original-partition";
+    public static final String HEADER_ORIGINAL_OFFSET = "x-bk-original-offset";
+    public static final String HEADER_EXCEPTION_CLASS = "x-bk-exception-class";
+    public static final String HEADER_EXCEPTION_MESSAGE = "x-bk-exception-message";
+    public static final String HEADER_FAILED_AT = "x-bk-failed-at";
+
+    private static final int MAX_MESSAGE_LENGTH = 1000;
+
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final BookKeepingStateMachine bookKeepingStateMachine;
+    private final BusinessMetrics businessMetrics;
+    private final AppProperties appProperties;
+
+    // bookKeepingId may be null when the payload could not be decoded at all
+    public void routeFailure(ConsumerRecord<String, byte[]> record, Long bookKeepingId, Throwable failure) {
+        AppProperties.Kafka kafka = appProperties.getKafka();
+        List<Long> delays = kafka.getRetry().getDelaysMs();
+        int attempt = headerInt(record.headers(), HEADER_ATTEMPT, 0) + 1;
+        boolean exhausted = bookKeepingId == null || attempt > delays.size();
+
+        String destination = exhausted
+                ? kafka.getRetry().deadLetterTopic(kafka.getTopicBookKeeping())
+                : kafka.getRetry().retryTopic(kafka.getTopicBookKeeping(), attempt - 1);
+        long now = System.currentTimeMillis();
+        String message = failure.getMessage() != null ? failure.getMessage() : failure.getClass().getSimpleName();
+        if (message.length() > MAX_MESSAGE_LENGTH) {
+            message = message.substring(0, MAX_MESSAGE_LENGTH);
+        }
+
+        ProducerRecord<String, byte[]> out = new ProducerRecord<>(destination, record.key(), record.value());
+        Headers headers = out.headers();
+        // The first hop records where the event came from; later hops carry that forward
+        headers.add(HEADER_ORIGINAL_TOPIC, bytes(headerString(record.headers(), HEADER_ORIGINAL_TOPIC, record.topic())));
+        headers.add(HEADER_ORIGINAL_PARTITION, bytes(headerString(record.headers(), HEADER_ORIGINAL_PARTITION,
+                String.valueOf(record.partition()))));
+        headers.add(HEADER_ORIGINAL_OFFSET, bytes(headerString(record.headers(), HEADER_ORIGINAL_OFFSET,
+                String.valueOf(record.offset()))));
+        headers.add(HEADER_ATTEMPT, bytes(String.valueOf(attempt)));
+        headers.add(HEADER_EXCEPTION_CLASS, bytes(failure.getClass().getName()));
+        headers.add(HEADER_EXCEPTION_MESSAGE, bytes(message));
+        headers.add(HEADER_FAILED_AT, bytes(Instant.ofEpochMilli(now).toString()));
+        if (!exhausted) {
+            headers.add(HEADER_DUE_AT, bytes(String.valueOf(now + delays.get(attempt - 1))));
+        }
+
+        // Block until the broker has it: the source record is only acknowledged after this returns
+        try {
+            kafkaTemplate.send(out).get(kafka.getRetry().getSendTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while routing book keeping event to " + destination, e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not route book keeping event to " + destination, e);
+        }
+
+        if (bookKeepingId != null) {
+            // Reaches FAILED exactly when the event is dead-lettered
+            bookKeepingStateMachine.recordMaterializationFailure(bookKeepingId, message, delays.size() + 1);
+        }
+        businessMetrics.recordBookKeepingRetryRouted(exhausted ? "dlt" : "retry-" + (attempt - 1));
+        log.warn("Routed failed book keeping event: bookKeepingId={}, attempt={}, destination={}, reason={}",
+                bookKeepingId, attempt, destination, message);
+    }
+
+    public static long headerLong(Headers headers, String name, long defaultValue) {
+        String value = headerString(headers, name, null);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+
+    private static int headerInt(Headers headers, String name, int defaultValue) {
+        return (int) headerLong(headers, name, defaultValue);
+    }
+
+    private static String headerString(Headers headers, String name, String defaultValue) {
+        Header header = headers.lastHeader(name);
+        return header != null ? new String(header.value(), StandardCharsets.UTF_8) : defaultValue;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
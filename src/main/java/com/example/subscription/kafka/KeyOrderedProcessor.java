@@ -0,0 +1,85 @@
+package com.example.subscription.kafka;
+
+import com.example.subscription.config.AppProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Fans a poll out to lanes by key hash so different keys run concurrently while each key's
+// items stay in their original order within a single lane
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class KeyOrderedProcessor {
+
+    private final AppProperties appProperties;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Returns the index of the first item that did not complete, or items.size() when all did.
+    // Everything before that index is safe to commit.
+    public <T> int process(List<T> items, Function<T, Object> keyFunction, Consumer<List<T>> laneHandler) {
+        if (items.isEmpty()) {
+            return 0;
+        }
+
+        int laneCount = Math.min(items.size(), laneCount());
+        List<List<T>> lanes = new ArrayList<>(laneCount);
+        List<Integer> firstIndexOfLane = new ArrayList<>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            lanes.add(new ArrayList<>());
+            firstIndexOfLane.add(-1);
+        }
+        for (int i = 0; i < items.size(); i++) {
+            T item = items.get(i);
+            int lane = Math.floorMod(keyFunction.apply(item).hashCode(), laneCount);
+            lanes.get(lane).add(item);
+            if (firstIndexOfLane.get(lane) < 0) {
+                firstIndexOfLane.set(lane, i);
+            }
+        }
+
+        List<Future<?>> futures = new ArrayList<>(laneCount);
+        for (List<T> lane : lanes) {
+            futures.add(lane.isEmpty() ? null : executor.submit(() -> laneHandler.accept(lane)));
+        }
+
+        int lowestIncomplete = items.size();
+        for (int lane = 0; lane < laneCount; lane++) {
+            Future<?> future = futures.get(lane);
+            if (future == null) {
+                continue;
+            }
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Math.min(lowestIncomplete, firstIndexOfLane.get(lane));
+            } catch (ExecutionException e) {
+                log.error("Processing lane failed: lane={}, size={}", lane, lanes.get(lane).size(), e.getCause());
+                lowestIncomplete = Math.min(lowestIncomplete, firstIndexOfLane.get(lane));
+            }
+        }
+        return lowestIncomplete;
+    }
+
+    private int laneCount() {
+        int configured = appProperties.getKafka().getProcessingLanes();
+        return configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
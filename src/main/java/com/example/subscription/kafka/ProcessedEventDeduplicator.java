@@ -0,0 +1,263 @@
+package com.example.subscription.kafka;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.dto.event.BookKeepingEvent;
+import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.repository.BookKeepingRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Spots redelivered book keeping events before any materialization work. Checks run cheapest first:
+// 1. recently processed idempotency keys (exact, in memory)
+// 2. a bloom filter of everything processed here; a hit is confirmed with a status lookup
+// 3. a PROCESSED status lookup, skipped for events completed after this instance took the partition,
+//    which the previous owner cannot have processed
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProcessedEventDeduplicator implements ConsumerRebalanceListener {
+
+    private final BookKeepingRepository bookKeepingRepository;
+    private final BusinessMetrics businessMetrics;
+    private final AppProperties appProperties;
+
+    private final Map<TopicPartition, LocalDateTime> assignedAt = new ConcurrentHashMap<>();
+    private volatile RecentKeys recentKeys;
+    private volatile GenerationalBloomFilter filter;
+
+    public record Candidate(TopicPartition partition, BookKeepingEvent event) {}
+
+    public boolean isDuplicate(TopicPartition partition, BookKeepingEvent event) {
+        return !findDuplicates(List.of(new Candidate(partition, event))).isEmpty();
+    }
+
+    // Returns the bookKeepingIds among the candidates that are already PROCESSED
+    public Set<Long> findDuplicates(List<Candidate> candidates) {
+        AppProperties.Kafka.Dedup config = appProperties.getKafka().getDedup();
+        Set<Long> duplicates = new HashSet<>();
+        if (!config.isEnabled() || candidates.isEmpty()) {
+            return duplicates;
+        }
+
+        List<Long> toLookUp = new ArrayList<>();
+        Set<Long> filterHits = new HashSet<>();
+        for (Candidate candidate : candidates) {
+            BookKeepingEvent event = candidate.event();
+            if (recentKeys().contains(event.idempotencyKey())) {
+                duplicates.add(event.bookKeepingId());
+                businessMetrics.recordDuplicateEventSkipped("recent");
+            } else if (filter().mightContain(event.idempotencyKey())) {
+                filterHits.add(event.bookKeepingId());
+                toLookUp.add(event.bookKeepingId());
+            } else if (!isFreshForPartition(candidate, config)) {
+                toLookUp.add(event.bookKeepingId());
+            }
+        }
+        if (toLookUp.isEmpty()) {
+            return duplicates;
+        }
+
+        // One indexed lookup for the whole poll
+        Set<Long> processed = new HashSet<>(bookKeepingRepository.findIdsByIdInAndStatus(toLookUp, "PROCESSED"));
+        for (Candidate candidate : candidates) {
+            Long id = candidate.event().bookKeepingId();
+            if (processed.contains(id)) {
+                if (duplicates.add(id)) {
+                    businessMetrics.recordDuplicateEventSkipped(filterHits.contains(id) ? "filter" : "status");
+                    markProcessed(candidate.event());
+                }
+            } else if (filterHits.contains(id)) {
+                businessMetrics.recordDedupFilterFalsePositive();
+            }
+        }
+        if (!duplicates.isEmpty()) {
+            log.info("Skipping redelivered book keeping events: count={}", duplicates.size());
+        }
+        return duplicates;
+    }
+
+    public void markProcessed(BookKeepingEvent event) {
+        if (!appProperties.getKafka().getDedup().isEnabled()) {
+            return;
+        }
+        recentKeys().add(event.idempotencyKey());
+        filter().put(event.idempotencyKey());
+    }
+
+    @Override
+    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+        LocalDateTime now = LocalDateTime.now();
+        partitions.forEach(partition -> assignedAt.put(partition, now));
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        partitions.forEach(assignedAt::remove);
+    }
+
+    private boolean isFreshForPartition(Candidate candidate, AppProperties.Kafka.Dedup config) {
+        LocalDateTime since = assignedAt.get(candidate.partition());
+        LocalDateTime completedAt = candidate.event().completedAt();
+        return since != null && completedAt != null
+                && completedAt.isAfter(since.plusNanos(config.getAssignmentSkewMs() * 1_000_000L));
+    }
+
+    private RecentKeys recentKeys() {
+        RecentKeys keys = recentKeys;
+        if (keys == null) {
+            synchronized (this) {
+                if (recentKeys == null) {
+                    recentKeys = new RecentKeys(appProperties.getKafka().getDedup().getRecentCapacity());
+                }
+                keys = recentKeys;
+            }
+        }
+        return keys;
+    }
+
+    private GenerationalBloomFilter filter() {
+        GenerationalBloomFilter current = filter;
+        if (current == null) {
+            synchronized (this) {
+                if (filter == null) {
+                    AppProperties.Kafka.Dedup config = appProperties.getKafka().getDedup();
+                    filter = new GenerationalBloomFilter(
+                            config.getFilterExpectedInsertions(), config.getFilterFalsePositiveRate());
+                }
+                current = filter;
+            }
+        }
+        return current;
+    }
+
+    private static final class RecentKeys {
+
+        private final Map<String, Boolean> keys;
+
+        RecentKeys(int capacity) {
+            int maxSize = Math.max(1, capacity);
+            this.keys = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        synchronized boolean contains(String key) {
+            return keys.get(key) != null;
+        }
+
+        synchronized void add(String key) {
+            keys.put(key, Boolean.TRUE);
+        }
+    }
+
+    // Two bloom filters: once the current one has taken its expected insertions it becomes the
+    // previous one, so the false positive rate stays bounded while recent history is kept
+    static final class GenerationalBloomFilter {
+
+        private final int expectedInsertions;
+        private final int bitCount;
+        private final int hashCount;
+        private volatile BloomFilter current;
+        private volatile BloomFilter previous;
+
+        GenerationalBloomFilter(int expectedInsertions, double falsePositiveRate) {
+            this.expectedInsertions = Math.max(1, expectedInsertions);
+            double p = Math.min(0.5, Math.max(1e-6, falsePositiveRate));
+            this.bitCount = (int) Math.max(64, Math.ceil(-this.expectedInsertions * Math.log(p) / (Math.log(2) * Math.log(2))));
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / this.expectedInsertions * Math.log(2)));
+            this.current = new BloomFilter(bitCount, hashCount);
+        }
+
+        boolean mightContain(String key) {
+            BloomFilter older = previous;
+            return current.mightContain(key) || (older != null && older.mightContain(key));
+        }
+
+        void put(String key) {
+            BloomFilter target = current;
+            if (target.put(key) >= expectedInsertions) {
+                synchronized (this) {
+                    if (current == target) {
+                        previous = target;
+                        current = new BloomFilter(bitCount, hashCount);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class BloomFilter {
+
+        private final AtomicLongArray words;
+        private final long bitCount;
+        private final int hashCount;
+        private final AtomicLong insertions = new AtomicLong();
+
+        BloomFilter(int bitCount, int hashCount) {
+            this.words = new AtomicLongArray((bitCount + 63) / 64);
+            this.bitCount = (long) words.length() * 64;
+            this.hashCount = hashCount;
+        }
+
+        boolean mightContain(String key) {
+            long[] hashes = hashes(key);
+            for (int i = 0; i < hashCount; i++) {
+                long bit = index(hashes, i);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long put(String key) {
+            long[] hashes = hashes(key);
+            for (int i = 0; i < hashCount; i++) {
+                long bit = index(hashes, i);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                words.getAndAccumulate(word, mask, (value, m) -> value | m);
+            }
+            return insertions.incrementAndGet();
+        }
+
+        // Kirsch-Mitzenmacher double hashing over two independent 64-bit hashes
+        private long index(long[] hashes, int i) {
+            return Math.floorMod(hashes[0] + i * hashes[1], bitCount);
+        }
+
+        private static long[] hashes(String key) {
+            long h = 0xcbf29ce484222325L;
+            for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+                h ^= b & 0xff;
+                h *= 0x100000001b3L;
+            }
+            return new long[] {mix(h), mix(h ^ 0x9e3779b97f4a7c15L) | 1L};
+        }
+
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+    }
+}
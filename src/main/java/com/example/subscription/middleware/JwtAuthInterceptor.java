@@ -1,10 +1,6 @@
 package com.example.subscription.middleware;
 
-import com.example.subscription.config.AppProperties;
 import com.example.subscription.util.RequestIdExtractor;
-import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.Keys;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
@@ -12,16 +8,12 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
 
-import io.jsonwebtoken.ExpiredJwtException;
-import javax.crypto.SecretKey;
-import java.nio.charset.StandardCharsets;
-
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class JwtAuthInterceptor implements HandlerInterceptor {
 
-    private final AppProperties appProperties;
+    private final JwtTokenVerifier jwtTokenVerifier;
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
@@ -33,31 +25,12 @@ public class JwtAuthInterceptor implements HandlerInterceptor {
         }
 
         try {
-            String token = authHeader.substring(7);
-            SecretKey key = Keys.hmacShaKeyFor(appProperties.getJwt().getSecret().getBytes(StandardCharsets.UTF_8));
-            
-            Claims claims;
-            try {
-                claims = Jwts.parser()
-                        .verifyWith(key)
-                        .build()
-                        .parseSignedClaims(token)
-                        .getPayload();
-            } catch (ExpiredJwtException e) {
-                // In debug mode, allow expired tokens
-                if (appProperties.getJwt().isDebugMode() && appProperties.getJwt().isDebugSkipExpiryValidation()) {
-                    log.warn("DEBUG MODE: Allowing expired JWT token - expiry validation is disabled");
-                    claims = e.getClaims();
-                } else {
-                    throw e;
-                }
-            }
+            JwtTokenVerifier.VerifiedToken token = jwtTokenVerifier.verify(authHeader.substring(7));
 
             // Store claims in request attributes for use in controllers/services
-            request.setAttribute("userId", Long.parseLong(claims.get(appProperties.getJwt().getUserIdClaim(), String.class)));
-            request.setAttribute("role", claims.get(appProperties.getJwt().getRoleClaim(), String.class));
-            request.setAttribute("requestId", RequestIdExtractor.extractFromJwt(
-                    claims.get(appProperties.getJwt().getRequestIdClaim(), String.class)));
+            request.setAttribute("userId", token.userId());
+            request.setAttribute("role", token.role());
+            request.setAttribute("requestId", RequestIdExtractor.extractFromJwt(token.requestIdClaim()));
 
             return true;
         } catch (Exception e) {
@@ -67,4 +40,3 @@ public class JwtAuthInterceptor implements HandlerInterceptor {
         }
     }
 }
-
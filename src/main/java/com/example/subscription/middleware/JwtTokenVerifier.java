@@ -0,0 +1,152 @@
+package com.example.subscription.middleware;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.observability.BusinessMetrics;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Verifies bearer tokens with a key and parser built once at startup (both immutable and thread
+// safe), then remembers what a token verified to, keyed by its SHA-256 so no bearer token is kept
+// in memory. An entry never outlives the token's exp, nor maxTtlSeconds. Failed and debug-mode
+// expired tokens are never cached.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class JwtTokenVerifier {
+
+    // Independent LRU stripes so concurrent requests rarely contend on one lock
+    private static final int STRIPES = 16;
+
+    private final AppProperties appProperties;
+    private final BusinessMetrics businessMetrics;
+
+    private JwtParser parser;
+    private Stripe[] stripes;
+
+    // requestIdClaim stays raw: a missing one gets a fresh id per request, never one cached per token
+    public record VerifiedToken(long userId, String role, String requestIdClaim) {}
+
+    @PostConstruct
+    public void init() {
+        AppProperties.Jwt config = appProperties.getJwt();
+        SecretKey key = Keys.hmacShaKeyFor(config.getSecret().getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parser().verifyWith(key).build();
+        int perStripe = Math.max(1, config.getCache().getMaxEntries() / STRIPES);
+        stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    public VerifiedToken verify(String token) {
+        long startedAt = System.nanoTime();
+        AppProperties.Jwt config = appProperties.getJwt();
+        TokenKey key = null;
+        if (config.getCache().isEnabled()) {
+            key = TokenKey.of(token);
+            VerifiedToken cached = stripe(key).get(key, System.currentTimeMillis());
+            businessMetrics.recordJwtCacheLookup(cached != null);
+            if (cached != null) {
+                businessMetrics.recordJwtVerification("cache", System.nanoTime() - startedAt);
+                return cached;
+            }
+        }
+
+        Claims claims;
+        boolean cacheable = true;
+        try {
+            claims = parser.parseSignedClaims(token).getPayload();
+        } catch (ExpiredJwtException e) {
+            // In debug mode, allow expired tokens
+            if (config.isDebugMode() && config.isDebugSkipExpiryValidation()) {
+                log.warn("DEBUG MODE: Allowing expired JWT token - expiry validation is disabled");
+                claims = e.getClaims();
+                cacheable = false;
+            } else {
+                throw e;
+            }
+        }
+
+        VerifiedToken verified = new VerifiedToken(
+                Long.parseLong(claims.get(config.getUserIdClaim(), String.class)),
+                claims.get(config.getRoleClaim(), String.class),
+                claims.get(config.getRequestIdClaim(), String.class));
+
+        if (key != null && cacheable) {
+            long now = System.currentTimeMillis();
+            long expiresAt = now + config.getCache().getMaxTtlSeconds() * 1000L;
+            if (claims.getExpiration() != null) {
+                expiresAt = Math.min(expiresAt, claims.getExpiration().getTime());
+            }
+            if (expiresAt > now) {
+                stripe(key).put(key, verified, expiresAt);
+            }
+        }
+        businessMetrics.recordJwtVerification("parse", System.nanoTime() - startedAt);
+        return verified;
+    }
+
+    private Stripe stripe(TokenKey key) {
+        return stripes[(int) (key.h0() & (STRIPES - 1))];
+    }
+
+    private record TokenKey(long h0, long h1, long h2, long h3) {
+
+        static TokenKey of(String token) {
+            try {
+                ByteBuffer digest = ByteBuffer.wrap(MessageDigest.getInstance("SHA-256")
+                        .digest(token.getBytes(StandardCharsets.UTF_8)));
+                return new TokenKey(digest.getLong(), digest.getLong(), digest.getLong(), digest.getLong());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+    }
+
+    private record Entry(VerifiedToken token, long expiresAtMillis) {}
+
+    private static final class Stripe {
+
+        private final Map<TokenKey, Entry> entries;
+
+        Stripe(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<TokenKey, Entry> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        synchronized VerifiedToken get(TokenKey key, long now) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAtMillis() <= now) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.token();
+        }
+
+        synchronized void put(TokenKey key, VerifiedToken token, long expiresAtMillis) {
+            entries.put(key, new Entry(token, expiresAtMillis));
+        }
+    }
+}
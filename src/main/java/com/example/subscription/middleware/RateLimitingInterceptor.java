@@ -2,14 +2,17 @@ package com.example.subscription.middleware;
 
 import com.example.subscription.cache.RedisCacheService;
 import com.example.subscription.config.AppProperties;
+import com.example.subscription.resilience.HybridRateLimiter;
+import com.example.subscription.resilience.RateLimitDecision;
+import com.example.subscription.resilience.RateLimitPolicy;
+import com.example.subscription.resilience.RateLimitPolicyResolver;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
-
-import java.time.Duration;
+import org.springframework.web.servlet.HandlerMapping;
 
 @Component
 @RequiredArgsConstructor
@@ -17,46 +20,48 @@ import java.time.Duration;
 public class RateLimitingInterceptor implements HandlerInterceptor {
 
     private final RedisCacheService redisCacheService;
+    private final RateLimitPolicyResolver rateLimitPolicyResolver;
+    private final HybridRateLimiter hybridRateLimiter;
     private final AppProperties appProperties;
     
     private static final String RATE_LIMIT_PREFIX = "ratelimit";
-    private static final int DEFAULT_RATE_LIMIT = 100; // requests per minute
-    private static final int DEFAULT_WINDOW_SECONDS = 60;
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
-        String path = request.getRequestURI();
         Long userId = (Long) request.getAttribute("userId");
         
-        if (userId == null) {
+        if (userId == null || !appProperties.getRateLimit().isEnabled()) {
             // If no user ID, skip rate limiting (shouldn't happen if JWT is valid)
             return true;
         }
 
-        // Per-user rate limiting
-        String userKey = redisCacheService.buildKey(RATE_LIMIT_PREFIX, "user", userId.toString(), path);
-        
-        // Check current count
-        String currentCountStr = redisCacheService.get(userKey).block();
-        int currentCount = currentCountStr != null ? Integer.parseInt(currentCountStr) : 0;
-        
-        if (currentCount >= DEFAULT_RATE_LIMIT) {
-            log.warn("Rate limit exceeded: userId={}, path={}, count={}", userId, path, currentCount);
-            response.setStatus(429); // HTTP 429 Too Many Requests
-            response.setHeader("X-RateLimit-Limit", String.valueOf(DEFAULT_RATE_LIMIT));
-            response.setHeader("X-RateLimit-Remaining", "0");
-            return false;
+        // Keyed by the handler's path pattern, so /api/subscriptions/{id}/extend is one budget, not one per id
+        String route = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (route == null) {
+            route = request.getRequestURI();
         }
+        String method = request.getMethod();
+        RateLimitPolicy policy = rateLimitPolicyResolver.resolve(method, route, (String) request.getAttribute("role"));
 
-        // Increment counter
-        redisCacheService.set(userKey, String.valueOf(currentCount + 1), Duration.ofSeconds(DEFAULT_WINDOW_SECONDS))
-                .block();
+        // Braces would act as a Redis Cluster hash tag and pin every user's key for the route to one slot
+        String userKey = policy.perRoute()
+                ? redisCacheService.buildKey(RATE_LIMIT_PREFIX, policy.name(), "user", userId.toString(),
+                        method, route.replace('{', '(').replace('}', ')'))
+                : redisCacheService.buildKey(RATE_LIMIT_PREFIX, policy.name(), "user", userId.toString());
 
-        // Set rate limit headers
-        response.setHeader("X-RateLimit-Limit", String.valueOf(DEFAULT_RATE_LIMIT));
-        response.setHeader("X-RateLimit-Remaining", String.valueOf(DEFAULT_RATE_LIMIT - currentCount - 1));
+        RateLimitDecision decision = hybridRateLimiter.tryAcquire(userKey, policy);
+
+        response.setHeader("X-RateLimit-Limit", String.valueOf(decision.limit()));
+        if (decision.checked()) {
+            response.setHeader("X-RateLimit-Remaining", String.valueOf(decision.remaining()));
+        }
+        if (!decision.allowed()) {
+            log.warn("Rate limit exceeded: userId={}, route={} {}, policy={}", userId, method, route, policy.name());
+            response.setStatus(429); // HTTP 429 Too Many Requests
+            response.setHeader("Retry-After", String.valueOf(Math.max(1, (decision.retryAfterMillis() + 999) / 1000)));
+            return false;
+        }
 
         return true;
     }
 }
-
@@ -1,39 +1,53 @@
 package com.example.subscription.middleware;
 
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.observability.RouteLatencyTracker;
+import com.example.subscription.observability.TraceIdGenerator;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
 
-import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
+// Times every request per route template and writes one log line after completion, only when the
+// configured mode asks for it. This logger goes to the dropping async appender in logback-spring.xml.
 @Component
+@RequiredArgsConstructor
 @Slf4j
 public class RequestLoggingInterceptor implements HandlerInterceptor {
 
+    private static final String START_NANOS_ATTRIBUTE = "requestStartNanos";
+
+    private final TraceIdGenerator traceIdGenerator;
+    private final RouteLatencyTracker routeLatencyTracker;
+    private final AppProperties appProperties;
+
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
         // Generate correlation ID if not present
         String correlationId = request.getHeader("X-Correlation-ID");
         if (correlationId == null || correlationId.isEmpty()) {
-            correlationId = UUID.randomUUID().toString();
+            correlationId = traceIdGenerator.nextHex();
         }
 
         // Set in MDC for logging
         MDC.put("correlationId", correlationId);
         MDC.put("traceId", correlationId);
-        MDC.put("spanId", UUID.randomUUID().toString().substring(0, 8));
+        MDC.put("spanId", traceIdGenerator.nextHex());
         
         // Set in response header
         response.setHeader("X-Correlation-ID", correlationId);
 
-        long startTime = System.currentTimeMillis();
-        request.setAttribute("startTime", startTime);
+        request.setAttribute(START_NANOS_ATTRIBUTE, System.nanoTime());
 
-        log.info("Incoming request: method={}, uri={}, correlationId={}", 
-                request.getMethod(), request.getRequestURI(), correlationId);
+        if (log.isDebugEnabled()) {
+            log.debug("Incoming request: method={}, uri={}", request.getMethod(), request.getRequestURI());
+        }
 
         return true;
     }
@@ -41,24 +55,40 @@ public class RequestLoggingInterceptor implements HandlerInterceptor {
     @Override
     public void afterCompletion(HttpServletRequest request, HttpServletResponse response, 
                                 Object handler, Exception ex) {
-        Long startTime = (Long) request.getAttribute("startTime");
-        if (startTime != null) {
-            long duration = System.currentTimeMillis() - startTime;
-            String correlationId = MDC.get("correlationId");
-            
-            if (ex != null) {
-                log.error("Request failed: method={}, uri={}, status={}, duration={}ms, correlationId={}", 
-                        request.getMethod(), request.getRequestURI(), response.getStatus(), 
-                        duration, correlationId, ex);
-            } else {
-                log.info("Request completed: method={}, uri={}, status={}, duration={}ms, correlationId={}", 
-                        request.getMethod(), request.getRequestURI(), response.getStatus(), 
-                        duration, correlationId);
+        Long startNanos = (Long) request.getAttribute(START_NANOS_ATTRIBUTE);
+        if (startNanos != null) {
+            long latencyNanos = System.nanoTime() - startNanos;
+            long durationMs = latencyNanos / 1_000_000;
+            boolean failed = ex != null || response.getStatus() >= 500;
+            // An exception still propagating has not set the error status on the response yet
+            routeLatencyTracker.record(request.getMethod(),
+                    (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE),
+                    ex != null ? Math.max(500, response.getStatus()) : response.getStatus(),
+                    (String) request.getAttribute("role"), latencyNanos);
+            if (shouldLog(failed, durationMs)) {
+                if (failed) {
+                    log.error("Request failed: method={}, uri={}, status={}, duration={}ms",
+                            request.getMethod(), request.getRequestURI(), response.getStatus(), durationMs, ex);
+                } else {
+                    log.info("Request completed: method={}, uri={}, status={}, duration={}ms",
+                            request.getMethod(), request.getRequestURI(), response.getStatus(), durationMs);
+                }
             }
         }
 
         // Clear MDC
         MDC.clear();
     }
-}
 
+    boolean shouldLog(boolean failed, long durationMs) {
+        AppProperties.Observability.RequestLogging config = appProperties.getObservability().getRequestLogging();
+        boolean slow = durationMs >= config.getSlowThresholdMs();
+        return switch (config.getMode()) {
+            case ALL -> true;
+            case SAMPLED -> failed || slow || ThreadLocalRandom.current().nextDouble() < config.getSampleRate();
+            case SLOW -> failed || slow;
+            case ERRORS -> failed;
+            case OFF -> false;
+        };
+    }
+}
@@ -20,7 +20,8 @@ public class RoleAuthorizationInterceptor implements HandlerInterceptor {
 
         // Admin-only endpoints
         List<String> adminPaths = Arrays.asList(
-            "/api/subscription-plans"
+            "/api/subscription-plans",
+            "/api/admin"
         );
 
         boolean isAdminPath = adminPaths.stream().anyMatch(path::startsWith);
@@ -57,6 +57,8 @@ public class BookKeeping {
     
     private String errorMessage;
     
+    private LocalDateTime paymentDeferredAt;
+    
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
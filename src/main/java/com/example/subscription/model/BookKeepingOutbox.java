@@ -0,0 +1,40 @@
+package com.example.subscription.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "book_keeping_outbox")
+@Data
+public class BookKeepingOutbox {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "book_keeping_id", nullable = false)
+    private Long bookKeepingId;
+    
+    @Column(nullable = false)
+    private String messageKey;
+    
+    @Column(nullable = false)
+    private byte[] payload;
+    
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    private LocalDateTime sentAt;
+    
+    @Column(nullable = false)
+    private Integer attempts = 0;
+    
+    private String lastError;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
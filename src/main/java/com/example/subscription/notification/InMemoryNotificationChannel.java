@@ -0,0 +1,48 @@
+package com.example.subscription.notification;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Stand-in until a real email/SMS provider is wired in: keeps the most recent deliveries in memory
+@Component
+@Slf4j
+public class InMemoryNotificationChannel implements NotificationChannel {
+
+    static final String NAME = "in-memory";
+    private static final int RETAINED = 1000;
+
+    private final Deque<Notification> delivered = new ConcurrentLinkedDeque<>();
+    private final AtomicLong deliveredCount = new AtomicLong();
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public void send(List<Notification> batch) {
+        for (Notification notification : batch) {
+            delivered.addLast(notification);
+            log.debug("Notification delivered: type={}, userId={}, subscriptionId={}",
+                    notification.type(), notification.userId(), notification.subscriptionId());
+        }
+        deliveredCount.addAndGet(batch.size());
+        while (delivered.size() > RETAINED) {
+            delivered.pollFirst();
+        }
+    }
+
+    public List<Notification> recent() {
+        return new ArrayList<>(delivered);
+    }
+
+    public long deliveredCount() {
+        return deliveredCount.get();
+    }
+}
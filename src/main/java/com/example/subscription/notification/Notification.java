@@ -0,0 +1,22 @@
+package com.example.subscription.notification;
+
+import java.time.LocalDate;
+
+public record Notification(
+        Type type,
+        long userId,
+        Long subscriptionId,
+        long subscriptionAccountId,
+        long durationTypeId,
+        LocalDate endDate,
+        Long daysUntilExpiry,
+        LocalDate day) {
+
+    public enum Type { SUBSCRIPTION_CREATED, SUBSCRIPTION_EXTENDED, SUBSCRIPTION_EXPIRING }
+
+    // A user holds at most one active subscription per account and duration type, so that triple
+    // identifies the subscription even before its row id is known
+    public String dedupKey() {
+        return userId + ":" + subscriptionAccountId + ":" + durationTypeId + ":" + type + ":" + day;
+    }
+}
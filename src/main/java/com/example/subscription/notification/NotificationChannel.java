@@ -0,0 +1,17 @@
+package com.example.subscription.notification;
+
+import java.util.List;
+
+// A delivery channel (email, SMS, push). NotificationDispatcher gives each channel its own queue,
+// rate limit and worker; send receives up to app.notification.dispatch.batch-size notifications
+// and must throw if the batch was not accepted, in which case the whole batch is retried.
+public interface NotificationChannel {
+
+    String name();
+
+    default boolean supports(Notification.Type type) {
+        return true;
+    }
+
+    void send(List<Notification> batch) throws Exception;
+}
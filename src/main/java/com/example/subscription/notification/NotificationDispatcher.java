@@ -0,0 +1,275 @@
+package com.example.subscription.notification;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.observability.BusinessMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Delivers notifications off the request and consumer threads. Each channel has:
+// 1. a bounded queue, filled after commit and skipping anything already queued for the same
+//    user, subscription, type and day
+// 2. a worker that takes up to batchSize notifications, waiting at most maxBatchWaitMs to fill a batch
+// 3. a pacer holding the channel to its per-second rate limit
+// 4. retries with jittered exponential backoff; a batch that exhausts them is dropped and its
+//    keys released so a later trigger can notify again
+// Queued notifications are held in memory only and are lost if the instance stops.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationDispatcher {
+
+    private final List<NotificationChannel> channels;
+    private final BusinessMetrics businessMetrics;
+    private final AppProperties appProperties;
+
+    private final Map<String, ChannelWorker> workers = new ConcurrentHashMap<>();
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (NotificationChannel channel : channels) {
+            ChannelWorker worker = worker(channel);
+            worker.thread = Thread.ofVirtual().name("notification-" + channel.name()).start(() -> run(worker));
+        }
+        log.info("Notification dispatch started: channels={}",
+                channels.stream().map(NotificationChannel::name).toList());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        for (ChannelWorker worker : workers.values()) {
+            if (worker.thread != null) {
+                worker.thread.interrupt();
+            }
+            if (!worker.queue.isEmpty()) {
+                log.warn("Notifications dropped on shutdown: channel={}, count={}",
+                        worker.channel.name(), worker.queue.size());
+            }
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onNotification(Notification notification) {
+        submit(notification);
+    }
+
+    // Returns the number of channels the notification was queued on
+    public int submit(Notification notification) {
+        int queued = 0;
+        for (NotificationChannel channel : channels) {
+            if (!channel.supports(notification.type())) {
+                continue;
+            }
+            ChannelWorker worker = worker(channel);
+            String key = notification.dedupKey();
+            if (!worker.recentKeys.claim(key)) {
+                businessMetrics.recordNotificationDropped(channel.name(), "duplicate");
+                continue;
+            }
+            if (!worker.queue.offer(new Queued(notification, System.nanoTime()))) {
+                worker.recentKeys.release(key);
+                businessMetrics.recordNotificationDropped(channel.name(), "queue_full");
+                log.warn("Notification queue full, dropping: channel={}, type={}, userId={}",
+                        channel.name(), notification.type(), notification.userId());
+                continue;
+            }
+            businessMetrics.recordNotificationEnqueued(channel.name());
+            queued++;
+        }
+        return queued;
+    }
+
+    // Sends whatever is queued for the channel, up to one batch, without waiting for more
+    int dispatchBatch(String channelName) {
+        ChannelWorker worker = workers.get(channelName);
+        if (worker == null) {
+            return 0;
+        }
+        List<Queued> batch = new ArrayList<>();
+        worker.queue.drainTo(batch, batchSize());
+        if (!batch.isEmpty()) {
+            deliver(worker, batch);
+        }
+        return batch.size();
+    }
+
+    private void run(ChannelWorker worker) {
+        while (running) {
+            try {
+                List<Queued> batch = nextBatch(worker);
+                if (!batch.isEmpty()) {
+                    worker.pacer.acquire(batch.size());
+                    deliver(worker, batch);
+                }
+                businessMetrics.recordNotificationQueueDepth(worker.channel.name(), worker.queue.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Error dispatching notifications: channel={}", worker.channel.name(), e);
+            }
+        }
+    }
+
+    private List<Queued> nextBatch(ChannelWorker worker) throws InterruptedException {
+        List<Queued> batch = new ArrayList<>();
+        Queued first = worker.queue.poll(1, TimeUnit.SECONDS);
+        if (first == null) {
+            return batch;
+        }
+        batch.add(first);
+        int batchSize = batchSize();
+        long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(appProperties.getNotification().getDispatch().getMaxBatchWaitMs());
+        while (batch.size() < batchSize) {
+            worker.queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                break;
+            }
+            Queued next = worker.queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    private void deliver(ChannelWorker worker, List<Queued> batch) {
+        AppProperties.Notification.Dispatch config = appProperties.getNotification().getDispatch();
+        String channelName = worker.channel.name();
+        List<Notification> notifications = batch.stream().map(Queued::notification).toList();
+        int maxAttempts = Math.max(1, config.getMaxAttempts());
+
+        for (int attempt = 1; ; attempt++) {
+            long startedNanos = System.nanoTime();
+            try {
+                worker.channel.send(notifications);
+                long sentNanos = System.nanoTime();
+                businessMetrics.recordNotificationBatchSent(channelName, notifications.size(), sentNanos - startedNanos);
+                for (Queued queued : batch) {
+                    businessMetrics.recordNotificationDeliveryLatency(channelName, sentNanos - queued.enqueuedNanos());
+                }
+                return;
+            } catch (Exception e) {
+                if (attempt >= maxAttempts) {
+                    notifications.forEach(notification -> worker.recentKeys.release(notification.dedupKey()));
+                    businessMetrics.recordNotificationDropped(channelName, "failed");
+                    log.error("Notification batch failed after {} attempts, dropping: channel={}, size={}",
+                            attempt, channelName, notifications.size(), e);
+                    return;
+                }
+                long backoffMs = Math.min(config.getMaxBackoffMs(), config.getInitialBackoffMs() << Math.min(attempt - 1, 20));
+                long jitteredNanos = TimeUnit.MILLISECONDS.toNanos(backoffMs) / 2
+                        + ThreadLocalRandom.current().nextLong(TimeUnit.MILLISECONDS.toNanos(backoffMs) / 2 + 1);
+                businessMetrics.recordNotificationRetry(channelName);
+                log.warn("Notification batch failed, retrying: channel={}, size={}, attempt={}, backoffMs={}, reason={}",
+                        channelName, notifications.size(), attempt, TimeUnit.NANOSECONDS.toMillis(jitteredNanos),
+                        e.getMessage());
+                LockSupport.parkNanos(jitteredNanos);
+                if (Thread.currentThread().isInterrupted()) {
+                    notifications.forEach(notification -> worker.recentKeys.release(notification.dedupKey()));
+                    return;
+                }
+            }
+        }
+    }
+
+    private ChannelWorker worker(NotificationChannel channel) {
+        return workers.computeIfAbsent(channel.name(), name -> {
+            AppProperties.Notification.Dispatch config = appProperties.getNotification().getDispatch();
+            int ratePerSecond = config.getRateLimitsPerSecond().getOrDefault(name, config.getDefaultRatePerSecond());
+            return new ChannelWorker(channel, new LinkedBlockingQueue<>(Math.max(1, config.getQueueCapacity())),
+                    new RecentKeys(config.getDedupCapacity()), new Pacer(ratePerSecond));
+        });
+    }
+
+    private int batchSize() {
+        return Math.max(1, appProperties.getNotification().getDispatch().getBatchSize());
+    }
+
+    private record Queued(Notification notification, long enqueuedNanos) {}
+
+    private static final class ChannelWorker {
+
+        private final NotificationChannel channel;
+        private final BlockingQueue<Queued> queue;
+        private final RecentKeys recentKeys;
+        private final Pacer pacer;
+        private volatile Thread thread;
+
+        ChannelWorker(NotificationChannel channel, BlockingQueue<Queued> queue, RecentKeys recentKeys, Pacer pacer) {
+            this.channel = channel;
+            this.queue = queue;
+            this.recentKeys = recentKeys;
+            this.pacer = pacer;
+        }
+    }
+
+    // Keys carry the day, so yesterday's entries simply age out of the LRU
+    private static final class RecentKeys {
+
+        private final Map<String, Boolean> keys;
+
+        RecentKeys(int capacity) {
+            int maxSize = Math.max(1, capacity);
+            this.keys = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        synchronized boolean claim(String key) {
+            return keys.putIfAbsent(key, Boolean.TRUE) == null;
+        }
+
+        synchronized void release(String key) {
+            keys.remove(key);
+        }
+    }
+
+    // Spaces sends evenly at the channel's rate; idle time does not bank more than one batch of burst.
+    // A rate of zero or less disables the limit.
+    private static final class Pacer {
+
+        private final long intervalNanos;
+        private long nextFreeNanos = System.nanoTime();
+
+        Pacer(int permitsPerSecond) {
+            this.intervalNanos = permitsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / permitsPerSecond : 0;
+        }
+
+        void acquire(int permits) {
+            if (intervalNanos == 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            long start = Math.max(nextFreeNanos, now);
+            nextFreeNanos = start + permits * intervalNanos;
+            if (start > now) {
+                LockSupport.parkNanos(start - now);
+            }
+        }
+    }
+}
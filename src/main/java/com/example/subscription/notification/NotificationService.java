@@ -1,55 +1,45 @@
 package com.example.subscription.notification;
 
+import com.example.subscription.dto.projection.ExpiringSubscription;
 import com.example.subscription.model.UserSubscription;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
-import java.util.List;
 
+// Builds notifications and hands them to NotificationDispatcher once the caller's transaction
+// commits, so channel latency never holds a materialization transaction open and a rolled back
+// materialization notifies nobody
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class NotificationService {
 
-    // Extensible notification service foundation
-    // Can be extended to send emails, SMS, push notifications, etc.
+    private final ApplicationEventPublisher eventPublisher;
 
     public void notifySubscriptionCreated(UserSubscription subscription) {
-        log.info("Notification: Subscription created - userId={}, subscriptionId={}, accountId={}", 
-                subscription.getUserId(), subscription.getId(), subscription.getSubscriptionAccountId());
-        // TODO: Send notification (email, SMS, etc.)
+        publish(new Notification(Notification.Type.SUBSCRIPTION_CREATED, subscription.getUserId(),
+                subscription.getId(), subscription.getSubscriptionAccountId(), subscription.getDurationTypeId(),
+                subscription.getEndDate(), null, LocalDate.now()));
     }
 
     public void notifySubscriptionExtended(UserSubscription subscription) {
-        log.info("Notification: Subscription extended - userId={}, subscriptionId={}, newEndDate={}", 
-                subscription.getUserId(), subscription.getId(), subscription.getEndDate());
-        // TODO: Send notification
+        publish(new Notification(Notification.Type.SUBSCRIPTION_EXTENDED, subscription.getUserId(),
+                subscription.getId(), subscription.getSubscriptionAccountId(), subscription.getDurationTypeId(),
+                subscription.getEndDate(), null, LocalDate.now()));
     }
 
-    public void notifySubscriptionExpiring(UserSubscription subscription, long daysUntilExpiry) {
-        log.info("Notification: Subscription expiring soon - userId={}, subscriptionId={}, daysUntilExpiry={}", 
-                subscription.getUserId(), subscription.getId(), daysUntilExpiry);
-        // TODO: Send notification
+    public void notifySubscriptionExpiring(ExpiringSubscription subscription, long daysUntilExpiry) {
+        publish(new Notification(Notification.Type.SUBSCRIPTION_EXPIRING, subscription.userId(),
+                subscription.id(), subscription.subscriptionAccountId(), subscription.durationTypeId(),
+                subscription.endDate(), daysUntilExpiry, LocalDate.now()));
     }
 
-    public void checkAndNotifyExpiringSubscriptions(List<UserSubscription> activeSubscriptions) {
-        LocalDate today = LocalDate.now();
-        LocalDate warningDate = today.plusDays(7); // Warn 7 days before expiry
-
-        activeSubscriptions.stream()
-                .filter(sub -> sub.getStatus().equals("ACTIVE") && sub.getEndDate() != null)
-                .filter(sub -> {
-                    long daysUntilExpiry = ChronoUnit.DAYS.between(today, sub.getEndDate());
-                    return daysUntilExpiry > 0 && daysUntilExpiry <= 7 && 
-                           sub.getEndDate().isBefore(warningDate.plusDays(1));
-                })
-                .forEach(sub -> {
-                    long daysUntilExpiry = ChronoUnit.DAYS.between(today, sub.getEndDate());
-                    notifySubscriptionExpiring(sub, daysUntilExpiry);
-                });
+    private void publish(Notification notification) {
+        log.debug("Notification requested: type={}, userId={}, subscriptionId={}",
+                notification.type(), notification.userId(), notification.subscriptionId());
+        eventPublisher.publishEvent(notification);
     }
 }
-
@@ -1,16 +1,33 @@
 package com.example.subscription.observability;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 @Component
 @RequiredArgsConstructor
 public class BusinessMetrics {
 
     private final MeterRegistry meterRegistry;
+    private final Map<String, AtomicLong> gaugeValues = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void registerLoggingMetrics() {
+        FunctionCounter.builder("logging.request.dropped", DroppingAsyncAppender.class,
+                        appender -> DroppingAsyncAppender.droppedCount())
+                .description("Request log lines dropped because the async appender queue was full")
+                .register(meterRegistry);
+    }
 
     // Subscription metrics
     public void recordSubscriptionCreated(Long accountId, String durationType) {
@@ -55,6 +72,73 @@ public class BusinessMetrics {
                 .increment();
     }
 
+    // Authentication metrics
+    public void recordJwtCacheLookup(boolean hit) {
+        Counter.builder("auth.jwt.cache")
+                .tag("result", hit ? "hit" : "miss")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordJwtVerification(String path, long durationNanos) {
+        Timer.builder("auth.jwt.verify.duration")
+                .tag("path", path)
+                .register(meterRegistry)
+                .record(Duration.ofNanos(durationNanos));
+    }
+
+    // Rate limiting metrics
+    // path: redis (one script call), lease (admitted from this node's leased slice) or local_only (Redis unreachable)
+    public void recordRateLimitDecision(String policy, String path, boolean allowed, long durationNanos) {
+        Counter.builder("ratelimit.decisions")
+                .tag("policy", policy)
+                .tag("path", path)
+                .tag("outcome", allowed ? "allowed" : "rejected")
+                .register(meterRegistry)
+                .increment();
+        Timer.builder("ratelimit.check.duration")
+                .tag("policy", policy)
+                .tag("path", path)
+                .register(meterRegistry)
+                .record(Duration.ofNanos(durationNanos));
+    }
+
+    public void recordRateLimitLeaseSync(String operation, int keys, long durationNanos) {
+        Counter.builder("ratelimit.lease.synced")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .increment(keys);
+        Timer.builder("ratelimit.lease.sync.duration")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .record(Duration.ofNanos(durationNanos));
+    }
+
+    public void recordRateLimitDegraded(boolean degraded) {
+        setGauge("ratelimit.degraded", degraded ? 1 : 0);
+    }
+
+    public void recordRateLimitError(String policy) {
+        Counter.builder("ratelimit.errors")
+                .tag("policy", policy)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    // HTTP route metrics
+    public void recordRouteLatency(String method, String route, String status, String role,
+                                   long latencyNanos, Duration[] serviceLevelObjectives) {
+        Timer.builder("http.route.duration")
+                .tag("method", method)
+                .tag("route", route)
+                .tag("status", status)
+                .tag("role", role)
+                .publishPercentileHistogram()
+                .serviceLevelObjectives(serviceLevelObjectives)
+                .register(meterRegistry)
+                .record(Duration.ofNanos(latencyNanos));
+    }
+
     // Cache metrics
     public void recordCacheHit(String cacheName) {
         Counter.builder("cache.hit")
@@ -78,6 +162,13 @@ public class BusinessMetrics {
                 .increment();
     }
 
+    public void recordPaymentCallback(String outcome) {
+        Counter.builder("payment.callback")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
     public Timer.Sample startPaymentTimer() {
         return Timer.start(meterRegistry);
     }
@@ -98,5 +189,255 @@ public class BusinessMetrics {
                 .register(meterRegistry)
                 .increment();
     }
-}
 
+    public void recordPipelineStage(String stage, long latencyNanos) {
+        Timer.builder("bookkeeping.pipeline.stage.duration")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(Duration.ofNanos(latencyNanos));
+    }
+
+    public void recordKafkaSendLatency(String topic, String outcome, long latencyNanos) {
+        Timer.builder("kafka.producer.send.latency")
+                .tag("topic", topic)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(Duration.ofNanos(latencyNanos));
+    }
+
+    public void recordOutboxRelayed(int count) {
+        Counter.builder("bookkeeping.outbox.relayed")
+                .register(meterRegistry)
+                .increment(count);
+    }
+
+    public void recordOutboxSendFailed() {
+        Counter.builder("bookkeeping.outbox.send.failed")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordOutboxBacklog(long pending) {
+        setGauge("bookkeeping.outbox.backlog", pending);
+    }
+
+    public void recordOutboxAbandoned() {
+        Counter.builder("bookkeeping.outbox.abandoned")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordOutboxAbandonedBacklog(long abandoned) {
+        setGauge("bookkeeping.outbox.abandoned.backlog", abandoned);
+    }
+
+    public void recordOutboxPurged(int count) {
+        Counter.builder("bookkeeping.outbox.purged")
+                .register(meterRegistry)
+                .increment(count);
+    }
+
+    public void recordBookKeepingRetryRouted(String destination) {
+        Counter.builder("bookkeeping.retry.routed")
+                .tag("destination", destination)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordDuplicateEventSkipped(String detectedBy) {
+        Counter.builder("bookkeeping.consumer.duplicate.skipped")
+                .tag("detected_by", detectedBy)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordDedupFilterFalsePositive() {
+        Counter.builder("bookkeeping.consumer.dedup.filter.false_positive")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordDeadLetterReplayed(int count) {
+        Counter.builder("bookkeeping.dlt.replayed")
+                .register(meterRegistry)
+                .increment(count);
+    }
+
+    // Subscription expiry metrics
+    public void recordSubscriptionsExpired(int count) {
+        Counter.builder("subscription.expired")
+                .register(meterRegistry)
+                .increment(count);
+    }
+
+    public void recordExpiryRun(long durationMillis, long expired) {
+        Timer.builder("subscription.expiry.run.duration")
+                .register(meterRegistry)
+                .record(Duration.ofMillis(durationMillis));
+        setGauge("subscription.expiry.last_run.expired", expired);
+    }
+
+    public void recordExpiryIndexWriteFailed(int entries) {
+        Counter.builder("subscription.expiry.index.write.failed")
+                .register(meterRegistry)
+                .increment(entries);
+    }
+
+    public void recordExpiryIndexFallback(String query) {
+        Counter.builder("subscription.expiry.index.fallback")
+                .tag("query", query)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordExpiryIndexRebuilt(long durationMillis, long indexed, long removed) {
+        Timer.builder("subscription.expiry.index.rebuild.duration")
+                .register(meterRegistry)
+                .record(Duration.ofMillis(durationMillis));
+        setGauge("subscription.expiry.index.rebuild.indexed", indexed);
+        setGauge("subscription.expiry.index.rebuild.removed", removed);
+    }
+
+    // Recovery sweep metrics
+    public void recordUnprocessedCompletedRecovered(long ageMillis) {
+        Counter.builder("bookkeeping.recovery.republished")
+                .register(meterRegistry)
+                .increment();
+        Timer.builder("bookkeeping.recovery.republished.age")
+                .register(meterRegistry)
+                .record(Duration.ofMillis(ageMillis));
+    }
+
+    public void recordUnprocessedCompletedAge(long ageSeconds) {
+        setGauge("bookkeeping.unprocessed.oldest.age.seconds", ageSeconds);
+    }
+
+    // Notification dispatch metrics
+    public void recordNotificationEnqueued(String channel) {
+        Counter.builder("notification.enqueued")
+                .tag("channel", channel)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordNotificationDropped(String channel, String reason) {
+        Counter.builder("notification.dropped")
+                .tag("channel", channel)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordNotificationBatchSent(String channel, int size, long sendNanos) {
+        Counter.builder("notification.sent")
+                .tag("channel", channel)
+                .register(meterRegistry)
+                .increment(size);
+        Timer.builder("notification.batch.send.duration")
+                .tag("channel", channel)
+                .register(meterRegistry)
+                .record(Duration.ofNanos(sendNanos));
+    }
+
+    public void recordNotificationDeliveryLatency(String channel, long latencyNanos) {
+        Timer.builder("notification.delivery.latency")
+                .tag("channel", channel)
+                .register(meterRegistry)
+                .record(Duration.ofNanos(latencyNanos));
+    }
+
+    public void recordNotificationRetry(String channel) {
+        Counter.builder("notification.retried")
+                .tag("channel", channel)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordNotificationQueueDepth(String channel, long depth) {
+        gaugeValues.computeIfAbsent("notification.queue.depth:" + channel,
+                        n -> meterRegistry.gauge("notification.queue.depth", Tags.of("channel", channel), new AtomicLong()))
+                .set(depth);
+    }
+
+    // Projection rebuild metrics
+    public void recordProjectionRebuildProgress(long eventsRead, long rowsWritten) {
+        setGauge("projection.rebuild.events.read", eventsRead);
+        setGauge("projection.rebuild.rows.written", rowsWritten);
+    }
+
+    public void recordProjectionRebuildCompleted(long durationNanos) {
+        Timer.builder("projection.rebuild.duration")
+                .register(meterRegistry)
+                .record(Duration.ofNanos(durationNanos));
+    }
+
+    // Request hedging metrics
+    public void recordHedgeFired(String operation) {
+        Counter.builder("payment.hedge.fired")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordHedgeWon(String operation) {
+        Counter.builder("payment.hedge.won")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordHedgeBudgetExhausted(String operation) {
+        Counter.builder("payment.hedge.budget_exhausted")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    // Deferred payment queue metrics
+    public void recordPaymentDeferred() {
+        Counter.builder("payment.deferred.enqueued")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordDeferredPaymentDrained() {
+        Counter.builder("payment.deferred.drained")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordDeferredQueueDepth(long depth) {
+        setGauge("payment.deferred.queue.depth", depth);
+    }
+
+    public void recordDeferredDrainRate(long paymentsPerSecond) {
+        setGauge("payment.deferred.drain.rate_per_second", paymentsPerSecond);
+    }
+
+    // Payment reconciliation metrics
+    public void recordReconciliationOutcome(String outcome) {
+        Counter.builder("payment.reconciliation.rows")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordReconciliationRun(long durationMillis, long rowsScanned) {
+        Timer.builder("payment.reconciliation.run.duration")
+                .register(meterRegistry)
+                .record(Duration.ofMillis(durationMillis));
+        long rowsPerSecond = durationMillis > 0 ? rowsScanned * 1000 / durationMillis : rowsScanned;
+        setGauge("payment.reconciliation.throughput.rows_per_second", rowsPerSecond);
+    }
+
+    public void recordReconciliationLag(long lagSeconds) {
+        setGauge("payment.reconciliation.lag.seconds", lagSeconds);
+    }
+
+    private void setGauge(String name, long value) {
+        gaugeValues.computeIfAbsent(name, n -> meterRegistry.gauge(n, new AtomicLong()))
+                .set(value);
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.subscription.observability;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// AsyncAppender that never makes the logging thread wait: an event that finds the queue full is
+// dropped and counted. Configured in logback-spring.xml, so it is created by logback, not Spring;
+// the count is static and exported by BusinessMetrics.
+public class DroppingAsyncAppender extends AsyncAppender {
+
+    private static final LongAdder DROPPED = new LongAdder();
+
+    public static long droppedCount() {
+        return DROPPED.sum();
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        if (isStarted() && getRemainingCapacity() == 0) {
+            DROPPED.increment();
+            return;
+        }
+        super.append(event);
+    }
+}
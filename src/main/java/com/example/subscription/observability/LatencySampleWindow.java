@@ -0,0 +1,50 @@
+package com.example.subscription.observability;
+
+import java.util.Arrays;
+
+// The most recent latency samples in a fixed ring, for actuator summaries over sliding windows.
+// Registry histograms are cumulative since startup; this answers "how slow was it lately".
+final class LatencySampleWindow {
+
+    private final long[] recordedAt;
+    private final long[] latencies;
+    private int next;
+    private int size;
+
+    LatencySampleWindow(int capacity) {
+        this.recordedAt = new long[Math.max(1, capacity)];
+        this.latencies = new long[Math.max(1, capacity)];
+    }
+
+    synchronized void add(long timestampMillis, long latencyNanos) {
+        recordedAt[next] = timestampMillis;
+        latencies[next] = latencyNanos;
+        next = (next + 1) % latencies.length;
+        if (size < latencies.length) {
+            size++;
+        }
+    }
+
+    // Latencies recorded at or after sinceMillis, ascending. When the ring has wrapped inside the
+    // window this is only the newest part of it, so rates derived from it are lower bounds.
+    long[] sortedSince(long sinceMillis) {
+        long[] window;
+        synchronized (this) {
+            window = new long[size];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (recordedAt[i] >= sinceMillis) {
+                    window[count++] = latencies[i];
+                }
+            }
+            window = Arrays.copyOf(window, count);
+        }
+        Arrays.sort(window);
+        return window;
+    }
+
+    static double percentileMillis(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1_000_000.0;
+    }
+}
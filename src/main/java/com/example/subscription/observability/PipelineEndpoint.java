@@ -0,0 +1,63 @@
+package com.example.subscription.observability;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// GET /actuator/pipeline: per-stage latency percentiles plus what the Kafka consumer clients
+// report about lag and consumption rate (exported by the MicrometerConsumerListener)
+@Component
+@Endpoint(id = "pipeline")
+@RequiredArgsConstructor
+public class PipelineEndpoint {
+
+    private static final String RECORDS_LAG = "kafka.consumer.fetch.manager.records.lag";
+    private static final String RECORDS_CONSUMED_RATE = "kafka.consumer.fetch.manager.records.consumed.rate";
+
+    private final PipelineLatencyTracker pipelineLatencyTracker;
+    private final MeterRegistry meterRegistry;
+
+    @ReadOperation
+    public Map<String, Object> pipeline() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("stages", pipelineLatencyTracker.summarize());
+        result.put("consumerLag", consumerLag());
+        result.put("recordsConsumedPerSecond", recordsConsumedPerSecond());
+        return result;
+    }
+
+    private Map<String, Long> consumerLag() {
+        // One gauge per client and assigned partition; keep the worst reading per topic-partition
+        Map<String, Long> lag = new TreeMap<>();
+        for (Gauge gauge : meterRegistry.find(RECORDS_LAG).gauges()) {
+            String topic = gauge.getId().getTag("topic");
+            String partition = gauge.getId().getTag("partition");
+            double value = gauge.value();
+            if (topic == null || partition == null || Double.isNaN(value)) {
+                continue;
+            }
+            lag.merge(topic + "-" + partition, (long) value, Math::max);
+        }
+        return lag;
+    }
+
+    private Map<String, Double> recordsConsumedPerSecond() {
+        Map<String, Double> rates = new TreeMap<>();
+        for (Gauge gauge : meterRegistry.find(RECORDS_CONSUMED_RATE).gauges()) {
+            String topic = gauge.getId().getTag("topic");
+            double value = gauge.value();
+            if (topic == null || Double.isNaN(value)) {
+                continue;
+            }
+            rates.merge(topic, value, Double::sum);
+        }
+        return rates;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.subscription.observability;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.dto.event.BookKeepingEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Times each book keeping row through createdAt -> completedAt -> processedAt. Every sample goes to
+// a Micrometer histogram for alerting and to a bounded in-memory window for the pipeline endpoint.
+@Component
+@RequiredArgsConstructor
+public class PipelineLatencyTracker {
+
+    public enum Stage { CREATED_TO_COMPLETED, COMPLETED_TO_PROCESSED, CREATED_TO_PROCESSED }
+
+    private final BusinessMetrics businessMetrics;
+    private final AppProperties appProperties;
+
+    private final Map<Stage, LatencySampleWindow> windows = new ConcurrentHashMap<>();
+
+    public void recordCompleted(LocalDateTime createdAt, LocalDateTime completedAt) {
+        record(Stage.CREATED_TO_COMPLETED, createdAt, completedAt);
+    }
+
+    public void recordProcessed(BookKeepingEvent event, LocalDateTime processedAt) {
+        record(Stage.COMPLETED_TO_PROCESSED, event.completedAt(), processedAt);
+        record(Stage.CREATED_TO_PROCESSED, event.createdAt(), processedAt);
+    }
+
+    // stage -> window label -> summary, over every configured sliding window
+    public Map<String, Map<String, StageSummary>> summarize() {
+        long now = System.currentTimeMillis();
+        Map<String, Map<String, StageSummary>> result = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            LatencySampleWindow window = windows.get(stage);
+            Map<String, StageSummary> byWindow = new LinkedHashMap<>();
+            for (int seconds : appProperties.getObservability().getPipeline().getWindowsSeconds()) {
+                byWindow.put(seconds + "s", window != null
+                        ? StageSummary.of(window.sortedSince(now - seconds * 1000L), seconds)
+                        : StageSummary.EMPTY);
+            }
+            result.put(stage.name().toLowerCase(Locale.ROOT), byWindow);
+        }
+        return result;
+    }
+
+    private void record(Stage stage, LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null) {
+            return;
+        }
+        // Timestamps come from different hosts; clock skew must not produce negative latencies
+        long latencyNanos = Math.max(0, Duration.between(from, to).toNanos());
+        businessMetrics.recordPipelineStage(stage.name().toLowerCase(Locale.ROOT), latencyNanos);
+        windows.computeIfAbsent(stage,
+                        s -> new LatencySampleWindow(appProperties.getObservability().getPipeline().getSampleCapacity()))
+                .add(System.currentTimeMillis(), latencyNanos);
+    }
+
+    public record StageSummary(long count, double ratePerSecond, double p50Ms, double p99Ms, double maxMs) {
+        static final StageSummary EMPTY = new StageSummary(0, 0, 0, 0, 0);
+
+        static StageSummary of(long[] sorted, int windowSeconds) {
+            if (sorted.length == 0) {
+                return EMPTY;
+            }
+            return new StageSummary(
+                    sorted.length,
+                    (double) sorted.length / windowSeconds,
+                    LatencySampleWindow.percentileMillis(sorted, 50),
+                    LatencySampleWindow.percentileMillis(sorted, 99),
+                    sorted[sorted.length - 1] / 1_000_000.0);
+        }
+    }
+}
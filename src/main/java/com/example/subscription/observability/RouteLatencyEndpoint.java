@@ -0,0 +1,30 @@
+package com.example.subscription.observability;
+
+import com.example.subscription.config.AppProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// GET /actuator/routes: the slowest routes by p99 over the recent summary window. Fleet-wide
+// percentiles come from the http.route.duration histograms in Prometheus.
+@Component
+@Endpoint(id = "routes")
+@RequiredArgsConstructor
+public class RouteLatencyEndpoint {
+
+    private final RouteLatencyTracker routeLatencyTracker;
+    private final AppProperties appProperties;
+
+    @ReadOperation
+    public Map<String, Object> routes() {
+        AppProperties.Observability.Http config = appProperties.getObservability().getHttp();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("windowSeconds", config.getSummaryWindowSeconds());
+        result.put("slowest", routeLatencyTracker.slowest(config.getTopRoutes(), config.getSummaryWindowSeconds()));
+        return result;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.subscription.observability;
+
+import com.example.subscription.config.AppProperties;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Times requests per route template, never the raw URI, so /api/subscriptions/{id} stays one series
+// however many ids are requested. Every sample goes to an SLO-bucketed Micrometer timer for Prometheus
+// and to a bounded window per method and route for the routes endpoint.
+@Component
+@RequiredArgsConstructor
+public class RouteLatencyTracker {
+
+    // Requests no handler mapping matched, e.g. rejected before dispatch
+    static final String UNMATCHED_ROUTE = "UNMATCHED";
+    private static final String ANONYMOUS_ROLE = "anonymous";
+
+    private final BusinessMetrics businessMetrics;
+    private final AppProperties appProperties;
+
+    private final Map<String, LatencySampleWindow> windows = new ConcurrentHashMap<>();
+    private Duration[] serviceLevelObjectives;
+
+    @PostConstruct
+    public void init() {
+        serviceLevelObjectives = config().getSloBucketsMs().stream()
+                .map(Duration::ofMillis)
+                .toArray(Duration[]::new);
+    }
+
+    public void record(String method, String route, int status, String role, long latencyNanos) {
+        String routeTag = route != null ? route : UNMATCHED_ROUTE;
+        businessMetrics.recordRouteLatency(method, routeTag, status / 100 + "xx",
+                role != null ? role : ANONYMOUS_ROLE, latencyNanos, serviceLevelObjectives);
+
+        String key = method + " " + routeTag;
+        LatencySampleWindow window = windows.get(key);
+        if (window == null) {
+            if (windows.size() >= config().getMaxRoutes()) {
+                return;
+            }
+            window = windows.computeIfAbsent(key, k -> new LatencySampleWindow(config().getSampleCapacity()));
+        }
+        window.add(System.currentTimeMillis(), latencyNanos);
+    }
+
+    // The routes with the highest p99 over the last windowSeconds, slowest first
+    public List<RouteSummary> slowest(int limit, int windowSeconds) {
+        long since = System.currentTimeMillis() - windowSeconds * 1000L;
+        List<RouteSummary> summaries = new ArrayList<>();
+        windows.forEach((route, window) -> {
+            long[] sorted = window.sortedSince(since);
+            if (sorted.length > 0) {
+                summaries.add(new RouteSummary(
+                        route,
+                        sorted.length,
+                        (double) sorted.length / windowSeconds,
+                        LatencySampleWindow.percentileMillis(sorted, 50),
+                        LatencySampleWindow.percentileMillis(sorted, 95),
+                        LatencySampleWindow.percentileMillis(sorted, 99),
+                        sorted[sorted.length - 1] / 1_000_000.0));
+            }
+        });
+        summaries.sort(Comparator.comparingDouble(RouteSummary::p99Ms).reversed());
+        return List.copyOf(summaries.subList(0, Math.min(limit, summaries.size())));
+    }
+
+    private AppProperties.Observability.Http config() {
+        return appProperties.getObservability().getHttp();
+    }
+
+    public record RouteSummary(String route, long count, double ratePerSecond,
+                               double p50Ms, double p95Ms, double p99Ms, double maxMs) {}
+}
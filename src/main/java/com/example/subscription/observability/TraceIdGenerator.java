@@ -0,0 +1,91 @@
+package com.example.subscription.observability;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.repository.JobLeaseRepository;
+import com.example.subscription.scheduler.JobCoordinator;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Correlation and span ids without SecureRandom: 41 bits of milliseconds since 2025-01-01, 10 bits of
+// node id and 12 bits of sequence, handed out with one CAS. Ids only ever increase on a node: when the
+// clock stands still or steps back the sequence keeps counting, and a full sequence carries into the
+// next millisecond instead of waiting for it. Unique across nodes only while node ids are: unless one is
+// configured, each instance claims a free slot in scheduler_nodes, kept alive by the scheduler heartbeat.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TraceIdGenerator {
+
+    static final long EPOCH_MILLIS = 1_735_689_600_000L;
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    private static final HexFormat HEX = HexFormat.of();
+
+    private static final int CLAIM_ATTEMPTS = 5;
+
+    private final AppProperties appProperties;
+    private final JobCoordinator jobCoordinator;
+    private final JobLeaseRepository jobLeaseRepository;
+
+    // Milliseconds since the epoch above, shifted left by SEQUENCE_BITS, plus the sequence
+    private final AtomicLong state = new AtomicLong();
+    private long nodeBits;
+
+    @PostConstruct
+    public void init() {
+        int nodeId = appProperties.getObservability().getIds().getNodeId();
+        if (nodeId > MAX_NODE_ID) {
+            throw new IllegalStateException("app.observability.ids.node-id must be between 0 and " + MAX_NODE_ID);
+        }
+        if (nodeId < 0) {
+            nodeId = claimNodeId();
+        }
+        nodeBits = (long) nodeId << SEQUENCE_BITS;
+        log.info("Trace id generator started: nodeId={}", nodeId);
+    }
+
+    private int claimNodeId() {
+        AppProperties.Scheduling scheduling = appProperties.getScheduling();
+        if (!scheduling.isEnabled()) {
+            // Without coordination every job already runs on this instance alone, so it is the only one
+            log.info("Scheduler coordination disabled, using trace id node 0");
+            return 0;
+        }
+        // Same staleness after which the heartbeat purges a node, so a slot is never freed under a live one
+        int staleAfterSeconds = scheduling.getNodeTtlSeconds() * 10;
+        for (int attempt = 1; attempt <= CLAIM_ATTEMPTS; attempt++) {
+            try {
+                return jobLeaseRepository.claimTraceSlot(jobCoordinator.nodeId(), MAX_NODE_ID, staleAfterSeconds)
+                        .orElseThrow(() -> new IllegalStateException(
+                                "All " + (MAX_NODE_ID + 1) + " trace id node slots are held by live instances"));
+            } catch (DuplicateKeyException e) {
+                log.debug("Trace id node slot taken by another instance, retrying: attempt={}", attempt);
+            }
+        }
+        throw new IllegalStateException("Could not claim a trace id node slot after " + CLAIM_ATTEMPTS + " attempts");
+    }
+
+    public long nextId() {
+        while (true) {
+            long current = state.get();
+            long now = System.currentTimeMillis() - EPOCH_MILLIS;
+            long next = now > current >>> SEQUENCE_BITS ? now << SEQUENCE_BITS : current + 1;
+            if (state.compareAndSet(current, next)) {
+                return (next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS) | nodeBits | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    // 16 lower-case hex digits, so ids sort as text in the same order they were issued
+    public String nextHex() {
+        return HEX.toHexDigits(nextId());
+    }
+}
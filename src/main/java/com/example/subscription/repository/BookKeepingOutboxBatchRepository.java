@@ -0,0 +1,58 @@
+package com.example.subscription.repository;
+
+import com.example.subscription.model.BookKeepingOutbox;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+
+// JDBC batch writes for book_keeping_outbox, for producers that enqueue many events in one transaction
+@Repository
+@RequiredArgsConstructor
+public class BookKeepingOutboxBatchRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO book_keeping_outbox (book_keeping_id, message_key, payload, created_at, attempts) " +
+            "VALUES (?, ?, ?, ?, 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void insertAll(List<BookKeepingOutbox> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_SQL, new String[] {"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        BookKeepingOutbox row = rows.get(i);
+                        ps.setLong(1, row.getBookKeepingId());
+                        ps.setString(2, row.getMessageKey());
+                        ps.setBytes(3, row.getPayload());
+                        ps.setTimestamp(4, Timestamp.valueOf(row.getCreatedAt()));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return rows.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < rows.size(); i++) {
+            rows.get(i).setId(((Number) keys.get(i).get("id")).longValue());
+        }
+    }
+}
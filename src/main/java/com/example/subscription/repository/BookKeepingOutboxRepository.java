@@ -0,0 +1,58 @@
+package com.example.subscription.repository;
+
+import com.example.subscription.model.BookKeepingOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface BookKeepingOutboxRepository extends JpaRepository<BookKeepingOutbox, Long> {
+    
+    // Claims the oldest unsent rows for the current transaction; rows locked by another relay are skipped,
+    // and so are rows that already used up their send attempts
+    @Query(value = "SELECT * FROM book_keeping_outbox WHERE sent_at IS NULL AND attempts < :maxAttempts " +
+                   "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<BookKeepingOutbox> claimUnsent(@Param("limit") int limit, @Param("maxAttempts") int maxAttempts);
+    
+    // Serializes relay batches across instances so per-user order survives multiple relays
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:lockKey)", nativeQuery = true)
+    boolean tryAcquireRelayLock(@Param("lockKey") long lockKey);
+    
+    @Modifying
+    @Query("UPDATE BookKeepingOutbox o SET o.sentAt = :sentAt WHERE o.id IN :ids")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("sentAt") LocalDateTime sentAt);
+    
+    @Modifying
+    @Query("UPDATE BookKeepingOutbox o SET o.attempts = o.attempts + 1, o.lastError = :error WHERE o.id = :id")
+    int recordFailure(@Param("id") Long id, @Param("error") String error);
+    
+    // Entries whose event is still queued, or was sent after the given time and may not be consumed yet;
+    // a row that used up its send attempts is no longer queued
+    @Query("SELECT o.bookKeepingId FROM BookKeepingOutbox o WHERE o.bookKeepingId IN :ids " +
+           "AND ((o.sentAt IS NULL AND o.attempts < :maxAttempts) OR o.sentAt > :sentAfter)")
+    List<Long> findInFlightBookKeepingIds(@Param("ids") Collection<Long> ids, @Param("sentAfter") LocalDateTime sentAfter,
+                                          @Param("maxAttempts") int maxAttempts);
+    
+    // Abandoned rows superseded by a fresh outbox row for the same entry
+    @Modifying
+    @Query("DELETE FROM BookKeepingOutbox o WHERE o.bookKeepingId IN :ids " +
+           "AND o.sentAt IS NULL AND o.attempts >= :maxAttempts")
+    int deleteAbandoned(@Param("ids") Collection<Long> ids, @Param("maxAttempts") int maxAttempts);
+    
+    long countBySentAtIsNull();
+    
+    long countBySentAtIsNullAndAttemptsGreaterThanEqual(int attempts);
+    
+    // Bounded delete so a large backlog of sent rows is purged in short transactions
+    @Modifying
+    @Query(value = "DELETE FROM book_keeping_outbox WHERE id IN (" +
+                   "SELECT id FROM book_keeping_outbox WHERE sent_at < :cutoff ORDER BY sent_at LIMIT :limit)",
+           nativeQuery = true)
+    int purgeSentBefore(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
+}
@@ -1,10 +1,15 @@
 package com.example.subscription.repository;
 
 import com.example.subscription.model.BookKeeping;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,7 +20,55 @@ public interface BookKeepingRepository extends JpaRepository<BookKeeping, Long>
     
     boolean existsByIdempotencyKey(String idempotencyKey);
     
-    @Query("SELECT bk FROM BookKeeping bk WHERE bk.status = 'COMPLETED' AND bk.processedAt IS NULL ORDER BY bk.completedAt ASC")
-    List<BookKeeping> findPendingCompletedEntries();
+    boolean existsByIdAndStatus(Long id, String status);
+    
+    @Query("SELECT bk.id FROM BookKeeping bk WHERE bk.id IN :ids AND bk.status = :status")
+    List<Long> findIdsByIdInAndStatus(@Param("ids") Collection<Long> ids, @Param("status") String status);
+    
+    // Keyset page over COMPLETED rows never marked PROCESSED, oldest completion first (idx_book_keeping_unprocessed)
+    @Query("SELECT bk FROM BookKeeping bk WHERE bk.status = 'COMPLETED' AND bk.processedAt IS NULL " +
+           "AND bk.completedAt < :cutoff AND (bk.completedAt > :afterCompletedAt " +
+           "OR (bk.completedAt = :afterCompletedAt AND bk.id > :afterId)) " +
+           "ORDER BY bk.completedAt ASC, bk.id ASC")
+    List<BookKeeping> findUnprocessedCompletedAfter(
+            @Param("cutoff") LocalDateTime cutoff,
+            @Param("afterCompletedAt") LocalDateTime afterCompletedAt,
+            @Param("afterId") Long afterId,
+            Pageable pageable);
+    
+    @Query("SELECT MIN(bk.completedAt) FROM BookKeeping bk WHERE bk.status = 'COMPLETED' AND bk.processedAt IS NULL")
+    LocalDateTime findOldestUnprocessedCompletedAt();
+    
+    // Keyset page over INITIATED rows older than the cutoff (idx_book_keeping_status_created + PK). Deferred
+    // payments were never submitted, so there is nothing to look up until the drainer sends them.
+    @Query("SELECT bk FROM BookKeeping bk WHERE bk.status = 'INITIATED' AND bk.createdAt < :cutoff " +
+           "AND bk.paymentDeferredAt IS NULL AND bk.id > :afterId ORDER BY bk.id ASC")
+    List<BookKeeping> findStaleInitiatedAfter(
+            @Param("cutoff") LocalDateTime cutoff,
+            @Param("afterId") Long afterId,
+            Pageable pageable);
+    
+    @Query("SELECT MIN(bk.createdAt) FROM BookKeeping bk WHERE bk.status = 'INITIATED'")
+    LocalDateTime findOldestInitiatedCreatedAt();
+    
+    @Modifying
+    @Query("UPDATE BookKeeping bk SET bk.paymentReferenceId = :paymentReferenceId " +
+           "WHERE bk.id = :id AND bk.status = 'INITIATED' AND bk.paymentReferenceId IS NULL")
+    int recordPaymentReference(@Param("id") Long id, @Param("paymentReferenceId") String paymentReferenceId);
+    
+    @Modifying
+    @Query("UPDATE BookKeeping bk SET bk.paymentDeferredAt = :deferredAt WHERE bk.id = :id AND bk.status = 'INITIATED'")
+    int markPaymentDeferred(@Param("id") Long id, @Param("deferredAt") LocalDateTime deferredAt);
+    
+    @Modifying
+    // Only the caller that flips payment_deferred_at back to NULL gets 1; concurrent drainers get 0
+    @Query("UPDATE BookKeeping bk SET bk.paymentDeferredAt = NULL " +
+           "WHERE bk.id = :id AND bk.status = 'INITIATED' AND bk.paymentDeferredAt IS NOT NULL")
+    int clearPaymentDeferred(@Param("id") Long id);
+    
+    @Query("SELECT bk FROM BookKeeping bk WHERE bk.status = 'INITIATED' AND bk.paymentDeferredAt IS NOT NULL " +
+           "AND bk.id > :afterId ORDER BY bk.id ASC")
+    List<BookKeeping> findDeferredPaymentsAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    long countByStatusAndPaymentDeferredAtIsNotNull(String status);
 }
-
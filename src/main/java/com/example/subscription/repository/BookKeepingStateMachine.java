@@ -0,0 +1,130 @@
+package com.example.subscription.repository;
+
+import com.example.subscription.model.BookKeeping;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+// Status transitions for book_keeping as single guarded UPDATEs. Each statement only matches rows
+// still in the expected source status, so replays and races change nothing and report 0 rows;
+// nothing is read first and no detached entity is ever written back.
+//
+//   INITIATED -> COMPLETED   complete
+//   INITIATED -> FAILED      fail / failAll
+//   COMPLETED -> PROCESSED   markProcessed
+//   COMPLETED -> FAILED      recordMaterializationFailure (once retries are exhausted)
+//   FAILED    -> COMPLETED   resetForReplay (dead-lettered rows only; retry_count starts over)
+@Repository
+@RequiredArgsConstructor
+public class BookKeepingStateMachine {
+
+    private static final String COMPLETE_SQL =
+            "UPDATE book_keeping SET status = 'COMPLETED', payment_reference_id = ?, completed_at = ?, " +
+            "payment_deferred_at = NULL WHERE id = ? AND status = 'INITIATED' RETURNING *";
+
+    private static final String FAIL_SQL =
+            "UPDATE book_keeping SET status = 'FAILED', error_message = ? " +
+            "WHERE id = ANY(?) AND status = 'INITIATED'";
+
+    private static final String MARK_PROCESSED_SQL =
+            "UPDATE book_keeping SET status = 'PROCESSED', processed_at = ? " +
+            "WHERE id = ANY(?) AND status = 'COMPLETED'";
+
+    private static final String MATERIALIZATION_FAILURE_SQL =
+            "UPDATE book_keeping SET retry_count = retry_count + 1, " +
+            "status = CASE WHEN retry_count + 1 >= ? THEN 'FAILED' ELSE status END, " +
+            "error_message = CASE WHEN retry_count + 1 >= ? THEN ? ELSE error_message END " +
+            "WHERE id = ? AND status = 'COMPLETED'";
+
+    // Retries start over with the replayed event, so the failure count does too
+    private static final String RESET_FOR_REPLAY_SQL =
+            "UPDATE book_keeping SET status = 'COMPLETED', retry_count = 0, error_message = NULL " +
+            "WHERE id = ANY(?) AND status = 'FAILED' AND completed_at IS NOT NULL";
+
+    static final RowMapper<BookKeeping> ROW_MAPPER = BookKeepingStateMachine::mapRow;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Returns the completed row so the caller can publish it without selecting it again
+    public Optional<BookKeeping> complete(long id, String paymentReferenceId, LocalDateTime completedAt) {
+        List<BookKeeping> rows = jdbcTemplate.query(COMPLETE_SQL, ROW_MAPPER,
+                paymentReferenceId, Timestamp.valueOf(completedAt), id);
+        return rows.stream().findFirst();
+    }
+
+    public boolean fail(long id, String errorMessage) {
+        return failAll(List.of(id), errorMessage) > 0;
+    }
+
+    public int failAll(Collection<Long> ids, String errorMessage) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update(FAIL_SQL, ps -> {
+            ps.setString(1, errorMessage);
+            ps.setArray(2, idArray(ps.getConnection(), ids));
+        });
+    }
+
+    public int markProcessed(Collection<Long> ids, LocalDateTime processedAt) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update(MARK_PROCESSED_SQL, ps -> {
+            ps.setTimestamp(1, Timestamp.valueOf(processedAt));
+            ps.setArray(2, idArray(ps.getConnection(), ids));
+        });
+    }
+
+    // Counts a failed materialization attempt; the row reaches FAILED on attempt maxRetries
+    public int recordMaterializationFailure(long id, String errorMessage, int maxRetries) {
+        return jdbcTemplate.update(MATERIALIZATION_FAILURE_SQL, maxRetries, maxRetries, errorMessage, id);
+    }
+
+    // Payment failures (never completed) are left alone
+    public boolean resetForReplay(long id) {
+        return jdbcTemplate.update(RESET_FOR_REPLAY_SQL,
+                ps -> ps.setArray(1, idArray(ps.getConnection(), List.of(id)))) > 0;
+    }
+
+    private static Array idArray(Connection connection, Collection<Long> ids) throws SQLException {
+        return connection.createArrayOf("bigint", ids.toArray());
+    }
+
+    private static BookKeeping mapRow(ResultSet rs, int rowNum) throws SQLException {
+        BookKeeping bookKeeping = new BookKeeping();
+        bookKeeping.setId(rs.getLong("id"));
+        bookKeeping.setIdempotencyKey(rs.getString("idempotency_key"));
+        bookKeeping.setUserId(rs.getLong("user_id"));
+        bookKeeping.setSubscriptionPlanId(rs.getLong("subscription_plan_id"));
+        bookKeeping.setSubscriptionAccountId(rs.getLong("subscription_account_id"));
+        bookKeeping.setDurationTypeId(rs.getLong("duration_type_id"));
+        bookKeeping.setEventType(rs.getString("event_type"));
+        bookKeeping.setStatus(rs.getString("status"));
+        bookKeeping.setBeforeState(rs.getString("before_state"));
+        bookKeeping.setAfterState(rs.getString("after_state"));
+        bookKeeping.setPaymentReferenceId(rs.getString("payment_reference_id"));
+        bookKeeping.setCreatedAt(toLocalDateTime(rs.getTimestamp("created_at")));
+        bookKeeping.setCompletedAt(toLocalDateTime(rs.getTimestamp("completed_at")));
+        bookKeeping.setProcessedAt(toLocalDateTime(rs.getTimestamp("processed_at")));
+        bookKeeping.setRetryCount(rs.getInt("retry_count"));
+        bookKeeping.setErrorMessage(rs.getString("error_message"));
+        bookKeeping.setPaymentDeferredAt(toLocalDateTime(rs.getTimestamp("payment_deferred_at")));
+        return bookKeeping;
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
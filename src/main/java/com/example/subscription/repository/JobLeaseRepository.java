@@ -0,0 +1,105 @@
+package com.example.subscription.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+// Heartbeats and job leases for scheduler coordination. Every time comparison uses the database
+// clock, so clock skew between instances cannot make two of them hold the same lease.
+@Repository
+@RequiredArgsConstructor
+public class JobLeaseRepository {
+
+    private static final String HEARTBEAT_SQL =
+            "INSERT INTO scheduler_nodes (node_id, started_at, heartbeat_at) VALUES (?, now(), now()) " +
+            "ON CONFLICT (node_id) DO UPDATE SET heartbeat_at = now()";
+
+    private static final String LIVE_NODES_SQL =
+            "SELECT node_id FROM scheduler_nodes WHERE heartbeat_at > now() - ? * interval '1 second' ORDER BY node_id";
+
+    // Free for this run: the lease lapsed and the shard was not already completed for the same run
+    private static final String ACQUIRE_FOR_RUN_SQL =
+            "INSERT INTO job_leases (job_name, shard, owner, run_key, acquired_at, lease_until) " +
+            "VALUES (?, ?, ?, ?, now(), now() + ? * interval '1 second') " +
+            "ON CONFLICT (job_name, shard) DO UPDATE SET owner = EXCLUDED.owner, run_key = EXCLUDED.run_key, " +
+            "acquired_at = EXCLUDED.acquired_at, lease_until = EXCLUDED.lease_until, completed_at = NULL " +
+            "WHERE job_leases.lease_until < now() " +
+            "AND (job_leases.completed_at IS NULL OR job_leases.run_key IS DISTINCT FROM EXCLUDED.run_key) " +
+            "RETURNING owner";
+
+    // Free for a leader run: the lease lapsed and the last completed run is at least minInterval old
+    private static final String ACQUIRE_AFTER_INTERVAL_SQL =
+            "INSERT INTO job_leases (job_name, shard, owner, run_key, acquired_at, lease_until) " +
+            "VALUES (?, 0, ?, NULL, now(), now() + ? * interval '1 second') " +
+            "ON CONFLICT (job_name, shard) DO UPDATE SET owner = EXCLUDED.owner, run_key = NULL, " +
+            "acquired_at = EXCLUDED.acquired_at, lease_until = EXCLUDED.lease_until, completed_at = NULL " +
+            "WHERE job_leases.lease_until < now() " +
+            "AND (job_leases.completed_at IS NULL OR job_leases.completed_at < now() - ? * interval '1 second') " +
+            "RETURNING owner";
+
+    // Lowest slot no registered instance holds; upserts this node's row, so the heartbeat keeps the slot alive
+    private static final String CLAIM_TRACE_SLOT_SQL =
+            "WITH free AS (SELECT s FROM generate_series(0, ?) s " +
+            "WHERE NOT EXISTS (SELECT 1 FROM scheduler_nodes n WHERE n.trace_slot = s) ORDER BY s LIMIT 1) " +
+            "INSERT INTO scheduler_nodes (node_id, started_at, heartbeat_at, trace_slot) " +
+            "SELECT ?, now(), now(), s FROM free " +
+            "ON CONFLICT (node_id) DO UPDATE SET trace_slot = EXCLUDED.trace_slot, heartbeat_at = now() " +
+            "RETURNING trace_slot";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void heartbeat(String nodeId) {
+        jdbcTemplate.update(HEARTBEAT_SQL, nodeId);
+    }
+
+    public List<String> findLiveNodes(int ttlSeconds) {
+        return jdbcTemplate.queryForList(LIVE_NODES_SQL, String.class, ttlSeconds);
+    }
+
+    public void removeNode(String nodeId) {
+        jdbcTemplate.update("DELETE FROM scheduler_nodes WHERE node_id = ?", nodeId);
+    }
+
+    // Frees the slots of instances that stopped heartbeating, then claims one; empty when all are taken.
+    // Two instances racing for the same slot hit the unique constraint and the loser gets DuplicateKeyException.
+    public Optional<Integer> claimTraceSlot(String nodeId, int maxSlot, int staleAfterSeconds) {
+        jdbcTemplate.update("UPDATE scheduler_nodes SET trace_slot = NULL WHERE trace_slot IS NOT NULL " +
+                "AND node_id <> ? AND heartbeat_at < now() - ? * interval '1 second'", nodeId, staleAfterSeconds);
+        return jdbcTemplate.queryForList(CLAIM_TRACE_SLOT_SQL, Integer.class, maxSlot, nodeId).stream().findFirst();
+    }
+
+    public int purgeDeadNodes(int olderThanSeconds) {
+        return jdbcTemplate.update(
+                "DELETE FROM scheduler_nodes WHERE heartbeat_at < now() - ? * interval '1 second'", olderThanSeconds);
+    }
+
+    public boolean tryAcquireForRun(String jobName, int shard, String owner, String runKey, int leaseSeconds) {
+        return !jdbcTemplate.queryForList(ACQUIRE_FOR_RUN_SQL, String.class,
+                jobName, shard, owner, runKey, leaseSeconds).isEmpty();
+    }
+
+    public boolean tryAcquireAfterInterval(String jobName, String owner, int leaseSeconds, long minIntervalSeconds) {
+        return !jdbcTemplate.queryForList(ACQUIRE_AFTER_INTERVAL_SQL, String.class,
+                jobName, owner, leaseSeconds, minIntervalSeconds).isEmpty();
+    }
+
+    // Extends every unfinished lease the node still holds
+    public int renew(String owner, int leaseSeconds) {
+        return jdbcTemplate.update("UPDATE job_leases SET lease_until = now() + ? * interval '1 second' " +
+                "WHERE owner = ? AND completed_at IS NULL AND lease_until >= now()", leaseSeconds, owner);
+    }
+
+    public void complete(String jobName, int shard, String owner) {
+        jdbcTemplate.update("UPDATE job_leases SET completed_at = now(), lease_until = now() " +
+                "WHERE job_name = ? AND shard = ? AND owner = ?", jobName, shard, owner);
+    }
+
+    // Gives an unfinished shard back so another instance can run it for the same run
+    public void release(String jobName, int shard, String owner) {
+        jdbcTemplate.update("UPDATE job_leases SET lease_until = now() " +
+                "WHERE job_name = ? AND shard = ? AND owner = ? AND completed_at IS NULL", jobName, shard, owner);
+    }
+}
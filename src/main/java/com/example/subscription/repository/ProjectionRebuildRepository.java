@@ -0,0 +1,301 @@
+package com.example.subscription.repository;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.dto.event.BookKeepingEvent;
+import com.example.subscription.model.UserSubscription;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+// JDBC side of the user_subscriptions rebuild: streaming reads of the book_keeping log, bulk writes
+// into the user_subscriptions_rebuild shadow table, per-shard checkpoints and the final swap.
+@Repository
+public class ProjectionRebuildRepository {
+
+    public static final String SHADOW_TABLE = "user_subscriptions_rebuild";
+
+    // Materialization inputs only; the after_state fields are unpacked by Postgres, not Jackson
+    private static final String EVENT_COLUMNS =
+            "SELECT id, idempotency_key, user_id, subscription_plan_id, subscription_account_id, duration_type_id, " +
+            "event_type, status, after_state->>'start_date' AS start_date, after_state->>'end_date' AS end_date, " +
+            "after_state->>'status' AS subscription_status, created_at, completed_at FROM book_keeping ";
+
+    private static final String SHARD_SQL = EVENT_COLUMNS +
+            "WHERE status IN ('COMPLETED', 'PROCESSED') AND id <= ? AND mod(user_id, ?) = ? AND user_id > ? " +
+            "ORDER BY user_id, id";
+
+    private static final String USERS_SQL = EVENT_COLUMNS +
+            "WHERE status IN ('COMPLETED', 'PROCESSED') AND user_id = ANY(?) ORDER BY user_id, id";
+
+    private static final String INSERT_SHADOW_SQL =
+            "INSERT INTO " + SHADOW_TABLE + " (user_id, subscription_account_id, duration_type_id, " +
+            "start_date, end_date, status, created_at, last_updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Gives each rebuilt row the id of the live row it reproduces, so ids handed out to clients and
+    // the expiry index survive the rebuild. Rows pair up per (user, account, duration type, start date)
+    // in creation order; a rebuilt row with no live counterpart keeps its new id. Both tables draw
+    // from the same sequence, so a carried-over id never collides with a new one.
+    private static final String CARRY_OVER_IDS_SQL =
+            "UPDATE " + SHADOW_TABLE + " r SET id = live.id " +
+            "FROM (SELECT id, user_id, subscription_account_id, duration_type_id, start_date, " +
+            "      row_number() OVER (PARTITION BY user_id, subscription_account_id, duration_type_id, start_date " +
+            "                         ORDER BY id) AS rn FROM user_subscriptions) live, " +
+            "     (SELECT id, user_id, subscription_account_id, duration_type_id, start_date, " +
+            "      row_number() OVER (PARTITION BY user_id, subscription_account_id, duration_type_id, start_date " +
+            "                         ORDER BY id) AS rn FROM " + SHADOW_TABLE + ") shadow " +
+            "WHERE r.id = shadow.id AND live.user_id = shadow.user_id " +
+            "AND live.subscription_account_id = shadow.subscription_account_id " +
+            "AND live.duration_type_id = shadow.duration_type_id AND live.start_date = shadow.start_date " +
+            "AND live.rn = shadow.rn";
+
+    // Built after the bulk load and renamed to their schema.sql names by the swap; keep in step with schema.sql
+    private static final List<IndexDefinition> INDEXES = List.of(
+            new IndexDefinition("idx_user_subscriptions_unique_active",
+                    "CREATE UNIQUE INDEX %s ON %s(user_id, subscription_account_id, duration_type_id) WHERE status = 'ACTIVE'"),
+            new IndexDefinition("idx_user_subscriptions_user_id", "CREATE INDEX %s ON %s(user_id)"),
+            new IndexDefinition("idx_user_subscriptions_account_id", "CREATE INDEX %s ON %s(subscription_account_id)"),
+            new IndexDefinition("idx_user_subscriptions_duration_type_id", "CREATE INDEX %s ON %s(duration_type_id)"),
+            new IndexDefinition("idx_user_subscriptions_status", "CREATE INDEX %s ON %s(status)"),
+            new IndexDefinition("idx_user_subscriptions_user_status", "CREATE INDEX %s ON %s(user_id, status)"),
+            new IndexDefinition("idx_user_subscriptions_end_date", "CREATE INDEX %s ON %s(end_date, id) WHERE status = 'ACTIVE'"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+
+    public ProjectionRebuildRepository(JdbcTemplate jdbcTemplate, AppProperties appProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Postgres only streams through a cursor with a fetch size inside a transaction
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(appProperties.getProjection().getRebuild().getFetchSize());
+    }
+
+    public record Checkpoint(long rebuildId, int shard, int shardCount, long highWaterMark, LocalDateTime startedAt,
+                             long lastUserId, long eventsRead, long rowsWritten, LocalDateTime completedAt) {}
+
+    private record IndexDefinition(String name, String ddl) {}
+
+    public long maxBookKeepingId() {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM book_keeping", Long.class);
+        return max != null ? max : 0L;
+    }
+
+    // Streams one shard's users, each user's events in log order, resuming after afterUserId
+    public void streamShard(int shard, int shardCount, long highWaterMark, long afterUserId,
+                            Consumer<BookKeepingEvent> handler) {
+        streamingJdbcTemplate.query(SHARD_SQL,
+                ps -> {
+                    ps.setLong(1, highWaterMark);
+                    ps.setInt(2, shardCount);
+                    ps.setInt(3, shard);
+                    ps.setLong(4, afterUserId);
+                },
+                rs -> {
+                    handler.accept(mapEvent(rs));
+                });
+    }
+
+    public void streamUsers(Collection<Long> userIds, Consumer<BookKeepingEvent> handler) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        streamingJdbcTemplate.query(USERS_SQL,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", userIds.toArray())),
+                rs -> {
+                    handler.accept(mapEvent(rs));
+                });
+    }
+
+    // Users whose history may have changed after their shard read it: new events, entries completed
+    // since the run started, and entries still waiting for the consumer
+    public List<Long> findCatchUpUserIds(long highWaterMark, LocalDateTime startedAt) {
+        return jdbcTemplate.queryForList(
+                "SELECT DISTINCT user_id FROM book_keeping WHERE status IN ('COMPLETED', 'PROCESSED') " +
+                "AND (id > ? OR completed_at >= ? OR status = 'COMPLETED')",
+                Long.class, highWaterMark, Timestamp.valueOf(startedAt));
+    }
+
+    public void createShadowTable() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + SHADOW_TABLE);
+        // Defaults (the shared id sequence) and CHECK constraints only; indexes and keys come after the load
+        jdbcTemplate.execute("CREATE TABLE " + SHADOW_TABLE +
+                " (LIKE user_subscriptions INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+    }
+
+    public void dropShadowTable() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + SHADOW_TABLE);
+    }
+
+    public boolean shadowTableExists() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT to_regclass(?) IS NOT NULL", Boolean.class, SHADOW_TABLE));
+    }
+
+    public int insertShadow(List<UserSubscription> subscriptions) {
+        if (subscriptions.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SHADOW_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                UserSubscription subscription = subscriptions.get(i);
+                ps.setLong(1, subscription.getUserId());
+                ps.setLong(2, subscription.getSubscriptionAccountId());
+                ps.setLong(3, subscription.getDurationTypeId());
+                ps.setDate(4, Date.valueOf(subscription.getStartDate()));
+                ps.setDate(5, Date.valueOf(subscription.getEndDate()));
+                ps.setString(6, subscription.getStatus());
+                ps.setTimestamp(7, Timestamp.valueOf(subscription.getCreatedAt()));
+                ps.setTimestamp(8, Timestamp.valueOf(subscription.getLastUpdatedAt()));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return subscriptions.size();
+            }
+        });
+        return subscriptions.size();
+    }
+
+    public void deleteShadowRowsForUsers(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update("DELETE FROM " + SHADOW_TABLE + " WHERE user_id = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", userIds.toArray())));
+    }
+
+    // Keys, indexes and the trigger are built once over the loaded table rather than maintained per row.
+    // Safe to repeat when a rebuild resumes after this step.
+    public void finalizeShadowTable() {
+        jdbcTemplate.execute("ALTER TABLE " + SHADOW_TABLE + " DROP CONSTRAINT IF EXISTS " + SHADOW_TABLE + "_pkey");
+        jdbcTemplate.execute("ALTER TABLE " + SHADOW_TABLE + " ADD CONSTRAINT " + SHADOW_TABLE + "_pkey PRIMARY KEY (id)");
+        for (IndexDefinition index : INDEXES) {
+            jdbcTemplate.execute(String.format(index.ddl(), "IF NOT EXISTS " + shadowName(index.name()), SHADOW_TABLE));
+        }
+        jdbcTemplate.execute("ALTER TABLE " + SHADOW_TABLE + " DROP CONSTRAINT IF EXISTS fk_user_subscriptions_account");
+        jdbcTemplate.execute("ALTER TABLE " + SHADOW_TABLE + " ADD CONSTRAINT fk_user_subscriptions_account " +
+                "FOREIGN KEY (subscription_account_id) REFERENCES subscription_accounts(id) ON DELETE RESTRICT");
+        jdbcTemplate.execute("ALTER TABLE " + SHADOW_TABLE + " DROP CONSTRAINT IF EXISTS fk_user_subscriptions_duration_type");
+        jdbcTemplate.execute("ALTER TABLE " + SHADOW_TABLE + " ADD CONSTRAINT fk_user_subscriptions_duration_type " +
+                "FOREIGN KEY (duration_type_id) REFERENCES duration_types(id) ON DELETE RESTRICT");
+        jdbcTemplate.execute("DROP TRIGGER IF EXISTS update_user_subscriptions_updated_at ON " + SHADOW_TABLE);
+        jdbcTemplate.execute("CREATE TRIGGER update_user_subscriptions_updated_at BEFORE UPDATE ON " + SHADOW_TABLE +
+                " FOR EACH ROW EXECUTE FUNCTION update_last_updated_at_column()");
+    }
+
+    // First statement of the catch-up transaction: consumers on every instance block here, so nothing
+    // materializes into the old table between the catch-up read and the swap
+    public void lockLiveTable() {
+        jdbcTemplate.execute("LOCK TABLE user_subscriptions IN ACCESS EXCLUSIVE MODE");
+    }
+
+    // Must run inside the caller's transaction, after lockLiveTable: readers see either the old table or the new one
+    public int swapShadowTable() {
+        int carriedOver = jdbcTemplate.update(CARRY_OVER_IDS_SQL);
+        jdbcTemplate.execute("ALTER TABLE user_subscriptions RENAME TO user_subscriptions_old");
+        jdbcTemplate.execute("ALTER TABLE " + SHADOW_TABLE + " RENAME TO user_subscriptions");
+        // The id sequence belongs to the old table's column and would be dropped with it
+        jdbcTemplate.execute("ALTER SEQUENCE user_subscriptions_id_seq OWNED BY user_subscriptions.id");
+        jdbcTemplate.execute("DROP TABLE user_subscriptions_old");
+        jdbcTemplate.execute("ALTER INDEX " + SHADOW_TABLE + "_pkey RENAME TO user_subscriptions_pkey");
+        for (IndexDefinition index : INDEXES) {
+            jdbcTemplate.execute("ALTER INDEX " + shadowName(index.name()) + " RENAME TO " + index.name());
+        }
+        return carriedOver;
+    }
+
+    public List<Checkpoint> findLatestCheckpoints() {
+        return jdbcTemplate.query(
+                "SELECT * FROM projection_rebuild_checkpoints " +
+                "WHERE rebuild_id = (SELECT MAX(rebuild_id) FROM projection_rebuild_checkpoints) ORDER BY shard",
+                (rs, rowNum) -> new Checkpoint(
+                        rs.getLong("rebuild_id"),
+                        rs.getInt("shard"),
+                        rs.getInt("shard_count"),
+                        rs.getLong("high_water_mark"),
+                        rs.getTimestamp("started_at").toLocalDateTime(),
+                        rs.getLong("last_user_id"),
+                        rs.getLong("events_read"),
+                        rs.getLong("rows_written"),
+                        toLocalDateTime(rs.getTimestamp("completed_at"))));
+    }
+
+    public void createCheckpoints(long rebuildId, int shardCount, long highWaterMark, LocalDateTime startedAt) {
+        jdbcTemplate.update("DELETE FROM projection_rebuild_checkpoints");
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO projection_rebuild_checkpoints (rebuild_id, shard, shard_count, high_water_mark, started_at) " +
+                "VALUES (?, ?, ?, ?, ?)",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setLong(1, rebuildId);
+                        ps.setInt(2, i);
+                        ps.setInt(3, shardCount);
+                        ps.setLong(4, highWaterMark);
+                        ps.setTimestamp(5, Timestamp.valueOf(startedAt));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return shardCount;
+                    }
+                });
+    }
+
+    // Written in the same transaction as the shadow rows of every user up to lastUserId
+    public void saveCheckpoint(long rebuildId, int shard, long lastUserId, long eventsRead, long rowsWritten) {
+        jdbcTemplate.update(
+                "UPDATE projection_rebuild_checkpoints SET last_user_id = ?, events_read = events_read + ?, " +
+                "rows_written = rows_written + ?, updated_at = CURRENT_TIMESTAMP WHERE rebuild_id = ? AND shard = ?",
+                lastUserId, eventsRead, rowsWritten, rebuildId, shard);
+    }
+
+    public void completeShard(long rebuildId, int shard) {
+        jdbcTemplate.update(
+                "UPDATE projection_rebuild_checkpoints SET completed_at = CURRENT_TIMESTAMP, " +
+                "updated_at = CURRENT_TIMESTAMP WHERE rebuild_id = ? AND shard = ?",
+                rebuildId, shard);
+    }
+
+    public void deleteCheckpoints() {
+        jdbcTemplate.update("DELETE FROM projection_rebuild_checkpoints");
+    }
+
+    private static String shadowName(String indexName) {
+        return indexName + "_rebuild";
+    }
+
+    private static BookKeepingEvent mapEvent(ResultSet rs) throws SQLException {
+        String startDate = rs.getString("start_date");
+        String endDate = rs.getString("end_date");
+        return new BookKeepingEvent(
+                rs.getLong("id"),
+                rs.getString("idempotency_key"),
+                rs.getLong("user_id"),
+                rs.getLong("subscription_plan_id"),
+                rs.getLong("subscription_account_id"),
+                rs.getLong("duration_type_id"),
+                rs.getString("event_type"),
+                rs.getString("status"),
+                startDate != null ? LocalDate.parse(startDate) : null,
+                endDate != null ? LocalDate.parse(endDate) : null,
+                rs.getString("subscription_status"),
+                toLocalDateTime(rs.getTimestamp("created_at")),
+                toLocalDateTime(rs.getTimestamp("completed_at")));
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.subscription.repository;
+
+import com.example.subscription.model.BookKeeping;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Expires one batch of overdue subscriptions in a single statement: the rows are claimed with
+// SKIP LOCKED, flipped to EXPIRED and logged as COMPLETED EXPIRED book_keeping entries, so the
+// projection and the log never disagree and concurrent runs never claim the same row.
+@Repository
+@RequiredArgsConstructor
+public class SubscriptionExpiryRepository {
+
+    private static final String EXPIRE_BATCH_SQL =
+            "WITH due AS (" +
+            "    SELECT us.id, plan.subscription_plan_id FROM user_subscriptions us" +
+            // EXPIRED has no plan of its own; it refers to the plan of the entry that opened or last extended it.
+            // A subscription with no such entry is left alone rather than logged without a plan.
+            "    JOIN LATERAL (SELECT bk.subscription_plan_id FROM book_keeping bk WHERE bk.user_id = us.user_id" +
+            "        AND bk.subscription_account_id = us.subscription_account_id" +
+            "        AND bk.duration_type_id = us.duration_type_id ORDER BY bk.id DESC LIMIT 1) plan ON true" +
+            "    WHERE us.status = 'ACTIVE' AND us.end_date <= ? AND mod(us.user_id, ?) = ?" +
+            "    ORDER BY us.end_date, us.id LIMIT ?" +
+            "    FOR UPDATE OF us SKIP LOCKED" +
+            "), expired AS (" +
+            "    UPDATE user_subscriptions us SET status = 'EXPIRED', last_updated_at = ?" +
+            "    FROM due WHERE us.id = due.id AND us.status = 'ACTIVE'" +
+            "    RETURNING us.user_id, us.subscription_account_id, us.duration_type_id, us.start_date, us.end_date," +
+            "        due.subscription_plan_id" +
+            "), logged AS (" +
+            "    INSERT INTO book_keeping (idempotency_key, user_id, subscription_plan_id, subscription_account_id, " +
+            "        duration_type_id, event_type, status, before_state, after_state, created_at, completed_at, retry_count) " +
+            "    SELECT e.user_id || ':' || e.subscription_account_id || ':' || e.duration_type_id || ':expired-' || e.end_date, " +
+            "        e.user_id, e.subscription_plan_id, e.subscription_account_id, e.duration_type_id, 'EXPIRED', 'COMPLETED', " +
+            "        jsonb_build_object('start_date', e.start_date, 'end_date', e.end_date, 'status', 'ACTIVE'), " +
+            "        jsonb_build_object('start_date', e.start_date, 'end_date', e.end_date, 'status', 'EXPIRED'), " +
+            "        ?, ?, 0 " +
+            "    FROM expired e " +
+            "    ON CONFLICT (idempotency_key) DO NOTHING " +
+            "    RETURNING *" +
+            ") " +
+            // Always one row carrying the update count, even when every insert hit a conflict
+            "SELECT c.expired_count, logged.* FROM (SELECT count(*) AS expired_count FROM expired) c " +
+            "LEFT JOIN logged ON true";
+
+    private static final ResultSetExtractor<ExpiredBatch> BATCH_EXTRACTOR = SubscriptionExpiryRepository::extractBatch;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // expired counts the subscriptions flipped by this batch (fewer than limit means the shard is done);
+    // entries are the book_keeping rows actually written, which can be fewer after idempotency conflicts
+    public record ExpiredBatch(int expired, List<BookKeeping> entries) {}
+
+    public ExpiredBatch expireBatch(LocalDate today, int shard, int shardCount, int limit, LocalDateTime now) {
+        Timestamp timestamp = Timestamp.valueOf(now);
+        return jdbcTemplate.query(EXPIRE_BATCH_SQL, BATCH_EXTRACTOR,
+                Date.valueOf(today), shardCount, shard, limit, timestamp, timestamp, timestamp);
+    }
+
+    static ExpiredBatch extractBatch(ResultSet rs) throws SQLException {
+        int expired = 0;
+        List<BookKeeping> entries = new ArrayList<>();
+        while (rs.next()) {
+            expired = rs.getInt("expired_count");
+            rs.getLong("id");
+            if (!rs.wasNull()) {
+                entries.add(BookKeepingStateMachine.ROW_MAPPER.mapRow(rs, entries.size()));
+            }
+        }
+        return new ExpiredBatch(expired, entries);
+    }
+}
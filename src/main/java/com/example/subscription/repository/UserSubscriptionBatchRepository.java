@@ -0,0 +1,64 @@
+package com.example.subscription.repository;
+
+import com.example.subscription.model.UserSubscription;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+
+// JDBC batch writes for user_subscriptions. Hibernate cannot batch inserts for IDENTITY ids,
+// so bulk materialization goes through a single multi-row batch that still returns the keys.
+@Repository
+@RequiredArgsConstructor
+public class UserSubscriptionBatchRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO user_subscriptions (user_id, subscription_account_id, duration_type_id, " +
+            "start_date, end_date, status, created_at, last_updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void insertAll(List<UserSubscription> subscriptions) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_SQL, new String[] {"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        UserSubscription subscription = subscriptions.get(i);
+                        ps.setLong(1, subscription.getUserId());
+                        ps.setLong(2, subscription.getSubscriptionAccountId());
+                        ps.setLong(3, subscription.getDurationTypeId());
+                        ps.setDate(4, Date.valueOf(subscription.getStartDate()));
+                        ps.setDate(5, Date.valueOf(subscription.getEndDate()));
+                        ps.setString(6, subscription.getStatus());
+                        ps.setTimestamp(7, Timestamp.valueOf(subscription.getCreatedAt()));
+                        ps.setTimestamp(8, Timestamp.valueOf(subscription.getLastUpdatedAt()));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return subscriptions.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < subscriptions.size(); i++) {
+            subscriptions.get(i).setId(((Number) keys.get(i).get("id")).longValue());
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package com.example.subscription.repository;
 
+import com.example.subscription.dto.projection.ExpiringSubscription;
 import com.example.subscription.model.UserSubscription;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,8 +20,35 @@ public interface UserSubscriptionRepository extends JpaRepository<UserSubscripti
     
     List<UserSubscription> findByUserIdAndStatus(Long userId, String status);
     
-    @Query("SELECT us FROM UserSubscription us WHERE us.status = :status")
-    List<UserSubscription> findByStatus(@Param("status") String status);
+    List<UserSubscription> findByUserIdInAndStatus(Collection<Long> userIds, String status);
+    
+    // Keyset page of one user shard's ACTIVE subscriptions ending in [from, to], read as projections
+    // (idx_user_subscriptions_end_date)
+    @Query("SELECT new com.example.subscription.dto.projection.ExpiringSubscription(" +
+           "us.id, us.userId, us.subscriptionAccountId, us.durationTypeId, us.endDate) " +
+           "FROM UserSubscription us WHERE us.status = 'ACTIVE' AND us.endDate BETWEEN :from AND :to " +
+           "AND MOD(us.userId, :shardCount) = :shard " +
+           "AND (us.endDate > :afterEndDate OR (us.endDate = :afterEndDate AND us.id > :afterId)) " +
+           "ORDER BY us.endDate ASC, us.id ASC")
+    List<ExpiringSubscription> findExpiringAfter(
+            @Param("from") LocalDate from,
+            @Param("to") LocalDate to,
+            @Param("shard") int shard,
+            @Param("shardCount") int shardCount,
+            @Param("afterEndDate") LocalDate afterEndDate,
+            @Param("afterId") Long afterId,
+            Pageable pageable);
+    
+    // [endDate, count] of one account's ACTIVE subscriptions ending in [from, to]; expiry index fallback
+    @Query("SELECT us.endDate, COUNT(us) FROM UserSubscription us WHERE us.subscriptionAccountId = :accountId " +
+           "AND us.status = 'ACTIVE' AND us.endDate BETWEEN :from AND :to GROUP BY us.endDate")
+    List<Object[]> countActiveByEndDate(
+            @Param("accountId") Long accountId,
+            @Param("from") LocalDate from,
+            @Param("to") LocalDate to);
+    
+    @Query("SELECT us.id FROM UserSubscription us WHERE us.id IN :ids AND us.status = 'ACTIVE'")
+    List<Long> findActiveIdsIn(@Param("ids") Collection<Long> ids);
     
     @Query("SELECT us FROM UserSubscription us WHERE us.userId = :userId " +
            "AND us.subscriptionAccountId = :accountId AND us.durationTypeId = :durationTypeId " +
@@ -0,0 +1,54 @@
+package com.example.subscription.resilience;
+
+import com.example.subscription.model.BookKeeping;
+import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.repository.BookKeepingRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Persistent queue of payments attempted while the payment-service breaker was OPEN.
+// Entries live on the book_keeping row itself (INITIATED + payment_deferred_at), so they survive restarts.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DeferredPaymentQueue {
+
+    private final BookKeepingRepository bookKeepingRepository;
+    private final BusinessMetrics businessMetrics;
+
+    @Transactional
+    public boolean defer(BookKeeping bookKeeping) {
+        int updated = bookKeepingRepository.markPaymentDeferred(bookKeeping.getId(), LocalDateTime.now());
+        if (updated == 0) {
+            log.warn("Payment not deferred, entry is no longer INITIATED: bookKeepingId={}", bookKeeping.getId());
+            return false;
+        }
+        
+        businessMetrics.recordPaymentDeferred();
+        log.info("Deferred payment until circuit breaker recovers: bookKeepingId={}", bookKeeping.getId());
+        return true;
+    }
+
+    public List<BookKeeping> nextBatch(Long afterId, int batchSize) {
+        return bookKeepingRepository.findDeferredPaymentsAfter(afterId, PageRequest.of(0, batchSize));
+    }
+
+    // Claims the entry for resubmission; false means another drainer (on this or another node)
+    // already took it. If the breaker is OPEN again the payment path re-defers it.
+    @Transactional
+    public boolean claim(Long bookKeepingId) {
+        return bookKeepingRepository.clearPaymentDeferred(bookKeepingId) > 0;
+    }
+
+    public long refreshDepth() {
+        long depth = bookKeepingRepository.countByStatusAndPaymentDeferredAtIsNotNull("INITIATED");
+        businessMetrics.recordDeferredQueueDepth(depth);
+        return depth;
+    }
+}
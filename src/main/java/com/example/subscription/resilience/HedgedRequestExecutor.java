@@ -0,0 +1,144 @@
+package com.example.subscription.resilience;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.observability.BusinessMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class HedgedRequestExecutor {
+
+    // Hedge budget is tracked in thousandths of a request; at most 10 hedges can be banked
+    private static final long CREDITS_PER_HEDGE = 1000;
+    private static final long MAX_CREDITS = 10 * CREDITS_PER_HEDGE;
+    private static final int RECOMPUTE_EVERY = 16;
+
+    private final AppProperties appProperties;
+    private final BusinessMetrics businessMetrics;
+
+    private final Map<String, OperationState> operations = new ConcurrentHashMap<>();
+
+    // Runs an idempotent request and, if it has not answered within the configured
+    // percentile of recent latency, races an identical second request against it.
+    // Any timeout belongs inside the request: one applied outside cancels the attempt unsampled.
+    public <T> Mono<T> execute(String operation, Supplier<Mono<T>> request) {
+        AppProperties.Payment.Hedging config = appProperties.getPayment().getHedging();
+        if (!config.isEnabled()) {
+            return request.get();
+        }
+
+        return Mono.defer(() -> {
+            OperationState state = operations.computeIfAbsent(operation, name -> new OperationState(config.getWindowSize()));
+            state.deposit(config.getMaxHedgeRatio());
+
+            Mono<Attempt<T>> primary = timed(state, config, request.get())
+                    .map(value -> new Attempt<>(value, false));
+
+            long delayNanos = state.hedgeDelayNanos();
+            if (delayNanos < 0) {
+                // Not enough samples yet to know what "slow" means
+                return primary.map(Attempt::value);
+            }
+
+            Mono<Attempt<T>> hedge = Mono.delay(Duration.ofNanos(delayNanos))
+                    .flatMap(tick -> {
+                        if (!state.tryAcquireHedge()) {
+                            businessMetrics.recordHedgeBudgetExhausted(operation);
+                            return Mono.<Attempt<T>>never();
+                        }
+                        businessMetrics.recordHedgeFired(operation);
+                        // Only a successful hedge may win; errors stay with the primary
+                        return timed(state, config, request.get())
+                                .map(value -> new Attempt<>(value, true))
+                                .onErrorResume(e -> Mono.<Attempt<T>>never());
+                    });
+
+            return Mono.firstWithSignal(primary, hedge)
+                    .doOnNext(attempt -> {
+                        if (attempt.hedged()) {
+                            businessMetrics.recordHedgeWon(operation);
+                        }
+                    })
+                    .map(Attempt::value);
+        });
+    }
+
+    private <T> Mono<T> timed(OperationState state, AppProperties.Payment.Hedging config, Mono<T> request) {
+        return Mono.defer(() -> {
+            long startedAt = System.nanoTime();
+            // Failures and timeouts count too, otherwise a struggling dependency looks fast;
+            // a cancelled loser of the race never finished, so it is left out
+            return request.doFinally(signal -> {
+                if (signal != SignalType.CANCEL) {
+                    state.record(System.nanoTime() - startedAt, config);
+                }
+            });
+        });
+    }
+
+    private record Attempt<T>(T value, boolean hedged) {}
+
+    private static final class OperationState {
+
+        private final long[] samples;
+        private final AtomicLong hedgeCredits = new AtomicLong();
+        private int next;
+        private int size;
+        private long recorded;
+        private volatile long hedgeDelayNanos = -1;
+
+        OperationState(int windowSize) {
+            this.samples = new long[Math.max(1, windowSize)];
+        }
+
+        long hedgeDelayNanos() {
+            return hedgeDelayNanos;
+        }
+
+        synchronized void record(long latencyNanos, AppProperties.Payment.Hedging config) {
+            samples[next] = latencyNanos;
+            next = (next + 1) % samples.length;
+            if (size < samples.length) {
+                size++;
+            }
+            recorded++;
+
+            if (size >= config.getMinSamples() && (hedgeDelayNanos < 0 || recorded % RECOMPUTE_EVERY == 0)) {
+                long[] window = Arrays.copyOf(samples, size);
+                Arrays.sort(window);
+                int index = (int) Math.ceil(config.getPercentile() / 100.0 * size) - 1;
+                long percentileNanos = window[Math.max(0, Math.min(size - 1, index))];
+                hedgeDelayNanos = Math.max(Duration.ofMillis(config.getMinDelayMs()).toNanos(), percentileNanos);
+            }
+        }
+
+        void deposit(double maxHedgeRatio) {
+            long credits = (long) (maxHedgeRatio * CREDITS_PER_HEDGE);
+            hedgeCredits.accumulateAndGet(credits, (current, added) -> Math.min(MAX_CREDITS, current + added));
+        }
+
+        boolean tryAcquireHedge() {
+            while (true) {
+                long current = hedgeCredits.get();
+                if (current < CREDITS_PER_HEDGE) {
+                    return false;
+                }
+                if (hedgeCredits.compareAndSet(current, current - CREDITS_PER_HEDGE)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package com.example.subscription.resilience;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.repository.JobLeaseRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Keeps the Redis round trip off most requests. For each key (user and route) a node holds:
+// 1. a slice of the limit leased from Redis through the same atomic script, admitted from with a CAS on
+//    a local counter; the slice doubles each time one is used up, halves when one expires unused, and
+//    never exceeds leaseFraction of the limit
+// 2. an asynchronous refill, queued when the slice runs low and sent together with other keys' refills
+// 3. a near-limit mark: once Redis can no longer grant a whole slice, requests go to Redis one at a
+//    time (the exact pure-Redis path) for leaseTtlMs
+// Leases expire after leaseTtlMs and their unused permits are handed back in batches, so a key is not
+// charged for permits it never used. A sliding window takes them back only into the window that was
+// charged, and at most what that window granted; anything older stays charged. While Redis is unreachable each node limits on its own, to its
+// share of the limit (limit / live scheduler nodes), for degradedMs before trying Redis again.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HybridRateLimiter {
+
+    private final RedisRateLimiter redisRateLimiter;
+    private final JobLeaseRepository jobLeaseRepository;
+    private final BusinessMetrics businessMetrics;
+    private final AppProperties appProperties;
+
+    private final Map<String, LocalBucket> buckets = new ConcurrentHashMap<>();
+    private final BlockingQueue<LocalBucket> pendingRefills = new LinkedBlockingQueue<>();
+    private volatile long degradedUntil;
+    private volatile boolean degraded;
+    private volatile int liveNodes = 1;
+    private volatile boolean running;
+    private Thread syncThread;
+
+    @PostConstruct
+    public void start() {
+        if (!hybrid().isEnabled()) {
+            return;
+        }
+        running = true;
+        syncThread = Thread.ofVirtual().name("ratelimit-lease-sync").start(this::run);
+        log.info("Hybrid rate limiting started: leaseFraction={}, leaseTtlMs={}",
+                hybrid().getLeaseFraction(), hybrid().getLeaseTtlMs());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (syncThread != null) {
+            syncThread.interrupt();
+        }
+        // Hand back everything still leased so the other nodes can use it
+        releaseExpired(Long.MAX_VALUE);
+    }
+
+    public RateLimitDecision tryAcquire(String key, RateLimitPolicy policy) {
+        AppProperties.RateLimit.Hybrid config = hybrid();
+        if (!config.isEnabled() || policy.limit() < config.getMinLimit()) {
+            return redisRateLimiter.tryAcquire(key, policy);
+        }
+        long startedAt = System.nanoTime();
+        long now = System.currentTimeMillis();
+        LocalBucket bucket = bucket(key, policy, now);
+        if (bucket == null) {
+            return redisRateLimiter.tryAcquire(key, policy);
+        }
+
+        long left = bucket.take(now);
+        if (left >= 0) {
+            if (left <= bucket.slice / 4 && now >= degradedUntil && now >= bucket.nearLimitUntil
+                    && bucket.refillPending.compareAndSet(false, true)) {
+                pendingRefills.offer(bucket);
+            }
+            return record(policy, "lease", new RateLimitDecision(true, policy.limit(), bucket.redisRemaining + left, 0), startedAt);
+        }
+        if (now < degradedUntil) {
+            return record(policy, "local_only", localOnly(bucket, policy, now), startedAt);
+        }
+
+        try {
+            if (now < bucket.nearLimitUntil) {
+                return record(policy, "redis", call(bucket, policy, 1), startedAt);
+            }
+            int slice = nextSlice(bucket, policy);
+            RateLimitDecision lease = call(bucket, policy, slice);
+            if (lease.allowed()) {
+                // This request takes the first permit of the new slice
+                grant(bucket, slice - 1, lease, now);
+                return record(policy, "redis",
+                        new RateLimitDecision(true, policy.limit(), lease.remaining() + slice - 1, 0), startedAt);
+            }
+            bucket.nearLimitUntil = now + config.getLeaseTtlMs();
+            RateLimitDecision decision = slice == 1 ? lease : call(bucket, policy, 1);
+            return record(policy, "redis", decision, startedAt);
+        } catch (RuntimeException e) {
+            degrade(policy.name(), e);
+            return record(policy, "local_only", localOnly(bucket, policy, now), startedAt);
+        }
+    }
+
+    // Sends every queued refill now; returns how many were granted
+    int syncPending() {
+        List<LocalBucket> batch = new ArrayList<>();
+        pendingRefills.drainTo(batch, hybrid().getSyncBatchSize());
+        return batch.isEmpty() ? 0 : refill(batch);
+    }
+
+    // Hands back the unused permits of leases that expired before now and forgets idle keys
+    void releaseExpired(long now) {
+        AppProperties.RateLimit.Hybrid config = hybrid();
+        long idleBefore = now - config.getIdleEvictMs();
+        List<Release> releasing = new ArrayList<>();
+        for (LocalBucket bucket : buckets.values()) {
+            if (now < bucket.leaseExpiresAt) {
+                continue;
+            }
+            long permits = bucket.permits.getAndSet(0);
+            if (permits > 0) {
+                bucket.slice = Math.max(1, bucket.slice / 2);
+                Release release = bucket.release(permits);
+                if (release.permits() > 0) {
+                    releasing.add(release);
+                }
+            } else if (bucket.lastUsed < idleBefore && !bucket.refillPending.get()) {
+                buckets.remove(bucket.key, bucket);
+            }
+        }
+        // Unreturned permits come back to the key on their own as its window moves on
+        if (releasing.isEmpty() || System.currentTimeMillis() < degradedUntil) {
+            return;
+        }
+        long startedAt = System.nanoTime();
+        try {
+            Flux.fromIterable(releasing)
+                    .flatMap(release -> redisRateLimiter.release(release.bucket().key, release.bucket().policy,
+                                    release.permits(), release.windowStart())
+                            .onErrorResume(e -> Mono.empty()))
+                    .then()
+                    .block(Duration.ofMillis(config.getSyncTimeoutMs()));
+        } catch (RuntimeException e) {
+            log.warn("Could not hand back unused rate limit leases: keys={}, error={}", releasing.size(), e.getMessage());
+        }
+        businessMetrics.recordRateLimitLeaseSync("release", releasing.size(), System.nanoTime() - startedAt);
+    }
+
+    private void run() {
+        long sweepIntervalMs = Math.max(50, hybrid().getLeaseTtlMs() / 2);
+        long nextSweep = System.currentTimeMillis() + sweepIntervalMs;
+        while (running) {
+            try {
+                LocalBucket first = pendingRefills.poll(Math.min(100, sweepIntervalMs), TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    List<LocalBucket> batch = new ArrayList<>();
+                    batch.add(first);
+                    pendingRefills.drainTo(batch, hybrid().getSyncBatchSize() - 1);
+                    refill(batch);
+                }
+                long now = System.currentTimeMillis();
+                if (now >= nextSweep) {
+                    releaseExpired(now);
+                    nextSweep = now + sweepIntervalMs;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Error syncing rate limit leases", e);
+            }
+        }
+    }
+
+    // One script call per key, all sent together so they share the connection's pipeline
+    private int refill(List<LocalBucket> batch) {
+        AppProperties.RateLimit.Hybrid config = hybrid();
+        long startedAt = System.nanoTime();
+        long now = System.currentTimeMillis();
+        AtomicInteger granted = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        try {
+            Flux.fromIterable(batch)
+                    .flatMap(bucket -> {
+                        RateLimitPolicy policy = bucket.policy;
+                        int slice = nextSlice(bucket, policy);
+                        return redisRateLimiter.acquire(bucket.key, policy, slice)
+                                .doOnNext(lease -> {
+                                    if (lease.allowed()) {
+                                        grant(bucket, slice, lease, now);
+                                        granted.incrementAndGet();
+                                    } else {
+                                        bucket.nearLimitUntil = now + config.getLeaseTtlMs();
+                                    }
+                                })
+                                .onErrorResume(e -> {
+                                    failed.incrementAndGet();
+                                    return Mono.empty();
+                                })
+                                .doFinally(signal -> bucket.refillPending.set(false));
+                    })
+                    .then()
+                    .block(Duration.ofMillis(config.getSyncTimeoutMs()));
+        } catch (RuntimeException e) {
+            failed.set(batch.size());
+            batch.forEach(bucket -> bucket.refillPending.set(false));
+        }
+        if (failed.get() == batch.size()) {
+            degrade(batch.get(0).policy.name(), new IllegalStateException("lease refill failed for " + batch.size() + " keys"));
+        } else {
+            recovered();
+        }
+        businessMetrics.recordRateLimitLeaseSync("refill", batch.size(), System.nanoTime() - startedAt);
+        return granted.get();
+    }
+
+    private LocalBucket bucket(String key, RateLimitPolicy policy, long now) {
+        LocalBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= hybrid().getMaxKeys()) {
+                return null;
+            }
+            bucket = buckets.computeIfAbsent(key, LocalBucket::new);
+        }
+        bucket.policy = policy;
+        bucket.lastUsed = now;
+        return bucket;
+    }
+
+    private int nextSlice(LocalBucket bucket, RateLimitPolicy policy) {
+        int maxSlice = Math.max(1, (int) (policy.limit() * hybrid().getLeaseFraction()));
+        int slice = Math.min(maxSlice, bucket.slice * 2);
+        bucket.slice = slice;
+        return slice;
+    }
+
+    private void grant(LocalBucket bucket, long permits, RateLimitDecision lease, long now) {
+        long leaseTtlMs = hybrid().getLeaseTtlMs();
+        bucket.charge(permits, lease.windowStart());
+        bucket.permits.addAndGet(permits);
+        bucket.redisRemaining = lease.remaining();
+        bucket.leaseExpiresAt = now + leaseTtlMs;
+        if (lease.remaining() < bucket.slice) {
+            // The next slice would not fit, so requests past this one go to Redis one by one
+            bucket.nearLimitUntil = now + leaseTtlMs;
+        }
+    }
+
+    private RateLimitDecision call(LocalBucket bucket, RateLimitPolicy policy, int permits) {
+        RateLimitDecision decision = redisRateLimiter.acquire(bucket.key, policy, permits)
+                .block(Duration.ofMillis(appProperties.getRateLimit().getTimeoutMs()));
+        if (decision == null) {
+            throw new IllegalStateException("No rate limit script reply for " + bucket.key);
+        }
+        recovered();
+        return decision;
+    }
+
+    // Fixed window per node, sized to this node's share of the limit
+    private RateLimitDecision localOnly(LocalBucket bucket, RateLimitPolicy policy, long now) {
+        long share = Math.max(1, policy.limit() / liveNodes);
+        long windowStart = now - now % policy.windowMillis();
+        long seen = bucket.localWindowStart.get();
+        if (seen != windowStart && bucket.localWindowStart.compareAndSet(seen, windowStart)) {
+            bucket.localCount.set(0);
+        }
+        long used = bucket.localCount.incrementAndGet();
+        boolean allowed = used <= share;
+        return new RateLimitDecision(allowed, (int) share, Math.max(0, share - used),
+                allowed ? 0 : windowStart + policy.windowMillis() - now);
+    }
+
+    private void degrade(String policyName, Exception e) {
+        businessMetrics.recordRateLimitError(policyName);
+        degradedUntil = System.currentTimeMillis() + hybrid().getDegradedMs();
+        if (!degraded) {
+            degraded = true;
+            // Looked up once per outage, on the thread that noticed it
+            liveNodes = countLiveNodes();
+            businessMetrics.recordRateLimitDegraded(true);
+            log.warn("Redis unreachable for rate limiting, limiting locally: liveNodes={}, degradedMs={}, error={}",
+                    liveNodes, hybrid().getDegradedMs(), e.getMessage());
+        }
+    }
+
+    private void recovered() {
+        if (degraded) {
+            degraded = false;
+            businessMetrics.recordRateLimitDegraded(false);
+            log.info("Redis reachable again, rate limiting from leases");
+        }
+    }
+
+    private int countLiveNodes() {
+        try {
+            return Math.max(1, jobLeaseRepository.findLiveNodes(appProperties.getScheduling().getNodeTtlSeconds()).size());
+        } catch (RuntimeException e) {
+            log.warn("Could not count live nodes, keeping {}: {}", liveNodes, e.getMessage());
+            return liveNodes;
+        }
+    }
+
+    private RateLimitDecision record(RateLimitPolicy policy, String path, RateLimitDecision decision, long startedAt) {
+        businessMetrics.recordRateLimitDecision(policy.name(), path, decision.allowed(), System.nanoTime() - startedAt);
+        return decision;
+    }
+
+    private AppProperties.RateLimit.Hybrid hybrid() {
+        return appProperties.getRateLimit().getHybrid();
+    }
+
+    private record Release(LocalBucket bucket, int permits, long windowStart) {}
+
+    private static final class LocalBucket {
+
+        final String key;
+        final AtomicLong permits = new AtomicLong();
+        final AtomicBoolean refillPending = new AtomicBoolean();
+        final AtomicLong localWindowStart = new AtomicLong();
+        final AtomicLong localCount = new AtomicLong();
+        volatile RateLimitPolicy policy;
+        volatile int slice = 1;
+        volatile long leaseExpiresAt;
+        volatile long nearLimitUntil;
+        volatile long redisRemaining;
+        volatile long lastUsed;
+        // Window the latest grant was charged to and how much was granted in it; guarded by this
+        private long chargedWindowStart;
+        private long chargedInWindow;
+
+        LocalBucket(String key) {
+            this.key = key;
+        }
+
+        synchronized void charge(long granted, long windowStart) {
+            if (windowStart != chargedWindowStart) {
+                chargedWindowStart = windowStart;
+                chargedInWindow = 0;
+            }
+            chargedInWindow += granted;
+        }
+
+        // Unused permits are counted as left over from the latest window first; the rest stays charged
+        synchronized Release release(long unused) {
+            Release release = new Release(this, (int) Math.min(unused, chargedInWindow), chargedWindowStart);
+            chargedInWindow = 0;
+            return release;
+        }
+
+        // Permits left after taking one, or -1 when the lease is spent or expired
+        long take(long now) {
+            if (now >= leaseExpiresAt) {
+                return -1;
+            }
+            while (true) {
+                long current = permits.get();
+                if (current <= 0) {
+                    return -1;
+                }
+                if (permits.compareAndSet(current, current - 1)) {
+                    return current - 1;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.subscription.resilience;
+
+// remaining is -1 when Redis could not be asked and the request was let through unchecked.
+// windowStart is the sliding window (Redis clock) the permits were charged to; 0 for token buckets.
+public record RateLimitDecision(boolean allowed, int limit, long remaining, long retryAfterMillis, long windowStart) {
+
+    public RateLimitDecision(boolean allowed, int limit, long remaining, long retryAfterMillis) {
+        this(allowed, limit, remaining, retryAfterMillis, 0);
+    }
+
+    static RateLimitDecision unchecked(RateLimitPolicy policy) {
+        return new RateLimitDecision(true, policy.limit(), -1, 0);
+    }
+
+    public boolean checked() {
+        return remaining >= 0;
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.subscription.resilience;
+
+// perRoute: one budget per user and route, otherwise one budget per user shared by every route the rule covers
+public record RateLimitPolicy(String name, Algorithm algorithm, int limit, long windowMillis, boolean perRoute) {
+
+    public enum Algorithm {
+        TOKEN_BUCKET,
+        SLIDING_WINDOW
+    }
+}
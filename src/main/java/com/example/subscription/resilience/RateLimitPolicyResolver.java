@@ -0,0 +1,148 @@
+package com.example.subscription.resilience;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.model.RulesEngine;
+import com.example.subscription.repository.RulesEngineRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+// Picks the rate limit for a request from app.rate-limit.rules and from active rules_engine rows with
+// rule_type RATE_LIMIT, whose rule_value holds the same fields as JSON, e.g.
+// {"route":"/api/subscriptions/*/extend","method":"POST","role":"USER","algorithm":"SLIDING_WINDOW","limit":10,"windowSeconds":60}
+// Database rules win over configured ones, then the rule naming a role and method, then the most specific route.
+// Routes are matched against the handler's path pattern, so resolutions are cached per pattern, not per URI.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RateLimitPolicyResolver {
+
+    static final String RULE_TYPE = "RATE_LIMIT";
+    private static final String DEFAULT_POLICY = "default";
+    private static final int MAX_RESOLVED = 10000;
+
+    private final AppProperties appProperties;
+    private final RulesEngineRepository rulesEngineRepository;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final Map<String, RateLimitPolicy> resolved = new ConcurrentHashMap<>();
+
+    private volatile List<CompiledRule> configRules = List.of();
+    private volatile List<CompiledRule> databaseRules = List.of();
+
+    @PostConstruct
+    public void init() {
+        List<CompiledRule> rules = new ArrayList<>();
+        for (AppProperties.RateLimit.Rule rule : appProperties.getRateLimit().getRules()) {
+            CompiledRule compiled = compile(rule, rule.getName(), false);
+            if (compiled != null) {
+                rules.add(compiled);
+            }
+        }
+        configRules = List.copyOf(rules);
+        resolved.clear();
+    }
+
+    // A failed reload keeps the previous database rules rather than dropping to the configured ones
+    @Scheduled(fixedDelayString = "${app.rate-limit.refresh-interval-ms:60000}")
+    public void refresh() {
+        List<RulesEngine> rows;
+        try {
+            rows = rulesEngineRepository.findByRuleTypeAndIsActiveTrue(RULE_TYPE);
+        } catch (RuntimeException e) {
+            log.warn("Could not reload rate limit rules, keeping {} loaded rules: {}", databaseRules.size(), e.getMessage());
+            return;
+        }
+        List<CompiledRule> rules = new ArrayList<>();
+        for (RulesEngine row : rows) {
+            try {
+                AppProperties.RateLimit.Rule rule = objectMapper.readValue(row.getRuleValue(), AppProperties.RateLimit.Rule.class);
+                CompiledRule compiled = compile(rule, rule.getName() != null ? rule.getName() : row.getRuleKey(), true);
+                if (compiled != null) {
+                    rules.add(compiled);
+                }
+            } catch (Exception e) {
+                log.warn("Skipping unreadable rate limit rule {}: {}", row.getRuleKey(), e.getMessage());
+            }
+        }
+        if (!rules.equals(databaseRules)) {
+            log.info("Loaded {} rate limit rules from rules_engine", rules.size());
+            databaseRules = List.copyOf(rules);
+            resolved.clear();
+        }
+    }
+
+    public RateLimitPolicy resolve(String method, String route, String role) {
+        String key = method + ' ' + route + ' ' + role;
+        RateLimitPolicy policy = resolved.get(key);
+        if (policy == null) {
+            policy = match(method, route, role);
+            if (resolved.size() >= MAX_RESOLVED) {
+                resolved.clear();
+            }
+            resolved.put(key, policy);
+        }
+        return policy;
+    }
+
+    private RateLimitPolicy match(String method, String route, String role) {
+        Comparator<CompiledRule> precedence = Comparator.comparing((CompiledRule rule) -> !rule.fromDatabase())
+                .thenComparing(Comparator.comparingInt(CompiledRule::specificity).reversed())
+                .thenComparing(CompiledRule::route, pathMatcher.getPatternComparator(route));
+        return Stream.concat(databaseRules.stream(), configRules.stream())
+                .filter(rule -> rule.matches(pathMatcher, method, route, role))
+                .min(precedence)
+                .map(CompiledRule::policy)
+                .orElseGet(this::defaultPolicy);
+    }
+
+    private RateLimitPolicy defaultPolicy() {
+        AppProperties.RateLimit config = appProperties.getRateLimit();
+        return new RateLimitPolicy(DEFAULT_POLICY, algorithm(config.getDefaultAlgorithm()), config.getDefaultLimit(),
+                config.getDefaultWindowSeconds() * 1000L, true);
+    }
+
+    private CompiledRule compile(AppProperties.RateLimit.Rule rule, String name, boolean fromDatabase) {
+        if (name == null || rule.getRoute() == null || rule.getLimit() <= 0 || rule.getWindowSeconds() <= 0) {
+            log.warn("Ignoring rate limit rule {}: name, route, limit and windowSeconds are required", name);
+            return null;
+        }
+        RateLimitPolicy.Algorithm algorithm = rule.getAlgorithm() != null
+                ? algorithm(rule.getAlgorithm())
+                : algorithm(appProperties.getRateLimit().getDefaultAlgorithm());
+        return new CompiledRule(rule.getRoute(),
+                rule.getMethod() != null ? rule.getMethod().toUpperCase(Locale.ROOT) : null,
+                rule.getRole(),
+                new RateLimitPolicy(name, algorithm, rule.getLimit(), rule.getWindowSeconds() * 1000L, rule.isPerRoute()),
+                fromDatabase);
+    }
+
+    private static RateLimitPolicy.Algorithm algorithm(String name) {
+        return RateLimitPolicy.Algorithm.valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+    private record CompiledRule(String route, String method, String role, RateLimitPolicy policy, boolean fromDatabase) {
+
+        boolean matches(AntPathMatcher pathMatcher, String method, String route, String role) {
+            return (this.method == null || this.method.equalsIgnoreCase(method))
+                    && (this.role == null || this.role.equals(role))
+                    && pathMatcher.match(this.route, route);
+        }
+
+        int specificity() {
+            return (role != null ? 2 : 0) + (method != null ? 1 : 0);
+        }
+    }
+}
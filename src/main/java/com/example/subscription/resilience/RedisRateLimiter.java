@@ -0,0 +1,70 @@
+package com.example.subscription.resilience;
+
+import com.example.subscription.cache.RedisCacheService;
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.observability.BusinessMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+// Check and update happen in one server-side script, so a decision costs a single round trip and
+// concurrent requests for the same key are serialized by Redis instead of racing a GET and a SET
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RedisRateLimiter {
+
+    private final RedisCacheService redisCacheService;
+    private final BusinessMetrics businessMetrics;
+    private final AppProperties appProperties;
+
+    public RateLimitDecision tryAcquire(String key, RateLimitPolicy policy) {
+        long startedAt = System.nanoTime();
+        AppProperties.RateLimit config = appProperties.getRateLimit();
+        try {
+            RateLimitDecision decision = acquire(key, policy, 1).block(Duration.ofMillis(config.getTimeoutMs()));
+            if (decision == null) {
+                throw new IllegalStateException("No rate limit script reply for " + key);
+            }
+            businessMetrics.recordRateLimitDecision(policy.name(), "redis", decision.allowed(), System.nanoTime() - startedAt);
+            return decision;
+        } catch (RuntimeException e) {
+            businessMetrics.recordRateLimitError(policy.name());
+            if (config.isFailOpen()) {
+                log.warn("Rate limit check failed, allowing request: key={}, error={}", key, e.getMessage());
+                return RateLimitDecision.unchecked(policy);
+            }
+            log.warn("Rate limit check failed, rejecting request: key={}, error={}", key, e.getMessage());
+            return new RateLimitDecision(false, policy.limit(), 0, 1000);
+        }
+    }
+
+    // Takes permits all or nothing. Redis errors are left to the caller.
+    public Mono<RateLimitDecision> acquire(String key, RateLimitPolicy policy, int permits) {
+        return execute(key, policy, permits, 0);
+    }
+
+    // Hands unused leased permits back. windowStart is the decision's windowStart from when they were granted;
+    // a sliding window only takes them back while that window still counts towards the limit.
+    public Mono<RateLimitDecision> release(String key, RateLimitPolicy policy, int permits, long windowStart) {
+        return execute(key, policy, -permits, windowStart);
+    }
+
+    private Mono<RateLimitDecision> execute(String key, RateLimitPolicy policy, int permits, long windowStart) {
+        Mono<long[]> reply = switch (policy.algorithm()) {
+            case TOKEN_BUCKET -> redisCacheService.acquireTokenBucket(key, policy.limit(), policy.windowMillis(), permits);
+            case SLIDING_WINDOW -> redisCacheService.acquireSlidingWindow(
+                    key, policy.limit(), policy.windowMillis(), permits, windowStart);
+        };
+        return reply.map(result -> {
+            if (result.length != 3 && result.length != 4) {
+                throw new IllegalStateException("Unexpected rate limit script reply for " + key);
+            }
+            return new RateLimitDecision(result[0] == 1, policy.limit(), result[1], result[2],
+                    result.length == 4 ? result[3] : 0);
+        });
+    }
+}
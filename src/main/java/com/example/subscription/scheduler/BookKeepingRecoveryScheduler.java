@@ -0,0 +1,39 @@
+package com.example.subscription.scheduler;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.service.BookKeepingRecoveryService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BookKeepingRecoveryScheduler {
+
+    private final BookKeepingRecoveryService bookKeepingRecoveryService;
+    private final AppProperties appProperties;
+
+    // Re-publish COMPLETED entries whose event never got materialized
+    @Scheduled(fixedDelayString = "${app.kafka.recovery.fixed-delay-ms:120000}",
+               initialDelayString = "${app.kafka.recovery.initial-delay-ms:90000}")
+    public void sweepUnprocessedCompleted() {
+        if (!appProperties.getKafka().getRecovery().isEnabled()) {
+            return;
+        }
+
+        try {
+            BookKeepingRecoveryService.SweepSummary summary = bookKeepingRecoveryService.sweepUnprocessedCompleted();
+            if (!summary.lockAcquired()) {
+                log.debug("Skipped recovery sweep, another instance holds the lock");
+                return;
+            }
+            log.info("Completed scheduled task: Swept unprocessed book keeping entries - scanned={}, " +
+                            "republished={}, skipped={}, finished={}",
+                    summary.scanned(), summary.republished(), summary.skipped(), summary.finished());
+        } catch (Exception e) {
+            log.error("Error in scheduled task for book keeping recovery", e);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.subscription.scheduler;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.model.BookKeeping;
+import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.resilience.CircuitBreakerService;
+import com.example.subscription.resilience.DeferredPaymentQueue;
+import com.example.subscription.service.PaymentService;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DeferredPaymentDrainer {
+
+    private final DeferredPaymentQueue deferredPaymentQueue;
+    private final PaymentService paymentService;
+    private final CircuitBreakerService circuitBreakerService;
+    private final BusinessMetrics businessMetrics;
+    private final AppProperties appProperties;
+
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+
+    @PostConstruct
+    public void registerCircuitBreakerListener() {
+        circuitBreakerService.getPaymentServiceCircuitBreaker().getEventPublisher()
+                .onStateTransition(event -> {
+                    CircuitBreaker.State toState = event.getStateTransition().getToState();
+                    if (toState == CircuitBreaker.State.HALF_OPEN || toState == CircuitBreaker.State.CLOSED) {
+                        log.info("Payment circuit breaker moved to {}, draining deferred payments", toState);
+                        triggerDrain();
+                    }
+                });
+    }
+
+    // Safety net for deferred entries left over from a restart or a missed transition
+    @Scheduled(fixedDelayString = "${app.payment.deferral.poll-interval-ms:60000}")
+    public void pollDeferredPayments() {
+        try {
+            long depth = deferredPaymentQueue.refreshDepth();
+            if (depth > 0 && circuitBreakerService.getPaymentServiceState() != CircuitBreaker.State.OPEN) {
+                triggerDrain();
+            }
+        } catch (Exception e) {
+            log.error("Error polling deferred payment queue", e);
+        }
+    }
+
+    public void triggerDrain() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+
+        Thread.ofVirtual().name("deferred-payment-drain").start(() -> {
+            try {
+                drain();
+            } catch (Exception e) {
+                log.error("Error draining deferred payments", e);
+            } finally {
+                draining.set(false);
+            }
+        });
+    }
+
+    void drain() {
+        AppProperties.Payment.Deferral config = appProperties.getPayment().getDeferral();
+        long pacingNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, config.getDrainRatePerSecond());
+        long startedAt = System.nanoTime();
+        long drained = 0;
+        int halfOpenProbes = 0;
+        long lastId = 0;
+
+        drainLoop:
+        while (true) {
+            List<BookKeeping> batch = deferredPaymentQueue.nextBatch(lastId, config.getDrainBatchSize());
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            for (BookKeeping bookKeeping : batch) {
+                CircuitBreaker.State state = circuitBreakerService.getPaymentServiceState();
+                if (state == CircuitBreaker.State.OPEN || state == CircuitBreaker.State.FORCED_OPEN) {
+                    log.warn("Payment circuit breaker is {} again, pausing deferred payment drain", state);
+                    break drainLoop;
+                }
+                if (state == CircuitBreaker.State.HALF_OPEN) {
+                    // Only probe while half-open; the transition to CLOSED restarts the drain at full rate
+                    if (halfOpenProbes >= config.getHalfOpenProbeCount()) {
+                        break drainLoop;
+                    }
+                    halfOpenProbes++;
+                }
+
+                if (!deferredPaymentQueue.claim(bookKeeping.getId())) {
+                    log.debug("Deferred payment already claimed by another drainer: bookKeepingId={}",
+                            bookKeeping.getId());
+                    continue;
+                }
+                paymentService.processPayment(bookKeeping);
+                businessMetrics.recordDeferredPaymentDrained();
+                drained++;
+
+                LockSupport.parkNanos(pacingNanos);
+            }
+
+            lastId = batch.get(batch.size() - 1).getId();
+        }
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        businessMetrics.recordDeferredDrainRate(elapsedMillis > 0 ? drained * 1000 / elapsedMillis : drained);
+        long remaining = deferredPaymentQueue.refreshDepth();
+        log.info("Deferred payment drain finished: drained={}, remaining={}, durationMs={}", 
+                drained, remaining, elapsedMillis);
+    }
+}
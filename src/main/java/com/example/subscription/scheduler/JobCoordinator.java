@@ -0,0 +1,167 @@
+package com.example.subscription.scheduler;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.repository.JobLeaseRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Keeps @Scheduled jobs from running on every instance at once. Two modes:
+// - runExclusive: one leader per interval, for jobs that must not run concurrently
+// - runSharded: the job's user_id hash shards are spread over the live instances, each shard
+//   running once per run key; membership comes from heartbeat rows in scheduler_nodes
+// Heartbeats and lease renewal run on their own thread so a long job cannot starve them.
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class JobCoordinator {
+
+    private final JobLeaseRepository jobLeaseRepository;
+    private final AppProperties appProperties;
+
+    private volatile String nodeId;
+    private ScheduledExecutorService heartbeatExecutor;
+
+    public record Shard(int index, int count) {}
+
+    @PostConstruct
+    public void start() {
+        AppProperties.Scheduling config = appProperties.getScheduling();
+        if (!config.isEnabled()) {
+            return;
+        }
+        heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("scheduler-heartbeat").daemon().factory());
+        heartbeatExecutor.scheduleWithFixedDelay(this::heartbeat, 0, config.getHeartbeatIntervalMs(), TimeUnit.MILLISECONDS);
+        log.info("Scheduler coordination started: nodeId={}", nodeId());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (heartbeatExecutor == null) {
+            return;
+        }
+        heartbeatExecutor.shutdownNow();
+        try {
+            // Leave right away instead of waiting for the heartbeat to go stale
+            jobLeaseRepository.removeNode(nodeId());
+        } catch (Exception e) {
+            log.warn("Could not deregister scheduler node: nodeId={}", nodeId(), e);
+        }
+    }
+
+    public String nodeId() {
+        String id = nodeId;
+        if (id == null) {
+            synchronized (this) {
+                if (nodeId == null) {
+                    String configured = appProperties.getScheduling().getNodeId();
+                    nodeId = configured != null && !configured.isBlank() ? configured : defaultNodeId();
+                }
+                id = nodeId;
+            }
+        }
+        return id;
+    }
+
+    // Runs the task here if no other instance holds the job and its last run finished at least minInterval ago
+    public boolean runExclusive(String jobName, Duration minInterval, Runnable task) {
+        AppProperties.Scheduling config = appProperties.getScheduling();
+        if (!config.isEnabled()) {
+            task.run();
+            return true;
+        }
+        if (!jobLeaseRepository.tryAcquireAfterInterval(
+                jobName, nodeId(), config.getLeaseSeconds(), minInterval.toSeconds())) {
+            log.debug("Skipping job, led by another instance or ran recently: job={}", jobName);
+            return false;
+        }
+        runHoldingLease(jobName, 0, task);
+        return true;
+    }
+
+    // Runs this instance's share of the job's shards for the run; returns how many shards ran here
+    public int runSharded(String jobName, String runKey, Consumer<Shard> task) {
+        AppProperties.Scheduling config = appProperties.getScheduling();
+        if (!config.isEnabled()) {
+            task.accept(new Shard(0, 1));
+            return 1;
+        }
+
+        int shards = Math.max(1, config.getShards());
+        List<String> liveNodes = jobLeaseRepository.findLiveNodes(config.getNodeTtlSeconds());
+        int nodes = Math.max(1, liveNodes.size());
+        int position = Math.max(0, liveNodes.indexOf(nodeId()));
+        int fairShare = (shards + nodes - 1) / nodes;
+        // Each instance starts at its own offset, so in the common case they never contend for a shard
+        int offset = position * shards / nodes;
+
+        boolean[] attempted = new boolean[shards];
+        int ran = 0;
+        // First pass takes this instance's fair share; the second picks up shards nobody claimed,
+        // e.g. those of an instance that died before the run or released a shard after a failure
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < shards && (pass > 0 || ran < fairShare); i++) {
+                int shard = (offset + i) % shards;
+                if (attempted[shard]) {
+                    continue;
+                }
+                attempted[shard] = true;
+                if (!jobLeaseRepository.tryAcquireForRun(jobName, shard, nodeId(), runKey, config.getLeaseSeconds())) {
+                    continue;
+                }
+                try {
+                    runHoldingLease(jobName, shard, () -> task.accept(new Shard(shard, shards)));
+                    ran++;
+                } catch (Exception e) {
+                    log.error("Job shard failed, released for another instance: job={}, shard={}", jobName, shard, e);
+                }
+            }
+        }
+        log.info("Ran job shards: job={}, runKey={}, shardsRun={}, of={}, liveNodes={}",
+                jobName, runKey, ran, shards, nodes);
+        return ran;
+    }
+
+    private void runHoldingLease(String jobName, int shard, Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            jobLeaseRepository.release(jobName, shard, nodeId());
+            throw e;
+        }
+        jobLeaseRepository.complete(jobName, shard, nodeId());
+    }
+
+    private void heartbeat() {
+        AppProperties.Scheduling config = appProperties.getScheduling();
+        try {
+            jobLeaseRepository.heartbeat(nodeId());
+            jobLeaseRepository.renew(nodeId(), config.getLeaseSeconds());
+            jobLeaseRepository.purgeDeadNodes(config.getNodeTtlSeconds() * 10);
+        } catch (Exception e) {
+            log.warn("Scheduler heartbeat failed: nodeId={}", nodeId(), e);
+        }
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.subscription.scheduler;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.service.OutboxService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxRelayScheduler {
+
+    private static final String PURGE_JOB_NAME = "outbox-purge";
+
+    private final OutboxService outboxService;
+    private final BusinessMetrics businessMetrics;
+    private final AppProperties appProperties;
+    private final JobCoordinator jobCoordinator;
+
+    private final AtomicBoolean relaying = new AtomicBoolean(false);
+    private final AtomicBoolean relayRequested = new AtomicBoolean(false);
+
+    // Wake the relay as soon as an outbox row is committed instead of waiting for the next poll
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onOutboxEnqueued(OutboxService.OutboxEnqueued event) {
+        triggerRelay();
+    }
+
+    // Safety net for rows left behind by failed sends, restarts or another instance's commits
+    @Scheduled(fixedDelayString = "${app.kafka.outbox.poll-interval-ms:1000}")
+    public void pollOutbox() {
+        try {
+            businessMetrics.recordOutboxBacklog(outboxService.countPending());
+            businessMetrics.recordOutboxAbandonedBacklog(outboxService.countAbandoned());
+        } catch (Exception e) {
+            log.error("Error reading outbox backlog", e);
+        }
+        triggerRelay();
+    }
+
+    // Sent rows are only needed while the recovery sweep may still look for them
+    @Scheduled(fixedDelayString = "${app.kafka.outbox.purge-interval-ms:3600000}",
+               initialDelayString = "${app.kafka.outbox.purge-interval-ms:3600000}")
+    public void purgeSentRows() {
+        AppProperties.Kafka.Outbox config = appProperties.getKafka().getOutbox();
+        try {
+            jobCoordinator.runExclusive(PURGE_JOB_NAME, Duration.ofMillis(config.getPurgeIntervalMs() / 2), () -> {
+                long purged = 0;
+                int deleted;
+                do {
+                    deleted = outboxService.purgeSentBatch();
+                    purged += deleted;
+                } while (deleted >= config.getPurgeBatchSize());
+                log.info("Purged sent outbox rows: purged={}, retentionHours={}", purged, config.getRetentionHours());
+            });
+        } catch (Exception e) {
+            log.error("Error purging sent outbox rows", e);
+        }
+    }
+
+    public void triggerRelay() {
+        relayRequested.set(true);
+        if (!relaying.compareAndSet(false, true)) {
+            return;
+        }
+
+        Thread.ofVirtual().name("outbox-relay").start(() -> {
+            try {
+                while (relayRequested.getAndSet(false)) {
+                    relayUntilDrained();
+                }
+            } catch (Exception e) {
+                log.error("Error relaying book keeping outbox", e);
+            } finally {
+                relaying.set(false);
+            }
+            // A wake-up may have landed between the last check and releasing the flag
+            if (relayRequested.get()) {
+                triggerRelay();
+            }
+        });
+    }
+
+    private void relayUntilDrained() {
+        int batchSize = appProperties.getKafka().getOutbox().getBatchSize();
+        int sent;
+        do {
+            // A full batch means more rows may be waiting; a short or failing one stops until the next wake-up
+            sent = outboxService.relayBatch();
+        } while (sent >= batchSize);
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.subscription.scheduler;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.service.PaymentReconciliationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentReconciliationScheduler {
+
+    private static final String JOB_NAME = "payment-reconciliation";
+
+    private final PaymentReconciliationService paymentReconciliationService;
+    private final JobCoordinator jobCoordinator;
+    private final AppProperties appProperties;
+
+    // Re-check INITIATED payments whose completion callback never arrived
+    @Scheduled(fixedDelayString = "${app.payment.reconciliation.fixed-delay-ms:300000}",
+               initialDelayString = "${app.payment.reconciliation.initial-delay-ms:60000}")
+    public void reconcileStalePayments() {
+        AppProperties.Payment.Reconciliation config = appProperties.getPayment().getReconciliation();
+        if (!config.isEnabled()) {
+            return;
+        }
+
+        try {
+            // One leader per period: the run resumes from a shared checkpoint, so it must not overlap itself
+            jobCoordinator.runExclusive(JOB_NAME, Duration.ofMillis(config.getFixedDelayMs() / 2), () -> {
+                log.info("Running scheduled task: Reconciling stale payments");
+                PaymentReconciliationService.ReconciliationSummary summary =
+                        paymentReconciliationService.reconcileStalePayments();
+
+                log.info("Completed scheduled task: Reconciled stale payments - scanned={}, completed={}, failed={}, " +
+                                "pending={}, errors={}, finished={}",
+                        summary.scanned(), summary.completed(), summary.failed(),
+                        summary.pending(), summary.errors(), summary.finished());
+            });
+        } catch (Exception e) {
+            log.error("Error in scheduled task for payment reconciliation", e);
+        }
+    }
+}
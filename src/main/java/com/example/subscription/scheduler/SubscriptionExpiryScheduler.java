@@ -1,22 +1,59 @@
 package com.example.subscription.scheduler;
 
-import com.example.subscription.model.UserSubscription;
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.dto.projection.ExpiringSubscription;
 import com.example.subscription.notification.NotificationService;
 import com.example.subscription.repository.UserSubscriptionRepository;
+import com.example.subscription.service.SubscriptionExpiryIndexService;
+import com.example.subscription.service.SubscriptionExpiryService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 
+// Both jobs run sharded by user_id: every instance fires, and each takes a share of the shards for the day
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class SubscriptionExpiryScheduler {
 
+    private static final String EXPIRY_JOB = "subscription-expiry";
+    private static final String REMINDER_JOB = "expiry-reminders";
+
     private final UserSubscriptionRepository userSubscriptionRepository;
     private final NotificationService notificationService;
+    private final SubscriptionExpiryService subscriptionExpiryService;
+    private final SubscriptionExpiryIndexService subscriptionExpiryIndexService;
+    private final JobCoordinator jobCoordinator;
+    private final AppProperties appProperties;
+
+    // Run shortly after midnight so subscriptions that ended yesterday free their slot for re-subscription
+    @Scheduled(cron = "${app.expiry.cron:0 5 0 * * ?}")
+    public void expireOverdueSubscriptions() {
+        if (!appProperties.getExpiry().isEnabled()) {
+            return;
+        }
+
+        log.info("Running scheduled task: Expiring overdue subscriptions");
+        
+        try {
+            LocalDate today = LocalDate.now();
+            jobCoordinator.runSharded(EXPIRY_JOB, today.toString(), shard -> {
+                SubscriptionExpiryService.ExpirySummary summary =
+                        subscriptionExpiryService.expireOverdueSubscriptions(shard.index(), shard.count());
+                log.info("Expired overdue subscriptions: shard={}, expired={}, batches={}, finished={}",
+                        shard.index(), summary.expired(), summary.batches(), summary.finished());
+                trimExpiryIndex(today, shard);
+            });
+        } catch (Exception e) {
+            log.error("Error in scheduled task for subscription expiry", e);
+        }
+    }
 
     // Run daily at 9 AM to check for expiring subscriptions
     @Scheduled(cron = "0 0 9 * * ?")
@@ -24,20 +61,66 @@ public class SubscriptionExpiryScheduler {
         log.info("Running scheduled task: Checking expiring subscriptions");
         
         try {
-            List<UserSubscription> activeSubscriptions = userSubscriptionRepository
-                    .findByStatus("ACTIVE");
-            
-            // Filter to only active ones with valid end dates
-            List<UserSubscription> validActiveSubscriptions = activeSubscriptions.stream()
-                    .filter(sub -> sub.getStatus().equals("ACTIVE") && sub.getEndDate() != null)
-                    .toList();
-            
-            notificationService.checkAndNotifyExpiringSubscriptions(validActiveSubscriptions);
-            
-            log.info("Completed scheduled task: Checked {} active subscriptions", validActiveSubscriptions.size());
+            LocalDate today = LocalDate.now();
+            // A shard completed today is never taken again today, so each reminder goes out once
+            jobCoordinator.runSharded(REMINDER_JOB, today.toString(), shard -> {
+                long notified = notifyExpiring(today, shard);
+                log.info("Notified expiring subscriptions: shard={}, notified={}", shard.index(), notified);
+            });
         } catch (Exception e) {
             log.error("Error in scheduled task for expiring subscriptions", e);
         }
     }
-}
 
+    // The index only holds end dates after today; a failed trim leaves entries no reader asks for
+    private void trimExpiryIndex(LocalDate today, JobCoordinator.Shard shard) {
+        try {
+            long removed = subscriptionExpiryIndexService.removeExpiredThrough(today, shard.index(), shard.count());
+            log.info("Trimmed expiry index: shard={}, removed={}", shard.index(), removed);
+        } catch (Exception e) {
+            log.warn("Expiry index trim failed: shard={}, reason={}", shard.index(), e.getMessage());
+        }
+    }
+
+    private long notifyExpiring(LocalDate today, JobCoordinator.Shard shard) {
+        AppProperties.Notification.Expiry config = appProperties.getNotification().getExpiry();
+        LocalDate from = today.plusDays(1);
+        LocalDate to = today.plusDays(config.getWarningDays());
+
+        if (subscriptionExpiryIndexService.isAvailable(shard.count())) {
+            try {
+                return subscriptionExpiryIndexService.forEachExpiringInShard(shard.index(), shard.count(), from, to,
+                        config.getChunkSize(), page -> notifyPage(today, page));
+            } catch (Exception e) {
+                // Anything already sent is dropped as a duplicate by the dispatcher
+                log.warn("Expiry index scan failed, rescanning from the database: shard={}, reason={}",
+                        shard.index(), e.getMessage());
+            }
+        }
+
+        // Only the range on idx_user_subscriptions_end_date is read, one page of projections at a time
+        LocalDate afterEndDate = today;
+        long afterId = 0;
+        long notified = 0;
+        List<ExpiringSubscription> page;
+        do {
+            page = userSubscriptionRepository.findExpiringAfter(from, to, shard.index(), shard.count(),
+                    afterEndDate, afterId, PageRequest.of(0, config.getChunkSize()));
+            notifyPage(today, page);
+            if (!page.isEmpty()) {
+                ExpiringSubscription last = page.get(page.size() - 1);
+                afterEndDate = last.endDate();
+                afterId = last.id();
+                notified += page.size();
+            }
+        } while (page.size() >= config.getChunkSize());
+        return notified;
+    }
+
+    private void notifyPage(LocalDate today, List<ExpiringSubscription> page) {
+        for (ExpiringSubscription subscription : page) {
+            notificationService.notifySubscriptionExpiring(
+                    subscription, ChronoUnit.DAYS.between(today, subscription.endDate()));
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.subscription.service;
+
+public interface BookKeepingRecoveryService {
+
+    SweepSummary sweepUnprocessedCompleted();
+
+    record SweepSummary(boolean lockAcquired, long scanned, long republished, long skipped, boolean finished) {}
+}
@@ -6,7 +6,11 @@ public interface BookKeepingService {
     
     BookKeeping createBookKeepingEntry(BookKeeping bookKeeping);
     
-    void markAsCompleted(Long bookKeepingId, String paymentReferenceId);
+    boolean markAsCompleted(Long bookKeepingId, String paymentReferenceId);
+    
+    void markAsFailed(Long bookKeepingId, String errorMessage);
+    
+    void recordPaymentReference(Long bookKeepingId, String paymentReferenceId);
     
     BookKeeping findByIdempotencyKey(String idempotencyKey);
 }
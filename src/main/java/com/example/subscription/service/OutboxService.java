@@ -0,0 +1,27 @@
+package com.example.subscription.service;
+
+import com.example.subscription.model.BookKeeping;
+
+import java.util.List;
+
+public interface OutboxService {
+    
+    void enqueue(BookKeeping bookKeeping);
+    
+    // Same as enqueue for many entries, written as one JDBC batch
+    void enqueueAll(List<BookKeeping> bookKeepings);
+    
+    // Returns how many claimed rows were acknowledged by Kafka and marked sent
+    int relayBatch();
+    
+    long countPending();
+    
+    // Unsent rows that reached the attempt limit and are no longer relayed
+    long countAbandoned();
+    
+    // Deletes one batch of rows sent before the retention window; returns how many were deleted
+    int purgeSentBatch();
+    
+    // Published inside the writing transaction; listeners react after it commits
+    record OutboxEnqueued(Long outboxId) {}
+}
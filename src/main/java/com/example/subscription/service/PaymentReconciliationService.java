@@ -0,0 +1,8 @@
+package com.example.subscription.service;
+
+public interface PaymentReconciliationService {
+
+    ReconciliationSummary reconcileStalePayments();
+
+    record ReconciliationSummary(long scanned, long completed, long failed, long pending, long errors, boolean finished) {}
+}
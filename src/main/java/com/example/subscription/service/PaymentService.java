@@ -10,4 +10,6 @@ public interface PaymentService {
     void processPayment(BookKeeping bookKeeping);
     
     Mono<Map<String, Object>> getPaymentStatus(String paymentReferenceId);
+    
+    Mono<Map<String, Object>> getPaymentStatusByBookKeepingId(Long bookKeepingId);
 }
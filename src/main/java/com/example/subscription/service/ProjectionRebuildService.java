@@ -0,0 +1,22 @@
+package com.example.subscription.service;
+
+import java.time.LocalDateTime;
+
+public interface ProjectionRebuildService {
+
+    // Starts a rebuild in the background, resuming an interrupted one unless restart is set
+    RebuildStatus start(boolean restart);
+
+    RebuildStatus status();
+
+    record RebuildStatus(
+            String state,
+            Long rebuildId,
+            int shards,
+            int shardsCompleted,
+            long highWaterMark,
+            long eventsRead,
+            long rowsWritten,
+            LocalDateTime startedAt,
+            String lastError) {}
+}
@@ -0,0 +1,48 @@
+package com.example.subscription.service;
+
+import com.example.subscription.dto.projection.ExpiringSubscription;
+import com.example.subscription.model.UserSubscription;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+public interface SubscriptionExpiryIndexService {
+
+    // Records the subscriptions' current end dates; written to Redis once the transaction commits
+    void index(Collection<UserSubscription> subscriptions);
+
+    // Drops everything ending on or before the date from the index shards covering a job shard
+    long removeExpiredThrough(LocalDate date, int shard, int shardCount);
+
+    // False until a rebuild has populated the index, or when its shards cannot be split into shardCount
+    boolean isAvailable(int shardCount);
+
+    // Hands one job shard's subscriptions ending in [from, to] to the consumer in pages; returns the total
+    long forEachExpiringInShard(int shard, int shardCount, LocalDate from, LocalDate to, int pageSize,
+                                Consumer<List<ExpiringSubscription>> consumer);
+
+    List<ExpiringSubscription> findExpiringForUser(long userId, LocalDate from, LocalDate to);
+
+    AccountExpiryCounts countExpiringForAccount(long accountId, LocalDate from, LocalDate to);
+
+    // Starts a rebuild from user_subscriptions in the background; a running one is left alone
+    RebuildStatus startRebuild();
+
+    RebuildStatus rebuildStatus();
+
+    record IndexRequested(List<ExpiringSubscription> entries) {}
+
+    record AccountExpiryCounts(long accountId, LocalDate from, LocalDate to, long total, Map<LocalDate, Long> byDay) {}
+
+    record RebuildStatus(
+            String state,
+            long indexed,
+            long removed,
+            LocalDateTime startedAt,
+            LocalDateTime completedAt,
+            String lastError) {}
+}
@@ -0,0 +1,9 @@
+package com.example.subscription.service;
+
+public interface SubscriptionExpiryService {
+
+    // Expires the subscriptions of users with user_id mod shardCount == shard
+    ExpirySummary expireOverdueSubscriptions(int shard, int shardCount);
+
+    record ExpirySummary(long expired, int batches, boolean finished) {}
+}
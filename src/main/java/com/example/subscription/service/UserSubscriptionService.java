@@ -1,15 +1,23 @@
 package com.example.subscription.service;
 
+import com.example.subscription.dto.event.BookKeepingEvent;
 import com.example.subscription.model.BookKeeping;
 import com.example.subscription.model.UserSubscription;
 
 import java.util.List;
+import java.util.Map;
 
 public interface UserSubscriptionService {
     
     void materializeFromBookKeeping(BookKeeping bookKeeping);
     
+    void materializeFromEvent(BookKeepingEvent event);
+    
+    BatchMaterializationResult materializeBatch(List<BookKeepingEvent> events);
+    
     List<UserSubscription> getUserSubscriptions(Long userId);
     
     List<UserSubscription> getActiveUserSubscriptions(Long userId);
+    
+    record BatchMaterializationResult(List<Long> processedIds, Map<Long, String> failures) {}
 }
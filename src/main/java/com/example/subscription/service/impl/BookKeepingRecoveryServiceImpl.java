@@ -0,0 +1,147 @@
+package com.example.subscription.service.impl;
+
+import com.example.subscription.cache.RedisCacheService;
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.model.BookKeeping;
+import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.repository.BookKeepingOutboxRepository;
+import com.example.subscription.repository.BookKeepingRepository;
+import com.example.subscription.service.BookKeepingRecoveryService;
+import com.example.subscription.service.OutboxService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Heals COMPLETED entries whose Kafka event was lost or never consumed: pages through them oldest
+// first and writes a fresh outbox row for each, so the normal relay and consumer materialize them
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BookKeepingRecoveryServiceImpl implements BookKeepingRecoveryService {
+
+    private static final String LOCK_KEY = "recovery:bookkeeping:completed:lock";
+    private static final LocalDateTime KEYSET_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final BookKeepingRepository bookKeepingRepository;
+    private final BookKeepingOutboxRepository outboxRepository;
+    private final OutboxService outboxService;
+    private final RedisCacheService redisCacheService;
+    private final PlatformTransactionManager transactionManager;
+    private final BusinessMetrics businessMetrics;
+    private final AppProperties appProperties;
+
+    private final String lockOwner = UUID.randomUUID().toString();
+
+    @Override
+    public SweepSummary sweepUnprocessedCompleted() {
+        AppProperties.Kafka.Recovery config = appProperties.getKafka().getRecovery();
+        recordBacklogAge();
+        if (!acquireLock(config)) {
+            return new SweepSummary(false, 0, 0, 0, false);
+        }
+
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime cutoff = now.minusSeconds(config.getGraceSeconds());
+            // Stop well before the lock expires so a second node never sweeps alongside this one
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.getLockTtlSeconds()) / 2;
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            int maxAttempts = appProperties.getKafka().getOutbox().getMaxAttempts();
+
+            LocalDateTime afterCompletedAt = KEYSET_START;
+            long afterId = 0;
+            long scanned = 0;
+            long republished = 0;
+            boolean finished = false;
+
+            while (scanned < config.getMaxRowsPerRun() && System.nanoTime() < deadline) {
+                List<BookKeeping> page = bookKeepingRepository.findUnprocessedCompletedAfter(
+                        cutoff, afterCompletedAt, afterId, PageRequest.of(0, config.getBatchSize()));
+                if (page.isEmpty()) {
+                    finished = true;
+                    break;
+                }
+
+                Integer sent = transactionTemplate.execute(status -> republish(page, cutoff, now, maxAttempts));
+                republished += sent != null ? sent : 0;
+                scanned += page.size();
+
+                BookKeeping last = page.get(page.size() - 1);
+                afterCompletedAt = last.getCompletedAt();
+                afterId = last.getId();
+                if (page.size() < config.getBatchSize()) {
+                    finished = true;
+                    break;
+                }
+            }
+
+            recordBacklogAge();
+            return new SweepSummary(true, scanned, republished, scanned - republished, finished);
+        } finally {
+            releaseLock();
+        }
+    }
+
+    private int republish(List<BookKeeping> page, LocalDateTime cutoff, LocalDateTime now, int maxAttempts) {
+        List<Long> ids = page.stream().map(BookKeeping::getId).toList();
+        // Re-read under the transaction: the consumer may have caught up since the page was read
+        Set<Long> stillCompleted = new HashSet<>(bookKeepingRepository.findIdsByIdInAndStatus(ids, "COMPLETED"));
+        // A queued or recently sent event is still on its way; publishing again would only add a duplicate.
+        // Rows the relay gave up on do not count, so their entries are published again from here.
+        Set<Long> inFlight = new HashSet<>(outboxRepository.findInFlightBookKeepingIds(ids, cutoff, maxAttempts));
+
+        List<Long> republishedIds = new ArrayList<>();
+        for (BookKeeping bookKeeping : page) {
+            if (!stillCompleted.contains(bookKeeping.getId()) || inFlight.contains(bookKeeping.getId())) {
+                continue;
+            }
+            outboxService.enqueue(bookKeeping);
+            businessMetrics.recordUnprocessedCompletedRecovered(
+                    Duration.between(bookKeeping.getCompletedAt(), now).toMillis());
+            log.info("Re-publishing unprocessed book keeping entry: id={}, completedAt={}",
+                    bookKeeping.getId(), bookKeeping.getCompletedAt());
+            republishedIds.add(bookKeeping.getId());
+        }
+        if (!republishedIds.isEmpty()) {
+            outboxRepository.deleteAbandoned(republishedIds, maxAttempts);
+        }
+        return republishedIds.size();
+    }
+
+    private void recordBacklogAge() {
+        LocalDateTime oldest = bookKeepingRepository.findOldestUnprocessedCompletedAt();
+        long ageSeconds = oldest != null ? Duration.between(oldest, LocalDateTime.now()).getSeconds() : 0;
+        businessMetrics.recordUnprocessedCompletedAge(ageSeconds);
+    }
+
+    private boolean acquireLock(AppProperties.Kafka.Recovery config) {
+        try {
+            return Boolean.TRUE.equals(redisCacheService.setIfAbsent(
+                    LOCK_KEY, lockOwner, Duration.ofSeconds(config.getLockTtlSeconds())).block());
+        } catch (Exception e) {
+            // Without the lock two nodes could sweep at once; skipping one run is the cheaper outcome
+            log.warn("Could not acquire recovery sweep lock, skipping this run", e);
+            return false;
+        }
+    }
+
+    private void releaseLock() {
+        try {
+            redisCacheService.deleteIfValue(LOCK_KEY, lockOwner).block();
+        } catch (Exception e) {
+            log.warn("Could not release recovery sweep lock; it expires on its own", e);
+        }
+    }
+}
@@ -1,15 +1,20 @@
 package com.example.subscription.service.impl;
 
-import com.example.subscription.kafka.BookKeepingProducer;
+import com.example.subscription.exception.ErrorCode;
+import com.example.subscription.exception.SubscriptionException;
 import com.example.subscription.model.BookKeeping;
+import com.example.subscription.observability.PipelineLatencyTracker;
 import com.example.subscription.repository.BookKeepingRepository;
+import com.example.subscription.repository.BookKeepingStateMachine;
 import com.example.subscription.service.BookKeepingService;
+import com.example.subscription.service.OutboxService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
@@ -17,7 +22,9 @@ import java.time.LocalDateTime;
 public class BookKeepingServiceImpl implements BookKeepingService {
     
     private final BookKeepingRepository bookKeepingRepository;
-    private final BookKeepingProducer bookKeepingProducer;
+    private final BookKeepingStateMachine bookKeepingStateMachine;
+    private final OutboxService outboxService;
+    private final PipelineLatencyTracker pipelineLatencyTracker;
 
     @Override
     @Transactional
@@ -41,19 +48,49 @@ public class BookKeepingServiceImpl implements BookKeepingService {
 
     @Override
     @Transactional
-    public void markAsCompleted(Long bookKeepingId, String paymentReferenceId) {
-        BookKeeping bookKeeping = bookKeepingRepository.findById(bookKeepingId)
-                .orElseThrow(() -> new RuntimeException("Book keeping entry not found: " + bookKeepingId));
-        
-        bookKeeping.setStatus("COMPLETED");
-        bookKeeping.setPaymentReferenceId(paymentReferenceId);
-        bookKeeping.setCompletedAt(LocalDateTime.now());
-        
-        bookKeepingRepository.save(bookKeeping);
+    public boolean markAsCompleted(Long bookKeepingId, String paymentReferenceId) {
+        // Callback, reactive response and reconciliation may all report the same payment
+        Optional<BookKeeping> completed = bookKeepingStateMachine.complete(
+                bookKeepingId, paymentReferenceId, LocalDateTime.now());
+        if (completed.isEmpty()) {
+            if (!bookKeepingRepository.existsById(bookKeepingId)) {
+                throw new SubscriptionException(ErrorCode.SUBSCRIPTION_NOT_FOUND, 
+                        "Book keeping entry not found: " + bookKeepingId);
+            }
+            log.info("Book keeping already past INITIATED, ignoring completion: id={}", bookKeepingId);
+            return false;
+        }
         
-        // Send to Kafka for async processing
-        bookKeepingProducer.sendBookKeepingEvent(bookKeeping);
-        log.info("Marked book keeping as completed and sent to Kafka: id={}", bookKeepingId);
+        BookKeeping bookKeeping = completed.get();
+        // Written in this transaction; the outbox relay publishes it to Kafka once committed
+        outboxService.enqueue(bookKeeping);
+        pipelineLatencyTracker.recordCompleted(bookKeeping.getCreatedAt(), bookKeeping.getCompletedAt());
+        log.info("Marked book keeping as completed and queued for Kafka: id={}", bookKeepingId);
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public void markAsFailed(Long bookKeepingId, String errorMessage) {
+        // Only an entry still waiting on payment can fail; later states are owned by the consumer
+        if (!bookKeepingStateMachine.fail(bookKeepingId, errorMessage)) {
+            if (!bookKeepingRepository.existsById(bookKeepingId)) {
+                throw new SubscriptionException(ErrorCode.SUBSCRIPTION_NOT_FOUND, 
+                        "Book keeping entry not found: " + bookKeepingId);
+            }
+            log.warn("Skipping failure transition, entry is no longer INITIATED: id={}", bookKeepingId);
+            return;
+        }
+        log.info("Marked book keeping as failed: id={}, reason={}", bookKeepingId, errorMessage);
+    }
+
+    @Override
+    @Transactional
+    public void recordPaymentReference(Long bookKeepingId, String paymentReferenceId) {
+        // Lets reconciliation ask the payment service about a submitted payment whose callback never arrives
+        if (bookKeepingRepository.recordPaymentReference(bookKeepingId, paymentReferenceId) > 0) {
+            log.info("Recorded payment reference: id={}, paymentReferenceId={}", bookKeepingId, paymentReferenceId);
+        }
     }
 
     @Override
@@ -0,0 +1,165 @@
+package com.example.subscription.service.impl;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.kafka.BookKeepingProducer;
+import com.example.subscription.model.BookKeeping;
+import com.example.subscription.model.BookKeepingOutbox;
+import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.repository.BookKeepingOutboxBatchRepository;
+import com.example.subscription.repository.BookKeepingOutboxRepository;
+import com.example.subscription.service.OutboxService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxServiceImpl implements OutboxService {
+
+    // Arbitrary application-wide key for pg_try_advisory_xact_lock
+    private static final long RELAY_LOCK_KEY = 0x626b5f6f7574L;
+
+    private final BookKeepingOutboxRepository outboxRepository;
+    private final BookKeepingOutboxBatchRepository outboxBatchRepository;
+    private final BookKeepingProducer bookKeepingProducer;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BusinessMetrics businessMetrics;
+    private final AppProperties appProperties;
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(BookKeeping bookKeeping) {
+        BookKeepingOutbox saved = outboxRepository.save(toOutbox(bookKeeping));
+        eventPublisher.publishEvent(new OutboxEnqueued(saved.getId()));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueAll(List<BookKeeping> bookKeepings) {
+        if (bookKeepings.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<BookKeepingOutbox> rows = new ArrayList<>(bookKeepings.size());
+        for (BookKeeping bookKeeping : bookKeepings) {
+            BookKeepingOutbox outbox = toOutbox(bookKeeping);
+            outbox.setCreatedAt(now);
+            rows.add(outbox);
+        }
+
+        outboxBatchRepository.insertAll(rows);
+        // One wake-up is enough; the relay drains everything committed with it
+        eventPublisher.publishEvent(new OutboxEnqueued(rows.get(rows.size() - 1).getId()));
+    }
+
+    private BookKeepingOutbox toOutbox(BookKeeping bookKeeping) {
+        BookKeepingOutbox outbox = new BookKeepingOutbox();
+        outbox.setBookKeepingId(bookKeeping.getId());
+        outbox.setMessageKey(bookKeepingProducer.messageKey(bookKeeping));
+        try {
+            outbox.setPayload(bookKeepingProducer.serialize(bookKeeping));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize book keeping event: " + bookKeeping.getId(), e);
+        }
+        return outbox;
+    }
+
+    @Override
+    @Transactional
+    public int relayBatch() {
+        // Another instance is relaying; its batch ends with this one's rows either sent or still claimable
+        if (!outboxRepository.tryAcquireRelayLock(RELAY_LOCK_KEY)) {
+            return 0;
+        }
+
+        AppProperties.Kafka.Outbox config = appProperties.getKafka().getOutbox();
+        List<BookKeepingOutbox> claimed = outboxRepository.claimUnsent(config.getBatchSize(), config.getMaxAttempts());
+        if (claimed.isEmpty()) {
+            return 0;
+        }
+
+        // Everything goes out before the first wait so the producer can batch; id order is send order
+        List<CompletableFuture<?>> sends = new ArrayList<>(claimed.size());
+        for (BookKeepingOutbox row : claimed) {
+            sends.add(bookKeepingProducer.send(row.getMessageKey(), row.getPayload()));
+        }
+
+        // The claim locks and the relay lock are held while waiting, so the wait is short and bounded
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getSendTimeoutMs());
+        List<Long> sentIds = new ArrayList<>(claimed.size());
+        // Once a row fails, later rows with the same key stay unsent and go out again behind it
+        Set<String> failedKeys = new HashSet<>();
+        for (int i = 0; i < claimed.size(); i++) {
+            BookKeepingOutbox row = claimed.get(i);
+            if (failedKeys.contains(row.getMessageKey())) {
+                continue;
+            }
+            try {
+                sends.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                sentIds.add(row.getId());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException | TimeoutException e) {
+                Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                failedKeys.add(row.getMessageKey());
+                outboxRepository.recordFailure(row.getId(), String.valueOf(cause));
+                businessMetrics.recordOutboxSendFailed();
+                if (row.getAttempts() + 1 >= config.getMaxAttempts()) {
+                    log.error("Outbox send failed {} times, leaving it to the recovery sweep: outboxId={}, bookKeepingId={}",
+                            row.getAttempts() + 1, row.getId(), row.getBookKeepingId(), cause);
+                    businessMetrics.recordOutboxAbandoned();
+                } else {
+                    log.warn("Outbox send failed, will retry: outboxId={}, bookKeepingId={}",
+                            row.getId(), row.getBookKeepingId(), cause);
+                }
+            }
+        }
+
+        if (!sentIds.isEmpty()) {
+            outboxRepository.markSent(sentIds, LocalDateTime.now());
+            businessMetrics.recordOutboxRelayed(sentIds.size());
+        }
+        log.debug("Relayed outbox batch: claimed={}, sent={}, blockedKeys={}",
+                claimed.size(), sentIds.size(), failedKeys.size());
+        return sentIds.size();
+    }
+
+    @Override
+    public long countPending() {
+        return outboxRepository.countBySentAtIsNull();
+    }
+
+    @Override
+    public long countAbandoned() {
+        return outboxRepository.countBySentAtIsNullAndAttemptsGreaterThanEqual(
+                appProperties.getKafka().getOutbox().getMaxAttempts());
+    }
+
+    @Override
+    @Transactional
+    public int purgeSentBatch() {
+        AppProperties.Kafka.Outbox config = appProperties.getKafka().getOutbox();
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(config.getRetentionHours());
+        int purged = outboxRepository.purgeSentBefore(cutoff, config.getPurgeBatchSize());
+        if (purged > 0) {
+            businessMetrics.recordOutboxPurged(purged);
+        }
+        return purged;
+    }
+}
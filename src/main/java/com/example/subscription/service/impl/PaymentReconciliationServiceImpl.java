@@ -0,0 +1,187 @@
+package com.example.subscription.service.impl;
+
+import com.example.subscription.cache.RedisCacheService;
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.model.BookKeeping;
+import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.repository.BookKeepingRepository;
+import com.example.subscription.service.BookKeepingService;
+import com.example.subscription.service.PaymentReconciliationService;
+import com.example.subscription.service.PaymentService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentReconciliationServiceImpl implements PaymentReconciliationService {
+
+    private static final String CHECKPOINT_KEY = "reconciliation:payment:checkpoint";
+    private static final Duration CHECKPOINT_TTL = Duration.ofDays(1);
+
+    private final BookKeepingRepository bookKeepingRepository;
+    private final BookKeepingService bookKeepingService;
+    private final PaymentService paymentService;
+    private final RedisCacheService redisCacheService;
+    private final BusinessMetrics businessMetrics;
+    private final AppProperties appProperties;
+
+    // Lookups currently on the wire, shared by every row that maps to the same payment reference
+    private final Map<String, Mono<Map<String, Object>>> inFlightLookups = new ConcurrentHashMap<>();
+
+    private enum Outcome { COMPLETED, FAILED, PENDING, ERROR }
+
+    @Override
+    public ReconciliationSummary reconcileStalePayments() {
+        AppProperties.Payment.Reconciliation config = appProperties.getPayment().getReconciliation();
+        long startedAt = System.currentTimeMillis();
+        LocalDateTime cutoff = LocalDateTime.now().minusSeconds(config.getStaleAfterSeconds());
+        recordLag();
+
+        Map<Outcome, AtomicLong> outcomes = new EnumMap<>(Outcome.class);
+        for (Outcome outcome : Outcome.values()) {
+            outcomes.put(outcome, new AtomicLong());
+        }
+
+        // Resume after the last fully reconciled chunk of an interrupted or capped run
+        long lastId = loadCheckpoint();
+        long scanned = 0;
+        boolean finished = false;
+
+        while (scanned < config.getMaxRowsPerRun()) {
+            List<BookKeeping> chunk = bookKeepingRepository.findStaleInitiatedAfter(
+                    cutoff, lastId, PageRequest.of(0, config.getChunkSize()));
+            if (chunk.isEmpty()) {
+                finished = true;
+                break;
+            }
+
+            Flux.fromIterable(chunk)
+                    .flatMap(this::reconcile, config.getParallelism())
+                    .doOnNext(outcome -> {
+                        outcomes.get(outcome).incrementAndGet();
+                        businessMetrics.recordReconciliationOutcome(outcome.name().toLowerCase(Locale.ROOT));
+                    })
+                    .blockLast();
+
+            scanned += chunk.size();
+            lastId = chunk.get(chunk.size() - 1).getId();
+            saveCheckpoint(lastId);
+        }
+
+        if (finished) {
+            clearCheckpoint();
+        }
+
+        long durationMillis = System.currentTimeMillis() - startedAt;
+        businessMetrics.recordReconciliationRun(durationMillis, scanned);
+        recordLag();
+
+        return new ReconciliationSummary(
+                scanned,
+                outcomes.get(Outcome.COMPLETED).get(),
+                outcomes.get(Outcome.FAILED).get(),
+                outcomes.get(Outcome.PENDING).get(),
+                outcomes.get(Outcome.ERROR).get(),
+                finished);
+    }
+
+    private Mono<Outcome> reconcile(BookKeeping bookKeeping) {
+        String reference = bookKeeping.getPaymentReferenceId();
+        // Without a reference, e.g. when the submission's response was lost, look it up by our own id
+        Mono<Map<String, Object>> lookup = reference != null
+                ? lookupStatus(reference)
+                : paymentService.getPaymentStatusByBookKeepingId(bookKeeping.getId());
+
+        return lookup
+                .publishOn(Schedulers.boundedElastic())
+                .map(status -> applyStatus(bookKeeping, reference, status))
+                .defaultIfEmpty(Outcome.PENDING)
+                .onErrorResume(WebClientResponseException.NotFound.class, e -> {
+                    // Not known (yet) at the payment service is not a failure; look again next run
+                    log.warn("Payment not found at payment service, leaving INITIATED: bookKeepingId={}, reference={}",
+                            bookKeeping.getId(), reference);
+                    return Mono.just(Outcome.PENDING);
+                })
+                .onErrorResume(e -> {
+                    log.warn("Payment reconciliation lookup failed: bookKeepingId={}, reference={}",
+                            bookKeeping.getId(), reference, e);
+                    return Mono.just(Outcome.ERROR);
+                });
+    }
+
+    private Mono<Map<String, Object>> lookupStatus(String reference) {
+        return inFlightLookups.computeIfAbsent(reference, ref -> paymentService.getPaymentStatus(ref)
+                .doFinally(signal -> inFlightLookups.remove(ref))
+                .cache());
+    }
+
+    private Outcome applyStatus(BookKeeping bookKeeping, String reference, Map<String, Object> status) {
+        String state = String.valueOf(status.get("status")).toUpperCase(Locale.ROOT);
+
+        switch (state) {
+            case "COMPLETED", "SUCCESS", "SUCCEEDED" -> {
+                Object confirmedReference = status.get("paymentReferenceId");
+                bookKeepingService.markAsCompleted(bookKeeping.getId(),
+                        confirmedReference != null ? confirmedReference.toString() : reference);
+                log.info("Reconciled payment as completed: bookKeepingId={}", bookKeeping.getId());
+                return Outcome.COMPLETED;
+            }
+            case "FAILED", "DECLINED", "CANCELLED" -> {
+                bookKeepingService.markAsFailed(bookKeeping.getId(), "Payment " + state + " at payment service");
+                log.info("Reconciled payment as failed: bookKeepingId={}, state={}", bookKeeping.getId(), state);
+                return Outcome.FAILED;
+            }
+            default -> {
+                return Outcome.PENDING;
+            }
+        }
+    }
+
+    private void recordLag() {
+        LocalDateTime oldest = bookKeepingRepository.findOldestInitiatedCreatedAt();
+        long lagSeconds = oldest != null ? Duration.between(oldest, LocalDateTime.now()).getSeconds() : 0;
+        businessMetrics.recordReconciliationLag(lagSeconds);
+    }
+
+    private long loadCheckpoint() {
+        try {
+            String value = redisCacheService.get(CHECKPOINT_KEY).block();
+            return value != null ? Long.parseLong(value) : 0L;
+        } catch (Exception e) {
+            log.warn("Could not read reconciliation checkpoint, starting from the beginning", e);
+            return 0L;
+        }
+    }
+
+    private void saveCheckpoint(long lastId) {
+        try {
+            redisCacheService.set(CHECKPOINT_KEY, String.valueOf(lastId), CHECKPOINT_TTL).block();
+        } catch (Exception e) {
+            log.warn("Could not store reconciliation checkpoint: lastId={}", lastId, e);
+        }
+    }
+
+    private void clearCheckpoint() {
+        try {
+            redisCacheService.delete(CHECKPOINT_KEY).block();
+        } catch (Exception e) {
+            log.warn("Could not clear reconciliation checkpoint", e);
+        }
+    }
+}
@@ -4,19 +4,27 @@ import com.example.subscription.config.AppProperties;
 import com.example.subscription.model.BookKeeping;
 import com.example.subscription.observability.BusinessMetrics;
 import com.example.subscription.resilience.CircuitBreakerService;
+import com.example.subscription.resilience.DeferredPaymentQueue;
+import com.example.subscription.resilience.HedgedRequestExecutor;
 import com.example.subscription.service.BookKeepingService;
 import com.example.subscription.service.PaymentService;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.util.UriBuilder;
 import reactor.core.publisher.Mono;
 import reactor.util.retry.Retry;
 
+import java.net.URI;
 import java.time.Duration;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
@@ -28,16 +36,21 @@ public class PaymentServiceImpl implements PaymentService {
     private final BookKeepingService bookKeepingService;
     private final BusinessMetrics businessMetrics;
     private final CircuitBreakerService circuitBreakerService;
+    private final HedgedRequestExecutor hedgedRequestExecutor;
+    private final DeferredPaymentQueue deferredPaymentQueue;
+    
+    private static final String PAYMENT_STATUS_OPERATION = "payment-status";
 
     @Override
     public void processPayment(BookKeeping bookKeeping) {
         Timer.Sample timer = businessMetrics.startPaymentTimer();
         CircuitBreaker circuitBreaker = circuitBreakerService.getPaymentServiceCircuitBreaker();
         
-        // Check circuit breaker state
+        // Check circuit breaker state; park the payment until the breaker recovers
         if (circuitBreaker.getState() == CircuitBreaker.State.OPEN) {
-            log.warn("Circuit breaker is OPEN for payment service, skipping payment processing: bookKeepingId={}", 
+            log.warn("Circuit breaker is OPEN for payment service, deferring payment processing: bookKeepingId={}", 
                     bookKeeping.getId());
+            deferredPaymentQueue.defer(bookKeeping);
             businessMetrics.recordPaymentProcessed("circuit_breaker_open");
             return;
         }
@@ -46,12 +59,17 @@ public class PaymentServiceImpl implements PaymentService {
                 .baseUrl(appProperties.getPayment().getServiceUrl())
                 .build();
 
-        Map<String, Object> paymentRequest = Map.of(
-            "bookKeepingId", bookKeeping.getId(),
-            "userId", bookKeeping.getUserId(),
-            "amount", "0.00", // Amount would come from subscription plan
-            "subscriptionPlanId", bookKeeping.getSubscriptionPlanId()
-        );
+        AppProperties.Payment.Callback callback = appProperties.getPayment().getCallback();
+
+        Map<String, Object> paymentRequest = new HashMap<>();
+        paymentRequest.put("bookKeepingId", bookKeeping.getId());
+        paymentRequest.put("userId", bookKeeping.getUserId());
+        paymentRequest.put("amount", "0.00"); // Amount would come from subscription plan
+        paymentRequest.put("subscriptionPlanId", bookKeeping.getSubscriptionPlanId());
+        if (callback.isEnabled()) {
+            // Payment service reports completion to our webhook; this call only submits the payment
+            paymentRequest.put("callbackUrl", callback.getUrl());
+        }
 
         // Wrap in circuit breaker using Resilience4j Reactor
         webClient.post()
@@ -71,6 +89,16 @@ public class PaymentServiceImpl implements PaymentService {
                 .subscribe(
                     result -> {
                         String paymentReferenceId = (String) result.get("paymentReferenceId");
+                        if (callback.isEnabled() && !"COMPLETED".equals(result.get("status"))) {
+                            if (paymentReferenceId != null) {
+                                bookKeepingService.recordPaymentReference(bookKeeping.getId(), paymentReferenceId);
+                            }
+                            businessMetrics.recordPaymentProcessed("submitted");
+                            businessMetrics.recordPaymentDuration(timer, "submitted");
+                            log.info("Payment submitted, awaiting completion callback: bookKeepingId={}", 
+                                    bookKeeping.getId());
+                            return;
+                        }
                         bookKeepingService.markAsCompleted(bookKeeping.getId(), paymentReferenceId);
                         businessMetrics.recordPaymentProcessed("success");
                         businessMetrics.recordPaymentDuration(timer, "success");
@@ -78,6 +106,13 @@ public class PaymentServiceImpl implements PaymentService {
                                 bookKeeping.getId(), paymentReferenceId);
                     },
                     error -> {
+                        if (isCallNotPermitted(error)) {
+                            // Breaker opened while we were retrying
+                            deferredPaymentQueue.defer(bookKeeping);
+                            businessMetrics.recordPaymentProcessed("circuit_breaker_open");
+                            businessMetrics.recordPaymentDuration(timer, "deferred");
+                            return;
+                        }
                         businessMetrics.recordPaymentProcessed("failed");
                         businessMetrics.recordPaymentDuration(timer, "failed");
                         log.error("Payment processing failed after retries: bookKeepingId={}", 
@@ -88,20 +123,48 @@ public class PaymentServiceImpl implements PaymentService {
 
     @Override
     public Mono<Map<String, Object>> getPaymentStatus(String paymentReferenceId) {
+        return fetchStatus(uri -> uri.path("/status/{paymentReferenceId}").build(paymentReferenceId));
+    }
+
+    @Override
+    public Mono<Map<String, Object>> getPaymentStatusByBookKeepingId(Long bookKeepingId) {
+        // Every submission carries the bookKeepingId, so this also finds payments whose response was lost
+        return fetchStatus(uri -> uri.path("/status").queryParam("bookKeepingId", bookKeepingId).build());
+    }
+
+    private Mono<Map<String, Object>> fetchStatus(Function<UriBuilder, URI> uri) {
         WebClient webClient = webClientBuilder
                 .baseUrl(appProperties.getPayment().getServiceUrl())
                 .build();
 
-        return webClient.get()
-                .uri("/status/{paymentReferenceId}", paymentReferenceId)
-                .retrieve()
-                .bodyToMono(Map.class)
-                .map(map -> (Map<String, Object>) map)
-                .timeout(Duration.ofMillis(appProperties.getPayment().getTimeout()))
+        // Status lookups are idempotent, so a slow instance can be raced by a hedged duplicate. The timeout
+        // belongs to each attempt, so a timed-out attempt errors where the executor samples its latency.
+        Duration timeout = Duration.ofMillis(appProperties.getPayment().getTimeout());
+        return hedgedRequestExecutor.execute(PAYMENT_STATUS_OPERATION, () -> webClient.get()
+                        .uri(uri)
+                        .retrieve()
+                        .bodyToMono(Map.class)
+                        .map(map -> (Map<String, Object>) map)
+                        .timeout(timeout))
                 .retryWhen(Retry.fixedDelay(
                     appProperties.getPayment().getRetry().getMaxAttempts(),
                     Duration.ofMillis(appProperties.getPayment().getRetry().getDelay())
-                ));
+                ).filter(error -> !isClientError(error)));
+    }
+
+    private boolean isCallNotPermitted(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CallNotPermittedException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 4xx answers (e.g. unknown reference) will not change on retry
+    private boolean isClientError(Throwable error) {
+        return error instanceof WebClientResponseException responseException
+                && responseException.getStatusCode().is4xxClientError();
     }
 }
 
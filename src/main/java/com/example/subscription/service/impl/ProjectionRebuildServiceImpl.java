@@ -0,0 +1,272 @@
+package com.example.subscription.service.impl;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.dto.event.BookKeepingEvent;
+import com.example.subscription.model.UserSubscription;
+import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.repository.BookKeepingStateMachine;
+import com.example.subscription.repository.ProjectionRebuildRepository;
+import com.example.subscription.service.ProjectionRebuildService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+// Rebuilds user_subscriptions from the book_keeping log:
+// 1. shards (user_id mod N) stream their users' COMPLETED/PROCESSED events up to a high-water mark,
+//    fold each user in memory and batch-insert into the shadow table, checkpointing per batch
+// 2. keys and indexes are built over the loaded shadow table
+// 3. in one transaction that first locks user_subscriptions (holding off consumers on every instance),
+//    users touched since the run started are refolded, live row ids are carried over and the shadow
+//    table is renamed over user_subscriptions
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProjectionRebuildServiceImpl implements ProjectionRebuildService {
+
+    private final ProjectionRebuildRepository rebuildRepository;
+    private final BookKeepingStateMachine bookKeepingStateMachine;
+    private final PlatformTransactionManager transactionManager;
+    private final BusinessMetrics businessMetrics;
+    private final AppProperties appProperties;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong eventsRead = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private volatile String state = "IDLE";
+    private volatile String lastError;
+
+    @Override
+    public RebuildStatus start(boolean restart) {
+        if (!running.compareAndSet(false, true)) {
+            return status();
+        }
+        state = "STARTING";
+        lastError = null;
+        Thread.ofPlatform().name("projection-rebuild").start(() -> {
+            try {
+                rebuild(restart);
+            } catch (Exception e) {
+                // Checkpoints and the shadow table stay behind so the next start resumes
+                log.error("User subscription projection rebuild failed", e);
+                state = "FAILED";
+                lastError = e.getMessage();
+            } finally {
+                running.set(false);
+            }
+        });
+        return status();
+    }
+
+    @Override
+    public RebuildStatus status() {
+        List<ProjectionRebuildRepository.Checkpoint> checkpoints = rebuildRepository.findLatestCheckpoints();
+        if (checkpoints.isEmpty()) {
+            return new RebuildStatus(state, null, 0, 0, 0, eventsRead.get(), rowsWritten.get(), null, lastError);
+        }
+        ProjectionRebuildRepository.Checkpoint first = checkpoints.get(0);
+        return new RebuildStatus(
+                state,
+                first.rebuildId(),
+                first.shardCount(),
+                (int) checkpoints.stream().filter(c -> c.completedAt() != null).count(),
+                first.highWaterMark(),
+                checkpoints.stream().mapToLong(ProjectionRebuildRepository.Checkpoint::eventsRead).sum(),
+                checkpoints.stream().mapToLong(ProjectionRebuildRepository.Checkpoint::rowsWritten).sum(),
+                first.startedAt(),
+                lastError);
+    }
+
+    private void rebuild(boolean restart) throws InterruptedException {
+        long startedNanos = System.nanoTime();
+        eventsRead.set(0);
+        rowsWritten.set(0);
+
+        List<ProjectionRebuildRepository.Checkpoint> checkpoints = rebuildRepository.findLatestCheckpoints();
+        if (restart || checkpoints.isEmpty() || !rebuildRepository.shadowTableExists()) {
+            long highWaterMark = rebuildRepository.maxBookKeepingId();
+            int shards = Math.max(1, appProperties.getProjection().getRebuild().getShards());
+            rebuildRepository.createShadowTable();
+            rebuildRepository.createCheckpoints(System.currentTimeMillis(), shards, highWaterMark, LocalDateTime.now());
+            checkpoints = rebuildRepository.findLatestCheckpoints();
+            log.info("Starting user subscription projection rebuild: shards={}, highWaterMark={}",
+                    shards, highWaterMark);
+        } else {
+            log.info("Resuming user subscription projection rebuild: rebuildId={}", checkpoints.get(0).rebuildId());
+        }
+
+        state = "LOADING";
+        ExecutorService workers = Executors.newFixedThreadPool(checkpoints.size());
+        try {
+            List<Future<?>> shards = new ArrayList<>();
+            for (ProjectionRebuildRepository.Checkpoint checkpoint : checkpoints) {
+                if (checkpoint.completedAt() == null) {
+                    shards.add(workers.submit(() -> rebuildShard(checkpoint)));
+                }
+            }
+            for (Future<?> shard : shards) {
+                shard.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Projection rebuild shard failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+
+        state = "INDEXING";
+        rebuildRepository.finalizeShadowTable();
+
+        state = "SWAPPING";
+        ProjectionRebuildRepository.Checkpoint run = checkpoints.get(0);
+        catchUpAndSwap(run.highWaterMark(), run.startedAt());
+
+        state = "COMPLETED";
+        businessMetrics.recordProjectionRebuildCompleted(System.nanoTime() - startedNanos);
+        log.info("User subscription projection rebuilt: eventsRead={}, rowsWritten={}",
+                eventsRead.get(), rowsWritten.get());
+    }
+
+    private void rebuildShard(ProjectionRebuildRepository.Checkpoint checkpoint) {
+        TransactionTemplate read = new TransactionTemplate(transactionManager);
+        read.setReadOnly(true);
+        TransactionTemplate write = new TransactionTemplate(transactionManager);
+        write.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        ShardWriter writer = new ShardWriter(checkpoint, write);
+        // The read transaction keeps the server-side cursor open; each flush commits on its own connection
+        read.executeWithoutResult(status -> rebuildRepository.streamShard(
+                checkpoint.shard(), checkpoint.shardCount(), checkpoint.highWaterMark(), checkpoint.lastUserId(),
+                writer::accept));
+        writer.finish();
+        rebuildRepository.completeShard(checkpoint.rebuildId(), checkpoint.shard());
+        log.info("Projection rebuild shard completed: shard={}", checkpoint.shard());
+    }
+
+    private void catchUpAndSwap(long highWaterMark, LocalDateTime startedAt) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            // Taken before the catch-up read; materializations already under way finish first
+            rebuildRepository.lockLiveTable();
+            List<Long> userIds = rebuildRepository.findCatchUpUserIds(highWaterMark, startedAt);
+            List<BookKeepingEvent> events = new ArrayList<>();
+            rebuildRepository.streamUsers(userIds, events::add);
+            Set<Long> pendingIds = events.stream()
+                    .filter(event -> "COMPLETED".equals(event.status()))
+                    .map(BookKeepingEvent::bookKeepingId)
+                    .collect(Collectors.toSet());
+
+            List<UserSubscription> rows = new ArrayList<>();
+            List<Long> completedIds = new ArrayList<>();
+            UserSubscriptionFold fold = null;
+            long currentUserId = Long.MIN_VALUE;
+            for (BookKeepingEvent event : events) {
+                if (fold == null || event.userId() != currentUserId) {
+                    collect(fold, rows, completedIds, pendingIds);
+                    fold = new UserSubscriptionFold();
+                    currentUserId = event.userId();
+                }
+                fold.apply(event);
+            }
+            collect(fold, rows, completedIds, pendingIds);
+
+            rebuildRepository.deleteShadowRowsForUsers(userIds);
+            rebuildRepository.insertShadow(rows);
+            rebuildRepository.swapShadowTable();
+            // Folded here, so the consumer must not apply them again on the new table
+            bookKeepingStateMachine.markProcessed(completedIds, LocalDateTime.now());
+            rebuildRepository.deleteCheckpoints();
+            log.info("Projection rebuild caught up and swapped: users={}, events={}, pendingMarkedProcessed={}",
+                    userIds.size(), events.size(), completedIds.size());
+        });
+    }
+
+    private void collect(UserSubscriptionFold fold, List<UserSubscription> rows, List<Long> completedIds,
+                         Set<Long> pendingIds) {
+        if (fold == null) {
+            return;
+        }
+        rows.addAll(fold.rows());
+        for (Long id : fold.appliedIds()) {
+            if (pendingIds.contains(id)) {
+                completedIds.add(id);
+            }
+        }
+    }
+
+    // Folds one user at a time as the sorted stream passes and flushes whole users only, so a
+    // checkpoint always sits on a user boundary
+    private final class ShardWriter {
+
+        private final ProjectionRebuildRepository.Checkpoint checkpoint;
+        private final TransactionTemplate write;
+        private final int batchSize = appProperties.getProjection().getRebuild().getWriteBatchSize();
+        private final List<UserSubscription> pending = new ArrayList<>();
+        private UserSubscriptionFold fold;
+        private long currentUserId = Long.MIN_VALUE;
+        private long lastFoldedUserId;
+        private long pendingEvents;
+
+        ShardWriter(ProjectionRebuildRepository.Checkpoint checkpoint, TransactionTemplate write) {
+            this.checkpoint = checkpoint;
+            this.write = write;
+            this.lastFoldedUserId = checkpoint.lastUserId();
+        }
+
+        void accept(BookKeepingEvent event) {
+            if (fold == null || event.userId() != currentUserId) {
+                closeUser();
+                if (pending.size() >= batchSize) {
+                    flush();
+                }
+                fold = new UserSubscriptionFold();
+                currentUserId = event.userId();
+            }
+            fold.apply(event);
+            pendingEvents++;
+        }
+
+        void finish() {
+            closeUser();
+            flush();
+        }
+
+        private void closeUser() {
+            if (fold != null) {
+                pending.addAll(fold.rows());
+                lastFoldedUserId = currentUserId;
+                fold = null;
+            }
+        }
+
+        private void flush() {
+            if (pendingEvents == 0) {
+                return;
+            }
+            List<UserSubscription> rows = List.copyOf(pending);
+            long events = pendingEvents;
+            long lastUserId = lastFoldedUserId;
+            write.executeWithoutResult(status -> {
+                rebuildRepository.insertShadow(rows);
+                rebuildRepository.saveCheckpoint(checkpoint.rebuildId(), checkpoint.shard(), lastUserId,
+                        events, rows.size());
+            });
+            businessMetrics.recordProjectionRebuildProgress(
+                    eventsRead.addAndGet(events), rowsWritten.addAndGet(rows.size()));
+            pending.clear();
+            pendingEvents = 0;
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package com.example.subscription.service.impl;
+
+import com.example.subscription.cache.RedisCacheService;
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.dto.projection.ExpiringSubscription;
+import com.example.subscription.model.UserSubscription;
+import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.repository.UserSubscriptionRepository;
+import com.example.subscription.service.SubscriptionExpiryIndexService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+// ACTIVE subscriptions by end date in Redis sorted sets (score = end_date epoch day), member
+// "<subscriptionId>:<userId>:<accountId>:<durationTypeId>", kept under three keys:
+//   subscription:expiry:shard:<user_id mod shards>   expiry engine and reminder scheduler
+//   subscription:expiry:user:<userId>                 per-user expiring-soon view; expires after its last end date
+//   subscription:expiry:account:<accountId>           account dashboard counts
+// Only end dates after today matter, so expired entries are trimmed by score rather than by status.
+// Writes are best effort after commit; the rebuild repairs drift, and until one has completed
+// (subscription:expiry:ready) every reader falls back to the database.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SubscriptionExpiryIndexServiceImpl implements SubscriptionExpiryIndexService {
+
+    private static final String PREFIX = "subscription:expiry";
+    private static final String READY_KEY = PREFIX + ":ready";
+    private static final long READY_RECHECK_MILLIS = 30_000;
+    private static final int USER_KEY_GRACE_DAYS = 2;
+
+    private final RedisCacheService redisCacheService;
+    private final UserSubscriptionRepository userSubscriptionRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BusinessMetrics businessMetrics;
+    private final AppProperties appProperties;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private volatile RebuildStatus rebuildStatus = new RebuildStatus("IDLE", 0, 0, null, null, null);
+    private volatile boolean ready;
+    private volatile long readyCheckedAt;
+
+    @Override
+    public void index(Collection<UserSubscription> subscriptions) {
+        if (!config().isEnabled()) {
+            return;
+        }
+        List<ExpiringSubscription> entries = subscriptions.stream()
+                .filter(s -> s.getId() != null && s.getEndDate() != null && "ACTIVE".equals(s.getStatus()))
+                .map(s -> new ExpiringSubscription(s.getId(), s.getUserId(), s.getSubscriptionAccountId(),
+                        s.getDurationTypeId(), s.getEndDate()))
+                .toList();
+        if (!entries.isEmpty()) {
+            eventPublisher.publishEvent(new IndexRequested(entries));
+        }
+    }
+
+    // A failed write costs freshness until the next rebuild, never the materialization itself
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onIndexRequested(IndexRequested event) {
+        write(event.entries()).subscribe(
+                written -> { },
+                error -> {
+                    businessMetrics.recordExpiryIndexWriteFailed(event.entries().size());
+                    log.warn("Expiry index write failed: entries={}, reason={}",
+                            event.entries().size(), error.getMessage());
+                });
+    }
+
+    @Override
+    public long removeExpiredThrough(LocalDate date, int shard, int shardCount) {
+        if (!config().isEnabled() || !divides(shardCount)) {
+            return 0;
+        }
+        int batchSize = Math.max(1, config().getRebuildBatchSize());
+        long removed = 0;
+        for (int indexShard : indexShards(shard, shardCount)) {
+            List<ExpiringSubscription> due = range(shardKey(indexShard), 0, date.toEpochDay());
+            for (int from = 0; from < due.size(); from += batchSize) {
+                removed += remove(due.subList(from, Math.min(due.size(), from + batchSize)));
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean isAvailable(int shardCount) {
+        return config().isEnabled() && divides(shardCount) && isReady();
+    }
+
+    @Override
+    public long forEachExpiringInShard(int shard, int shardCount, LocalDate from, LocalDate to, int pageSize,
+                                       Consumer<List<ExpiringSubscription>> consumer) {
+        long total = 0;
+        int size = Math.max(1, pageSize);
+        // One day of one index shard per read: each read is a consistent snapshot, so an extension
+        // landing mid-scan cannot shift a page boundary and skip someone
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            for (int indexShard : indexShards(shard, shardCount)) {
+                List<ExpiringSubscription> entries = range(shardKey(indexShard), day.toEpochDay(), day.toEpochDay());
+                for (int start = 0; start < entries.size(); start += size) {
+                    consumer.accept(entries.subList(start, Math.min(entries.size(), start + size)));
+                }
+                total += entries.size();
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public List<ExpiringSubscription> findExpiringForUser(long userId, LocalDate from, LocalDate to) {
+        if (config().isEnabled() && isReady()) {
+            try {
+                return range(userKey(userId), from.toEpochDay(), to.toEpochDay());
+            } catch (Exception e) {
+                log.warn("Expiry index read failed, using the database: userId={}, reason={}", userId, e.getMessage());
+            }
+        }
+        businessMetrics.recordExpiryIndexFallback("user");
+        return userSubscriptionRepository.findByUserIdAndStatus(userId, "ACTIVE").stream()
+                .filter(s -> !s.getEndDate().isBefore(from) && !s.getEndDate().isAfter(to))
+                .sorted(Comparator.comparing(UserSubscription::getEndDate))
+                .map(s -> new ExpiringSubscription(s.getId(), s.getUserId(), s.getSubscriptionAccountId(),
+                        s.getDurationTypeId(), s.getEndDate()))
+                .toList();
+    }
+
+    @Override
+    public AccountExpiryCounts countExpiringForAccount(long accountId, LocalDate from, LocalDate to) {
+        List<LocalDate> days = from.datesUntil(to.plusDays(1)).toList();
+        Map<LocalDate, Long> counted = null;
+        if (config().isEnabled() && isReady()) {
+            try {
+                counted = countFromIndex(accountKey(accountId), days);
+            } catch (Exception e) {
+                log.warn("Expiry index read failed, using the database: accountId={}, reason={}",
+                        accountId, e.getMessage());
+            }
+        }
+        if (counted == null) {
+            businessMetrics.recordExpiryIndexFallback("account");
+            counted = new HashMap<>();
+            for (Object[] row : userSubscriptionRepository.countActiveByEndDate(accountId, from, to)) {
+                counted.put((LocalDate) row[0], ((Number) row[1]).longValue());
+            }
+        }
+
+        Map<LocalDate, Long> byDay = new LinkedHashMap<>();
+        long total = 0;
+        for (LocalDate day : days) {
+            long count = counted.getOrDefault(day, 0L);
+            byDay.put(day, count);
+            total += count;
+        }
+        return new AccountExpiryCounts(accountId, from, to, total, byDay);
+    }
+
+    // ZCOUNT per day, pipelined; each is O(log n) however large the account is
+    private Map<LocalDate, Long> countFromIndex(String key, List<LocalDate> days) {
+        List<Long> counts = Flux.fromIterable(days)
+                .flatMapSequential(day -> redisCacheService.zcount(key, day.toEpochDay(), day.toEpochDay())
+                        .defaultIfEmpty(0L))
+                .collectList()
+                .block(timeout());
+        Map<LocalDate, Long> byDay = new HashMap<>();
+        for (int i = 0; i < days.size(); i++) {
+            byDay.put(days.get(i), counts != null ? counts.get(i) : 0L);
+        }
+        return byDay;
+    }
+
+    @Override
+    public RebuildStatus startRebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return rebuildStatus;
+        }
+        rebuildStatus = new RebuildStatus("LOADING", 0, 0, LocalDateTime.now(), null, null);
+        Thread.ofPlatform().name("expiry-index-rebuild").start(() -> {
+            try {
+                rebuild();
+            } catch (Exception e) {
+                log.error("Expiry index rebuild failed", e);
+                RebuildStatus status = rebuildStatus;
+                rebuildStatus = new RebuildStatus("FAILED", status.indexed(), status.removed(),
+                        status.startedAt(), LocalDateTime.now(), e.getMessage());
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+        return rebuildStatus;
+    }
+
+    @Override
+    public RebuildStatus rebuildStatus() {
+        return rebuildStatus;
+    }
+
+    // 1. every ACTIVE subscription ending after today is written (ZADD GT, so concurrent live writes win)
+    // 2. each shard key is scanned and members no longer ACTIVE in the database, or already past, are removed
+    // 3. the ready marker lets readers use the index
+    private void rebuild() {
+        long startedAt = System.currentTimeMillis();
+        LocalDateTime startedAtTime = rebuildStatus.startedAt();
+        int batchSize = Math.max(1, config().getRebuildBatchSize());
+        LocalDate today = LocalDate.now();
+
+        long indexed = 0;
+        LocalDate afterEndDate = today;
+        long afterId = 0;
+        List<ExpiringSubscription> page;
+        do {
+            page = userSubscriptionRepository.findExpiringAfter(today.plusDays(1), LocalDate.of(9999, 12, 31), 0, 1,
+                    afterEndDate, afterId, PageRequest.of(0, batchSize));
+            if (!page.isEmpty()) {
+                write(page).block(timeout());
+                ExpiringSubscription last = page.get(page.size() - 1);
+                afterEndDate = last.endDate();
+                afterId = last.id();
+                indexed += page.size();
+                rebuildStatus = new RebuildStatus("LOADING", indexed, 0, startedAtTime, null, null);
+            }
+        } while (page.size() >= batchSize);
+
+        long removed = 0;
+        for (int indexShard = 0; indexShard < indexShardCount(); indexShard++) {
+            Iterable<List<ZSetOperations.TypedTuple<String>>> chunks = redisCacheService.zscan(shardKey(indexShard))
+                    .buffer(batchSize)
+                    .toIterable();
+            for (List<ZSetOperations.TypedTuple<String>> chunk : chunks) {
+                List<ExpiringSubscription> entries = chunk.stream().map(this::decode).toList();
+                Set<Long> active = new HashSet<>(userSubscriptionRepository.findActiveIdsIn(
+                        entries.stream().map(ExpiringSubscription::id).toList()));
+                List<ExpiringSubscription> stale = entries.stream()
+                        .filter(e -> !active.contains(e.id()) || !e.endDate().isAfter(today))
+                        .toList();
+                removed += remove(stale);
+            }
+            rebuildStatus = new RebuildStatus("PRUNING", indexed, removed, startedAtTime, null, null);
+        }
+
+        redisCacheService.set(READY_KEY, LocalDateTime.now().toString(), Duration.ofDays(3650)).block(timeout());
+        ready = true;
+        readyCheckedAt = System.currentTimeMillis();
+        rebuildStatus = new RebuildStatus("COMPLETED", indexed, removed, startedAtTime, LocalDateTime.now(), null);
+        businessMetrics.recordExpiryIndexRebuilt(System.currentTimeMillis() - startedAt, indexed, removed);
+        log.info("Expiry index rebuilt: indexed={}, removed={}", indexed, removed);
+    }
+
+    private Mono<Long> write(List<ExpiringSubscription> entries) {
+        Map<String, Map<String, Double>> sharedKeys = new HashMap<>();
+        Map<String, Map<String, Double>> userKeys = new HashMap<>();
+        Map<String, Long> userLastDay = new HashMap<>();
+        for (ExpiringSubscription entry : entries) {
+            String member = member(entry);
+            double score = entry.endDate().toEpochDay();
+            sharedKeys.computeIfAbsent(shardKey(indexShard(entry.userId())), k -> new HashMap<>()).put(member, score);
+            sharedKeys.computeIfAbsent(accountKey(entry.subscriptionAccountId()), k -> new HashMap<>()).put(member, score);
+            String userKey = userKey(entry.userId());
+            userKeys.computeIfAbsent(userKey, k -> new HashMap<>()).put(member, score);
+            userLastDay.merge(userKey, entry.endDate().toEpochDay(), Math::max);
+        }
+
+        List<Mono<Long>> writes = new ArrayList<>();
+        sharedKeys.forEach((key, scores) -> writes.add(redisCacheService.zaddGreater(key, scores, null)));
+        userKeys.forEach((key, scores) -> writes.add(redisCacheService.zaddGreater(key, scores,
+                Instant.ofEpochSecond((userLastDay.get(key) + USER_KEY_GRACE_DAYS) * 86_400L))));
+        return Flux.merge(writes).reduce(0L, Long::sum);
+    }
+
+    private long remove(List<ExpiringSubscription> entries) {
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        Map<String, List<String>> byKey = new HashMap<>();
+        for (ExpiringSubscription entry : entries) {
+            String member = member(entry);
+            byKey.computeIfAbsent(shardKey(indexShard(entry.userId())), k -> new ArrayList<>()).add(member);
+            byKey.computeIfAbsent(accountKey(entry.subscriptionAccountId()), k -> new ArrayList<>()).add(member);
+            byKey.computeIfAbsent(userKey(entry.userId()), k -> new ArrayList<>()).add(member);
+        }
+        Flux.fromIterable(byKey.entrySet())
+                .flatMap(e -> redisCacheService.zremove(e.getKey(), e.getValue()))
+                .then()
+                .block(timeout());
+        return entries.size();
+    }
+
+    private List<ExpiringSubscription> range(String key, long fromDay, long toDay) {
+        List<ZSetOperations.TypedTuple<String>> tuples = redisCacheService.zrangeByScore(key, fromDay, toDay)
+                .collectList()
+                .block(timeout());
+        return tuples != null ? tuples.stream().map(this::decode).toList() : List.of();
+    }
+
+    private ExpiringSubscription decode(ZSetOperations.TypedTuple<String> tuple) {
+        String[] parts = tuple.getValue().split(":");
+        return new ExpiringSubscription(Long.parseLong(parts[0]), Long.parseLong(parts[1]),
+                Long.parseLong(parts[2]), Long.parseLong(parts[3]),
+                LocalDate.ofEpochDay(tuple.getScore().longValue()));
+    }
+
+    private boolean isReady() {
+        long now = System.currentTimeMillis();
+        if (now - readyCheckedAt < READY_RECHECK_MILLIS) {
+            return ready;
+        }
+        try {
+            // Cleared along with everything else if Redis loses its data
+            ready = Boolean.TRUE.equals(redisCacheService.exists(READY_KEY).block(timeout()));
+        } catch (Exception e) {
+            log.warn("Expiry index readiness check failed: {}", e.getMessage());
+            ready = false;
+        }
+        readyCheckedAt = now;
+        return ready;
+    }
+
+    // user_id mod indexShards determines user_id mod shardCount only when shardCount divides indexShards
+    private boolean divides(int shardCount) {
+        return shardCount > 0 && indexShardCount() % shardCount == 0;
+    }
+
+    private List<Integer> indexShards(int shard, int shardCount) {
+        List<Integer> shards = new ArrayList<>();
+        for (int i = shard; i < indexShardCount(); i += shardCount) {
+            shards.add(i);
+        }
+        return shards;
+    }
+
+    private int indexShard(long userId) {
+        return (int) Math.floorMod(userId, (long) indexShardCount());
+    }
+
+    private int indexShardCount() {
+        return Math.max(1, config().getShards());
+    }
+
+    private static String member(ExpiringSubscription entry) {
+        return entry.id() + ":" + entry.userId() + ":" + entry.subscriptionAccountId() + ":" + entry.durationTypeId();
+    }
+
+    private String shardKey(int indexShard) {
+        return PREFIX + ":shard:" + indexShard;
+    }
+
+    private String userKey(long userId) {
+        return PREFIX + ":user:" + userId;
+    }
+
+    private String accountKey(long accountId) {
+        return PREFIX + ":account:" + accountId;
+    }
+
+    private Duration timeout() {
+        return Duration.ofMillis(config().getTimeoutMs());
+    }
+
+    private AppProperties.Expiry.Index config() {
+        return appProperties.getExpiry().getIndex();
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.subscription.service.impl;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.repository.SubscriptionExpiryRepository;
+import com.example.subscription.service.OutboxService;
+import com.example.subscription.service.SubscriptionExpiryService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Each batch commits on its own: the expiry, its book_keeping entries and their outbox rows land
+// together, and whatever is still ACTIVE and overdue is simply picked up by the next batch or run
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SubscriptionExpiryServiceImpl implements SubscriptionExpiryService {
+
+    private final SubscriptionExpiryRepository subscriptionExpiryRepository;
+    private final OutboxService outboxService;
+    private final PlatformTransactionManager transactionManager;
+    private final BusinessMetrics businessMetrics;
+    private final AppProperties appProperties;
+
+    @Override
+    public ExpirySummary expireOverdueSubscriptions(int shard, int shardCount) {
+        AppProperties.Expiry config = appProperties.getExpiry();
+        long startedAt = System.currentTimeMillis();
+        LocalDate today = LocalDate.now();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        long expired = 0;
+        int batches = 0;
+        boolean finished = false;
+        while (batches < config.getMaxBatchesPerRun()) {
+            Integer count = transactionTemplate.execute(
+                    status -> expireBatch(today, shard, shardCount, config.getBatchSize()));
+            int batchCount = count != null ? count : 0;
+            batches++;
+            expired += batchCount;
+            if (batchCount < config.getBatchSize()) {
+                finished = true;
+                break;
+            }
+        }
+
+        businessMetrics.recordExpiryRun(System.currentTimeMillis() - startedAt, expired);
+        return new ExpirySummary(expired, batches, finished);
+    }
+
+    private int expireBatch(LocalDate today, int shard, int shardCount, int batchSize) {
+        SubscriptionExpiryRepository.ExpiredBatch batch = subscriptionExpiryRepository.expireBatch(
+                today, shard, shardCount, batchSize, LocalDateTime.now());
+        // Published like any other event: the relay sends them and the consumer marks them PROCESSED
+        outboxService.enqueueAll(batch.entries());
+        if (batch.expired() > 0) {
+            businessMetrics.recordSubscriptionsExpired(batch.expired());
+            log.debug("Expired subscription batch: count={}, entriesWritten={}", batch.expired(), batch.entries().size());
+        }
+        if (batch.entries().size() < batch.expired()) {
+            log.warn("Expiry entries already logged for {} of {} expired subscriptions",
+                    batch.expired() - batch.entries().size(), batch.expired());
+        }
+        // The rows flipped, not the entries written, tell whether the shard has more overdue rows
+        return batch.expired();
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.subscription.service.impl;
+
+import com.example.subscription.dto.event.BookKeepingEvent;
+import com.example.subscription.model.UserSubscription;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Replays one user's book keeping events, in log order, into the user_subscriptions rows the
+// consumer would have produced. Mirrors materialization: SUBSCRIBED opens a subscription,
+// EXTENDED moves the end date of the active one, EXPIRED closes it (the expiry engine applied it
+// when the entry was written), and an event the consumer would have rejected is skipped without
+// affecting the rest of the user's history.
+public final class UserSubscriptionFold {
+
+    private final List<UserSubscription> rows = new ArrayList<>();
+    private final Map<Key, UserSubscription> active = new HashMap<>();
+    private final List<Long> appliedIds = new ArrayList<>();
+    private int skipped;
+
+    public void apply(BookKeepingEvent event) {
+        Key key = new Key(event.subscriptionAccountId(), event.durationTypeId());
+        LocalDateTime appliedAt = event.completedAt() != null ? event.completedAt() : event.createdAt();
+
+        if ("SUBSCRIBED".equals(event.eventType())) {
+            if (active.containsKey(key) || event.startDate() == null || event.endDate() == null
+                    || event.subscriptionStatus() == null) {
+                skipped++;
+                return;
+            }
+            UserSubscription subscription = new UserSubscription();
+            subscription.setUserId(event.userId());
+            subscription.setSubscriptionAccountId(event.subscriptionAccountId());
+            subscription.setDurationTypeId(event.durationTypeId());
+            subscription.setStartDate(event.startDate());
+            subscription.setEndDate(event.endDate());
+            subscription.setStatus(event.subscriptionStatus());
+            subscription.setCreatedAt(appliedAt);
+            subscription.setLastUpdatedAt(appliedAt);
+            rows.add(subscription);
+            if ("ACTIVE".equals(subscription.getStatus())) {
+                active.put(key, subscription);
+            }
+        } else if ("EXTENDED".equals(event.eventType())) {
+            UserSubscription existing = active.get(key);
+            if (existing == null || event.endDate() == null) {
+                skipped++;
+                return;
+            }
+            existing.setEndDate(event.endDate());
+            existing.setLastUpdatedAt(appliedAt);
+        } else if ("EXPIRED".equals(event.eventType())) {
+            UserSubscription existing = active.remove(key);
+            if (existing == null) {
+                skipped++;
+                return;
+            }
+            existing.setStatus("EXPIRED");
+            existing.setLastUpdatedAt(appliedAt);
+        }
+        appliedIds.add(event.bookKeepingId());
+    }
+
+    public List<UserSubscription> rows() {
+        return rows;
+    }
+
+    public List<Long> appliedIds() {
+        return appliedIds;
+    }
+
+    public int skipped() {
+        return skipped;
+    }
+
+    private record Key(long subscriptionAccountId, long durationTypeId) {}
+}
@@ -1,10 +1,14 @@
 package com.example.subscription.service.impl;
 
+import com.example.subscription.dto.event.BookKeepingEvent;
 import com.example.subscription.model.BookKeeping;
 import com.example.subscription.model.UserSubscription;
 import com.example.subscription.notification.NotificationService;
 import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.repository.BookKeepingStateMachine;
+import com.example.subscription.repository.UserSubscriptionBatchRepository;
 import com.example.subscription.repository.UserSubscriptionRepository;
+import com.example.subscription.service.SubscriptionExpiryIndexService;
 import com.example.subscription.service.UserSubscriptionService;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -15,8 +19,13 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -24,73 +33,181 @@ import java.util.Map;
 public class UserSubscriptionServiceImpl implements UserSubscriptionService {
     
     private final UserSubscriptionRepository userSubscriptionRepository;
+    private final UserSubscriptionBatchRepository userSubscriptionBatchRepository;
+    private final BookKeepingStateMachine bookKeepingStateMachine;
     private final BusinessMetrics businessMetrics;
     private final NotificationService notificationService;
+    private final SubscriptionExpiryIndexService subscriptionExpiryIndexService;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Override
     @Transactional
     public void materializeFromBookKeeping(BookKeeping bookKeeping) {
+        Map<String, Object> afterState;
         try {
-            Map<String, Object> afterState = objectMapper.readValue(
+            afterState = objectMapper.readValue(
                     bookKeeping.getAfterState(), 
                     new TypeReference<Map<String, Object>>() {}
             );
+        } catch (Exception e) {
+            log.error("Error materializing book keeping", e);
+            throw new RuntimeException("Failed to materialize book keeping", e);
+        }
+        materializeFromEvent(BookKeepingEvent.of(bookKeeping, afterState));
+    }
 
-            String eventType = bookKeeping.getEventType();
+    @Override
+    @Transactional
+    public void materializeFromEvent(BookKeepingEvent event) {
+        try {
+            String eventType = event.eventType();
             
             if ("SUBSCRIBED".equals(eventType)) {
-                createUserSubscription(bookKeeping, afterState);
+                createUserSubscription(event);
                 businessMetrics.recordSubscriptionCreated(
-                        bookKeeping.getSubscriptionAccountId(), 
-                        bookKeeping.getDurationTypeId().toString());
+                        event.subscriptionAccountId(), 
+                        String.valueOf(event.durationTypeId()));
             } else if ("EXTENDED".equals(eventType)) {
-                extendUserSubscription(bookKeeping, afterState);
+                extendUserSubscription(event);
                 businessMetrics.recordSubscriptionExtended(
-                        bookKeeping.getSubscriptionAccountId(), 
-                        bookKeeping.getDurationTypeId().toString());
+                        event.subscriptionAccountId(), 
+                        String.valueOf(event.durationTypeId()));
             }
+            // EXPIRED entries are written by the expiry engine together with the status change; nothing to apply
             
             businessMetrics.recordBookKeepingEvent(eventType, "PROCESSED");
             log.info("Materialized book keeping to user subscription: idempotencyKey={}", 
-                    bookKeeping.getIdempotencyKey());
+                    event.idempotencyKey());
         } catch (Exception e) {
             log.error("Error materializing book keeping", e);
             throw new RuntimeException("Failed to materialize book keeping", e);
         }
     }
 
-    private void createUserSubscription(BookKeeping bookKeeping, Map<String, Object> afterState) {
-        UserSubscription subscription = new UserSubscription();
-        subscription.setUserId(bookKeeping.getUserId());
-        subscription.setSubscriptionAccountId(bookKeeping.getSubscriptionAccountId());
-        subscription.setDurationTypeId(bookKeeping.getDurationTypeId());
-        subscription.setStartDate(LocalDate.parse(afterState.get("start_date").toString()));
-        subscription.setEndDate(LocalDate.parse(afterState.get("end_date").toString()));
-        subscription.setStatus(afterState.get("status").toString());
-        subscription.setCreatedAt(LocalDateTime.now());
-        subscription.setLastUpdatedAt(LocalDateTime.now());
+    @Override
+    @Transactional
+    public BatchMaterializationResult materializeBatch(List<BookKeepingEvent> events) {
+        // One lookup for every active subscription the batch can touch, folded in event order below
+        Set<Long> userIds = events.stream().map(BookKeepingEvent::userId).collect(Collectors.toSet());
+        Map<SubscriptionKey, UserSubscription> active = new HashMap<>();
+        for (UserSubscription subscription : userSubscriptionRepository.findByUserIdInAndStatus(userIds, "ACTIVE")) {
+            active.put(SubscriptionKey.of(subscription), subscription);
+        }
+
+        List<BookKeepingEvent> processed = new ArrayList<>();
+        List<UserSubscription> created = new ArrayList<>();
+        List<UserSubscription> extended = new ArrayList<>();
+        Map<Long, String> failures = new LinkedHashMap<>();
+
+        for (BookKeepingEvent event : events) {
+            try {
+                SubscriptionKey key = SubscriptionKey.of(event);
+
+                if ("SUBSCRIBED".equals(event.eventType())) {
+                    if (active.containsKey(key)) {
+                        throw new IllegalStateException("Active subscription already exists");
+                    }
+                    UserSubscription subscription = buildUserSubscription(event);
+                    created.add(subscription);
+                    if ("ACTIVE".equals(subscription.getStatus())) {
+                        active.put(key, subscription);
+                    }
+                } else if ("EXTENDED".equals(event.eventType())) {
+                    UserSubscription existing = active.get(key);
+                    if (existing == null) {
+                        throw new IllegalStateException("Active subscription not found for extension");
+                    }
+                    existing.setEndDate(requireEndDate(event));
+                    existing.setLastUpdatedAt(LocalDateTime.now());
+                    extended.add(existing);
+                }
+                processed.add(event);
+            } catch (Exception e) {
+                log.warn("Skipping book keeping in batch: idempotencyKey={}, reason={}",
+                        event.idempotencyKey(), e.getMessage());
+                failures.put(event.bookKeepingId(), e.getMessage());
+            }
+        }
+
+        // Inserts go out as one JDBC batch; extensions are dirty managed entities flushed as batched updates
+        userSubscriptionBatchRepository.insertAll(created);
+        userSubscriptionRepository.flush();
+
+        List<Long> processedIds = processed.stream().map(BookKeepingEvent::bookKeepingId).toList();
+        if (!processedIds.isEmpty()) {
+            bookKeepingStateMachine.markProcessed(processedIds, LocalDateTime.now());
+        }
+
+        for (BookKeepingEvent event : processed) {
+            if ("SUBSCRIBED".equals(event.eventType())) {
+                businessMetrics.recordSubscriptionCreated(
+                        event.subscriptionAccountId(),
+                        String.valueOf(event.durationTypeId()));
+            } else if ("EXTENDED".equals(event.eventType())) {
+                businessMetrics.recordSubscriptionExtended(
+                        event.subscriptionAccountId(),
+                        String.valueOf(event.durationTypeId()));
+            }
+            businessMetrics.recordBookKeepingEvent(event.eventType(), "PROCESSED");
+        }
+        created.forEach(notificationService::notifySubscriptionCreated);
+        extended.forEach(notificationService::notifySubscriptionExtended);
+        subscriptionExpiryIndexService.index(created);
+        subscriptionExpiryIndexService.index(extended);
+
+        log.info("Materialized book keeping batch: size={}, processed={}, failed={}",
+                events.size(), processedIds.size(), failures.size());
+        return new BatchMaterializationResult(processedIds, failures);
+    }
+
+    private void createUserSubscription(BookKeepingEvent event) {
+        UserSubscription subscription = buildUserSubscription(event);
         
         UserSubscription saved = userSubscriptionRepository.save(subscription);
         
         // Send notification
         notificationService.notifySubscriptionCreated(saved);
+        subscriptionExpiryIndexService.index(List.of(saved));
     }
 
-    private void extendUserSubscription(BookKeeping bookKeeping, Map<String, Object> afterState) {
+    private void extendUserSubscription(BookKeepingEvent event) {
         UserSubscription existing = userSubscriptionRepository.findActiveSubscription(
-                bookKeeping.getUserId(),
-                bookKeeping.getSubscriptionAccountId(),
-                bookKeeping.getDurationTypeId()
+                event.userId(),
+                event.subscriptionAccountId(),
+                event.durationTypeId()
         ).orElseThrow(() -> new RuntimeException("Active subscription not found for extension"));
 
-        existing.setEndDate(LocalDate.parse(afterState.get("end_date").toString()));
+        existing.setEndDate(requireEndDate(event));
         existing.setLastUpdatedAt(LocalDateTime.now());
         
         UserSubscription saved = userSubscriptionRepository.save(existing);
         
         // Send notification
         notificationService.notifySubscriptionExtended(saved);
+        subscriptionExpiryIndexService.index(List.of(saved));
+    }
+
+    private UserSubscription buildUserSubscription(BookKeepingEvent event) {
+        if (event.startDate() == null || event.endDate() == null || event.subscriptionStatus() == null) {
+            throw new IllegalArgumentException("Subscribe event is missing start_date, end_date or status");
+        }
+        UserSubscription subscription = new UserSubscription();
+        subscription.setUserId(event.userId());
+        subscription.setSubscriptionAccountId(event.subscriptionAccountId());
+        subscription.setDurationTypeId(event.durationTypeId());
+        subscription.setStartDate(event.startDate());
+        subscription.setEndDate(event.endDate());
+        subscription.setStatus(event.subscriptionStatus());
+        subscription.setCreatedAt(LocalDateTime.now());
+        subscription.setLastUpdatedAt(LocalDateTime.now());
+        return subscription;
+    }
+
+    private LocalDate requireEndDate(BookKeepingEvent event) {
+        if (event.endDate() == null) {
+            throw new IllegalArgumentException("Extend event is missing end_date");
+        }
+        return event.endDate();
     }
 
     @Override
@@ -102,5 +219,16 @@ public class UserSubscriptionServiceImpl implements UserSubscriptionService {
     public List<UserSubscription> getActiveUserSubscriptions(Long userId) {
         return userSubscriptionRepository.findByUserIdAndStatus(userId, "ACTIVE");
     }
-}
 
+    private record SubscriptionKey(Long userId, Long subscriptionAccountId, Long durationTypeId) {
+
+        static SubscriptionKey of(UserSubscription subscription) {
+            return new SubscriptionKey(subscription.getUserId(),
+                    subscription.getSubscriptionAccountId(), subscription.getDurationTypeId());
+        }
+
+        static SubscriptionKey of(BookKeepingEvent event) {
+            return new SubscriptionKey(event.userId(), event.subscriptionAccountId(), event.durationTypeId());
+        }
+    }
+}
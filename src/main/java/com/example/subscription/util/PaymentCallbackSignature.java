@@ -0,0 +1,37 @@
+package com.example.subscription.util;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+public class PaymentCallbackSignature {
+    
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    
+    // Hex HMAC-SHA256 over "{timestamp}.{bookKeepingId}.{paymentReferenceId}"
+    public static String sign(String secret, long timestamp, Long bookKeepingId, String paymentReferenceId) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+            String payload = timestamp + "." + bookKeepingId + "." + paymentReferenceId;
+            return HexFormat.of().formatHex(mac.doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to compute payment callback signature", e);
+        }
+    }
+    
+    public static boolean verify(String secret, long timestamp, Long bookKeepingId, String paymentReferenceId,
+                                 String signature) {
+        if (secret == null || secret.isBlank() || signature == null) {
+            return false;
+        }
+        String expected = sign(secret, timestamp, bookKeepingId, paymentReferenceId);
+        // Constant-time comparison so the signature cannot be guessed byte by byte
+        return MessageDigest.isEqual(
+                expected.getBytes(StandardCharsets.UTF_8),
+                signature.toLowerCase().getBytes(StandardCharsets.UTF_8));
+    }
+}
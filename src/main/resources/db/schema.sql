@@ -95,6 +95,7 @@ CREATE TABLE book_keeping (
     processed_at TIMESTAMP,
     retry_count INTEGER NOT NULL DEFAULT 0,
     error_message TEXT,
+    payment_deferred_at TIMESTAMP,
     
     CONSTRAINT fk_book_keeping_plan 
         FOREIGN KEY (subscription_plan_id) 
@@ -119,12 +120,55 @@ CREATE TABLE book_keeping (
 );
 
 CREATE INDEX idx_book_keeping_idempotency_key ON book_keeping(idempotency_key);
-CREATE INDEX idx_book_keeping_user_id ON book_keeping(user_id);
+-- (user_id, id) also serves the projection rebuild, which reads each user's events in log order
+CREATE INDEX idx_book_keeping_user_id ON book_keeping(user_id, id);
 CREATE INDEX idx_book_keeping_status ON book_keeping(status);
 CREATE INDEX idx_book_keeping_status_created ON book_keeping(status, created_at);
 CREATE INDEX idx_book_keeping_account_id ON book_keeping(subscription_account_id);
 CREATE INDEX idx_book_keeping_duration_type_id ON book_keeping(duration_type_id);
 CREATE INDEX idx_book_keeping_completed_at ON book_keeping(completed_at) WHERE completed_at IS NOT NULL;
+-- Recovery sweep: entries completed but never materialized, paged by (completed_at, id)
+CREATE INDEX idx_book_keeping_unprocessed ON book_keeping(completed_at, id) WHERE status = 'COMPLETED' AND processed_at IS NULL;
+-- Deferred payment queue: payments parked while the payment-service circuit breaker was OPEN
+CREATE INDEX idx_book_keeping_payment_deferred ON book_keeping(id) WHERE payment_deferred_at IS NOT NULL AND status = 'INITIATED';
+
+-- Transactional outbox: events written with the book_keeping transition, relayed to Kafka afterwards
+CREATE TABLE book_keeping_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    book_keeping_id BIGINT NOT NULL,
+    message_key VARCHAR(255) NOT NULL,
+    payload BYTEA NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    sent_at TIMESTAMP,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    last_error TEXT,
+    
+    CONSTRAINT fk_book_keeping_outbox_book_keeping 
+        FOREIGN KEY (book_keeping_id) 
+        REFERENCES book_keeping(id) 
+        ON DELETE CASCADE
+);
+
+CREATE INDEX idx_book_keeping_outbox_unsent ON book_keeping_outbox(id) WHERE sent_at IS NULL;
+CREATE INDEX idx_book_keeping_outbox_book_keeping_id ON book_keeping_outbox(book_keeping_id);
+-- Retention purge of rows Kafka has acknowledged
+CREATE INDEX idx_book_keeping_outbox_sent_at ON book_keeping_outbox(sent_at) WHERE sent_at IS NOT NULL;
+
+-- Projection rebuild progress: one row per shard, so an interrupted rebuild resumes where each shard stopped
+CREATE TABLE projection_rebuild_checkpoints (
+    rebuild_id BIGINT NOT NULL,
+    shard INTEGER NOT NULL,
+    shard_count INTEGER NOT NULL,
+    high_water_mark BIGINT NOT NULL,
+    started_at TIMESTAMP NOT NULL,
+    last_user_id BIGINT NOT NULL DEFAULT -1,
+    events_read BIGINT NOT NULL DEFAULT 0,
+    rows_written BIGINT NOT NULL DEFAULT 0,
+    completed_at TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    
+    PRIMARY KEY (rebuild_id, shard)
+);
 
 
 -- 5. USER SUBSCRIPTIONS
@@ -167,7 +211,9 @@ CREATE INDEX idx_user_subscriptions_account_id ON user_subscriptions(subscriptio
 CREATE INDEX idx_user_subscriptions_duration_type_id ON user_subscriptions(duration_type_id);
 CREATE INDEX idx_user_subscriptions_status ON user_subscriptions(status);
 CREATE INDEX idx_user_subscriptions_user_status ON user_subscriptions(user_id, status);
-CREATE INDEX idx_user_subscriptions_end_date ON user_subscriptions(end_date);
+-- ACTIVE rows only, by (end_date, id): the expiry reminder scan and the expiry engine page through it in
+-- index order without walking the history of rows that already expired
+CREATE INDEX idx_user_subscriptions_end_date ON user_subscriptions(end_date, id) WHERE status = 'ACTIVE';
 
 
 -- ============================================================================
@@ -190,6 +236,29 @@ CREATE TABLE rules_engine (
 CREATE INDEX idx_rules_engine_rule_key ON rules_engine(rule_key);
 CREATE INDEX idx_rules_engine_is_active ON rules_engine(is_active);
 
+-- Scheduler coordination: every instance heartbeats here; an instance is live while its heartbeat is fresh
+-- trace_slot is the instance's node id for trace ids, unique among registered instances
+CREATE TABLE scheduler_nodes (
+    node_id VARCHAR(100) PRIMARY KEY,
+    started_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    heartbeat_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    trace_slot INTEGER UNIQUE
+);
+
+-- One lease per job shard: a shard runs only on the instance holding its lease. run_key names the run
+-- (e.g. the date of a daily job) so a shard completed for a run is not taken again for the same run.
+CREATE TABLE job_leases (
+    job_name VARCHAR(100) NOT NULL,
+    shard INTEGER NOT NULL,
+    owner VARCHAR(100) NOT NULL,
+    run_key VARCHAR(100),
+    acquired_at TIMESTAMP NOT NULL,
+    lease_until TIMESTAMP NOT NULL,
+    completed_at TIMESTAMP,
+    
+    PRIMARY KEY (job_name, shard)
+);
+
 
 -- Insert default rules
 INSERT INTO rules_engine (rule_key, rule_name, rule_value, rule_type, description, is_active) VALUES
@@ -210,6 +279,15 @@ BEGIN
 END;
 $$ language 'plpgsql';
 
+-- user_subscriptions tracks last_updated_at rather than updated_at
+CREATE OR REPLACE FUNCTION update_last_updated_at_column()
+RETURNS TRIGGER AS $$
+BEGIN
+    NEW.last_updated_at = CURRENT_TIMESTAMP;
+    RETURN NEW;
+END;
+$$ language 'plpgsql';
+
 CREATE TRIGGER update_subscription_accounts_updated_at 
     BEFORE UPDATE ON subscription_accounts 
     FOR EACH ROW EXECUTE FUNCTION update_updated_at_column();
@@ -220,7 +298,7 @@ CREATE TRIGGER update_subscription_plans_updated_at
 
 CREATE TRIGGER update_user_subscriptions_updated_at 
     BEFORE UPDATE ON user_subscriptions 
-    FOR EACH ROW EXECUTE FUNCTION update_updated_at_column();
+    FOR EACH ROW EXECUTE FUNCTION update_last_updated_at_column();
 
 CREATE TRIGGER update_rules_engine_updated_at 
     BEFORE UPDATE ON rules_engine 
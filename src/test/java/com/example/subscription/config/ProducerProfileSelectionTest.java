@@ -0,0 +1,30 @@
+package com.example.subscription.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProducerProfileSelectionTest {
+
+    @Test
+    void testGetActiveProfile_KnownNames() {
+        // Given
+        AppProperties.Kafka.Producer producer = new AppProperties.Kafka.Producer();
+
+        // When / Then
+        producer.setProfile("LATENCY");
+        assertSame(producer.getLatency(), producer.getActiveProfile());
+        producer.setProfile("throughput");
+        assertSame(producer.getThroughput(), producer.getActiveProfile());
+    }
+
+    @Test
+    void testGetActiveProfile_UnknownName_Fails() {
+        // Given
+        AppProperties.Kafka.Producer producer = new AppProperties.Kafka.Producer();
+        producer.setProfile("latncy");
+
+        // When / Then
+        assertThrows(IllegalStateException.class, producer::getActiveProfile);
+    }
+}
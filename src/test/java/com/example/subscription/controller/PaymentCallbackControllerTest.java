@@ -0,0 +1,66 @@
+package com.example.subscription.controller;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.service.BookKeepingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentCallbackControllerTest {
+
+    @Mock
+    private BookKeepingService bookKeepingService;
+
+    @Mock
+    private BusinessMetrics businessMetrics;
+
+    @Mock
+    private AppProperties appProperties;
+
+    @InjectMocks
+    private PaymentCallbackController paymentCallbackController;
+
+    private AppProperties.Payment payment;
+
+    @BeforeEach
+    void setUp() {
+        payment = new AppProperties.Payment();
+        payment.getCallback().setEnabled(true);
+        when(appProperties.getPayment()).thenReturn(payment);
+    }
+
+    @Test
+    void testValidateSecret_BlankSecret_FailsStartup() {
+        // Given
+        payment.getCallback().setSecret(" ");
+
+        // When / Then
+        assertThrows(IllegalStateException.class, () -> paymentCallbackController.validateSecret());
+    }
+
+    @Test
+    void testValidateSecret_PlaceholderSecret_FailsStartup() {
+        // Given
+        payment.getCallback().setSecret("change-me-payment-callback-secret");
+
+        // When / Then
+        assertThrows(IllegalStateException.class, () -> paymentCallbackController.validateSecret());
+    }
+
+    @Test
+    void testValidateSecret_ConfiguredSecret_Passes() {
+        // Given
+        payment.getCallback().setSecret("a-real-shared-secret-from-the-vault");
+
+        // When / Then
+        assertDoesNotThrow(() -> paymentCallbackController.validateSecret());
+    }
+}
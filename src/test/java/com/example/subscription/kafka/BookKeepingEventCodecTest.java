@@ -0,0 +1,76 @@
+package com.example.subscription.kafka;
+
+import com.example.subscription.dto.event.BookKeepingEvent;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookKeepingEventCodecTest {
+
+    @Test
+    void testEncodeDecode_RoundTrip() {
+        // Given
+        BookKeepingEvent event = new BookKeepingEvent(
+                123456789L, "100:1:2:req-abc", 100L, 7L, 1L, 2L, "SUBSCRIBED", "COMPLETED",
+                LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31), "ACTIVE",
+                LocalDateTime.of(2024, 1, 1, 10, 15, 30, 123_000_000),
+                LocalDateTime.of(2024, 1, 1, 10, 15, 32));
+
+        // When
+        byte[] encoded = BookKeepingEventCodec.encode(event);
+        BookKeepingEvent decoded = BookKeepingEventCodec.decode(encoded);
+
+        // Then
+        assertEquals(event, decoded);
+        assertEquals(BookKeepingEventCodec.CURRENT_VERSION, encoded[2]);
+        assertTrue(encoded.length < 64, "encoded size was " + encoded.length);
+    }
+
+    @Test
+    void testEncodeDecode_OptionalFieldsAbsent() {
+        // Given
+        BookKeepingEvent event = new BookKeepingEvent(
+                5L, "100:1:2:req-ext", 100L, 7L, 1L, 2L, "EXTENDED", "COMPLETED",
+                null, LocalDate.of(2024, 2, 29), null, null, null);
+
+        // When
+        BookKeepingEvent decoded = BookKeepingEventCodec.decode(BookKeepingEventCodec.encode(event));
+
+        // Then
+        assertEquals(event, decoded);
+    }
+
+    @Test
+    void testDecode_RejectsUnknownVersion() {
+        // Given
+        byte[] encoded = BookKeepingEventCodec.encode(new BookKeepingEvent(
+                1L, "k", 1L, 1L, 1L, 1L, "SUBSCRIBED", "COMPLETED", null, null, null, null, null));
+        encoded[2] = 99;
+
+        // When / Then
+        assertThrows(IllegalArgumentException.class, () -> BookKeepingEventCodec.decode(encoded));
+    }
+
+    @Test
+    void testDecode_RejectsTruncatedPayload() {
+        // Given
+        byte[] encoded = BookKeepingEventCodec.encode(new BookKeepingEvent(
+                1L, "some-key", 1L, 1L, 1L, 1L, "SUBSCRIBED", "COMPLETED", null, null, null, null, null));
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 4);
+
+        // When / Then
+        assertThrows(IllegalArgumentException.class, () -> BookKeepingEventCodec.decode(truncated));
+    }
+
+    @Test
+    void testDecode_RejectsGarbage() {
+        // When / Then
+        assertThrows(IllegalArgumentException.class,
+                () -> BookKeepingEventCodec.decode("not an event".getBytes(StandardCharsets.UTF_8)));
+    }
+}
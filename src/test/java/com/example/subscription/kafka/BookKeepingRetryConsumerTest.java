@@ -0,0 +1,146 @@
+package com.example.subscription.kafka;
+
+import com.example.subscription.dto.event.BookKeepingEvent;
+import com.example.subscription.observability.PipelineLatencyTracker;
+import com.example.subscription.repository.BookKeepingStateMachine;
+import com.example.subscription.service.UserSubscriptionService;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookKeepingRetryConsumerTest {
+
+    private static final String TOPIC = "book-keeping-events-retry-1";
+
+    @Mock
+    private BookKeepingStateMachine bookKeepingStateMachine;
+
+    @Mock
+    private UserSubscriptionService userSubscriptionService;
+
+    @Mock
+    private BookKeepingRetryRouter retryRouter;
+
+    @Mock
+    private PipelineLatencyTracker pipelineLatencyTracker;
+
+    @Mock
+    private ProcessedEventDeduplicator deduplicator;
+
+    @Mock
+    private KafkaListenerEndpointRegistry kafkaListenerEndpointRegistry;
+
+    @Mock
+    private MessageListenerContainer container;
+
+    @Mock
+    private Consumer<?, ?> consumer;
+
+    @Mock
+    private Acknowledgment acknowledgment;
+
+    @InjectMocks
+    private BookKeepingRetryConsumer retryConsumer;
+
+    @AfterEach
+    void tearDown() {
+        retryConsumer.shutdown();
+    }
+
+    @Test
+    void testConsumeRetry_NotDue_HoldsOnlyItsPartition() {
+        // Given
+        when(kafkaListenerEndpointRegistry.getListenerContainer(BookKeepingRetryConsumer.LISTENER_ID))
+                .thenReturn(container);
+        TopicPartition partition = new TopicPartition(TOPIC, 2);
+
+        // When
+        retryConsumer.consumeRetry(record(2, 10L, System.currentTimeMillis() + 60000), acknowledgment, consumer);
+
+        // Then - rewound and paused, but the consumer itself is never paused
+        verify(consumer).seek(partition, 10L);
+        verify(container).pausePartition(partition);
+        verify(acknowledgment, never()).nack(any());
+        verify(acknowledgment, never()).acknowledge();
+        verifyNoInteractions(userSubscriptionService);
+    }
+
+    @Test
+    void testConsumeRetry_RecordsFetchedBehindHeldRecordWaitForRedelivery() {
+        // Given - offset 10 is held, offset 11 arrived in the same poll
+        when(kafkaListenerEndpointRegistry.getListenerContainer(BookKeepingRetryConsumer.LISTENER_ID))
+                .thenReturn(container);
+        retryConsumer.consumeRetry(record(2, 10L, System.currentTimeMillis() + 60000), acknowledgment, consumer);
+
+        // When
+        retryConsumer.consumeRetry(record(2, 11L, System.currentTimeMillis() - 1000), acknowledgment, consumer);
+        retryConsumer.consumeRetry(record(3, 11L, System.currentTimeMillis() - 1000), acknowledgment, consumer);
+
+        // Then - only the other partition's record was processed
+        verify(userSubscriptionService, times(1)).materializeFromEvent(any());
+        verify(acknowledgment, times(1)).acknowledge();
+    }
+
+    @Test
+    void testConsumeRetry_RedeliveredHeldRecord_IsProcessedOnceDue() {
+        // Given
+        when(kafkaListenerEndpointRegistry.getListenerContainer(BookKeepingRetryConsumer.LISTENER_ID))
+                .thenReturn(container);
+        retryConsumer.consumeRetry(record(2, 10L, System.currentTimeMillis() + 60000), acknowledgment, consumer);
+
+        // When - the same offset comes back after the partition is resumed
+        retryConsumer.consumeRetry(record(2, 10L, System.currentTimeMillis() - 1000), acknowledgment, consumer);
+        retryConsumer.consumeRetry(record(2, 11L, System.currentTimeMillis() - 1000), acknowledgment, consumer);
+
+        // Then
+        verify(userSubscriptionService, times(2)).materializeFromEvent(any());
+        verify(acknowledgment, times(2)).acknowledge();
+    }
+
+    @Test
+    void testConsumeRetry_RoutingFailure_HoldsPartitionInsteadOfNack() {
+        // Given
+        when(kafkaListenerEndpointRegistry.getListenerContainer(BookKeepingRetryConsumer.LISTENER_ID))
+                .thenReturn(container);
+        doThrow(new IllegalStateException("Active subscription not found"))
+                .when(userSubscriptionService).materializeFromEvent(any());
+        doThrow(new IllegalStateException("broker unavailable"))
+                .when(retryRouter).routeFailure(any(), anyLong(), any());
+
+        // When
+        retryConsumer.consumeRetry(record(2, 10L, System.currentTimeMillis() - 1000), acknowledgment, consumer);
+
+        // Then
+        verify(consumer).seek(new TopicPartition(TOPIC, 2), 10L);
+        verify(container).pausePartition(new TopicPartition(TOPIC, 2));
+        verify(acknowledgment, never()).nack(any());
+        verify(acknowledgment, never()).acknowledge();
+    }
+
+    private ConsumerRecord<String, byte[]> record(int partition, long offset, long dueAt) {
+        BookKeepingEvent event = new BookKeepingEvent(offset, "key-" + offset, 100L, 1L, 1L, 1L, "SUBSCRIBED",
+                "COMPLETED", null, null, null, LocalDateTime.now(), LocalDateTime.now());
+        ConsumerRecord<String, byte[]> record =
+                new ConsumerRecord<>(TOPIC, partition, offset, "100", BookKeepingEventCodec.encode(event));
+        record.headers().add(BookKeepingRetryRouter.HEADER_DUE_AT,
+                String.valueOf(dueAt).getBytes(StandardCharsets.UTF_8));
+        return record;
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.subscription.kafka;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.repository.BookKeepingStateMachine;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookKeepingRetryRouterTest {
+
+    @Mock
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+
+    @Mock
+    private BookKeepingStateMachine bookKeepingStateMachine;
+
+    @Mock
+    private BusinessMetrics businessMetrics;
+
+    @Mock
+    private AppProperties appProperties;
+
+    @InjectMocks
+    private BookKeepingRetryRouter retryRouter;
+
+    @BeforeEach
+    void setUp() {
+        when(appProperties.getKafka()).thenReturn(new AppProperties.Kafka());
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @Test
+    void testRouteFailure_FirstFailureGoesToFirstRetryTier() {
+        // Given
+        ConsumerRecord<String, byte[]> record =
+                new ConsumerRecord<>("book-keeping-events", 3, 42L, "100", new byte[] {1});
+
+        // When
+        retryRouter.routeFailure(record, 7L, new IllegalStateException("Active subscription not found"));
+
+        // Then
+        ProducerRecord<String, byte[]> sent = captureSent();
+        assertEquals("book-keeping-events-retry-0", sent.topic());
+        assertEquals("100", sent.key());
+        assertEquals("1", header(sent, BookKeepingRetryRouter.HEADER_ATTEMPT));
+        assertEquals("book-keeping-events", header(sent, BookKeepingRetryRouter.HEADER_ORIGINAL_TOPIC));
+        assertEquals("42", header(sent, BookKeepingRetryRouter.HEADER_ORIGINAL_OFFSET));
+        assertNotNull(sent.headers().lastHeader(BookKeepingRetryRouter.HEADER_DUE_AT));
+        verify(bookKeepingStateMachine).recordMaterializationFailure(7L, "Active subscription not found", 4);
+    }
+
+    @Test
+    void testRouteFailure_ExhaustedRetriesGoToDeadLetterTopic() {
+        // Given
+        ConsumerRecord<String, byte[]> record =
+                new ConsumerRecord<>("book-keeping-events-retry-2", 0, 5L, "100", new byte[] {1});
+        record.headers().add(BookKeepingRetryRouter.HEADER_ATTEMPT, "3".getBytes(StandardCharsets.UTF_8));
+        record.headers().add(BookKeepingRetryRouter.HEADER_ORIGINAL_OFFSET, "42".getBytes(StandardCharsets.UTF_8));
+
+        // When
+        retryRouter.routeFailure(record, 7L, new IllegalStateException("still failing"));
+
+        // Then
+        ProducerRecord<String, byte[]> sent = captureSent();
+        assertEquals("book-keeping-events-dlt", sent.topic());
+        assertEquals("4", header(sent, BookKeepingRetryRouter.HEADER_ATTEMPT));
+        assertEquals("42", header(sent, BookKeepingRetryRouter.HEADER_ORIGINAL_OFFSET));
+        assertNull(sent.headers().lastHeader(BookKeepingRetryRouter.HEADER_DUE_AT));
+        verify(businessMetrics).recordBookKeepingRetryRouted("dlt");
+    }
+
+    @Test
+    void testRouteFailure_UndecodableRecordGoesStraightToDeadLetterTopic() {
+        // Given
+        ConsumerRecord<String, byte[]> record =
+                new ConsumerRecord<>("book-keeping-events", 0, 1L, "100", new byte[] {0});
+
+        // When
+        retryRouter.routeFailure(record, null, new IllegalArgumentException("Not a book keeping event"));
+
+        // Then
+        assertEquals("book-keeping-events-dlt", captureSent().topic());
+        verifyNoInteractions(bookKeepingStateMachine);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ProducerRecord<String, byte[]> captureSent() {
+        ArgumentCaptor<ProducerRecord<String, byte[]>> captor = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(captor.capture());
+        return captor.getValue();
+    }
+
+    private String header(ProducerRecord<String, byte[]> record, String name) {
+        return new String(record.headers().lastHeader(name).value(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.subscription.kafka;
+
+import com.example.subscription.config.AppProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class KeyOrderedProcessorTest {
+
+    @Mock
+    private AppProperties appProperties;
+
+    @InjectMocks
+    private KeyOrderedProcessor keyOrderedProcessor;
+
+    @BeforeEach
+    void setUp() {
+        AppProperties.Kafka kafka = new AppProperties.Kafka();
+        kafka.setProcessingLanes(4);
+        when(appProperties.getKafka()).thenReturn(kafka);
+    }
+
+    @AfterEach
+    void tearDown() {
+        keyOrderedProcessor.shutdown();
+    }
+
+    @Test
+    void testProcess_PreservesPerKeyOrder() {
+        // Given
+        List<Event> events = List.of(
+                new Event(1L, 1), new Event(2L, 1), new Event(1L, 2),
+                new Event(3L, 1), new Event(2L, 2), new Event(1L, 3));
+        Map<Long, List<Integer>> seen = new ConcurrentHashMap<>();
+
+        // When
+        int firstIncomplete = keyOrderedProcessor.process(events, Event::userId, lane ->
+                lane.forEach(event -> seen.computeIfAbsent(event.userId(), id -> new CopyOnWriteArrayList<>())
+                        .add(event.sequence())));
+
+        // Then
+        assertEquals(events.size(), firstIncomplete);
+        assertEquals(List.of(1, 2, 3), seen.get(1L));
+        assertEquals(List.of(1, 2), seen.get(2L));
+        assertEquals(List.of(1), seen.get(3L));
+    }
+
+    @Test
+    void testProcess_ReturnsFirstIndexOfFailedLane() {
+        // Given
+        List<Event> events = List.of(new Event(1L, 1), new Event(2L, 1), new Event(1L, 2));
+
+        // When
+        int firstIncomplete = keyOrderedProcessor.process(events, Event::userId, lane -> {
+            if (lane.stream().anyMatch(event -> event.userId() == 2L)) {
+                throw new IllegalStateException("boom");
+            }
+        });
+
+        // Then
+        assertEquals(1, firstIncomplete);
+    }
+
+    private record Event(Long userId, int sequence) {}
+}
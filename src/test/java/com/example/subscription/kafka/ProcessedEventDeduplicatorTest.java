@@ -0,0 +1,120 @@
+package com.example.subscription.kafka;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.dto.event.BookKeepingEvent;
+import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.repository.BookKeepingRepository;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProcessedEventDeduplicatorTest {
+
+    private static final TopicPartition PARTITION = new TopicPartition("book-keeping-events", 0);
+
+    @Mock
+    private BookKeepingRepository bookKeepingRepository;
+
+    @Mock
+    private BusinessMetrics businessMetrics;
+
+    @Mock
+    private AppProperties appProperties;
+
+    @InjectMocks
+    private ProcessedEventDeduplicator deduplicator;
+
+    @Test
+    void testIsDuplicate_RecentlyProcessedKeySkipsDatabase() {
+        // Given
+        when(appProperties.getKafka()).thenReturn(new AppProperties.Kafka());
+        BookKeepingEvent event = event(1L, LocalDateTime.now().minusHours(1));
+        deduplicator.markProcessed(event);
+
+        // When
+        boolean duplicate = deduplicator.isDuplicate(PARTITION, event);
+
+        // Then
+        assertTrue(duplicate);
+        verify(businessMetrics).recordDuplicateEventSkipped("recent");
+        verifyNoInteractions(bookKeepingRepository);
+    }
+
+    @Test
+    void testFindDuplicates_UnknownEventsFallBackToOneStatusLookup() {
+        // Given
+        when(appProperties.getKafka()).thenReturn(new AppProperties.Kafka());
+        BookKeepingEvent replayed = event(1L, LocalDateTime.now().minusHours(1));
+        BookKeepingEvent fresh = event(2L, LocalDateTime.now().minusHours(1));
+        when(bookKeepingRepository.findIdsByIdInAndStatus(anyCollection(), eq("PROCESSED")))
+                .thenReturn(List.of(1L));
+
+        // When
+        Set<Long> duplicates = deduplicator.findDuplicates(List.of(
+                new ProcessedEventDeduplicator.Candidate(PARTITION, replayed),
+                new ProcessedEventDeduplicator.Candidate(PARTITION, fresh)));
+
+        // Then
+        assertEquals(Set.of(1L), duplicates);
+        verify(bookKeepingRepository, times(1)).findIdsByIdInAndStatus(List.of(1L, 2L), "PROCESSED");
+        verify(businessMetrics).recordDuplicateEventSkipped("status");
+        // The confirmed duplicate is now remembered locally
+        assertTrue(deduplicator.isDuplicate(PARTITION, replayed));
+    }
+
+    @Test
+    void testIsDuplicate_EventCompletedAfterAssignmentSkipsDatabase() {
+        // Given
+        when(appProperties.getKafka()).thenReturn(new AppProperties.Kafka());
+        deduplicator.onPartitionsAssigned(List.of(PARTITION));
+        BookKeepingEvent event = event(3L, LocalDateTime.now().plusMinutes(5));
+
+        // When
+        boolean duplicate = deduplicator.isDuplicate(PARTITION, event);
+
+        // Then
+        assertFalse(duplicate);
+        verify(bookKeepingRepository, never()).findIdsByIdInAndStatus(anyCollection(), any());
+    }
+
+    @Test
+    void testBloomFilter_HasNoFalseNegativesAcrossGenerations() {
+        // Given
+        ProcessedEventDeduplicator.GenerationalBloomFilter filter =
+                new ProcessedEventDeduplicator.GenerationalBloomFilter(1000, 0.01);
+        for (int i = 0; i < 1500; i++) {
+            filter.put("key-" + i);
+        }
+
+        // When / Then
+        for (int i = 1000; i < 1500; i++) {
+            assertTrue(filter.mightContain("key-" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 500, "false positives: " + falsePositives);
+    }
+
+    private BookKeepingEvent event(long id, LocalDateTime completedAt) {
+        return new BookKeepingEvent(id, "key-" + id, 100L, 1L, 1L, 1L, "SUBSCRIBED", "COMPLETED",
+                null, null, null, completedAt.minusMinutes(1), completedAt);
+    }
+}
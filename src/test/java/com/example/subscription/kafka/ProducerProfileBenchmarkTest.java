@@ -0,0 +1,93 @@
+package com.example.subscription.kafka;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.config.KafkaConfig;
+import com.example.subscription.dto.event.BookKeepingEvent;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Events/second per producer profile against an in-process broker.
+// Excluded from the default build; run with: mvn test -Pbenchmark
+@Tag("benchmark")
+class ProducerProfileBenchmarkTest {
+
+    private static final String TOPIC = "book-keeping-benchmark";
+    private static final int WARMUP_EVENTS = 5_000;
+    private static final int MEASURED_EVENTS = 50_000;
+    private static final int USERS = 1_000;
+
+    private static EmbeddedKafkaKraftBroker broker;
+
+    @BeforeAll
+    static void startBroker() {
+        broker = new EmbeddedKafkaKraftBroker(1, 6, TOPIC);
+        broker.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopBroker() {
+        broker.destroy();
+    }
+
+    @Test
+    void benchmarkLatencyProfile() throws Exception {
+        double eventsPerSecond = run(AppProperties.Kafka.ProducerProfile.latency());
+        System.out.printf("producer profile=latency events/s=%.0f%n", eventsPerSecond);
+        assertTrue(eventsPerSecond > 0);
+    }
+
+    @Test
+    void benchmarkThroughputProfile() throws Exception {
+        double eventsPerSecond = run(AppProperties.Kafka.ProducerProfile.throughput());
+        System.out.printf("producer profile=throughput events/s=%.0f%n", eventsPerSecond);
+        assertTrue(eventsPerSecond > 0);
+    }
+
+    private double run(AppProperties.Kafka.ProducerProfile profile) throws Exception {
+        DefaultKafkaProducerFactory<String, byte[]> factory =
+                new DefaultKafkaProducerFactory<>(KafkaConfig.producerProps(broker.getBrokersAsString(), profile));
+        try {
+            KafkaTemplate<String, byte[]> template = new KafkaTemplate<>(factory);
+            send(template, WARMUP_EVENTS);
+
+            long startedAt = System.nanoTime();
+            send(template, MEASURED_EVENTS);
+            long elapsedNanos = System.nanoTime() - startedAt;
+
+            return MEASURED_EVENTS / (elapsedNanos / 1_000_000_000.0);
+        } finally {
+            factory.destroy();
+        }
+    }
+
+    private void send(KafkaTemplate<String, byte[]> template, int events) throws Exception {
+        List<CompletableFuture<SendResult<String, byte[]>>> futures = new ArrayList<>(events);
+        for (int i = 0; i < events; i++) {
+            long userId = i % USERS;
+            futures.add(template.send(TOPIC, String.valueOf(userId), samplePayload(i, userId)));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(2, TimeUnit.MINUTES);
+    }
+
+    private byte[] samplePayload(int sequence, long userId) {
+        return BookKeepingEventCodec.encode(new BookKeepingEvent(
+                sequence, "bench-" + sequence, userId, 7L, 1L, 2L, "SUBSCRIBED", "COMPLETED",
+                LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31), "ACTIVE",
+                LocalDateTime.of(2024, 1, 1, 10, 0), LocalDateTime.of(2024, 1, 1, 10, 0, 2)));
+    }
+}
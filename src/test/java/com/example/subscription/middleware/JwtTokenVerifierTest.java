@@ -0,0 +1,106 @@
+package com.example.subscription.middleware;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.observability.BusinessMetrics;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JwtTokenVerifierTest {
+
+    private static final String SECRET = "test-secret-key-for-testing-only";
+
+    @Mock
+    private BusinessMetrics businessMetrics;
+
+    private AppProperties appProperties;
+    private JwtTokenVerifier verifier;
+
+    @BeforeEach
+    void setUp() {
+        appProperties = new AppProperties();
+        appProperties.getJwt().setSecret(SECRET);
+        verifier = new JwtTokenVerifier(appProperties, businessMetrics);
+        verifier.init();
+    }
+
+    @Test
+    void testVerify_RepeatedTokenServedFromCache() {
+        // Given
+        String token = token(SECRET, new Date(System.currentTimeMillis() + 60_000));
+
+        // When
+        JwtTokenVerifier.VerifiedToken first = verifier.verify(token);
+        JwtTokenVerifier.VerifiedToken second = verifier.verify(token);
+
+        // Then
+        assertEquals(42L, first.userId());
+        assertEquals("USER", first.role());
+        assertEquals(first, second);
+        verify(businessMetrics).recordJwtCacheLookup(false);
+        verify(businessMetrics).recordJwtCacheLookup(true);
+        verify(businessMetrics).recordJwtVerification(eq("parse"), anyLong());
+        verify(businessMetrics).recordJwtVerification(eq("cache"), anyLong());
+    }
+
+    @Test
+    void testVerify_RejectsTokenSignedWithAnotherKeyEveryTime() {
+        // Given
+        String forged = token("another-secret-key-of-the-same-size", new Date(System.currentTimeMillis() + 60_000));
+
+        // When / Then
+        assertThrows(SignatureException.class, () -> verifier.verify(forged));
+        assertThrows(SignatureException.class, () -> verifier.verify(forged));
+        verify(businessMetrics, times(2)).recordJwtCacheLookup(false);
+        verify(businessMetrics, never()).recordJwtCacheLookup(true);
+    }
+
+    @Test
+    void testVerify_DebugAllowedExpiredTokenIsNotCached() {
+        // Given
+        appProperties.getJwt().setDebugMode(true);
+        appProperties.getJwt().setDebugSkipExpiryValidation(true);
+        String expired = token(SECRET, new Date(System.currentTimeMillis() - 60_000));
+
+        // When
+        verifier.verify(expired);
+        verifier.verify(expired);
+
+        // Then
+        verify(businessMetrics, times(2)).recordJwtCacheLookup(false);
+        verify(businessMetrics, times(2)).recordJwtVerification(eq("parse"), anyLong());
+    }
+
+    @Test
+    void testVerify_ExpiredTokenRejectedOutsideDebugMode() {
+        // Given
+        String expired = token(SECRET, new Date(System.currentTimeMillis() - 60_000));
+
+        // When / Then
+        assertThrows(ExpiredJwtException.class, () -> verifier.verify(expired));
+    }
+
+    private static String token(String secret, Date expiration) {
+        return Jwts.builder()
+                .claim("user_id", "42")
+                .claim("role", "USER")
+                .expiration(expiration)
+                .signWith(Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)))
+                .compact();
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.subscription.notification;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.observability.BusinessMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationDispatcherTest {
+
+    @Mock
+    private BusinessMetrics businessMetrics;
+
+    private InMemoryNotificationChannel channel;
+    private AppProperties appProperties;
+
+    @BeforeEach
+    void setUp() {
+        channel = new InMemoryNotificationChannel();
+        appProperties = new AppProperties();
+        appProperties.getNotification().getDispatch().setInitialBackoffMs(1);
+        appProperties.getNotification().getDispatch().setMaxBackoffMs(2);
+    }
+
+    @Test
+    void testSubmit_DropsSameUserSubscriptionTypeAndDay() {
+        // Given
+        NotificationDispatcher dispatcher = new NotificationDispatcher(List.of(channel), businessMetrics, appProperties);
+        LocalDate today = LocalDate.of(2026, 10, 19);
+
+        // When
+        dispatcher.submit(expiring(1L, 7L, today));
+        dispatcher.submit(expiring(1L, 6L, today));
+        dispatcher.submit(expiring(2L, 7L, today));
+        dispatcher.submit(expiring(1L, 6L, today.plusDays(1)));
+        int dispatched = dispatcher.dispatchBatch(InMemoryNotificationChannel.NAME);
+
+        // Then
+        assertEquals(3, dispatched);
+        assertEquals(3, channel.deliveredCount());
+        verify(businessMetrics).recordNotificationDropped(InMemoryNotificationChannel.NAME, "duplicate");
+        verify(businessMetrics).recordNotificationBatchSent(eq(InMemoryNotificationChannel.NAME), eq(3), anyLong());
+    }
+
+    @Test
+    void testDispatchBatch_RetriesFailedSend() throws Exception {
+        // Given
+        NotificationChannel flaky = mock(NotificationChannel.class);
+        when(flaky.name()).thenReturn("flaky");
+        when(flaky.supports(any())).thenReturn(true);
+        doThrow(new IllegalStateException("provider unavailable")).doNothing().when(flaky).send(anyList());
+        NotificationDispatcher dispatcher = new NotificationDispatcher(List.of(flaky), businessMetrics, appProperties);
+        dispatcher.submit(expiring(1L, 7L, LocalDate.of(2026, 10, 19)));
+
+        // When
+        dispatcher.dispatchBatch("flaky");
+
+        // Then
+        verify(flaky, times(2)).send(anyList());
+        verify(businessMetrics).recordNotificationRetry("flaky");
+        verify(businessMetrics).recordNotificationBatchSent(eq("flaky"), eq(1), anyLong());
+        verify(businessMetrics, never()).recordNotificationDropped("flaky", "failed");
+    }
+
+    @Test
+    void testDispatchBatch_ReleasesKeysWhenRetriesExhausted() throws Exception {
+        // Given
+        appProperties.getNotification().getDispatch().setMaxAttempts(2);
+        NotificationChannel down = mock(NotificationChannel.class);
+        when(down.name()).thenReturn("down");
+        when(down.supports(any())).thenReturn(true);
+        doThrow(new IllegalStateException("provider unavailable")).when(down).send(anyList());
+        NotificationDispatcher dispatcher = new NotificationDispatcher(List.of(down), businessMetrics, appProperties);
+        Notification notification = expiring(1L, 7L, LocalDate.of(2026, 10, 19));
+        dispatcher.submit(notification);
+
+        // When
+        dispatcher.dispatchBatch("down");
+        int requeued = dispatcher.submit(notification);
+
+        // Then
+        verify(down, times(2)).send(anyList());
+        verify(businessMetrics).recordNotificationDropped("down", "failed");
+        assertEquals(1, requeued);
+    }
+
+    private static Notification expiring(long userId, long daysUntilExpiry, LocalDate day) {
+        return new Notification(Notification.Type.SUBSCRIPTION_EXPIRING, userId, 10L, 100L, 1L,
+                day.plusDays(daysUntilExpiry), daysUntilExpiry, day);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.subscription.observability;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.dto.event.BookKeepingEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PipelineLatencyTrackerTest {
+
+    @Mock
+    private BusinessMetrics businessMetrics;
+
+    @Mock
+    private AppProperties appProperties;
+
+    @InjectMocks
+    private PipelineLatencyTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        when(appProperties.getObservability()).thenReturn(new AppProperties.Observability());
+    }
+
+    @Test
+    void testSummarize_ReportsPercentilesPerStage() {
+        // Given
+        LocalDateTime createdAt = LocalDateTime.of(2025, 1, 1, 10, 0);
+        for (int i = 1; i <= 100; i++) {
+            tracker.recordCompleted(createdAt, createdAt.plusNanos(i * 1_000_000L));
+        }
+
+        // When
+        Map<String, Map<String, PipelineLatencyTracker.StageSummary>> summary = tracker.summarize();
+
+        // Then
+        PipelineLatencyTracker.StageSummary lastMinute = summary.get("created_to_completed").get("60s");
+        assertEquals(100, lastMinute.count());
+        assertEquals(50.0, lastMinute.p50Ms());
+        assertEquals(99.0, lastMinute.p99Ms());
+        assertEquals(100.0, lastMinute.maxMs());
+        assertEquals(0, summary.get("completed_to_processed").get("60s").count());
+        verify(businessMetrics, times(100)).recordPipelineStage(eq("created_to_completed"), anyLong());
+    }
+
+    @Test
+    void testRecordProcessed_ClampsClockSkewToZero() {
+        // Given
+        LocalDateTime completedAt = LocalDateTime.of(2025, 1, 1, 10, 0, 5);
+        BookKeepingEvent event = new BookKeepingEvent(1L, "key", 100L, 1L, 1L, 1L, "SUBSCRIBED", "COMPLETED",
+                null, null, null, completedAt.minusSeconds(5), completedAt);
+
+        // When
+        tracker.recordProcessed(event, completedAt.minusSeconds(1));
+
+        // Then
+        verify(businessMetrics).recordPipelineStage("completed_to_processed", 0L);
+        verify(businessMetrics).recordPipelineStage("created_to_processed", 4_000_000_000L);
+    }
+}
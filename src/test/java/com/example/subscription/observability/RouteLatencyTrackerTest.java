@@ -0,0 +1,85 @@
+package com.example.subscription.observability;
+
+import com.example.subscription.config.AppProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RouteLatencyTrackerTest {
+
+    @Mock
+    private BusinessMetrics businessMetrics;
+
+    private AppProperties appProperties;
+    private RouteLatencyTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        appProperties = new AppProperties();
+        appProperties.getObservability().getHttp().setSloBucketsMs(List.of(100L, 500L));
+        tracker = new RouteLatencyTracker(businessMetrics, appProperties);
+        tracker.init();
+    }
+
+    @Test
+    void testRecord_TagsRouteTemplateStatusClassAndRole() {
+        // When
+        tracker.record("GET", "/api/subscriptions/{id}", 404, "USER", 3_000_000L);
+        tracker.record("POST", null, 401, null, 1_000_000L);
+
+        // Then
+        Duration[] slos = {Duration.ofMillis(100), Duration.ofMillis(500)};
+        verify(businessMetrics).recordRouteLatency("GET", "/api/subscriptions/{id}", "4xx", "USER", 3_000_000L, slos);
+        verify(businessMetrics).recordRouteLatency("POST", "UNMATCHED", "4xx", "anonymous", 1_000_000L, slos);
+    }
+
+    @Test
+    void testSlowest_OrdersRoutesByP99AndLimits() {
+        // Given
+        for (int i = 1; i <= 100; i++) {
+            tracker.record("GET", "/api/plans", 200, "USER", i * 1_000_000L);
+            tracker.record("POST", "/api/subscriptions", 201, "USER", i * 5_000_000L);
+            tracker.record("GET", "/health", 200, null, 100_000L);
+        }
+
+        // When
+        List<RouteLatencyTracker.RouteSummary> slowest = tracker.slowest(2, 300);
+
+        // Then
+        assertEquals(2, slowest.size());
+        assertEquals("POST /api/subscriptions", slowest.get(0).route());
+        assertEquals(495.0, slowest.get(0).p99Ms());
+        assertEquals("GET /api/plans", slowest.get(1).route());
+        assertEquals(100, slowest.get(1).count());
+        assertEquals(50.0, slowest.get(1).p50Ms());
+        assertEquals(100.0, slowest.get(1).maxMs());
+    }
+
+    @Test
+    void testRecord_StopsTrackingNewRoutesPastMaxRoutes() {
+        // Given
+        appProperties.getObservability().getHttp().setMaxRoutes(1);
+
+        // When
+        tracker.record("GET", "/api/plans", 200, "USER", 1_000_000L);
+        tracker.record("GET", "/api/plans/{id}", 200, "USER", 2_000_000L);
+
+        // Then
+        assertEquals(List.of("GET /api/plans"),
+                tracker.slowest(10, 300).stream().map(RouteLatencyTracker.RouteSummary::route).toList());
+        verify(businessMetrics, times(2)).recordRouteLatency(anyString(), anyString(), anyString(), anyString(),
+                anyLong(), any());
+    }
+}
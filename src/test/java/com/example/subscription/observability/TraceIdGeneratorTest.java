@@ -0,0 +1,163 @@
+package com.example.subscription.observability;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.repository.JobLeaseRepository;
+import com.example.subscription.scheduler.JobCoordinator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TraceIdGeneratorTest {
+
+    @Mock
+    private JobCoordinator jobCoordinator;
+
+    @Mock
+    private JobLeaseRepository jobLeaseRepository;
+
+    private TraceIdGenerator generator;
+
+    @BeforeEach
+    void setUp() {
+        AppProperties appProperties = new AppProperties();
+        appProperties.getObservability().getIds().setNodeId(737);
+        generator = new TraceIdGenerator(appProperties, jobCoordinator, jobLeaseRepository);
+        generator.init();
+    }
+
+    @Test
+    void testNextId_IncreasesAndCarriesNodeAndTime() {
+        // Given
+        long before = System.currentTimeMillis() - TraceIdGenerator.EPOCH_MILLIS;
+
+        // When
+        long first = generator.nextId();
+        long second = generator.nextId();
+
+        // Then
+        assertTrue(second > first);
+        assertEquals(737, (first >>> TraceIdGenerator.SEQUENCE_BITS) & ((1 << TraceIdGenerator.NODE_BITS) - 1));
+        long millis = first >>> (TraceIdGenerator.NODE_BITS + TraceIdGenerator.SEQUENCE_BITS);
+        assertTrue(millis >= before && millis <= System.currentTimeMillis() - TraceIdGenerator.EPOCH_MILLIS + 1);
+    }
+
+    @Test
+    void testNextId_UniqueAcrossThreadsEvenPastSequenceCapacity() throws InterruptedException {
+        // Given
+        ConcurrentLinkedQueue<Long> ids = new ConcurrentLinkedQueue<>();
+        AtomicBoolean outOfOrder = new AtomicBoolean();
+        List<Thread> threads = new ArrayList<>();
+
+        // When
+        for (int t = 0; t < 8; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                long previous = -1;
+                for (int i = 0; i < 20_000; i++) {
+                    long id = generator.nextId();
+                    if (id <= previous) {
+                        outOfOrder.set(true);
+                    }
+                    previous = id;
+                    ids.add(id);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Then
+        Set<Long> unique = new HashSet<>(ids);
+        assertEquals(160_000, unique.size());
+        assertFalse(outOfOrder.get());
+    }
+
+    @Test
+    void testNextHex_FixedWidthAndSortsInIssueOrder() {
+        // When
+        String first = generator.nextHex();
+        String second = generator.nextHex();
+
+        // Then
+        assertEquals(16, first.length());
+        assertTrue(second.compareTo(first) > 0);
+    }
+
+    @Test
+    void testInit_RejectsNodeIdOutOfRange() {
+        // Given
+        AppProperties appProperties = new AppProperties();
+        appProperties.getObservability().getIds().setNodeId(1024);
+
+        // When / Then
+        assertThrows(IllegalStateException.class, () -> new TraceIdGenerator(appProperties, jobCoordinator, jobLeaseRepository).init());
+    }
+
+    @Test
+    void testInit_UnsetNodeId_ClaimsSlotThroughSchedulerNodes() {
+        // Given
+        AppProperties appProperties = new AppProperties();
+        when(jobCoordinator.nodeId()).thenReturn("host-a-1234");
+        when(jobLeaseRepository.claimTraceSlot("host-a-1234", 1023, 300)).thenReturn(Optional.of(42));
+        TraceIdGenerator claimed = new TraceIdGenerator(appProperties, jobCoordinator, jobLeaseRepository);
+
+        // When
+        claimed.init();
+
+        // Then
+        assertEquals(42, (claimed.nextId() >>> TraceIdGenerator.SEQUENCE_BITS) & ((1 << TraceIdGenerator.NODE_BITS) - 1));
+    }
+
+    @Test
+    void testInit_SlotTakenByConcurrentClaim_Retries() {
+        // Given
+        AppProperties appProperties = new AppProperties();
+        when(jobCoordinator.nodeId()).thenReturn("host-a-1234");
+        when(jobLeaseRepository.claimTraceSlot(anyString(), anyInt(), anyInt()))
+                .thenThrow(new DuplicateKeyException("trace_slot"))
+                .thenReturn(Optional.of(7));
+        TraceIdGenerator claimed = new TraceIdGenerator(appProperties, jobCoordinator, jobLeaseRepository);
+
+        // When
+        claimed.init();
+
+        // Then
+        assertEquals(7, (claimed.nextId() >>> TraceIdGenerator.SEQUENCE_BITS) & ((1 << TraceIdGenerator.NODE_BITS) - 1));
+        verify(jobLeaseRepository, times(2)).claimTraceSlot(anyString(), anyInt(), anyInt());
+    }
+
+    @Test
+    void testInit_AllSlotsHeld_FailsStartup() {
+        // Given
+        AppProperties appProperties = new AppProperties();
+        when(jobCoordinator.nodeId()).thenReturn("host-a-1234");
+        when(jobLeaseRepository.claimTraceSlot(anyString(), anyInt(), anyInt())).thenReturn(Optional.empty());
+
+        // When / Then
+        assertThrows(IllegalStateException.class,
+                () -> new TraceIdGenerator(appProperties, jobCoordinator, jobLeaseRepository).init());
+    }
+
+    @Test
+    void testInit_ConfiguredNodeId_ClaimsNothing() {
+        // Then - the generator built in setUp used its configured id
+        verifyNoInteractions(jobLeaseRepository);
+    }
+}
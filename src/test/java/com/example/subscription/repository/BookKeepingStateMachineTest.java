@@ -0,0 +1,83 @@
+package com.example.subscription.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs the guarded UPDATEs against H2 in PostgreSQL mode with only the columns they touch
+class BookKeepingStateMachineTest {
+
+    private static final int MAX_RETRIES = 3;
+
+    private JdbcTemplate jdbcTemplate;
+    private BookKeepingStateMachine stateMachine;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:book_keeping_state_machine;MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE book_keeping (id BIGINT PRIMARY KEY, status VARCHAR(50) NOT NULL, " +
+                "completed_at TIMESTAMP, processed_at TIMESTAMP, retry_count INTEGER NOT NULL DEFAULT 0, " +
+                "error_message TEXT)");
+        stateMachine = new BookKeepingStateMachine(jdbcTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP TABLE book_keeping");
+    }
+
+    @Test
+    void testResetForReplay_FailureAfterReplayRetriesAndLaterSuccessIsProcessed() {
+        // Given - dead-lettered after exhausting its retries
+        jdbcTemplate.update("INSERT INTO book_keeping (id, status, completed_at, retry_count, error_message) " +
+                "VALUES (1, 'FAILED', CURRENT_TIMESTAMP, ?, 'boom')", MAX_RETRIES);
+
+        // When - replayed, fails once more in the retry topics, then succeeds
+        boolean reset = stateMachine.resetForReplay(1L);
+        stateMachine.recordMaterializationFailure(1L, "boom again", MAX_RETRIES);
+        int processed = stateMachine.markProcessed(List.of(1L), LocalDateTime.now());
+
+        // Then
+        assertTrue(reset);
+        assertEquals(1, processed);
+        Map<String, Object> row = jdbcTemplate.queryForMap("SELECT status, retry_count FROM book_keeping WHERE id = 1");
+        assertEquals("PROCESSED", row.get("status"));
+        assertEquals(1, ((Number) row.get("retry_count")).intValue());
+    }
+
+    @Test
+    void testResetForReplay_PaymentFailureNotReset() {
+        // Given - failed before the payment ever completed
+        jdbcTemplate.update("INSERT INTO book_keeping (id, status) VALUES (2, 'FAILED')");
+
+        // When
+        boolean reset = stateMachine.resetForReplay(2L);
+
+        // Then
+        assertFalse(reset);
+        assertEquals("FAILED", jdbcTemplate.queryForObject("SELECT status FROM book_keeping WHERE id = 2", String.class));
+    }
+
+    @Test
+    void testRecordMaterializationFailure_FailsOnLastRetry() {
+        // Given
+        jdbcTemplate.update("INSERT INTO book_keeping (id, status, completed_at, retry_count) " +
+                "VALUES (3, 'COMPLETED', CURRENT_TIMESTAMP, ?)", MAX_RETRIES - 1);
+
+        // When
+        stateMachine.recordMaterializationFailure(3L, "boom", MAX_RETRIES);
+
+        // Then
+        assertEquals("FAILED", jdbcTemplate.queryForObject("SELECT status FROM book_keeping WHERE id = 3", String.class));
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.subscription.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.ResultSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SubscriptionExpiryRepositoryTest {
+
+    @Mock
+    private ResultSet rs;
+
+    @Test
+    void testExtractBatch_EntriesWritten() throws Exception {
+        // Given - two expired subscriptions, both logged
+        when(rs.next()).thenReturn(true, true, false);
+        when(rs.getInt("expired_count")).thenReturn(2);
+        when(rs.getLong("id")).thenReturn(10L, 10L, 11L, 11L);
+        when(rs.wasNull()).thenReturn(false);
+
+        // When
+        SubscriptionExpiryRepository.ExpiredBatch batch = SubscriptionExpiryRepository.extractBatch(rs);
+
+        // Then
+        assertEquals(2, batch.expired());
+        assertEquals(2, batch.entries().size());
+        assertEquals(10L, batch.entries().get(0).getId());
+        assertEquals(11L, batch.entries().get(1).getId());
+    }
+
+    @Test
+    void testExtractBatch_EveryEntryConflicted_StillReportsExpiredCount() throws Exception {
+        // Given - the LEFT JOIN row carries the count with no book_keeping columns
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getInt("expired_count")).thenReturn(3);
+        when(rs.getLong("id")).thenReturn(0L);
+        when(rs.wasNull()).thenReturn(true);
+
+        // When
+        SubscriptionExpiryRepository.ExpiredBatch batch = SubscriptionExpiryRepository.extractBatch(rs);
+
+        // Then
+        assertEquals(3, batch.expired());
+        assertTrue(batch.entries().isEmpty());
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.subscription.resilience;
+
+import com.example.subscription.model.BookKeeping;
+import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.repository.BookKeepingRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DeferredPaymentQueueTest {
+
+    @Mock
+    private BookKeepingRepository bookKeepingRepository;
+
+    @Mock
+    private BusinessMetrics businessMetrics;
+
+    @InjectMocks
+    private DeferredPaymentQueue deferredPaymentQueue;
+
+    @Test
+    void testDefer_InitiatedEntry_IsParked() {
+        // Given
+        BookKeeping bookKeeping = new BookKeeping();
+        bookKeeping.setId(1L);
+        when(bookKeepingRepository.markPaymentDeferred(eq(1L), any(LocalDateTime.class))).thenReturn(1);
+
+        // When
+        boolean deferred = deferredPaymentQueue.defer(bookKeeping);
+
+        // Then
+        assertTrue(deferred);
+        verify(businessMetrics).recordPaymentDeferred();
+    }
+
+    @Test
+    void testDefer_NoLongerInitiated_IsNotParked() {
+        // Given
+        BookKeeping bookKeeping = new BookKeeping();
+        bookKeeping.setId(1L);
+        when(bookKeepingRepository.markPaymentDeferred(eq(1L), any(LocalDateTime.class))).thenReturn(0);
+
+        // When
+        boolean deferred = deferredPaymentQueue.defer(bookKeeping);
+
+        // Then
+        assertFalse(deferred);
+        verify(businessMetrics, never()).recordPaymentDeferred();
+    }
+
+    @Test
+    void testClaim_OnlyFirstCallerWins() {
+        // Given - the conditional update matches once, then the entry is no longer deferred
+        when(bookKeepingRepository.clearPaymentDeferred(1L)).thenReturn(1, 0);
+
+        // When
+        boolean first = deferredPaymentQueue.claim(1L);
+        boolean second = deferredPaymentQueue.claim(1L);
+
+        // Then
+        assertTrue(first);
+        assertFalse(second);
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.subscription.resilience;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.observability.BusinessMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HedgedRequestExecutorTest {
+
+    @Mock
+    private AppProperties appProperties;
+
+    @Mock
+    private BusinessMetrics businessMetrics;
+
+    @InjectMocks
+    private HedgedRequestExecutor hedgedRequestExecutor;
+
+    private AppProperties.Payment payment;
+
+    @BeforeEach
+    void setUp() {
+        payment = new AppProperties.Payment();
+        payment.getHedging().setEnabled(true);
+        payment.getHedging().setMinSamples(5);
+        payment.getHedging().setMinDelayMs(10);
+        payment.getHedging().setMaxHedgeRatio(1.0);
+        when(appProperties.getPayment()).thenReturn(payment);
+    }
+
+    @Test
+    void testExecute_Disabled_CallsOnce() {
+        // Given
+        payment.getHedging().setEnabled(false);
+        AtomicInteger calls = new AtomicInteger();
+
+        // When
+        String result = hedgedRequestExecutor.execute("status", () -> {
+            calls.incrementAndGet();
+            return Mono.just("ok");
+        }).block();
+
+        // Then
+        assertEquals("ok", result);
+        assertEquals(1, calls.get());
+        verifyNoInteractions(businessMetrics);
+    }
+
+    @Test
+    void testExecute_SlowPrimary_HedgeWins() {
+        // Given - warm the latency window with fast answers
+        for (int i = 0; i < 5; i++) {
+            hedgedRequestExecutor.execute("status", () -> Mono.just("warm")).block();
+        }
+        AtomicInteger calls = new AtomicInteger();
+
+        // When - the first attempt stalls, the hedged duplicate answers quickly
+        String result = hedgedRequestExecutor.execute("status", () -> calls.incrementAndGet() == 1
+                ? Mono.delay(Duration.ofSeconds(5)).thenReturn("primary")
+                : Mono.just("hedge")).block(Duration.ofSeconds(2));
+
+        // Then
+        assertEquals("hedge", result);
+        assertEquals(2, calls.get());
+        verify(businessMetrics).recordHedgeFired("status");
+        verify(businessMetrics).recordHedgeWon("status");
+    }
+
+    @Test
+    void testExecute_NoBudget_WaitsForPrimary() {
+        // Given
+        payment.getHedging().setMaxHedgeRatio(0.0);
+        for (int i = 0; i < 5; i++) {
+            hedgedRequestExecutor.execute("status", () -> Mono.just("warm")).block();
+        }
+        AtomicInteger calls = new AtomicInteger();
+
+        // When
+        String result = hedgedRequestExecutor.execute("status", () -> {
+            calls.incrementAndGet();
+            return Mono.delay(Duration.ofMillis(100)).thenReturn("primary");
+        }).block(Duration.ofSeconds(2));
+
+        // Then
+        assertEquals("primary", result);
+        assertEquals(1, calls.get());
+        verify(businessMetrics).recordHedgeBudgetExhausted("status");
+        verify(businessMetrics, never()).recordHedgeFired(anyString());
+    }
+
+    @Test
+    void testExecute_FailedAttemptsCountTowardsLatencyWindow() {
+        // Given - the window is warmed only by failures
+        for (int i = 0; i < 5; i++) {
+            Mono<String> failed = hedgedRequestExecutor.execute("status",
+                    () -> Mono.<String>error(new IllegalStateException("timeout")));
+            assertThrows(IllegalStateException.class, failed::block);
+        }
+        AtomicInteger calls = new AtomicInteger();
+
+        // When
+        String result = hedgedRequestExecutor.execute("status", () -> calls.incrementAndGet() == 1
+                ? Mono.delay(Duration.ofSeconds(5)).thenReturn("primary")
+                : Mono.just("hedge")).block(Duration.ofSeconds(2));
+
+        // Then - the failures were enough samples to start hedging
+        assertEquals("hedge", result);
+        verify(businessMetrics).recordHedgeFired("status");
+    }
+
+    @Test
+    void testExecute_TimedOutAttemptsCountTowardsLatencyWindow() {
+        // Given - every warm-up attempt hangs until its own timeout fires
+        for (int i = 0; i < 5; i++) {
+            Mono<String> timedOut = hedgedRequestExecutor.execute("status",
+                    () -> Mono.<String>never().timeout(Duration.ofMillis(20)));
+            assertThrows(RuntimeException.class, () -> timedOut.block(Duration.ofSeconds(2)));
+        }
+        AtomicInteger calls = new AtomicInteger();
+
+        // When
+        String result = hedgedRequestExecutor.execute("status", () -> calls.incrementAndGet() == 1
+                ? Mono.delay(Duration.ofSeconds(5)).thenReturn("primary")
+                : Mono.just("hedge")).block(Duration.ofSeconds(2));
+
+        // Then - the timeouts were sampled, so hedging has a delay to work with
+        assertEquals("hedge", result);
+        verify(businessMetrics).recordHedgeFired("status");
+    }
+}
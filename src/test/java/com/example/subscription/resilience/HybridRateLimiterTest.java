@@ -0,0 +1,154 @@
+package com.example.subscription.resilience;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.repository.JobLeaseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HybridRateLimiterTest {
+
+    private static final String KEY = "ratelimit:default:user:42:GET:/api/subscriptions";
+    private static final RateLimitPolicy POLICY =
+            new RateLimitPolicy("default", RateLimitPolicy.Algorithm.TOKEN_BUCKET, 100, 86_400_000L, true);
+
+    @Mock
+    private RedisRateLimiter redisRateLimiter;
+
+    @Mock
+    private JobLeaseRepository jobLeaseRepository;
+
+    @Mock
+    private BusinessMetrics businessMetrics;
+
+    private HybridRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        limiter = new HybridRateLimiter(redisRateLimiter, jobLeaseRepository, businessMetrics, new AppProperties());
+    }
+
+    @Test
+    void testTryAcquire_AdmitsFromLeasedSliceAndRefillsInBackground() {
+        // Given
+        when(redisRateLimiter.acquire(eq(KEY), eq(POLICY), anyInt()))
+                .thenReturn(Mono.just(new RateLimitDecision(true, 100, 90, 0)));
+
+        // When
+        assertTrue(limiter.tryAcquire(KEY, POLICY).allowed());
+        assertTrue(limiter.tryAcquire(KEY, POLICY).allowed());
+        int refilled = limiter.syncPending();
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.tryAcquire(KEY, POLICY).allowed());
+        }
+
+        // Then
+        assertEquals(1, refilled);
+        verify(redisRateLimiter).acquire(KEY, POLICY, 2);
+        verify(redisRateLimiter).acquire(KEY, POLICY, 4);
+        verify(redisRateLimiter, times(2)).acquire(eq(KEY), eq(POLICY), anyInt());
+        verify(redisRateLimiter, never()).tryAcquire(KEY, POLICY);
+    }
+
+    @Test
+    void testTryAcquire_GoesToRedisPerRequestWhenCloseToLimit() {
+        // Given
+        when(redisRateLimiter.acquire(eq(KEY), eq(POLICY), anyInt()))
+                .thenReturn(Mono.just(new RateLimitDecision(true, 100, 1, 0)))
+                .thenReturn(Mono.just(new RateLimitDecision(false, 100, 0, 500)));
+
+        // When
+        RateLimitDecision first = limiter.tryAcquire(KEY, POLICY);
+        RateLimitDecision second = limiter.tryAcquire(KEY, POLICY);
+        RateLimitDecision third = limiter.tryAcquire(KEY, POLICY);
+
+        // Then
+        assertTrue(first.allowed());
+        assertTrue(second.allowed());
+        assertFalse(third.allowed());
+        assertEquals(500, third.retryAfterMillis());
+        assertEquals(0, limiter.syncPending());
+        verify(redisRateLimiter).acquire(KEY, POLICY, 2);
+        verify(redisRateLimiter).acquire(KEY, POLICY, 1);
+    }
+
+    @Test
+    void testTryAcquire_LimitsLocallyToNodeShareWhileRedisIsDown() {
+        // Given
+        when(redisRateLimiter.acquire(eq(KEY), eq(POLICY), anyInt()))
+                .thenReturn(Mono.error(new IllegalStateException("connection refused")));
+        when(jobLeaseRepository.findLiveNodes(30)).thenReturn(List.of("node-a", "node-b"));
+
+        // When
+        int allowed = 0;
+        for (int i = 0; i < 60; i++) {
+            if (limiter.tryAcquire(KEY, POLICY).allowed()) {
+                allowed++;
+            }
+        }
+
+        // Then
+        assertEquals(50, allowed);
+        verify(redisRateLimiter, times(1)).acquire(eq(KEY), eq(POLICY), anyInt());
+        verify(businessMetrics).recordRateLimitDegraded(true);
+    }
+
+    @Test
+    void testReleaseExpired_HandsUnusedPermitsBack() {
+        // Given
+        when(redisRateLimiter.acquire(eq(KEY), eq(POLICY), anyInt()))
+                .thenReturn(Mono.just(new RateLimitDecision(true, 100, 90, 0)));
+        when(redisRateLimiter.release(eq(KEY), eq(POLICY), anyInt(), anyLong()))
+                .thenReturn(Mono.just(new RateLimitDecision(true, 100, 91, 0)));
+        limiter.tryAcquire(KEY, POLICY);
+
+        // When
+        limiter.releaseExpired(System.currentTimeMillis() + 5_000);
+
+        // Then
+        verify(redisRateLimiter).release(KEY, POLICY, 1, 0);
+        verify(businessMetrics).recordRateLimitLeaseSync(eq("release"), eq(1), anyLong());
+    }
+
+    @Test
+    void testReleaseExpired_SlidingWindow_HandsBackOnlyToTheLatestChargedWindow() {
+        // Given - slices of 2 and 4 charged to the window starting at 60000, the next slice of 8 to the one after
+        RateLimitPolicy sliding =
+                new RateLimitPolicy("default", RateLimitPolicy.Algorithm.SLIDING_WINDOW, 100, 60_000L, true);
+        when(redisRateLimiter.acquire(KEY, sliding, 2))
+                .thenReturn(Mono.just(new RateLimitDecision(true, 100, 90, 0, 60_000L)));
+        when(redisRateLimiter.acquire(KEY, sliding, 4))
+                .thenReturn(Mono.just(new RateLimitDecision(true, 100, 86, 0, 60_000L)));
+        when(redisRateLimiter.acquire(KEY, sliding, 8))
+                .thenReturn(Mono.just(new RateLimitDecision(true, 100, 78, 0, 120_000L)));
+        when(redisRateLimiter.release(eq(KEY), eq(sliding), anyInt(), anyLong()))
+                .thenReturn(Mono.just(new RateLimitDecision(true, 100, 86, 0, 120_000L)));
+        limiter.tryAcquire(KEY, sliding);
+        limiter.tryAcquire(KEY, sliding);
+        limiter.syncPending();
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire(KEY, sliding);
+        }
+        limiter.syncPending();
+
+        // When - one permit of the first window is left next to the whole new slice
+        limiter.releaseExpired(System.currentTimeMillis() + 5_000);
+
+        // Then - the new slice goes back to its own window; the old window's permit stays charged
+        verify(redisRateLimiter).release(KEY, sliding, 8, 120_000L);
+        verify(redisRateLimiter, times(1)).release(eq(KEY), eq(sliding), anyInt(), anyLong());
+    }
+}
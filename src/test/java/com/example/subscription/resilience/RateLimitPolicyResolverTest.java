@@ -0,0 +1,113 @@
+package com.example.subscription.resilience;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.model.RulesEngine;
+import com.example.subscription.repository.RulesEngineRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RateLimitPolicyResolverTest {
+
+    @Mock
+    private RulesEngineRepository rulesEngineRepository;
+
+    private AppProperties appProperties;
+    private RateLimitPolicyResolver resolver;
+
+    @BeforeEach
+    void setUp() {
+        appProperties = new AppProperties();
+        appProperties.getRateLimit().setRules(List.of(
+                rule("subscriptions", "/api/subscriptions/**", null, null, 50),
+                rule("extend", "/api/subscriptions/*/extend", "POST", null, 10),
+                rule("extend-admin", "/api/subscriptions/*/extend", "POST", "ADMIN", 100)));
+        resolver = new RateLimitPolicyResolver(appProperties, rulesEngineRepository);
+        resolver.init();
+    }
+
+    @Test
+    void testResolve_PrefersRoleAndMethodThenMostSpecificRoute() {
+        // When
+        RateLimitPolicy user = resolver.resolve("POST", "/api/subscriptions/{id}/extend", "USER");
+        RateLimitPolicy admin = resolver.resolve("POST", "/api/subscriptions/{id}/extend", "ADMIN");
+        RateLimitPolicy read = resolver.resolve("GET", "/api/subscriptions/{id}", "USER");
+        RateLimitPolicy other = resolver.resolve("GET", "/api/plans", "USER");
+
+        // Then
+        assertEquals("extend", user.name());
+        assertEquals(10, user.limit());
+        assertEquals(RateLimitPolicy.Algorithm.SLIDING_WINDOW, user.algorithm());
+        assertEquals("extend-admin", admin.name());
+        assertEquals("subscriptions", read.name());
+        assertEquals("default", other.name());
+        assertEquals(100, other.limit());
+        assertEquals(60_000L, other.windowMillis());
+        assertEquals(RateLimitPolicy.Algorithm.TOKEN_BUCKET, other.algorithm());
+    }
+
+    @Test
+    void testRefresh_DatabaseRulesOverrideConfigAndBadRowsAreSkipped() {
+        // Given
+        assertEquals("extend", resolver.resolve("POST", "/api/subscriptions/{id}/extend", "USER").name());
+        when(rulesEngineRepository.findByRuleTypeAndIsActiveTrue("RATE_LIMIT")).thenReturn(List.of(
+                row("RATE_LIMIT_SUBSCRIPTIONS",
+                        "{\"route\":\"/api/subscriptions/**\",\"algorithm\":\"TOKEN_BUCKET\",\"limit\":5,\"windowSeconds\":30,\"perRoute\":false}"),
+                row("RATE_LIMIT_BROKEN", "{\"route\":")));
+
+        // When
+        resolver.refresh();
+        RateLimitPolicy policy = resolver.resolve("POST", "/api/subscriptions/{id}/extend", "USER");
+
+        // Then
+        assertEquals("RATE_LIMIT_SUBSCRIPTIONS", policy.name());
+        assertEquals(5, policy.limit());
+        assertEquals(30_000L, policy.windowMillis());
+        assertFalse(policy.perRoute());
+    }
+
+    @Test
+    void testRefresh_KeepsLoadedRulesWhenDatabaseIsUnavailable() {
+        // Given
+        when(rulesEngineRepository.findByRuleTypeAndIsActiveTrue("RATE_LIMIT"))
+                .thenReturn(List.of(row("RATE_LIMIT_PLANS",
+                        "{\"route\":\"/api/plans/**\",\"limit\":7,\"windowSeconds\":60}")))
+                .thenThrow(new IllegalStateException("connection refused"));
+        resolver.refresh();
+
+        // When
+        resolver.refresh();
+
+        // Then
+        assertEquals(7, resolver.resolve("GET", "/api/plans", "USER").limit());
+        verify(rulesEngineRepository, times(2)).findByRuleTypeAndIsActiveTrue("RATE_LIMIT");
+    }
+
+    private static AppProperties.RateLimit.Rule rule(String name, String route, String method, String role, int limit) {
+        AppProperties.RateLimit.Rule rule = new AppProperties.RateLimit.Rule();
+        rule.setName(name);
+        rule.setRoute(route);
+        rule.setMethod(method);
+        rule.setRole(role);
+        rule.setAlgorithm("SLIDING_WINDOW");
+        rule.setLimit(limit);
+        rule.setWindowSeconds(60);
+        return rule;
+    }
+
+    private static RulesEngine row(String key, String value) {
+        RulesEngine row = new RulesEngine();
+        row.setRuleKey(key);
+        row.setRuleValue(value);
+        row.setRuleType("RATE_LIMIT");
+        return row;
+    }
+}
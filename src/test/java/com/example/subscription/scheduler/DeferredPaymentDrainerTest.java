@@ -0,0 +1,106 @@
+package com.example.subscription.scheduler;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.model.BookKeeping;
+import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.resilience.CircuitBreakerService;
+import com.example.subscription.resilience.DeferredPaymentQueue;
+import com.example.subscription.service.PaymentService;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DeferredPaymentDrainerTest {
+
+    @Mock
+    private DeferredPaymentQueue deferredPaymentQueue;
+
+    @Mock
+    private PaymentService paymentService;
+
+    @Mock
+    private CircuitBreakerService circuitBreakerService;
+
+    @Mock
+    private BusinessMetrics businessMetrics;
+
+    @Mock
+    private AppProperties appProperties;
+
+    @InjectMocks
+    private DeferredPaymentDrainer deferredPaymentDrainer;
+
+    @BeforeEach
+    void setUp() {
+        AppProperties.Payment payment = new AppProperties.Payment();
+        payment.getDeferral().setDrainRatePerSecond(1000);
+        when(appProperties.getPayment()).thenReturn(payment);
+    }
+
+    @Test
+    void testDrain_ResubmitsOnlyClaimedEntries() {
+        // Given - entry 2 was claimed by a drainer on another node
+        when(circuitBreakerService.getPaymentServiceState()).thenReturn(CircuitBreaker.State.CLOSED);
+        when(deferredPaymentQueue.nextBatch(eq(0L), anyInt())).thenReturn(List.of(entry(1L), entry(2L)));
+        when(deferredPaymentQueue.nextBatch(eq(2L), anyInt())).thenReturn(List.of());
+        when(deferredPaymentQueue.claim(1L)).thenReturn(true);
+        when(deferredPaymentQueue.claim(2L)).thenReturn(false);
+
+        // When
+        deferredPaymentDrainer.drain();
+
+        // Then
+        verify(paymentService).processPayment(argThat(bookKeeping -> bookKeeping.getId() == 1L));
+        verify(paymentService, never()).processPayment(argThat(bookKeeping -> bookKeeping.getId() == 2L));
+        verify(businessMetrics, times(1)).recordDeferredPaymentDrained();
+    }
+
+    @Test
+    void testDrain_BreakerOpenAgain_StopsWithoutClaiming() {
+        // Given
+        when(circuitBreakerService.getPaymentServiceState()).thenReturn(CircuitBreaker.State.OPEN);
+        when(deferredPaymentQueue.nextBatch(eq(0L), anyInt())).thenReturn(List.of(entry(1L)));
+
+        // When
+        deferredPaymentDrainer.drain();
+
+        // Then
+        verify(deferredPaymentQueue, never()).claim(anyLong());
+        verify(paymentService, never()).processPayment(any());
+    }
+
+    @Test
+    void testDrain_HalfOpen_ProbesOnlyConfiguredCount() {
+        // Given
+        when(circuitBreakerService.getPaymentServiceState()).thenReturn(CircuitBreaker.State.HALF_OPEN);
+        when(deferredPaymentQueue.nextBatch(eq(0L), anyInt()))
+                .thenReturn(List.of(entry(1L), entry(2L), entry(3L), entry(4L)));
+        when(deferredPaymentQueue.claim(anyLong())).thenReturn(true);
+
+        // When
+        deferredPaymentDrainer.drain();
+
+        // Then - default half-open probe count is 3
+        verify(paymentService, times(3)).processPayment(any());
+        verify(deferredPaymentQueue, never()).claim(4L);
+    }
+
+    private BookKeeping entry(Long id) {
+        BookKeeping bookKeeping = new BookKeeping();
+        bookKeeping.setId(id);
+        return bookKeeping;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.subscription.scheduler;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.repository.JobLeaseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JobCoordinatorTest {
+
+    @Mock
+    private JobLeaseRepository jobLeaseRepository;
+
+    @Mock
+    private AppProperties appProperties;
+
+    @InjectMocks
+    private JobCoordinator jobCoordinator;
+
+    private final AppProperties.Scheduling scheduling = new AppProperties.Scheduling();
+
+    @BeforeEach
+    void setUp() {
+        scheduling.setNodeId("node-b");
+        scheduling.setShards(4);
+        when(appProperties.getScheduling()).thenReturn(scheduling);
+    }
+
+    @Test
+    void testRunSharded_TakesFairShareFromOwnOffsetThenLeftovers() {
+        // Given
+        when(jobLeaseRepository.findLiveNodes(anyInt())).thenReturn(List.of("node-a", "node-b"));
+        // node-a holds shard 0; shard 1 was never claimed
+        when(jobLeaseRepository.tryAcquireForRun(eq("job"), anyInt(), eq("node-b"), eq("2025-01-01"), anyInt()))
+                .thenAnswer(invocation -> (int) invocation.getArgument(1) != 0);
+        List<Integer> ran = new ArrayList<>();
+
+        // When
+        int count = jobCoordinator.runSharded("job", "2025-01-01", shard -> ran.add(shard.index()));
+
+        // Then
+        assertEquals(List.of(2, 3, 1), ran);
+        assertEquals(3, count);
+        verify(jobLeaseRepository).complete("job", 2, "node-b");
+        verify(jobLeaseRepository, never()).complete("job", 0, "node-b");
+    }
+
+    @Test
+    void testRunSharded_FailedShardIsReleasedAndOthersStillRun() {
+        // Given
+        when(jobLeaseRepository.findLiveNodes(anyInt())).thenReturn(List.of("node-b"));
+        when(jobLeaseRepository.tryAcquireForRun(anyString(), anyInt(), anyString(), anyString(), anyInt()))
+                .thenReturn(true);
+        List<Integer> ran = new ArrayList<>();
+
+        // When
+        int count = jobCoordinator.runSharded("job", "2025-01-01", shard -> {
+            if (shard.index() == 1) {
+                throw new IllegalStateException("boom");
+            }
+            ran.add(shard.index());
+        });
+
+        // Then
+        assertEquals(List.of(0, 2, 3), ran);
+        assertEquals(3, count);
+        verify(jobLeaseRepository).release("job", 1, "node-b");
+        verify(jobLeaseRepository, never()).complete("job", 1, "node-b");
+    }
+
+    @Test
+    void testRunExclusive_SkipsWhenLeaseNotAcquired() {
+        // Given
+        when(jobLeaseRepository.tryAcquireAfterInterval(eq("leader-job"), eq("node-b"), anyInt(), anyLong()))
+                .thenReturn(false);
+        Runnable task = mock(Runnable.class);
+
+        // When
+        boolean ran = jobCoordinator.runExclusive("leader-job", Duration.ofMinutes(1), task);
+
+        // Then
+        assertFalse(ran);
+        verifyNoInteractions(task);
+    }
+
+    @Test
+    void testRunSharded_CoordinationDisabledRunsEverythingLocally() {
+        // Given
+        scheduling.setEnabled(false);
+        List<JobCoordinator.Shard> ran = new ArrayList<>();
+
+        // When
+        jobCoordinator.runSharded("job", "2025-01-01", ran::add);
+
+        // Then
+        assertEquals(List.of(new JobCoordinator.Shard(0, 1)), ran);
+        verifyNoInteractions(jobLeaseRepository);
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.subscription.service;
+
+import com.example.subscription.cache.RedisCacheService;
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.model.BookKeeping;
+import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.repository.BookKeepingOutboxRepository;
+import com.example.subscription.repository.BookKeepingRepository;
+import com.example.subscription.service.impl.BookKeepingRecoveryServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BookKeepingRecoveryServiceTest {
+
+    @Mock
+    private BookKeepingRepository bookKeepingRepository;
+
+    @Mock
+    private BookKeepingOutboxRepository outboxRepository;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private RedisCacheService redisCacheService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private BusinessMetrics businessMetrics;
+
+    @Mock
+    private AppProperties appProperties;
+
+    @InjectMocks
+    private BookKeepingRecoveryServiceImpl recoveryService;
+
+    @BeforeEach
+    void setUp() {
+        AppProperties.Kafka kafka = new AppProperties.Kafka();
+        kafka.getRecovery().setBatchSize(2);
+        when(appProperties.getKafka()).thenReturn(kafka);
+        when(bookKeepingRepository.findOldestUnprocessedCompletedAt()).thenReturn(null);
+    }
+
+    @Test
+    void testSweep_RepublishesStuckEntriesPageByPage() {
+        // Given
+        LocalDateTime completedAt = LocalDateTime.now().minusHours(1);
+        BookKeeping first = completed(1L, completedAt);
+        BookKeeping second = completed(2L, completedAt);
+        BookKeeping third = completed(3L, completedAt.plusSeconds(1));
+        when(redisCacheService.setIfAbsent(anyString(), anyString(), any())).thenReturn(Mono.just(true));
+        when(redisCacheService.deleteIfValue(anyString(), anyString())).thenReturn(Mono.just(true));
+        when(bookKeepingRepository.findUnprocessedCompletedAfter(any(), any(), eq(0L), any()))
+                .thenReturn(List.of(first, second));
+        when(bookKeepingRepository.findUnprocessedCompletedAfter(any(), eq(completedAt), eq(2L), any()))
+                .thenReturn(List.of(third));
+        when(bookKeepingRepository.findIdsByIdInAndStatus(List.of(1L, 2L), "COMPLETED")).thenReturn(List.of(1L, 2L));
+        when(bookKeepingRepository.findIdsByIdInAndStatus(List.of(3L), "COMPLETED")).thenReturn(List.of(3L));
+        // Entry 2 still has an unsent outbox row
+        when(outboxRepository.findInFlightBookKeepingIds(eq(List.of(1L, 2L)), any(), eq(20))).thenReturn(List.of(2L));
+        when(outboxRepository.findInFlightBookKeepingIds(eq(List.of(3L)), any(), eq(20))).thenReturn(List.of());
+
+        // When
+        BookKeepingRecoveryService.SweepSummary summary = recoveryService.sweepUnprocessedCompleted();
+
+        // Then
+        assertTrue(summary.lockAcquired());
+        assertTrue(summary.finished());
+        assertEquals(3, summary.scanned());
+        assertEquals(2, summary.republished());
+        assertEquals(1, summary.skipped());
+        verify(outboxService).enqueue(first);
+        verify(outboxService).enqueue(third);
+        verify(outboxService, never()).enqueue(second);
+        verify(outboxRepository).deleteAbandoned(List.of(1L), 20);
+        verify(outboxRepository).deleteAbandoned(List.of(3L), 20);
+        verify(businessMetrics, times(2)).recordUnprocessedCompletedRecovered(anyLong());
+        verify(redisCacheService).deleteIfValue(anyString(), anyString());
+    }
+
+    @Test
+    void testSweep_SkipsEntriesProcessedSinceThePageWasRead() {
+        // Given
+        BookKeeping entry = completed(1L, LocalDateTime.now().minusHours(1));
+        when(redisCacheService.setIfAbsent(anyString(), anyString(), any())).thenReturn(Mono.just(true));
+        when(redisCacheService.deleteIfValue(anyString(), anyString())).thenReturn(Mono.just(true));
+        when(bookKeepingRepository.findUnprocessedCompletedAfter(any(), any(), eq(0L), any()))
+                .thenReturn(List.of(entry));
+        when(bookKeepingRepository.findIdsByIdInAndStatus(List.of(1L), "COMPLETED")).thenReturn(List.of());
+        when(outboxRepository.findInFlightBookKeepingIds(eq(List.of(1L)), any(), eq(20))).thenReturn(List.of());
+
+        // When
+        BookKeepingRecoveryService.SweepSummary summary = recoveryService.sweepUnprocessedCompleted();
+
+        // Then
+        assertEquals(0, summary.republished());
+        verify(outboxService, never()).enqueue(any());
+    }
+
+    @Test
+    void testSweep_RepublishesEntryWhoseOutboxRowWasAbandoned() {
+        // Given - the only outbox row used up its attempts, so the in-flight check leaves the entry out
+        AppProperties.Kafka kafka = appProperties.getKafka();
+        kafka.getOutbox().setMaxAttempts(3);
+        BookKeeping entry = completed(1L, LocalDateTime.now().minusHours(1));
+        when(redisCacheService.setIfAbsent(anyString(), anyString(), any())).thenReturn(Mono.just(true));
+        when(redisCacheService.deleteIfValue(anyString(), anyString())).thenReturn(Mono.just(true));
+        when(bookKeepingRepository.findUnprocessedCompletedAfter(any(), any(), eq(0L), any()))
+                .thenReturn(List.of(entry));
+        when(bookKeepingRepository.findIdsByIdInAndStatus(List.of(1L), "COMPLETED")).thenReturn(List.of(1L));
+        when(outboxRepository.findInFlightBookKeepingIds(eq(List.of(1L)), any(), eq(3))).thenReturn(List.of());
+
+        // When
+        BookKeepingRecoveryService.SweepSummary summary = recoveryService.sweepUnprocessedCompleted();
+
+        // Then - published again and the abandoned row it replaces is dropped
+        assertEquals(1, summary.republished());
+        verify(outboxService).enqueue(entry);
+        verify(outboxRepository).deleteAbandoned(List.of(1L), 3);
+    }
+
+    @Test
+    void testSweep_AnotherInstanceHoldsTheLock() {
+        // Given
+        when(redisCacheService.setIfAbsent(anyString(), anyString(), any())).thenReturn(Mono.just(false));
+
+        // When
+        BookKeepingRecoveryService.SweepSummary summary = recoveryService.sweepUnprocessedCompleted();
+
+        // Then
+        assertFalse(summary.lockAcquired());
+        verify(bookKeepingRepository, never()).findUnprocessedCompletedAfter(any(), any(), anyLong(), any());
+        verify(redisCacheService, never()).deleteIfValue(anyString(), anyString());
+        verifyNoInteractions(outboxService);
+    }
+
+    private BookKeeping completed(Long id, LocalDateTime completedAt) {
+        BookKeeping bookKeeping = new BookKeeping();
+        bookKeeping.setId(id);
+        bookKeeping.setStatus("COMPLETED");
+        bookKeeping.setCompletedAt(completedAt);
+        return bookKeeping;
+    }
+}
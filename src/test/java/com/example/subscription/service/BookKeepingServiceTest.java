@@ -1,8 +1,11 @@
 package com.example.subscription.service;
 
-import com.example.subscription.kafka.BookKeepingProducer;
+import com.example.subscription.exception.ErrorCode;
+import com.example.subscription.exception.SubscriptionException;
 import com.example.subscription.model.BookKeeping;
+import com.example.subscription.observability.PipelineLatencyTracker;
 import com.example.subscription.repository.BookKeepingRepository;
+import com.example.subscription.repository.BookKeepingStateMachine;
 import com.example.subscription.service.impl.BookKeepingServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,11 +14,13 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -25,7 +30,13 @@ class BookKeepingServiceTest {
     private BookKeepingRepository bookKeepingRepository;
 
     @Mock
-    private BookKeepingProducer bookKeepingProducer;
+    private BookKeepingStateMachine bookKeepingStateMachine;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private PipelineLatencyTracker pipelineLatencyTracker;
 
     @InjectMocks
     private BookKeepingServiceImpl bookKeepingService;
@@ -81,20 +92,62 @@ class BookKeepingServiceTest {
     @Test
     void testMarkAsCompleted() {
         // Given
-        when(bookKeepingRepository.findById(1L))
+        testBookKeeping.setStatus("COMPLETED");
+        when(bookKeepingStateMachine.complete(eq(1L), eq("payment-ref-123"), any(LocalDateTime.class)))
                 .thenReturn(Optional.of(testBookKeeping));
-        when(bookKeepingRepository.save(any(BookKeeping.class)))
-                .thenReturn(testBookKeeping);
-        doNothing().when(bookKeepingProducer).sendBookKeepingEvent(any(BookKeeping.class));
 
         // When
-        bookKeepingService.markAsCompleted(1L, "payment-ref-123");
+        boolean transitioned = bookKeepingService.markAsCompleted(1L, "payment-ref-123");
 
         // Then
-        assertEquals("COMPLETED", testBookKeeping.getStatus());
-        assertEquals("payment-ref-123", testBookKeeping.getPaymentReferenceId());
-        assertNotNull(testBookKeeping.getCompletedAt());
-        verify(bookKeepingProducer).sendBookKeepingEvent(any(BookKeeping.class));
+        assertTrue(transitioned);
+        verify(bookKeepingRepository, never()).findById(any());
+        verify(bookKeepingRepository, never()).save(any(BookKeeping.class));
+        verify(outboxService).enqueue(testBookKeeping);
     }
-}
 
+    @Test
+    void testMarkAsCompleted_AlreadyCompleted() {
+        // Given
+        when(bookKeepingStateMachine.complete(eq(1L), eq("payment-ref-123"), any(LocalDateTime.class)))
+                .thenReturn(Optional.empty());
+        when(bookKeepingRepository.existsById(1L))
+                .thenReturn(true);
+
+        // When
+        boolean transitioned = bookKeepingService.markAsCompleted(1L, "payment-ref-123");
+
+        // Then
+        assertFalse(transitioned);
+        verify(outboxService, never()).enqueue(any(BookKeeping.class));
+    }
+
+    @Test
+    void testMarkAsFailed_NoLongerInitiated() {
+        // Given
+        when(bookKeepingStateMachine.fail(1L, "Payment DECLINED at payment service"))
+                .thenReturn(false);
+        when(bookKeepingRepository.existsById(1L))
+                .thenReturn(true);
+
+        // When
+        bookKeepingService.markAsFailed(1L, "Payment DECLINED at payment service");
+
+        // Then
+        verify(bookKeepingRepository, never()).save(any(BookKeeping.class));
+    }
+
+    @Test
+    void testMarkAsFailed_NotFound() {
+        // Given
+        when(bookKeepingStateMachine.fail(1L, "Payment DECLINED at payment service"))
+                .thenReturn(false);
+        when(bookKeepingRepository.existsById(1L))
+                .thenReturn(false);
+
+        // When / Then
+        SubscriptionException exception = assertThrows(SubscriptionException.class,
+                () -> bookKeepingService.markAsFailed(1L, "Payment DECLINED at payment service"));
+        assertEquals(ErrorCode.SUBSCRIPTION_NOT_FOUND, exception.getErrorCode());
+    }
+}
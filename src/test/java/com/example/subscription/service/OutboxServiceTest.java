@@ -0,0 +1,177 @@
+package com.example.subscription.service;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.kafka.BookKeepingProducer;
+import com.example.subscription.model.BookKeepingOutbox;
+import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.repository.BookKeepingOutboxRepository;
+import com.example.subscription.service.impl.OutboxServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxServiceTest {
+
+    @Mock
+    private BookKeepingOutboxRepository outboxRepository;
+
+    @Mock
+    private BookKeepingProducer bookKeepingProducer;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private BusinessMetrics businessMetrics;
+
+    @Mock
+    private AppProperties appProperties;
+
+    @InjectMocks
+    private OutboxServiceImpl outboxService;
+
+    @Test
+    void testRelayBatch_MarksOnlyAcknowledgedRowsSent() {
+        // Given
+        when(appProperties.getKafka()).thenReturn(new AppProperties.Kafka());
+        when(outboxRepository.tryAcquireRelayLock(anyLong())).thenReturn(true);
+        when(outboxRepository.claimUnsent(anyInt(), anyInt())).thenReturn(List.of(row(1L, "100"), row(2L, "200")));
+        when(bookKeepingProducer.send(eq("100"), any(byte[].class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        when(bookKeepingProducer.send(eq("200"), any(byte[].class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker unavailable")));
+
+        // When
+        int sent = outboxService.relayBatch();
+
+        // Then
+        assertEquals(1, sent);
+        verify(outboxRepository).markSent(eq(List.of(1L)), any());
+        verify(outboxRepository).recordFailure(eq(2L), anyString());
+        verify(businessMetrics).recordOutboxSendFailed();
+        verify(businessMetrics, never()).recordOutboxAbandoned();
+    }
+
+    @Test
+    void testRelayBatch_FailureHoldsBackLaterRowsWithTheSameKey() {
+        // Given - user 100's first event fails while its second and user 200's event are acknowledged
+        when(appProperties.getKafka()).thenReturn(new AppProperties.Kafka());
+        when(outboxRepository.tryAcquireRelayLock(anyLong())).thenReturn(true);
+        BookKeepingOutbox first = row(1L, "100");
+        BookKeepingOutbox second = row(2L, "100");
+        BookKeepingOutbox other = row(3L, "200");
+        when(outboxRepository.claimUnsent(anyInt(), anyInt())).thenReturn(List.of(first, second, other));
+        when(bookKeepingProducer.send("100", first.getPayload()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker unavailable")));
+        when(bookKeepingProducer.send("100", second.getPayload()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        when(bookKeepingProducer.send("200", other.getPayload()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        // When
+        int sent = outboxService.relayBatch();
+
+        // Then - the second row stays unsent without using up an attempt
+        assertEquals(1, sent);
+        verify(outboxRepository).markSent(eq(List.of(3L)), any());
+        verify(outboxRepository).recordFailure(eq(1L), anyString());
+        verify(outboxRepository, never()).recordFailure(eq(2L), anyString());
+    }
+
+    @Test
+    void testRelayBatch_UnackedSendTimesOutWithinTheBound() {
+        // Given
+        AppProperties.Kafka kafka = new AppProperties.Kafka();
+        kafka.getOutbox().setSendTimeoutMs(50);
+        when(appProperties.getKafka()).thenReturn(kafka);
+        when(outboxRepository.tryAcquireRelayLock(anyLong())).thenReturn(true);
+        when(outboxRepository.claimUnsent(anyInt(), anyInt())).thenReturn(List.of(row(1L, "100")));
+        when(bookKeepingProducer.send(eq("100"), any(byte[].class))).thenReturn(new CompletableFuture<>());
+
+        // When
+        long started = System.nanoTime();
+        int sent = outboxService.relayBatch();
+
+        // Then
+        assertEquals(0, sent);
+        assertTrue(System.nanoTime() - started < 5_000_000_000L);
+        verify(outboxRepository).recordFailure(eq(1L), anyString());
+        verify(outboxRepository, never()).markSent(any(), any());
+    }
+
+    @Test
+    void testRelayBatch_LastAttemptFailure_AbandonsRow() {
+        // Given - the row has one attempt left
+        AppProperties.Kafka kafka = new AppProperties.Kafka();
+        kafka.getOutbox().setMaxAttempts(3);
+        when(appProperties.getKafka()).thenReturn(kafka);
+        when(outboxRepository.tryAcquireRelayLock(anyLong())).thenReturn(true);
+        BookKeepingOutbox row = row(1L, "100");
+        row.setAttempts(2);
+        when(outboxRepository.claimUnsent(500, 3)).thenReturn(List.of(row));
+        when(bookKeepingProducer.send(eq("100"), any(byte[].class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("record too large")));
+
+        // When
+        int sent = outboxService.relayBatch();
+
+        // Then
+        assertEquals(0, sent);
+        verify(outboxRepository).recordFailure(eq(1L), anyString());
+        verify(businessMetrics).recordOutboxAbandoned();
+        verify(outboxRepository, never()).markSent(any(), any());
+    }
+
+    @Test
+    void testPurgeSentBatch_DeletesRowsOlderThanRetention() {
+        // Given
+        when(appProperties.getKafka()).thenReturn(new AppProperties.Kafka());
+        when(outboxRepository.purgeSentBefore(any(LocalDateTime.class), eq(5000))).thenReturn(42);
+
+        // When
+        int purged = outboxService.purgeSentBatch();
+
+        // Then
+        assertEquals(42, purged);
+        verify(businessMetrics).recordOutboxPurged(42);
+    }
+
+    @Test
+    void testRelayBatch_SkipsWhenAnotherRelayHoldsTheLock() {
+        // Given
+        when(outboxRepository.tryAcquireRelayLock(anyLong())).thenReturn(false);
+
+        // When
+        int sent = outboxService.relayBatch();
+
+        // Then
+        assertEquals(0, sent);
+        verify(outboxRepository, never()).claimUnsent(anyInt(), anyInt());
+        verify(bookKeepingProducer, never()).send(anyString(), any(byte[].class));
+    }
+
+    private BookKeepingOutbox row(Long id, String key) {
+        BookKeepingOutbox row = new BookKeepingOutbox();
+        row.setId(id);
+        row.setBookKeepingId(id);
+        row.setMessageKey(key);
+        row.setPayload(new byte[] {id.byteValue()});
+        return row;
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.subscription.service;
+
+import com.example.subscription.cache.RedisCacheService;
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.model.BookKeeping;
+import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.repository.BookKeepingRepository;
+import com.example.subscription.service.impl.PaymentReconciliationServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentReconciliationServiceTest {
+
+    @Mock
+    private BookKeepingRepository bookKeepingRepository;
+
+    @Mock
+    private BookKeepingService bookKeepingService;
+
+    @Mock
+    private PaymentService paymentService;
+
+    @Mock
+    private RedisCacheService redisCacheService;
+
+    @Mock
+    private BusinessMetrics businessMetrics;
+
+    @Mock
+    private AppProperties appProperties;
+
+    @InjectMocks
+    private PaymentReconciliationServiceImpl reconciliationService;
+
+    @BeforeEach
+    void setUp() {
+        AppProperties.Payment payment = new AppProperties.Payment();
+        payment.getReconciliation().setChunkSize(2);
+        payment.getReconciliation().setParallelism(4);
+        when(appProperties.getPayment()).thenReturn(payment);
+        when(bookKeepingRepository.findOldestInitiatedCreatedAt()).thenReturn(null);
+    }
+
+    @Test
+    void testReconcileStalePayments_CompletesAndFails() {
+        // Given
+        when(redisCacheService.get(anyString())).thenReturn(Mono.empty());
+        when(redisCacheService.set(anyString(), anyString(), any())).thenReturn(Mono.just(true));
+        when(redisCacheService.delete(anyString())).thenReturn(Mono.just(true));
+        when(bookKeepingRepository.findStaleInitiatedAfter(any(), eq(0L), any()))
+                .thenReturn(List.of(initiated(1L, "ref-1"), initiated(2L, "ref-2")));
+        when(bookKeepingRepository.findStaleInitiatedAfter(any(), eq(2L), any()))
+                .thenReturn(List.of());
+        when(paymentService.getPaymentStatus("ref-1"))
+                .thenReturn(Mono.just(Map.<String, Object>of("status", "COMPLETED", "paymentReferenceId", "pay-1")));
+        when(paymentService.getPaymentStatus("ref-2"))
+                .thenReturn(Mono.just(Map.<String, Object>of("status", "DECLINED")));
+
+        // When
+        PaymentReconciliationService.ReconciliationSummary summary = reconciliationService.reconcileStalePayments();
+
+        // Then
+        assertEquals(2, summary.scanned());
+        assertEquals(1, summary.completed());
+        assertEquals(1, summary.failed());
+        assertTrue(summary.finished());
+        verify(bookKeepingService).markAsCompleted(1L, "pay-1");
+        verify(bookKeepingService).markAsFailed(eq(2L), anyString());
+        verify(redisCacheService).delete(anyString());
+    }
+
+    @Test
+    void testReconcileStalePayments_DeduplicatesInFlightLookups() {
+        // Given
+        when(redisCacheService.get(anyString())).thenReturn(Mono.empty());
+        when(redisCacheService.set(anyString(), anyString(), any())).thenReturn(Mono.just(true));
+        when(redisCacheService.delete(anyString())).thenReturn(Mono.just(true));
+        when(bookKeepingRepository.findStaleInitiatedAfter(any(), eq(0L), any()))
+                .thenReturn(List.of(initiated(1L, "ref-x"), initiated(2L, "ref-x")));
+        when(bookKeepingRepository.findStaleInitiatedAfter(any(), eq(2L), any()))
+                .thenReturn(List.of());
+        when(paymentService.getPaymentStatus("ref-x"))
+                .thenReturn(Mono.delay(Duration.ofMillis(100))
+                        .thenReturn(Map.<String, Object>of("status", "PENDING")));
+
+        // When
+        PaymentReconciliationService.ReconciliationSummary summary = reconciliationService.reconcileStalePayments();
+
+        // Then
+        assertEquals(2, summary.pending());
+        verify(paymentService, times(1)).getPaymentStatus("ref-x");
+        verify(bookKeepingService, never()).markAsCompleted(any(), any());
+    }
+
+    @Test
+    void testReconcileStalePayments_UnknownAtPaymentServiceStaysPending() {
+        // Given
+        when(redisCacheService.get(anyString())).thenReturn(Mono.empty());
+        when(redisCacheService.set(anyString(), anyString(), any())).thenReturn(Mono.just(true));
+        when(redisCacheService.delete(anyString())).thenReturn(Mono.just(true));
+        when(bookKeepingRepository.findStaleInitiatedAfter(any(), eq(0L), any()))
+                .thenReturn(List.of(initiated(7L, "ref-7")));
+        when(bookKeepingRepository.findStaleInitiatedAfter(any(), eq(7L), any()))
+                .thenReturn(List.of());
+        when(paymentService.getPaymentStatus("ref-7")).thenReturn(Mono.error(WebClientResponseException.create(
+                404, "Not Found", HttpHeaders.EMPTY, new byte[0], StandardCharsets.UTF_8)));
+
+        // When
+        PaymentReconciliationService.ReconciliationSummary summary = reconciliationService.reconcileStalePayments();
+
+        // Then
+        assertEquals(1, summary.pending());
+        assertEquals(0, summary.failed());
+        verify(bookKeepingService, never()).markAsFailed(any(), any());
+    }
+
+    @Test
+    void testReconcileStalePayments_NoReference_LooksUpByBookKeepingId() {
+        // Given - the submission's response was lost, so no provider reference was stored
+        when(redisCacheService.get(anyString())).thenReturn(Mono.empty());
+        when(redisCacheService.set(anyString(), anyString(), any())).thenReturn(Mono.just(true));
+        when(redisCacheService.delete(anyString())).thenReturn(Mono.just(true));
+        when(bookKeepingRepository.findStaleInitiatedAfter(any(), eq(0L), any()))
+                .thenReturn(List.of(initiated(5L, null)));
+        when(bookKeepingRepository.findStaleInitiatedAfter(any(), eq(5L), any()))
+                .thenReturn(List.of());
+        when(paymentService.getPaymentStatusByBookKeepingId(5L))
+                .thenReturn(Mono.just(Map.<String, Object>of("status", "COMPLETED", "paymentReferenceId", "pay-5")));
+
+        // When
+        PaymentReconciliationService.ReconciliationSummary summary = reconciliationService.reconcileStalePayments();
+
+        // Then
+        assertEquals(1, summary.completed());
+        verify(bookKeepingService).markAsCompleted(5L, "pay-5");
+        verify(paymentService, never()).getPaymentStatus(anyString());
+    }
+
+    @Test
+    void testReconcileStalePayments_ResumesFromCheckpoint() {
+        // Given
+        when(redisCacheService.get(anyString())).thenReturn(Mono.just("41"));
+        when(redisCacheService.delete(anyString())).thenReturn(Mono.just(true));
+        when(bookKeepingRepository.findStaleInitiatedAfter(any(), eq(41L), any()))
+                .thenReturn(List.of());
+
+        // When
+        PaymentReconciliationService.ReconciliationSummary summary = reconciliationService.reconcileStalePayments();
+
+        // Then
+        assertEquals(0, summary.scanned());
+        verify(bookKeepingRepository).findStaleInitiatedAfter(any(), eq(41L), any());
+        verify(paymentService, never()).getPaymentStatus(anyString());
+    }
+
+    private BookKeeping initiated(Long id, String paymentReferenceId) {
+        BookKeeping bookKeeping = new BookKeeping();
+        bookKeeping.setId(id);
+        bookKeeping.setStatus("INITIATED");
+        bookKeeping.setPaymentReferenceId(paymentReferenceId);
+        return bookKeeping;
+    }
+}
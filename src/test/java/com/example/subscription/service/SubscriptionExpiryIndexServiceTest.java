@@ -0,0 +1,161 @@
+package com.example.subscription.service;
+
+import com.example.subscription.cache.RedisCacheService;
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.dto.projection.ExpiringSubscription;
+import com.example.subscription.model.UserSubscription;
+import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.repository.UserSubscriptionRepository;
+import com.example.subscription.service.impl.SubscriptionExpiryIndexServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SubscriptionExpiryIndexServiceTest {
+
+    @Mock
+    private RedisCacheService redisCacheService;
+
+    @Mock
+    private UserSubscriptionRepository userSubscriptionRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private BusinessMetrics businessMetrics;
+
+    private SubscriptionExpiryIndexServiceImpl indexService;
+
+    @BeforeEach
+    void setUp() {
+        indexService = new SubscriptionExpiryIndexServiceImpl(redisCacheService, userSubscriptionRepository,
+                eventPublisher, businessMetrics, new AppProperties());
+    }
+
+    @Test
+    void testOnIndexRequested_WritesShardAccountAndUserKeys() {
+        // Given
+        LocalDate endDate = LocalDate.of(2026, 11, 30);
+        double score = endDate.toEpochDay();
+        when(redisCacheService.zaddGreater(anyString(), anyMap(), any())).thenReturn(Mono.just(1L));
+
+        // When
+        indexService.onIndexRequested(new SubscriptionExpiryIndexService.IndexRequested(
+                List.of(new ExpiringSubscription(10L, 100L, 1L, 2L, endDate))));
+
+        // Then
+        verify(redisCacheService).zaddGreater("subscription:expiry:shard:4", Map.of("10:100:1:2", score), null);
+        verify(redisCacheService).zaddGreater("subscription:expiry:account:1", Map.of("10:100:1:2", score), null);
+        verify(redisCacheService).zaddGreater("subscription:expiry:user:100", Map.of("10:100:1:2", score),
+                Instant.ofEpochSecond((endDate.toEpochDay() + 2) * 86_400L));
+        verifyNoInteractions(businessMetrics);
+    }
+
+    @Test
+    void testForEachExpiringInShard_ReadsOnlyTheJobShardsIndexShards() {
+        // Given
+        LocalDate day = LocalDate.of(2026, 10, 25);
+        when(redisCacheService.zrangeByScore(anyString(), anyDouble(), anyDouble())).thenReturn(Flux.empty());
+        when(redisCacheService.zrangeByScore(eq("subscription:expiry:shard:5"), anyDouble(), anyDouble()))
+                .thenReturn(Flux.just(new DefaultTypedTuple<>("11:101:1:2", (double) day.toEpochDay()),
+                        new DefaultTypedTuple<>("12:117:3:1", (double) day.toEpochDay())));
+        List<ExpiringSubscription> seen = new ArrayList<>();
+
+        // When
+        long total = indexService.forEachExpiringInShard(1, 4, day, day, 1, seen::addAll);
+
+        // Then
+        assertEquals(2, total);
+        assertEquals(List.of(new ExpiringSubscription(11L, 101L, 1L, 2L, day),
+                new ExpiringSubscription(12L, 117L, 3L, 1L, day)), seen);
+        verify(redisCacheService, times(4)).zrangeByScore(anyString(), anyDouble(), anyDouble());
+        verify(redisCacheService, never()).zrangeByScore(eq("subscription:expiry:shard:0"), anyDouble(), anyDouble());
+    }
+
+    @Test
+    void testFindExpiringForUser_UsesDatabaseUntilIndexIsBuilt() {
+        // Given
+        LocalDate today = LocalDate.of(2026, 10, 19);
+        when(redisCacheService.exists("subscription:expiry:ready")).thenReturn(Mono.just(false));
+        when(userSubscriptionRepository.findByUserIdAndStatus(100L, "ACTIVE"))
+                .thenReturn(List.of(subscription(20L, today.plusDays(40)), subscription(21L, today.plusDays(5))));
+
+        // When
+        List<ExpiringSubscription> expiring = indexService.findExpiringForUser(100L, today.plusDays(1), today.plusDays(30));
+
+        // Then
+        assertEquals(List.of(new ExpiringSubscription(21L, 100L, 1L, 2L, today.plusDays(5))), expiring);
+        verify(businessMetrics).recordExpiryIndexFallback("user");
+        verify(redisCacheService, never()).zrangeByScore(anyString(), anyDouble(), anyDouble());
+    }
+
+    @Test
+    void testCountExpiringForAccount_UsesDatabaseUntilIndexIsBuilt() {
+        // Given
+        LocalDate today = LocalDate.of(2026, 10, 19);
+        when(redisCacheService.exists("subscription:expiry:ready")).thenReturn(Mono.just(false));
+        when(userSubscriptionRepository.countActiveByEndDate(1L, today.plusDays(1), today.plusDays(3)))
+                .thenReturn(List.<Object[]>of(new Object[] {today.plusDays(2), 4L}));
+
+        // When
+        SubscriptionExpiryIndexService.AccountExpiryCounts counts =
+                indexService.countExpiringForAccount(1L, today.plusDays(1), today.plusDays(3));
+
+        // Then
+        assertEquals(4, counts.total());
+        assertEquals(List.of(0L, 4L, 0L), List.copyOf(counts.byDay().values()));
+        verify(businessMetrics).recordExpiryIndexFallback("account");
+        verify(redisCacheService, never()).zcount(anyString(), anyDouble(), anyDouble());
+    }
+
+    @Test
+    void testCountExpiringForAccount_ReadsIndexOnceReady() {
+        // Given
+        LocalDate today = LocalDate.of(2026, 10, 19);
+        when(redisCacheService.exists("subscription:expiry:ready")).thenReturn(Mono.just(true));
+        when(redisCacheService.zcount(eq("subscription:expiry:account:1"), anyDouble(), anyDouble()))
+                .thenReturn(Mono.just(2L), Mono.just(0L));
+
+        // When
+        SubscriptionExpiryIndexService.AccountExpiryCounts counts =
+                indexService.countExpiringForAccount(1L, today.plusDays(1), today.plusDays(2));
+
+        // Then
+        assertEquals(2, counts.total());
+        verifyNoInteractions(userSubscriptionRepository);
+        verify(businessMetrics, never()).recordExpiryIndexFallback(anyString());
+    }
+
+    private static UserSubscription subscription(long id, LocalDate endDate) {
+        UserSubscription subscription = new UserSubscription();
+        subscription.setId(id);
+        subscription.setUserId(100L);
+        subscription.setSubscriptionAccountId(1L);
+        subscription.setDurationTypeId(2L);
+        subscription.setEndDate(endDate);
+        subscription.setStatus("ACTIVE");
+        return subscription;
+    }
+}
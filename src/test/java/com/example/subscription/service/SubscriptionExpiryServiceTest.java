@@ -0,0 +1,116 @@
+package com.example.subscription.service;
+
+import com.example.subscription.config.AppProperties;
+import com.example.subscription.model.BookKeeping;
+import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.repository.SubscriptionExpiryRepository;
+import com.example.subscription.service.impl.SubscriptionExpiryServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SubscriptionExpiryServiceTest {
+
+    @Mock
+    private SubscriptionExpiryRepository subscriptionExpiryRepository;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private BusinessMetrics businessMetrics;
+
+    @Mock
+    private AppProperties appProperties;
+
+    @InjectMocks
+    private SubscriptionExpiryServiceImpl subscriptionExpiryService;
+
+    private AppProperties.Expiry expiry;
+
+    @BeforeEach
+    void setUp() {
+        expiry = new AppProperties.Expiry();
+        expiry.setBatchSize(2);
+        when(appProperties.getExpiry()).thenReturn(expiry);
+    }
+
+    @Test
+    void testExpire_RunsBatchesUntilAShortOne() {
+        // Given
+        when(subscriptionExpiryRepository.expireBatch(any(LocalDate.class), eq(0), eq(4), eq(2), any(LocalDateTime.class)))
+                .thenReturn(batch(2, 2), batch(2, 2), batch(1, 1));
+
+        // When
+        SubscriptionExpiryService.ExpirySummary summary = subscriptionExpiryService.expireOverdueSubscriptions(0, 4);
+
+        // Then
+        assertEquals(5, summary.expired());
+        assertEquals(3, summary.batches());
+        assertTrue(summary.finished());
+        verify(outboxService, times(3)).enqueueAll(any());
+    }
+
+    @Test
+    void testExpire_ConflictingEntries_DoNotEndTheRunEarly() {
+        // Given - a full batch flipped, but one entry was already logged by an earlier attempt
+        when(subscriptionExpiryRepository.expireBatch(any(LocalDate.class), anyInt(), anyInt(), anyInt(), any(LocalDateTime.class)))
+                .thenReturn(batch(2, 1), batch(0, 0));
+
+        // When
+        SubscriptionExpiryService.ExpirySummary summary = subscriptionExpiryService.expireOverdueSubscriptions(0, 1);
+
+        // Then - the second batch still ran
+        assertEquals(2, summary.expired());
+        assertEquals(2, summary.batches());
+        assertTrue(summary.finished());
+        verify(businessMetrics).recordSubscriptionsExpired(2);
+    }
+
+    @Test
+    void testExpire_BatchLimitReached_LeavesTheRestForTheNextRun() {
+        // Given
+        expiry.setMaxBatchesPerRun(2);
+        when(subscriptionExpiryRepository.expireBatch(any(LocalDate.class), anyInt(), anyInt(), anyInt(), any(LocalDateTime.class)))
+                .thenReturn(batch(2, 2));
+
+        // When
+        SubscriptionExpiryService.ExpirySummary summary = subscriptionExpiryService.expireOverdueSubscriptions(0, 1);
+
+        // Then - not finished, so the next run resumes from whatever is still ACTIVE and overdue
+        assertEquals(4, summary.expired());
+        assertEquals(2, summary.batches());
+        assertFalse(summary.finished());
+        verify(businessMetrics).recordExpiryRun(anyLong(), eq(4L));
+    }
+
+    private SubscriptionExpiryRepository.ExpiredBatch batch(int expired, int written) {
+        List<BookKeeping> entries = new ArrayList<>();
+        for (int i = 0; i < written; i++) {
+            BookKeeping entry = new BookKeeping();
+            entry.setId((long) i);
+            entries.add(entry);
+        }
+        return new SubscriptionExpiryRepository.ExpiredBatch(expired, entries);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.subscription.service;
+
+import com.example.subscription.dto.event.BookKeepingEvent;
+import com.example.subscription.model.UserSubscription;
+import com.example.subscription.service.impl.UserSubscriptionFold;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserSubscriptionFoldTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 1, 1, 10, 0);
+
+    @Test
+    void testApply_SubscribeThenExtendProducesOneRow() {
+        // Given
+        UserSubscriptionFold fold = new UserSubscriptionFold();
+
+        // When
+        fold.apply(event(1L, "SUBSCRIBED", LocalDate.of(2025, 1, 1), LocalDate.of(2025, 2, 1), "ACTIVE"));
+        fold.apply(event(2L, "EXTENDED", null, LocalDate.of(2025, 3, 1), null));
+
+        // Then
+        List<UserSubscription> rows = fold.rows();
+        assertEquals(1, rows.size());
+        assertEquals(LocalDate.of(2025, 3, 1), rows.get(0).getEndDate());
+        assertEquals("ACTIVE", rows.get(0).getStatus());
+        assertEquals(List.of(1L, 2L), fold.appliedIds());
+        assertEquals(0, fold.skipped());
+    }
+
+    @Test
+    void testApply_SkipsEventsTheConsumerWouldReject() {
+        // Given
+        UserSubscriptionFold fold = new UserSubscriptionFold();
+
+        // When
+        fold.apply(event(1L, "EXTENDED", null, LocalDate.of(2025, 3, 1), null));
+        fold.apply(event(2L, "SUBSCRIBED", LocalDate.of(2025, 1, 1), LocalDate.of(2025, 2, 1), "ACTIVE"));
+        fold.apply(event(3L, "SUBSCRIBED", LocalDate.of(2025, 1, 5), LocalDate.of(2025, 2, 5), "ACTIVE"));
+
+        // Then
+        assertEquals(1, fold.rows().size());
+        assertEquals(LocalDate.of(2025, 2, 1), fold.rows().get(0).getEndDate());
+        assertEquals(List.of(2L), fold.appliedIds());
+        assertEquals(2, fold.skipped());
+    }
+
+    @Test
+    void testApply_ExpiredClosesSubscriptionAndAllowsResubscribe() {
+        // Given
+        UserSubscriptionFold fold = new UserSubscriptionFold();
+
+        // When
+        fold.apply(event(1L, "SUBSCRIBED", LocalDate.of(2025, 1, 1), LocalDate.of(2025, 2, 1), "ACTIVE"));
+        fold.apply(event(2L, "EXPIRED", LocalDate.of(2025, 1, 1), LocalDate.of(2025, 2, 1), "EXPIRED"));
+        fold.apply(event(3L, "SUBSCRIBED", LocalDate.of(2025, 3, 1), LocalDate.of(2025, 4, 1), "ACTIVE"));
+
+        // Then
+        List<UserSubscription> rows = fold.rows();
+        assertEquals(2, rows.size());
+        assertEquals("EXPIRED", rows.get(0).getStatus());
+        assertEquals("ACTIVE", rows.get(1).getStatus());
+        assertEquals(0, fold.skipped());
+    }
+
+    private BookKeepingEvent event(long id, String eventType, LocalDate startDate, LocalDate endDate, String status) {
+        return new BookKeepingEvent(id, "key-" + id, 100L, 1L, 1L, 1L, eventType, "PROCESSED",
+                startDate, endDate, status, NOW.plusMinutes(id), NOW.plusMinutes(id));
+    }
+}
@@ -1,11 +1,16 @@
 package com.example.subscription.service;
 
+import com.example.subscription.dto.event.BookKeepingEvent;
 import com.example.subscription.model.BookKeeping;
 import com.example.subscription.model.UserSubscription;
 import com.example.subscription.observability.BusinessMetrics;
+import com.example.subscription.repository.BookKeepingStateMachine;
+import com.example.subscription.repository.UserSubscriptionBatchRepository;
 import com.example.subscription.repository.UserSubscriptionRepository;
 import com.example.subscription.service.impl.UserSubscriptionServiceImpl;
 import com.example.subscription.notification.NotificationService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -15,10 +20,14 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -27,12 +36,21 @@ class UserSubscriptionServiceTest {
     @Mock
     private UserSubscriptionRepository userSubscriptionRepository;
 
+    @Mock
+    private UserSubscriptionBatchRepository userSubscriptionBatchRepository;
+
+    @Mock
+    private BookKeepingStateMachine bookKeepingStateMachine;
+
     @Mock
     private BusinessMetrics businessMetrics;
 
     @Mock
     private NotificationService notificationService;
 
+    @Mock
+    private SubscriptionExpiryIndexService subscriptionExpiryIndexService;
+
     @InjectMocks
     private UserSubscriptionServiceImpl userSubscriptionService;
 
@@ -104,6 +122,42 @@ class UserSubscriptionServiceTest {
         verify(notificationService).notifySubscriptionExtended(any(UserSubscription.class));
     }
 
+    @Test
+    void testMaterializeBatch_IsolatesFailedRecords() throws Exception {
+        // Given
+        BookKeeping extension = new BookKeeping();
+        extension.setId(2L);
+        extension.setUserId(100L);
+        extension.setSubscriptionAccountId(1L);
+        extension.setDurationTypeId(2L);
+        extension.setEventType("EXTENDED");
+        extension.setAfterState("{\"end_date\":\"2024-02-29\"}");
+
+        BookKeeping orphanExtension = new BookKeeping();
+        orphanExtension.setId(3L);
+        orphanExtension.setUserId(200L);
+        orphanExtension.setSubscriptionAccountId(1L);
+        orphanExtension.setDurationTypeId(2L);
+        orphanExtension.setEventType("EXTENDED");
+        orphanExtension.setAfterState("{\"end_date\":\"2024-02-29\"}");
+
+        when(userSubscriptionRepository.findByUserIdInAndStatus(anyCollection(), eq("ACTIVE")))
+                .thenReturn(List.of());
+
+        // When
+        UserSubscriptionService.BatchMaterializationResult result = userSubscriptionService.materializeBatch(
+                List.of(event(testBookKeeping), event(extension), event(orphanExtension)));
+
+        // Then
+        assertEquals(List.of(1L, 2L), result.processedIds());
+        assertEquals(1, result.failures().size());
+        assertTrue(result.failures().containsKey(3L));
+        verify(userSubscriptionBatchRepository).insertAll(argThat(created -> created.size() == 1
+                && created.get(0).getEndDate().equals(LocalDate.parse("2024-02-29"))));
+        verify(bookKeepingStateMachine).markProcessed(eq(List.of(1L, 2L)), any());
+        verify(userSubscriptionRepository, never()).save(any(UserSubscription.class));
+    }
+
     @Test
     void testGetUserSubscriptions() {
         // Given
@@ -133,5 +187,10 @@ class UserSubscriptionServiceTest {
         assertEquals(1, result.size());
         verify(userSubscriptionRepository).findByUserIdAndStatus(100L, "ACTIVE");
     }
-}
 
+    private BookKeepingEvent event(BookKeeping bookKeeping) throws Exception {
+        Map<String, Object> afterState = new ObjectMapper().readValue(
+                bookKeeping.getAfterState(), new TypeReference<Map<String, Object>>() {});
+        return BookKeepingEvent.of(bookKeeping, afterState);
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.subscription.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentCallbackSignatureTest {
+
+    private static final String SECRET = "test-callback-secret";
+
+    @Test
+    void testVerify_ValidSignature() {
+        // Given
+        String signature = PaymentCallbackSignature.sign(SECRET, 1700000000L, 42L, "pay-42");
+
+        // When
+        boolean result = PaymentCallbackSignature.verify(SECRET, 1700000000L, 42L, "pay-42", signature);
+
+        // Then
+        assertTrue(result);
+    }
+
+    @Test
+    void testVerify_TamperedReference() {
+        // Given
+        String signature = PaymentCallbackSignature.sign(SECRET, 1700000000L, 42L, "pay-42");
+
+        // When
+        boolean result = PaymentCallbackSignature.verify(SECRET, 1700000000L, 42L, "pay-43", signature);
+
+        // Then
+        assertFalse(result);
+    }
+
+    @Test
+    void testVerify_MissingSecretOrSignature() {
+        // Given
+        String signature = PaymentCallbackSignature.sign(SECRET, 1700000000L, 42L, "pay-42");
+
+        // When / Then
+        assertFalse(PaymentCallbackSignature.verify(null, 1700000000L, 42L, "pay-42", signature));
+        assertFalse(PaymentCallbackSignature.verify(SECRET, 1700000000L, 42L, "pay-42", null));
+    }
+}